@@ -33,9 +33,11 @@ import scouter.agent.asm.ApicallWebClientResponseASM;
 import scouter.agent.asm.CapArgsASM;
 import scouter.agent.asm.CapReturnASM;
 import scouter.agent.asm.CapThisASM;
+import scouter.agent.asm.ClassTargetIndex;
 import scouter.agent.asm.HttpReactiveServiceASM;
 import scouter.agent.asm.HttpServiceASM;
 import scouter.agent.asm.IASM;
+import scouter.agent.asm.ITypeASM;
 import scouter.agent.asm.InitialContextASM;
 import scouter.agent.asm.JDBCConnectionOpenASM;
 import scouter.agent.asm.JDBCDriverASM;
@@ -92,11 +94,13 @@ import java.security.ProtectionDomain;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class AgentTransformer implements ClassFileTransformer {
     public static final String JAVA_UTIL_MAP = "java/util/Map";
     public static ThreadLocal<ClassLoader> hookingCtx = new ThreadLocal<ClassLoader>();
     protected static List<IASM> asms = new ArrayList<IASM>();
+    protected static ClassTargetIndex typeIndex = new ClassTargetIndex();
     // hook 관련 설정이 변경되면 자동으로 변경된다.
     private static int hook_signature;
 
@@ -110,6 +114,7 @@ public class AgentTransformer implements ClassFileTransformer {
                     reload();
                 }
                 hook_signature = conf.getHookSignature();
+                TransformCache.getInstance().checkKey();
             }
         });
     }
@@ -185,6 +190,13 @@ public class AgentTransformer implements ClassFileTransformer {
         temp.add(new AddFieldASM());
         temp.add(new WeaverClassASM());
 
+        ClassTargetIndex index = new ClassTargetIndex();
+        for (int i = 0; i < temp.size(); i++) {
+            if (temp.get(i) instanceof ITypeASM) {
+                ((ITypeASM) temp.get(i)).index(index);
+            }
+        }
+        typeIndex = index;
         asms = temp;
     }
 
@@ -201,11 +213,34 @@ public class AgentTransformer implements ClassFileTransformer {
         asynchook.put("javax/naming/InitialContext".hashCode(), "javax/naming/InitialContext");
     }
 
+    private static final AtomicLong scanned = new AtomicLong();
+    private static final AtomicLong transformed = new AtomicLong();
+    private static final AtomicLong elapsedNanos = new AtomicLong();
+
     private final Configure conf = Configure.getInstance();
     private Logger.FileLog bciOut;
 
+    /**
+     * count of the classes offered to the asms
+     */
+    public static long getScannedCount() {
+        return scanned.get();
+    }
+
+    public static long getTransformedCount() {
+        return transformed.get();
+    }
+
+    /**
+     * time spent in transform() of all the classes
+     */
+    public static long getElapsedNanos() {
+        return elapsedNanos.get();
+    }
+
     public byte[] transform(final ClassLoader loader, String className, final Class classBeingRedefined,
                             ProtectionDomain protectionDomain, byte[] classfileBuffer) throws IllegalClassFormatException {
+        long started = System.nanoTime();
         try {
             hookingCtx.set(loader);
 
@@ -230,63 +265,209 @@ public class AgentTransformer implements ClassFileTransformer {
             if (className.startsWith("scouter/")) {
                 return null;
             }
-            //
-            classfileBuffer = DirectPatch.patch(className, classfileBuffer);
+            // the bytes of a direct patch are returned even if no asm changes them
+            byte[] patched = DirectPatch.patch(className, classfileBuffer);
+            byte[] directPatched = patched == classfileBuffer ? null : patched;
+            classfileBuffer = patched;
             ObjTypeDetector.check(className);
-            final ClassDesc classDesc = new ClassDesc();
-            ClassReader cr = new ClassReader(classfileBuffer);
-            cr.accept(new ClassVisitor(Opcodes.ASM9) {
-                public void visit(int version, int access, String name, String signature, String superName,
-                                  String[] interfaces) {
-                    classDesc.set(version, access, name, signature, superName, interfaces);
-                    if (conf._hook_map_impl_enabled) {
-                        classDesc.isMapImpl = isMapImpl(superName, interfaces, loader);
-                    }
-                    super.visit(version, access, name, signature, superName, interfaces);
-                }
-
-                @Override
-                public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
-                    classDesc.annotation += desc;
-                    return super.visitAnnotation(desc, visible);
-                }
-            }, 0);
-            if (AsmUtil.isInterface(classDesc.access)
-                    && !"reactor/core/publisher/OptimizableOperator".equals(className)
-                    && !"com/mongodb/connection/InternalConnection".equals(className)
-            ) {
-                return null;
+            scanned.incrementAndGet();
+            TransformCache cache = TransformCache.getInstance();
+            if (classBeingRedefined != null || cache.isEnabled() == false) {
+                byte[] bytes = transformAsms(loader, className, classBeingRedefined, classfileBuffer);
+                return bytes != null ? bytes : directPatched;
             }
-
-            classDesc.classBeingRedefined = classBeingRedefined;
-            ClassWriter cw = getClassWriter(classDesc);
-            ClassVisitor cv = cw;
-            List<IASM> workAsms = asms;
-            for (int i = workAsms.size() - 1; i >= 0; i--) {
-                cv = workAsms.get(i).transform(cv, className, classDesc);
-                if (cv != cw) {
-                    cr = new ClassReader(classfileBuffer);
-                    cr.accept(cv, ClassReader.EXPAND_FRAMES);
-                    classfileBuffer = cw.toByteArray();
-                    cv = cw = getClassWriter(classDesc);
-                    if (conf._log_asm_enabled) {
-                        if (this.bciOut == null) {
-                            this.bciOut = new Logger.FileLog("./scouter.bci");
-                        }
-                        this.bciOut.println(className + "\t\t[" + loader + "]");
-                    }
+            byte[] cached = cache.get(className, classfileBuffer);
+            if (cached != null) {
+                return cached;
+            }
+            cache.startRecording();
+            try {
+                byte[] bytes = transformAsms(loader, className, classBeingRedefined, classfileBuffer);
+                if (bytes != null && bytes != classfileBuffer) {
+                    cache.put(className, classfileBuffer, bytes);
                 }
+                return bytes != null ? bytes : directPatched;
+            } finally {
+                cache.stopRecording();
             }
-            return classfileBuffer;
         } catch (Throwable t) {
             Logger.println("A101", "Transformer Error : " + className, t);
             t.printStackTrace();
         } finally {
             hookingCtx.set(null);
+            elapsedNanos.addAndGet(System.nanoTime() - started);
         }
         return null;
     }
 
+    private byte[] transformAsms(ClassLoader loader, String className, Class classBeingRedefined, byte[] classfileBuffer) {
+        if (conf._hook_transform_index_enabled == false) {
+            return transformEach(loader, className, classBeingRedefined, classfileBuffer);
+        }
+        return transformIndexed(loader, className, classBeingRedefined, classfileBuffer);
+    }
+
+    /**
+     * the asms deciding by the name are asked first with the name only,
+     * the class is read only if one of them or the index of the ITypeASMs picks it.
+     * each matched asm has a read and write pass as the try-catch blocks added by two asms in one pass are not nested.
+     */
+    private byte[] transformIndexed(final ClassLoader loader, String className, Class classBeingRedefined, byte[] classfileBuffer) {
+        List<IASM> workAsms = asms;
+        ClassTargetIndex index = typeIndex;
+        final ClassDesc classDesc = new ClassDesc();
+
+        ClassVisitor[] matched = null;
+        ClassLink[] links = null;
+        ClassLink link = new ClassLink();
+        for (int i = 0; i < workAsms.size(); i++) {
+            IASM asm = workAsms.get(i);
+            if (asm instanceof ITypeASM)
+                continue;
+            ClassVisitor cv = asm.transform(link, className, classDesc);
+            if (cv != link) {
+                if (matched == null) {
+                    matched = new ClassVisitor[workAsms.size()];
+                    links = new ClassLink[workAsms.size()];
+                }
+                matched[i] = cv;
+                links[i] = link;
+                link = new ClassLink();
+            }
+        }
+        boolean mapImplEnabled = conf._hook_map_impl_enabled;
+        boolean picked = matched != null || index.hasName(className);
+        if (picked == false && index.needHeader(mapImplEnabled) == false) {
+            return null;
+        }
+        ClassReader cr = new ClassReader(classfileBuffer);
+        if (isSkipInterface(className, cr.getAccess())) {
+            return null;
+        }
+        if (picked == false && index.match(cr, classfileBuffer, mapImplEnabled) == false) {
+            return null;
+        }
+        cr.accept(new ClassDescVisitor(classDesc, loader), ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        classDesc.classBeingRedefined = classBeingRedefined;
+
+        boolean changed = false;
+        ClassWriter cw = getClassWriter(classDesc);
+        for (int i = workAsms.size() - 1; i >= 0; i--) {
+            IASM asm = workAsms.get(i);
+            ClassVisitor cv;
+            if (asm instanceof ITypeASM) {
+                cv = asm.transform(cw, className, classDesc);
+                if (cv == cw)
+                    continue;
+            } else if (matched != null && matched[i] != null) {
+                links[i].next(cw);
+                cv = matched[i];
+            } else {
+                continue;
+            }
+            if (changed) {
+                cr = new ClassReader(classfileBuffer);
+            }
+            cr.accept(cv, ClassReader.EXPAND_FRAMES);
+            classfileBuffer = cw.toByteArray();
+            cw = getClassWriter(classDesc);
+            changed = true;
+            logBci(className, loader);
+        }
+        if (changed == false) {
+            return null;
+        }
+        transformed.incrementAndGet();
+        return classfileBuffer;
+    }
+
+    /**
+     * every class is read and offered to all the asms
+     */
+    private byte[] transformEach(final ClassLoader loader, String className, Class classBeingRedefined, byte[] classfileBuffer) {
+        final ClassDesc classDesc = new ClassDesc();
+        ClassReader cr = new ClassReader(classfileBuffer);
+        cr.accept(new ClassDescVisitor(classDesc, loader), 0);
+        if (isSkipInterface(className, classDesc.access)) {
+            return null;
+        }
+
+        classDesc.classBeingRedefined = classBeingRedefined;
+        ClassWriter cw = getClassWriter(classDesc);
+        ClassVisitor cv = cw;
+        List<IASM> workAsms = asms;
+        boolean changed = false;
+        for (int i = workAsms.size() - 1; i >= 0; i--) {
+            cv = workAsms.get(i).transform(cv, className, classDesc);
+            if (cv != cw) {
+                cr = new ClassReader(classfileBuffer);
+                cr.accept(cv, ClassReader.EXPAND_FRAMES);
+                classfileBuffer = cw.toByteArray();
+                cv = cw = getClassWriter(classDesc);
+                changed = true;
+                logBci(className, loader);
+            }
+        }
+        if (changed) {
+            transformed.incrementAndGet();
+        }
+        return classfileBuffer;
+    }
+
+    private boolean isSkipInterface(String className, int access) {
+        return AsmUtil.isInterface(access)
+                && !"reactor/core/publisher/OptimizableOperator".equals(className)
+                && !"com/mongodb/connection/InternalConnection".equals(className);
+    }
+
+    private void logBci(String className, ClassLoader loader) {
+        if (conf._log_asm_enabled) {
+            if (this.bciOut == null) {
+                this.bciOut = new Logger.FileLog("./scouter.bci");
+            }
+            this.bciOut.println(className + "\t\t[" + loader + "]");
+        }
+    }
+
+    private class ClassDescVisitor extends ClassVisitor {
+        private final ClassDesc classDesc;
+        private final ClassLoader loader;
+
+        ClassDescVisitor(ClassDesc classDesc, ClassLoader loader) {
+            super(Opcodes.ASM9);
+            this.classDesc = classDesc;
+            this.loader = loader;
+        }
+
+        public void visit(int version, int access, String name, String signature, String superName,
+                          String[] interfaces) {
+            classDesc.set(version, access, name, signature, superName, interfaces);
+            if (conf._hook_map_impl_enabled) {
+                classDesc.isMapImpl = isMapImpl(superName, interfaces, loader);
+            }
+            super.visit(version, access, name, signature, superName, interfaces);
+        }
+
+        @Override
+        public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+            classDesc.annotation += desc;
+            return super.visitAnnotation(desc, visible);
+        }
+    }
+
+    /**
+     * the visitor handed to an asm while it is asked by the name, the writer of its pass is set later
+     */
+    private static class ClassLink extends ClassVisitor {
+        ClassLink() {
+            super(Opcodes.ASM9);
+        }
+
+        void next(ClassVisitor next) {
+            this.cv = next;
+        }
+    }
+
     private boolean isMapImpl(String superName, String[] interfaces, ClassLoader loader) {
         String[] classes = new String[interfaces.length + 1];
         System.arraycopy(interfaces, 0, classes, 0, interfaces.length);
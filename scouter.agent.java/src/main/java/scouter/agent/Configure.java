@@ -99,6 +99,14 @@ public class Configure extends Thread {
     public int net_udp_packet_max_bytes = 60000;
     @ConfigDesc("UDP Collection Interval(ms)")
     public long net_udp_collection_interval_ms = 100;
+    @ConfigDesc("UDP send queue size(packs).(restart required)")
+    public int net_udp_send_queue_size = 4096;
+    @ConfigDesc("Profiles are dropped ahead of XLogs while the send queue is filled over this percentage")
+    public int net_udp_profile_backpressure_pct = 50;
+    @ConfigDesc("Compress UDP frames with deflate.\nthe collector must support it.")
+    public boolean net_udp_compress_enabled = false;
+    @ConfigDesc("UDP frames smaller than this are sent without compression")
+    public int net_udp_compress_min_bytes = 1024;
 
     //Object
     @ConfigDesc("Deprecated. It's just an alias of monitoring_group_type which overrides this value.")
@@ -191,6 +199,8 @@ public class Configure extends Thread {
 
     @ConfigDesc("Escaping literal parameters for normalizing the query")
     public boolean profile_sql_escape_enabled = true;
+    @ConfigDesc("Max count of the sqls kept with their literals escaped")
+    public int _profile_sql_escape_cache_size = 4096;
     @ConfigDesc("")
     public boolean _profile_fullstack_sql_connection_enabled = false;
     @ConfigDesc("")
@@ -781,6 +791,12 @@ public class Configure extends Thread {
     public boolean _hook_map_impl_enabled = false;
     @ConfigDesc("")
     public int _hook_map_impl_warning_size = 50000;
+    @ConfigDesc("Pass the classes no hook is for without reading them, by the class names, super classes, interfaces and annotations of the hooks.")
+    public boolean _hook_transform_index_enabled = true;
+    @ConfigDesc("Keep the transformed classes on the disk and serve them at the next start without transforming them again.")
+    public boolean _hook_class_cache_enabled = false;
+    @ConfigDesc("Directory of the transformed classes. A change of the agent or the hook_ options goes to a new sub directory.")
+    public File _hook_class_cache_dir = new File(agent_dir_path + "/cache/classes");
 
     //Control
     @ConfigDesc("Activating Reject service")
@@ -826,6 +842,8 @@ public class Configure extends Thread {
     //Summary
     @ConfigDesc("Activating summary function")
     public boolean summary_enabled = true;
+    @ConfigDesc("Sending the percentiles of the elapsed times with the service, sql and api call summaries")
+    public boolean summary_sketch_enabled = true;
     @ConfigDesc("")
     public boolean _summary_connection_leak_fullstack_enabled = false;
     @ConfigDesc("")
@@ -1008,6 +1026,7 @@ public class Configure extends Thread {
         this.trace_background_socket_enabled = getBoolean("trace_background_socket_enabled", true);
         this.profile_socket_open_fullstack_port = getInt("profile_socket_open_fullstack_port", 0);
         this.profile_sql_escape_enabled = getBoolean("profile_sql_escape_enabled", true);
+        this._profile_sql_escape_cache_size = getInt("_profile_sql_escape_cache_size", 4096);
         this.profile_sqlmap_name_enabled = getBoolean("profile_sqlmap_name_enabled", true);
         this.net_udp_packet_max_bytes = getInt("net_udp_packet_max_bytes", 60000);
         this.trace_activeserivce_yellow_time = getLong("trace_activeserivce_yellow_time", 3000);
@@ -1145,6 +1164,10 @@ public class Configure extends Thread {
         this.profile_reactor_more_checkpoint_enabled = getBoolean("profile_reactor_more_checkpoint_enabled", false);
 
         this.net_udp_collection_interval_ms = getInt("net_udp_collection_interval_ms", 100);
+        this.net_udp_send_queue_size = getInt("net_udp_send_queue_size", 4096);
+        this.net_udp_profile_backpressure_pct = getInt("net_udp_profile_backpressure_pct", 50);
+        this.net_udp_compress_enabled = getBoolean("net_udp_compress_enabled", false);
+        this.net_udp_compress_min_bytes = getInt("net_udp_compress_min_bytes", 1024);
 
         this.trace_http_client_ip_header_key = getValue("trace_http_client_ip_header_key", "");
         this.trace_interservice_enabled = getBoolean("trace_interservice_enabled", true);
@@ -1191,6 +1214,9 @@ public class Configure extends Thread {
         this._hook_boot_prefix = getValue("_hook_boot_prefix");
         this._hook_map_impl_enabled = getBoolean("_hook_map_impl_enabled", false);
         this._hook_map_impl_warning_size = getInt("_hook_map_impl_warning_size", 50000);
+        this._hook_transform_index_enabled = getBoolean("_hook_transform_index_enabled", true);
+        this._hook_class_cache_enabled = getBoolean("_hook_class_cache_enabled", false);
+        this._hook_class_cache_dir = new File(getValue("_hook_class_cache_dir", agent_dir_path + "/cache/classes"));
 
         this.counter_recentuser_valid_ms = getLong("counter_recentuser_valid_ms", DateUtil.MILLIS_PER_FIVE_MINUTE);
         this.counter_object_registry_path = getValue("counter_object_registry_path", "/tmp/scouter");
@@ -1225,6 +1251,7 @@ public class Configure extends Thread {
 
         // SUMMARY최대 갯수를 관리한다.
         this.summary_enabled = getBoolean("summary_enabled", true);
+        this.summary_sketch_enabled = getBoolean("summary_sketch_enabled", true);
         this._summary_sql_max_count = getInt("_summary_sql_max_count", 5000);
         this._summary_api_max_count = getInt("_summary_api_max_count", 5000);
         this._summary_service_max_count = getInt("_summary_service_max_count", 5000);
@@ -0,0 +1,255 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.agent;
+
+import scouter.Version;
+import scouter.agent.netio.data.DataProxy;
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.util.FileUtil;
+import scouter.util.HashUtil;
+import scouter.util.Hexa32;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The transformed bytes of the classes kept on the disk for the next start.
+ * <pre>
+ * dir  : _hook_class_cache_dir/(hash of the agent version, the agent jar and the hook_ properties)/
+ * file : (class name with '.').(hash of the original bytes).class
+ * data : int magic, int original length, method names sent while transforming, blob transformed bytes
+ * </pre>
+ * A change of the agent or of the hook config goes to another directory, so an entry is never served for other settings.
+ * The method names are sent again on a hit as the asms would have sent them.
+ * A file is written to a temp file and renamed, so the agents sharing a directory read only the whole ones.
+ */
+public class TransformCache {
+	private static final int MAGIC = 0x5C0CC001;
+	private static final String SUFFIX = ".class";
+
+	private static TransformCache instance;
+
+	public static synchronized TransformCache getInstance() {
+		if (instance == null) {
+			instance = new TransformCache();
+		}
+		return instance;
+	}
+
+	private static final ThreadLocal<List<String>> recording = new ThreadLocal<List<String>>();
+
+	/**
+	 * a method name sent while a class is transformed, to be sent again when the class is served from the cache
+	 */
+	public static void recordMethodName(String name) {
+		List<String> names = recording.get();
+		if (names != null) {
+			names.add(name);
+		}
+	}
+
+	private final Configure conf = Configure.getInstance();
+	private volatile File dir;
+	private String key;
+	private final Set<String> cached = new HashSet<String>();
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong stores = new AtomicLong();
+
+	private TransformCache() {
+		checkKey();
+	}
+
+	/**
+	 * called when the config is changed. the entries of other settings are not used from then.
+	 */
+	public synchronized void checkKey() {
+		if (conf._hook_class_cache_enabled == false) {
+			dir = null;
+			key = null;
+			return;
+		}
+		String k = makeKey();
+		if (k.equals(key))
+			return;
+		File d = new File(conf._hook_class_cache_dir, k);
+		d.mkdirs();
+		cached.clear();
+		String[] files = d.list();
+		for (int i = 0; files != null && i < files.length; i++) {
+			String f = files[i];
+			if (f.endsWith(SUFFIX) == false)
+				continue;
+			int hashPos = f.lastIndexOf('.', f.length() - SUFFIX.length() - 1);
+			if (hashPos > 0) {
+				cached.add(f.substring(0, hashPos));
+			}
+		}
+		key = k;
+		dir = d;
+		Logger.println("A190", "class cache " + d.getAbsolutePath() + " classes=" + cached.size());
+	}
+
+	/**
+	 * the transformed bytes are the same only with the same agent and the same hook_ properties
+	 */
+	private String makeKey() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			sb.append(Version.getAgentFullVersion());
+			URL jar = TransformCache.class.getProtectionDomain().getCodeSource().getLocation();
+			File f = new File(jar.toURI());
+			sb.append('\n').append(f.length()).append('\n').append(f.lastModified());
+		} catch (Throwable t) {
+		}
+		TreeMap<String, String> hooks = new TreeMap<String, String>();
+		for (Object o : conf.property.keySet()) {
+			String name = String.valueOf(o);
+			if (name.indexOf("hook_") >= 0) {
+				hooks.put(name, conf.property.getProperty(name));
+			}
+		}
+		for (Map.Entry<String, String> e : hooks.entrySet()) {
+			sb.append('\n').append(e.getKey()).append('=').append(e.getValue());
+		}
+		return hashOf(sb.toString().getBytes());
+	}
+
+	private static String hashOf(byte[] b) {
+		try {
+			byte[] d = MessageDigest.getInstance("SHA-1").digest(b);
+			StringBuilder sb = new StringBuilder(d.length * 2);
+			for (int i = 0; i < d.length; i++) {
+				sb.append(Character.forDigit((d[i] >> 4) & 0xF, 16)).append(Character.forDigit(d[i] & 0xF, 16));
+			}
+			return sb.toString();
+		} catch (NoSuchAlgorithmException e) {
+			return Hexa32.toString32(HashUtil.hash(b)) + "_" + b.length;
+		}
+	}
+
+	private File fileOf(File d, String className, byte[] classfileBuffer) {
+		return new File(d, className.replace('/', '.') + "." + hashOf(classfileBuffer) + SUFFIX);
+	}
+
+	public boolean isEnabled() {
+		return dir != null;
+	}
+
+	/**
+	 * @return null if the class of the bytes has not been cached
+	 */
+	public byte[] get(String className, byte[] classfileBuffer) {
+		File d = dir;
+		if (d == null)
+			return null;
+		synchronized (this) {
+			if (cached.contains(className.replace('/', '.')) == false)
+				return null;
+		}
+		byte[] data = FileUtil.readAll(fileOf(d, className, classfileBuffer));
+		if (data == null)
+			return null;
+		try {
+			DataInputX in = new DataInputX(data);
+			if (in.readInt() != MAGIC || in.readInt() != classfileBuffer.length)
+				return null;
+			int count = in.readInt();
+			for (int i = 0; i < count; i++) {
+				DataProxy.sendMethodName(in.readText());
+			}
+			byte[] transformed = in.readBlob();
+			hits.incrementAndGet();
+			return transformed;
+		} catch (Throwable t) {
+			return null;
+		}
+	}
+
+	/**
+	 * record the method names sent until put() of the class
+	 */
+	public void startRecording() {
+		if (dir != null) {
+			recording.set(new ArrayList<String>());
+		}
+	}
+
+	public void stopRecording() {
+		recording.set(null);
+	}
+
+	/**
+	 * keep the transformed bytes with the method names recorded since startRecording()
+	 */
+	public void put(String className, byte[] classfileBuffer, byte[] transformed) {
+		File d = dir;
+		List<String> names = recording.get();
+		if (d == null || names == null)
+			return;
+		File file = fileOf(d, className, classfileBuffer);
+		File temp = new File(d, file.getName() + "." + System.nanoTime() + ".tmp");
+		FileOutputStream fout = null;
+		try {
+			DataOutputX out = new DataOutputX();
+			out.writeInt(MAGIC);
+			out.writeInt(classfileBuffer.length);
+			out.writeInt(names.size());
+			for (int i = 0; i < names.size(); i++) {
+				out.writeText(names.get(i));
+			}
+			out.writeBlob(transformed);
+			fout = new FileOutputStream(temp);
+			fout.write(out.toByteArray());
+			fout.close();
+			fout = null;
+			if (temp.renameTo(file) == false) {
+				temp.delete();
+				return;
+			}
+			synchronized (this) {
+				if (d == dir) {
+					cached.add(className.replace('/', '.'));
+				}
+			}
+			stores.incrementAndGet();
+		} catch (Throwable t) {
+			FileUtil.close(fout);
+			temp.delete();
+			Logger.println("A191", "class cache error " + className + " " + t);
+		}
+	}
+
+	public long getHitCount() {
+		return hits.get();
+	}
+
+	public long getStoreCount() {
+		return stores.get();
+	}
+}
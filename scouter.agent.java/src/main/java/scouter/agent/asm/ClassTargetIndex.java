@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.agent.asm;
+
+import org.objectweb.asm.ClassReader;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Keys of the classes the ITypeASMs may transform : class names, super classes, interfaces and annotations.
+ * The super class and the interfaces are read from the class header,
+ * the annotations are looked up in the constant pool without visiting the class.
+ * A match is a candidate only, the ITypeASM decides on the full ClassDesc.
+ */
+public class ClassTargetIndex {
+	private final Set<String> names = new HashSet<String>();
+	private final Set<String> superNames = new HashSet<String>();
+	private final Set<String> interfaces = new HashSet<String>();
+	private final List<byte[]> annotations = new ArrayList<byte[]>();
+	private boolean mapImpl;
+
+	public void addName(String className) {
+		names.add(className);
+	}
+
+	public void addSuper(String superName) {
+		superNames.add(superName);
+	}
+
+	public void addInterface(String name) {
+		interfaces.add(name);
+	}
+
+	/**
+	 * @param desc descriptor of the annotation, ex) Lorg/springframework/stereotype/Controller;
+	 */
+	public void addAnnotation(String desc) {
+		annotations.add(desc.getBytes());
+	}
+
+	/**
+	 * every class is a candidate as its hierarchy is to be looked up for java/util/Map
+	 */
+	public void addMapImpl() {
+		mapImpl = true;
+	}
+
+	public boolean hasName(String className) {
+		return names.contains(className);
+	}
+
+	/**
+	 * @return false if no class but the ones of the names can be a candidate
+	 */
+	public boolean needHeader(boolean mapImplEnabled) {
+		return superNames.size() > 0 || interfaces.size() > 0 || annotations.size() > 0 || (mapImpl && mapImplEnabled);
+	}
+
+	public boolean match(ClassReader cr, byte[] b, boolean mapImplEnabled) {
+		if (mapImpl && mapImplEnabled)
+			return true;
+		if (superNames.size() > 0 && cr.getSuperName() != null && superNames.contains(cr.getSuperName()))
+			return true;
+		if (interfaces.size() > 0) {
+			String[] inf = cr.getInterfaces();
+			for (int i = 0; i < inf.length; i++) {
+				if (interfaces.contains(inf[i]))
+					return true;
+			}
+		}
+		return annotations.size() > 0 && hasUtf8(cr, b);
+	}
+
+	/**
+	 * the descriptor of an annotation of the class is a CONSTANT_Utf8 entry of the pool
+	 */
+	private boolean hasUtf8(ClassReader cr, byte[] b) {
+		int count = cr.getItemCount();
+		for (int i = 1; i < count; i++) {
+			int off = cr.getItem(i);
+			if (off == 0 || b[off - 1] != 1)
+				continue;
+			int len = ((b[off] & 0xFF) << 8) | (b[off + 1] & 0xFF);
+			for (int k = 0; k < annotations.size(); k++) {
+				if (equals(annotations.get(k), b, off + 2, len))
+					return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean equals(byte[] key, byte[] b, int off, int len) {
+		if (key.length != len)
+			return false;
+		for (int i = 0; i < len; i++) {
+			if (key[i] != b[off + i])
+				return false;
+		}
+		return true;
+	}
+}
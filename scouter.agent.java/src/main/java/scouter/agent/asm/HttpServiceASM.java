@@ -26,7 +26,7 @@ import scouter.agent.trace.TraceMain;
 import java.util.HashSet;
 import java.util.Set;
 
-public class HttpServiceASM implements IASM, Opcodes {
+public class HttpServiceASM implements ITypeASM, Opcodes {
 	public Set<String> servlets = new HashSet<String>();
 	public HttpServiceASM() {
 		servlets.add("javax/servlet/http/HttpServlet");
@@ -34,6 +34,14 @@ public class HttpServiceASM implements IASM, Opcodes {
 		servlets.add("weblogic/servlet/jsp/JspBase");
 	}
 
+	public void index(ClassTargetIndex index) {
+		for (String s : servlets) {
+			index.addName(s);
+		}
+		index.addInterface("javax/servlet/Filter");
+		index.addInterface("jakarta/servlet/Filter");
+	}
+
 	public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
 		if (!Configure.getInstance()._hook_serivce_enabled) {
 			return cv;
@@ -0,0 +1,26 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.agent.asm;
+
+/**
+ * An IASM that picks its classes by the super class, the interfaces or the annotations, not only by the name.
+ * It puts the keys of its classes into the index so that the other classes are passed without being read.
+ */
+public interface ITypeASM extends IASM {
+	void index(ClassTargetIndex index);
+}
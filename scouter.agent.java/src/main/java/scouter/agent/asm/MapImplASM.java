@@ -13,7 +13,11 @@ import scouter.agent.trace.TraceCollection;
 /**
  * @author Gun Lee (gunlee01@gmail.com) on 2016. 9. 20.
  */
-public class MapImplASM implements IASM, Opcodes {
+public class MapImplASM implements ITypeASM, Opcodes {
+
+    public void index(ClassTargetIndex index) {
+        index.addMapImpl();
+    }
 
     public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
         if (Configure.getInstance()._hook_map_impl_enabled == false) {
@@ -31,7 +31,7 @@ import java.util.Set;
  * extract spring REST annotation as the service name
  * @author Gun Lee (gunlee01@gmail.com)
  */
-public class SpringReqMapASM implements IASM, Opcodes {
+public class SpringReqMapASM implements ITypeASM, Opcodes {
 
     static String springControllerNames[] = {"Lorg/springframework/stereotype/Controller;",
                                              "Lorg/springframework/web/bind/annotation/RestController;"};
@@ -49,6 +49,12 @@ public class SpringReqMapASM implements IASM, Opcodes {
 
     Configure conf = Configure.getInstance();
 
+    public void index(ClassTargetIndex index) {
+        for (int i = 0; i < springControllerNames.length; i++) {
+            index.addAnnotation(springControllerNames[i]);
+        }
+    }
+
     public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
         if (conf._hook_spring_rest_enabled == false)
             return cv;
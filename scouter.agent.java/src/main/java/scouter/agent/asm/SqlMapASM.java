@@ -30,7 +30,7 @@ import scouter.agent.trace.TraceSQL;
 import java.util.HashSet;
 import java.util.Set;
 
-public class SqlMapASM implements IASM, Opcodes {
+public class SqlMapASM implements ITypeASM, Opcodes {
 	public final HashSet<String> target = new HashSet<String>();
 	public static Set<String> targetMethod = new HashSet<String>();
 	public static String[] targetInf;
@@ -50,6 +50,15 @@ public class SqlMapASM implements IASM, Opcodes {
 		targetInf = new String[] { "com/ibatis/sqlmap/client/SqlMapClient" };
 	}
 
+	public void index(ClassTargetIndex index) {
+		for (String s : target) {
+			index.addName(s);
+		}
+		for (int i = 0; i < targetInf.length; i++) {
+			index.addInterface(targetInf[i]);
+		}
+	}
+
 	public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
 		if (Configure.getInstance()._hook_dbsql_enabled == false) {
 			return cv;
@@ -25,11 +25,15 @@ import scouter.agent.Configure;
 import scouter.agent.asm.util.AsmUtil;
 import scouter.agent.trace.TraceSQL;
 
-public class UserTxASM implements IASM, Opcodes {
+public class UserTxASM implements ITypeASM, Opcodes {
 
 	public UserTxASM() {
 	}
 
+	public void index(ClassTargetIndex index) {
+		index.addInterface("javax/transaction/UserTransaction");
+	}
+
 	public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
 		if (Configure.getInstance()._hook_usertx_enabled == false)
 			return cv;
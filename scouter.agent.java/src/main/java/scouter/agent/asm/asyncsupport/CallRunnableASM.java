@@ -19,7 +19,8 @@ package scouter.agent.asm.asyncsupport;
 import scouter.agent.ClassDesc;
 import scouter.agent.Configure;
 import scouter.agent.Logger;
-import scouter.agent.asm.IASM;
+import scouter.agent.asm.ClassTargetIndex;
+import scouter.agent.asm.ITypeASM;
 import scouter.agent.trace.TraceMain;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.Label;
@@ -37,7 +38,7 @@ import java.util.Set;
 /**
  * @author Gun Lee (gunlee01@gmail.com) on 2017. 2. 21.
  */
-public class CallRunnableASM implements IASM, Opcodes {
+public class CallRunnableASM implements ITypeASM, Opcodes {
 
 	private Configure conf = Configure.getInstance();
 //	private static final String CALLABLE = "java/util/concurrent/Callable";
@@ -73,6 +74,14 @@ public class CallRunnableASM implements IASM, Opcodes {
 		}
 	}
 
+	public void index(ClassTargetIndex index) {
+		if (scanScopePrefix.size() == 0)
+			return;
+		for (String s : callRunnableMap) {
+			index.addInterface(s);
+		}
+	}
+
 	public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
 		String[] interfaces = classDesc.interfaces;
 
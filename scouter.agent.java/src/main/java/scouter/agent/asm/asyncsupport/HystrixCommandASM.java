@@ -18,7 +18,8 @@ package scouter.agent.asm.asyncsupport;
 
 import scouter.agent.ClassDesc;
 import scouter.agent.Configure;
-import scouter.agent.asm.IASM;
+import scouter.agent.asm.ClassTargetIndex;
+import scouter.agent.asm.ITypeASM;
 import scouter.agent.asm.util.AsmUtil;
 import scouter.agent.asm.util.HookingSet;
 import scouter.agent.trace.TraceMain;
@@ -36,7 +37,7 @@ import java.util.Map;
 /**
  * @author Gun Lee (gunlee01@gmail.com) on 2017. 2. 21.
  */
-public class HystrixCommandASM implements IASM, Opcodes {
+public class HystrixCommandASM implements ITypeASM, Opcodes {
 	private Configure conf = Configure.getInstance();
 	private List<HookingSet> prepareTarget = HookingSet.getHookingMethodSet("");
 	private List<HookingSet> receiveTarget = HookingSet.getHookingMethodSet("");
@@ -52,6 +53,18 @@ public class HystrixCommandASM implements IASM, Opcodes {
 		}
 	}
 
+	public void index(ClassTargetIndex index) {
+		for (String s : prepareReserved.keySet()) {
+			index.addName(s);
+		}
+		for (String s : receiveReserved.keySet()) {
+			index.addName(s);
+		}
+		for (String s : receiveReservedSuperType.keySet()) {
+			index.addSuper(s);
+		}
+	}
+
 	public ClassVisitor transform(ClassVisitor cv, String className, ClassDesc classDesc) {
 		HookingSet mset = prepareReserved.get(className);
 		if (mset != null){
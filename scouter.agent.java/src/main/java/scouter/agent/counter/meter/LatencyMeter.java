@@ -0,0 +1,206 @@
+/*
+ *  Copyright 2015 the original author or authors. 
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License. 
+ */
+
+package scouter.agent.counter.meter;
+
+import scouter.util.LatencySketch;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A meter of the last 300 seconds which is added to without a lock.
+ * A second has a slot of counters striped by the thread so that the cores do not write the same cache line,
+ * and a histogram of the elapsed times on the buckets of LatencySketch. The stripes and the slots are summed when it is read.
+ * A slot of an old second is cleared by the first thread of its new second.
+ */
+public class LatencyMeter {
+	public static final int SUM_SIZE = 4;
+
+	private static final int BUCKET_SIZE = 301;
+	private static final int COUNT = 0;
+	private static final int ERROR = 1;
+	private static final int SUM = 2;
+	private static final int PAD = 8;
+	private static final long CLEARING = -2;
+
+	private static final int STRIPES = stripes();
+	private static final int STRIPE_MASK = STRIPES - 1;
+
+	private static int stripes() {
+		int n = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) * 2);
+		return Math.min(16, n);
+	}
+
+	static final class Slot {
+		final AtomicLong time = new AtomicLong(-1);
+		final AtomicLongArray cells = new AtomicLongArray(STRIPES * PAD);
+		final AtomicIntegerArray histogram;
+
+		Slot(boolean histogram) {
+			this.histogram = histogram ? new AtomicIntegerArray(LatencySketch.CELLS) : null;
+		}
+
+		void clear() {
+			for (int i = 0; i < cells.length(); i++) {
+				cells.set(i, 0);
+			}
+			for (int i = 0; histogram != null && i < histogram.length(); i++) {
+				histogram.set(i, 0);
+			}
+		}
+	}
+
+	private final Slot[] slots = new Slot[BUCKET_SIZE];
+
+	public LatencyMeter(boolean histogram) {
+		for (int i = 0; i < BUCKET_SIZE; i++) {
+			slots[i] = new Slot(histogram);
+		}
+	}
+
+	protected long getTime() {
+		return System.currentTimeMillis() / 1000;
+	}
+
+	private Slot getSlot(long time) {
+		Slot s = slots[(int) (time % BUCKET_SIZE)];
+		while (true) {
+			long t = s.time.get();
+			if (t >= time)
+				return s;
+			if (t == CLEARING) {
+				Thread.yield();
+				continue;
+			}
+			if (s.time.compareAndSet(t, CLEARING)) {
+				s.clear();
+				s.time.set(time);
+				return s;
+			}
+		}
+	}
+
+	public void add(long elapsed, boolean err) {
+		add(elapsed, 0, 0, 0, err);
+	}
+
+	/**
+	 * @param elapsed the first sum and the value of the histogram
+	 * @param sum1 the other sums
+	 */
+	public void add(long elapsed, long sum1, long sum2, long sum3, boolean err) {
+		if (elapsed < 0)
+			elapsed = 0;
+		Slot s = getSlot(getTime());
+		int base = ((int) Thread.currentThread().getId() & STRIPE_MASK) * PAD;
+		s.cells.incrementAndGet(base + COUNT);
+		if (err) {
+			s.cells.incrementAndGet(base + ERROR);
+		}
+		s.cells.addAndGet(base + SUM, elapsed);
+		if (sum1 != 0)
+			s.cells.addAndGet(base + SUM + 1, sum1);
+		if (sum2 != 0)
+			s.cells.addAndGet(base + SUM + 2, sum2);
+		if (sum3 != 0)
+			s.cells.addAndGet(base + SUM + 3, sum3);
+		if (s.histogram != null) {
+			s.histogram.incrementAndGet(LatencySketch.index(elapsed));
+		}
+	}
+
+	/**
+	 * the period is counted in seconds with the current one, up to 300.
+	 */
+	public static int check(int period) {
+		if (period >= BUCKET_SIZE)
+			period = BUCKET_SIZE - 1;
+		return period < 1 ? 1 : period;
+	}
+
+	private long sum(int field, int period) {
+		period = check(period);
+		long now = getTime();
+		long sum = 0;
+		for (int i = 0; i < period; i++) {
+			Slot s = slots[(int) ((now - i) % BUCKET_SIZE)];
+			if (s.time.get() != now - i)
+				continue;
+			for (int k = 0; k < STRIPES; k++) {
+				sum += s.cells.get(k * PAD + field);
+			}
+		}
+		return sum;
+	}
+
+	public long getCount(int period) {
+		return sum(COUNT, period);
+	}
+
+	public long getErrorCount(int period) {
+		return sum(ERROR, period);
+	}
+
+	/**
+	 * @param index 0 for the elapsed times, 1 ~ 3 for the other sums of add()
+	 */
+	public long getSum(int index, int period) {
+		return sum(SUM + index, period);
+	}
+
+	public float getTps(int period) {
+		return (float) ((double) getCount(period) / check(period));
+	}
+
+	public int getAvg(int index, int period) {
+		long cnt = getCount(period);
+		return (int) (cnt == 0 ? 0 : getSum(index, period) / cnt);
+	}
+
+	public float getErrorRate(int period) {
+		long cnt = getCount(period);
+		return (float) (cnt == 0 ? 0 : ((double) getErrorCount(period) / cnt) * 100.0);
+	}
+
+	/**
+	 * @param pcts 0.0 ~ 1.0 each
+	 * @return the elapsed time at each percentile over the period
+	 */
+	public int[] getPercentiles(int period, double... pcts) {
+		period = check(period);
+		long now = getTime();
+		long[] counts = new long[LatencySketch.CELLS];
+		long total = 0;
+		for (int i = 0; i < period; i++) {
+			Slot s = slots[(int) ((now - i) % BUCKET_SIZE)];
+			if (s.histogram == null || s.time.get() != now - i)
+				continue;
+			for (int k = 0; k < counts.length; k++) {
+				int c = s.histogram.get(k);
+				counts[k] += c;
+				total += c;
+			}
+		}
+		int[] out = new int[pcts.length];
+		for (int i = 0; i < pcts.length; i++) {
+			out[i] = (int) LatencySketch.percentile(counts, total, pcts[i]);
+		}
+		return out;
+	}
+}
@@ -17,108 +17,47 @@
 
 package scouter.agent.counter.meter;
 
-import scouter.lang.ref.INT;
-import scouter.lang.ref.LONG;
-import scouter.util.MeteringUtil;
-import scouter.util.MeteringUtil.Handler;
-
 public class MeterAPI {
 	private static MeterAPI inst = new MeterAPI();
 
 	public static MeterAPI getInstance() {
 		return inst;
 	}
-	
-	final static class Bucket {
-		int count;
-		long time;
-		int error;
-	}
 
-	private MeteringUtil<Bucket> meter = new MeteringUtil<Bucket>() {
-		protected Bucket create() {
-			return new Bucket();
-		};
+	private final LatencyMeter meter = new LatencyMeter(true);
 
-		protected void clear(Bucket o) {
-			o.count = 0;
-			o.error = 0;
-			o.time = 0L;
-		}
-	};
-
-	public synchronized void add(int elapsed, boolean err) {
-		Bucket b = meter.getCurrentBucket();
-		b.count++;
-		b.time += elapsed;
-		if (err) {
-			b.error++;
-		}
+	public void add(int elapsed, boolean err) {
+		meter.add(elapsed, err);
 	}
 
 	public float getTps(int period) {
-		final INT sum = new INT();
-		period = meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.count;
-			}
-		});
-		return (float) ((double) sum.value / period);
+		return meter.getTps(period);
 	}
 
 	public int getAvgTime(int period) {
-		final LONG sum = new LONG();
-		final INT cnt = new INT();
-		meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.time;
-				cnt.value += b.count;
-
-			}
-		});
-		return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
+		return meter.getAvg(0, period);
 	}
 
 	public long getSumTime(int period) {
-		final LONG sum = new LONG();
-		meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.time;
-			}
-		});
-		return  sum.value;
+		return meter.getSum(0, period);
 	}
 
 	public int getCount(int period) {
-
-		final INT sum = new INT();
-		meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.count;
-			}
-		});
-		return sum.value;
+		return (int) meter.getCount(period);
 	}
 
 	public int getErrorCount(int period) {
-		final INT sum = new INT();
-		meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.error;
-			}
-		});
-		return sum.value;
+		return (int) meter.getErrorCount(period);
 	}
 
 	public float getErrorRate(int period) {
-		final INT cnt = new INT();
-		final INT err = new INT();
-		meter.search(period, new Handler<MeterAPI.Bucket>() {
-			public void process(Bucket b) {
-				cnt.value += b.count;
-				err.value += b.error;
-			}
-		});
-		return (float) ((cnt.value == 0) ? 0 : (((double) err.value / cnt.value) * 100.0));
+		return meter.getErrorRate(period);
+	}
+
+	/**
+	 * @return the elapsed times of 90% and 99% of the calls of the period
+	 */
+	public int[] getTimePcts(int period) {
+		return meter.getPercentiles(period, 0.9, 0.99);
 	}
-}
\ No newline at end of file
+}
@@ -17,11 +17,6 @@
 
 package scouter.agent.counter.meter;
 
-import scouter.lang.ref.INT;
-import scouter.lang.ref.LONG;
-import scouter.util.MeteringUtil;
-import scouter.util.MeteringUtil.Handler;
-
 public class MeterService {
 	private static MeterService inst = new MeterService();
 
@@ -29,180 +24,56 @@ public class MeterService {
 		return inst;
 	}
 
-	final static int PCT_MAX_TIME = 10000;
-	final static int PCT_UNIT_TIME = 200;
-	final static int PCT_BUCKET = PCT_MAX_TIME / PCT_UNIT_TIME;
-
-	final static class Bucket {
-		final short[] pct90 = new short[PCT_BUCKET];
-		int count;
-		long elapsedTime;
-        long sqlTimeByService;
-        long apiTmeByService;
-        long queuingTime;
-
-		int error;
-	}
+	private static final int SQL = 1;
+	private static final int API = 2;
+	private static final int QUEUING = 3;
 
-	private MeteringUtil<Bucket> meter = new MeteringUtil<Bucket>() {
-		protected Bucket create() {
-			return new Bucket();
-		};
-
-		protected void clear(Bucket o) {
-			o.count = 0;
-			o.error = 0;
-			o.elapsedTime = 0L;
-            o.sqlTimeByService = 0L;
-            o.apiTmeByService = 0L;
-            o.queuingTime = 0L;
-			for (int i = 0; i < PCT_BUCKET; i++) {
-				o.pct90[i] = 0;
-			}
-		}
-	};
-
-	public synchronized void add(long elapsed, int sqlTime, int apiTime, int queuingTime, boolean err) {
-		if(elapsed < 0)
-			elapsed = 0;
-
-		Bucket b = meter.getCurrentBucket();
-		b.count++;
-		b.elapsedTime += elapsed;
-        b.sqlTimeByService += sqlTime;
-        b.apiTmeByService += apiTime;
-        b.queuingTime += queuingTime;
-
-		if (err) {
-			b.error++;
-		}
-		if (elapsed < PCT_MAX_TIME) {
-			int x = (int) (elapsed / PCT_UNIT_TIME);
-			b.pct90[x]++;
-		}
+	private final LatencyMeter meter = new LatencyMeter(true);
 
+	public void add(long elapsed, int sqlTime, int apiTime, int queuingTime, boolean err) {
+		meter.add(elapsed, sqlTime, apiTime, queuingTime, err);
 	}
 
 	public float getTPS(int period) {
-		final INT sum = new INT();
-		period = meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.count;
-			}
-		});
-		return (float) ((double) sum.value / period);
+		return meter.getTps(period);
 	}
 
 	public int getElapsedTime(int period) {
-		final LONG sum = new LONG();
-		final INT cnt = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.elapsedTime;
-				cnt.value += b.count;
-
-			}
-		});
-		return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
+		return meter.getAvg(0, period);
 	}
 
 	public int getElapsed90Pct(int period) {
-		final LONG sum = new LONG();
-		final INT cnt = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				int total = (int) (b.count * 0.9);
-				if (total == 0)
-					return;
-
-				for (int timeInx = 0; timeInx < PCT_BUCKET; timeInx++) {
-					if (total >= b.pct90[timeInx]) {
-						total -= b.pct90[timeInx];
-					} else {
-						sum.value += timeInx * PCT_UNIT_TIME;
-						cnt.value++;
-						return;
-					}
-				}
-				sum.value += PCT_MAX_TIME;
-				cnt.value++;
-			}
-		});
-		return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
+		return meter.getPercentiles(period, 0.9)[0];
 	}
 
-    public int getSqlTime(int period) {
-        final LONG sum = new LONG();
-        final INT cnt = new INT();
-
-        meter.search(period, new Handler<MeterService.Bucket>() {
-            public void process(Bucket b) {
-                sum.value += b.sqlTimeByService;
-                cnt.value += b.count;
-
-            }
-        });
-        return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
-    }
-
-    public int getApiTime(int period) {
-        final LONG sum = new LONG();
-        final INT cnt = new INT();
+	/**
+	 * @return the elapsed times of 50%, 90%, 95% and 99% of the services of the period
+	 */
+	public int[] getElapsedPcts(int period) {
+		return meter.getPercentiles(period, 0.5, 0.9, 0.95, 0.99);
+	}
 
-        meter.search(period, new Handler<MeterService.Bucket>() {
-            public void process(Bucket b) {
-                sum.value += b.apiTmeByService;
-                cnt.value += b.count;
+	public int getSqlTime(int period) {
+		return meter.getAvg(SQL, period);
+	}
 
-            }
-        });
-        return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
-    }
+	public int getApiTime(int period) {
+		return meter.getAvg(API, period);
+	}
 
 	public int getQueuingTime(int period) {
-		final LONG sum = new LONG();
-		final INT cnt = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.queuingTime;
-				cnt.value += b.count;
-
-			}
-		});
-		return (int) ((cnt.value == 0) ? 0 : sum.value / cnt.value);
+		return meter.getAvg(QUEUING, period);
 	}
 
 	public float getErrorRate(int period) {
-
-		final INT cnt = new INT();
-		final INT err = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				cnt.value += b.count;
-				err.value += b.error;
-			}
-		});
-		return (float) ((cnt.value == 0) ? 0 : (((double) err.value / cnt.value) * 100.0));
+		return meter.getErrorRate(period);
 	}
 
 	public int getServiceCount(int period) {
-
-		final INT sum = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.count;
-			}
-		});
-		return sum.value;
+		return (int) meter.getCount(period);
 	}
 
 	public int getServiceError(int period) {
-		final INT sum = new INT();
-		meter.search(period, new Handler<MeterService.Bucket>() {
-			public void process(Bucket b) {
-				sum.value += b.error;
-			}
-		});
-		return sum.value;
+		return (int) meter.getErrorCount(period);
 	}
 }
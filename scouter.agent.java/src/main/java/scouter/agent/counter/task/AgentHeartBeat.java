@@ -21,6 +21,7 @@ import scouter.agent.Logger;
 import scouter.agent.counter.CounterBasket;
 import scouter.agent.counter.anotation.Counter;
 import scouter.agent.netio.data.DataProxy;
+import scouter.agent.netio.data.UDPDataSendThread;
 import scouter.agent.netio.data.net.TcpWorker;
 import scouter.agent.proxy.ToolsMainFactory;
 import scouter.lang.pack.ObjectPack;
@@ -90,6 +91,7 @@ public class AgentHeartBeat {
             p.tags.put(TAG_AUTODUMP_CPU_THRESHOLD, conf.autodump_cpu_exceeded_threshold_pct);
 			p.tags.put(TAG_AUTODUMP_CPU_DURATION, conf.autodump_cpu_exceeded_duration_ms);
 		}
+		UDPDataSendThread.getInstance().putStat(p.tags);
 		return p;
 	}
 
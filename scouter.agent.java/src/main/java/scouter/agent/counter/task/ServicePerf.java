@@ -50,7 +50,8 @@ public class ServicePerf {
 		float tps = service.getTPS(30);
 		float errorRate = service.getErrorRate(30);
 		int count = service.getServiceCount(60);
-		int resp90pct = service.getElapsed90Pct(30);
+		int[] pcts = service.getElapsedPcts(30);
+		int resp90pct = pcts[1];
 		int sqlTimeByService = service.getSqlTime(30);
 		int apiTimeByService = service.getApiTime(30);
 		int queuingTime = service.getQueuingTime(30);
@@ -72,6 +73,9 @@ public class ServicePerf {
 		p.put(CounterConstants.WAS_ERROR_RATE, new FloatValue(errorRate));
 		p.put(CounterConstants.WAS_ACTIVE_SERVICE, new DecimalValue(active));
 		p.put(CounterConstants.WAS_ELAPSED_90PCT, new DecimalValue(resp90pct));
+		p.put(CounterConstants.WAS_ELAPSED_50PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_ELAPSED_95PCT, new DecimalValue(pcts[2]));
+		p.put(CounterConstants.WAS_ELAPSED_99PCT, new DecimalValue(pcts[3]));
 		p.put(CounterConstants.WAS_APICALL_ELAPSED_TIME_BY_SERVICE, new DecimalValue(apiTimeByService));
 		p.put(CounterConstants.WAS_SQL_ELAPSED_TIME_BY_SERVICE, new DecimalValue(sqlTimeByService));
 		p.put(CounterConstants.WAS_QUEUING_TIME, new DecimalValue(queuingTime));
@@ -90,7 +94,8 @@ public class ServicePerf {
 		elapsed = service.getElapsedTime(300);
 		errorRate = service.getErrorRate(300);
 		int activeService = (int) activeCounter.getAvg(300);
-		resp90pct = service.getElapsed90Pct(300);
+		pcts = service.getElapsedPcts(300);
+		resp90pct = pcts[1];
         sqlTimeByService = service.getSqlTime(300);
         apiTimeByService = service.getApiTime(300);
 
@@ -101,6 +106,9 @@ public class ServicePerf {
 		p.put(CounterConstants.WAS_ERROR_RATE, new FloatValue(errorRate));
 		p.put(CounterConstants.WAS_ACTIVE_SERVICE, new DecimalValue(activeService));
 		p.put(CounterConstants.WAS_ELAPSED_90PCT, new DecimalValue(resp90pct));
+		p.put(CounterConstants.WAS_ELAPSED_50PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_ELAPSED_95PCT, new DecimalValue(pcts[2]));
+		p.put(CounterConstants.WAS_ELAPSED_99PCT, new DecimalValue(pcts[3]));
         p.put(CounterConstants.WAS_APICALL_ELAPSED_TIME_BY_SERVICE, new DecimalValue(apiTimeByService));
         p.put(CounterConstants.WAS_SQL_ELAPSED_TIME_BY_SERVICE, new DecimalValue(sqlTimeByService));
 		p.put(CounterConstants.WAS_QUEUING_TIME, new DecimalValue(queuingTime));
@@ -38,10 +38,14 @@ public class SqlApiCallPerf {
 		long elapsed = sql.getAvgTime(30);
 		float tps = sql.getTps(30);
 		float errRate = sql.getErrorRate(30);
+		int[] pcts;
 
 		p.put(CounterConstants.WAS_SQL_TIME, new DecimalValue(elapsed));
 		p.put(CounterConstants.WAS_SQL_TPS, new FloatValue(tps));
 		p.put(CounterConstants.WAS_SQL_ERROR_RATE, new FloatValue(errRate));
+		pcts = sql.getTimePcts(30);
+		p.put(CounterConstants.WAS_SQL_TIME_90PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_SQL_TIME_99PCT, new DecimalValue(pcts[1]));
 
 		elapsed = api.getAvgTime(30);
 		tps = api.getTps(30);
@@ -50,6 +54,9 @@ public class SqlApiCallPerf {
 		p.put(CounterConstants.WAS_APICALL_TIME, new DecimalValue(elapsed));
 		p.put(CounterConstants.WAS_APICALL_TPS, new FloatValue(tps));
 		p.put(CounterConstants.WAS_APICALL_ERROR_RATE, new FloatValue(errRate));
+		pcts = api.getTimePcts(30);
+		p.put(CounterConstants.WAS_APICALL_TIME_90PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_APICALL_TIME_99PCT, new DecimalValue(pcts[1]));
 
 		p = pw.getPack(TimeTypeEnum.FIVE_MIN);
 		
@@ -60,6 +67,9 @@ public class SqlApiCallPerf {
 		p.put(CounterConstants.WAS_SQL_TIME, new DecimalValue(elapsed));
 		p.put(CounterConstants.WAS_SQL_TPS, new FloatValue(tps));
 		p.put(CounterConstants.WAS_SQL_ERROR_RATE, new FloatValue(errRate));
+		pcts = sql.getTimePcts(300);
+		p.put(CounterConstants.WAS_SQL_TIME_90PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_SQL_TIME_99PCT, new DecimalValue(pcts[1]));
 
 		elapsed = api.getAvgTime(300);
 		tps = api.getTps(300);
@@ -68,6 +78,9 @@ public class SqlApiCallPerf {
 		p.put(CounterConstants.WAS_APICALL_TIME, new DecimalValue(elapsed));
 		p.put(CounterConstants.WAS_APICALL_TPS, new FloatValue(tps));
 		p.put(CounterConstants.WAS_APICALL_ERROR_RATE, new FloatValue(errRate));
+		pcts = api.getTimePcts(300);
+		p.put(CounterConstants.WAS_APICALL_TIME_90PCT, new DecimalValue(pcts[0]));
+		p.put(CounterConstants.WAS_APICALL_TIME_99PCT, new DecimalValue(pcts[1]));
 
 	}
 
@@ -18,9 +18,8 @@ package scouter.agent.netio.data;
 
 import scouter.agent.Configure;
 import scouter.agent.Logger;
-import scouter.agent.netio.data.net.DataUdpAgent;
+import scouter.agent.TransformCache;
 import scouter.agent.trace.TraceContext;
-import scouter.io.DataOutputX;
 import scouter.lang.TextTypes;
 import scouter.lang.pack.AlertPack;
 import scouter.lang.pack.DroppedXLogPack;
@@ -37,8 +36,6 @@ import scouter.util.HashUtil;
 import scouter.util.IntIntLinkedMap;
 import scouter.util.IntLinkedSet;
 
-import java.io.IOException;
-import java.util.ArrayList;
 import java.util.List;
 public class DataProxy {
 	private static UDPDataSendThread udpCollect = UDPDataSendThread.getInstance();
@@ -114,6 +111,7 @@ public class DataProxy {
 	}
 	private static IntLinkedSet methodName = new IntLinkedSet().setMax(10000);
 	public static int sendMethodName(String name) {
+		TransformCache.recordMethodName(name);
 		int hash = HashUtil.hash(name);
 		if (methodName.contains(hash)) {
 			return hash;
@@ -210,23 +208,8 @@ public class DataProxy {
 		p.objType = conf.obj_type;
 		sendDirect(p);
 	}
-	static DataUdpAgent udpNet = DataUdpAgent.getInstance();
 	public static void sendDirect(Pack p) {
-		try {
-			udpNet.write(new DataOutputX().writePack(p).toByteArray());
-		} catch (IOException e) {
-		}
-	}
-	private static void sendDirect(List<byte[]> buff) {
-		switch (buff.size()) {
-		case 0:  return;
-		case 1:
-			udpNet.write(buff.get(0));
-			break;
-		default:
-			udpNet.write(buff);
-			break;
-		}
+		udpCollect.add(p);
 	}
 
 	public static void sendProfile(Step[] p, TraceContext context) {
@@ -292,25 +275,11 @@ public class DataProxy {
 
 	//only for counterPack & interactionCounterPack
 	public static void sendCounter(Pack[] p) {
-		// udp.add(p);
-		try {
-			List<byte[]> buff = new ArrayList<byte[]>();
-			int bytes = 0;
-			for (int k = 0; k < p.length; k++) {
-				if (conf._log_udp_counter_enabled) {
-					Logger.println(p[k].toString());
-				}
-				byte[] b = new DataOutputX().writePack(p[k]).toByteArray();
-				if (bytes + b.length >= conf.net_udp_packet_max_bytes) {
-					sendDirect(buff); // buff.size가 0일수도 있다.
-					bytes = 0;// bytes 값 초기화..
-					buff.clear();
-				}
-				bytes += b.length;
-				buff.add(b);
+		for (int k = 0; k < p.length; k++) {
+			if (conf._log_udp_counter_enabled) {
+				Logger.println(p[k].toString());
 			}
-			sendDirect(buff);
-		} catch (Exception e) {
+			udpCollect.add(p[k]);
 		}
 	}
 
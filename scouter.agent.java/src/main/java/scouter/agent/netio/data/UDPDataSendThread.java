@@ -1,8 +1,8 @@
 /*
- *  Copyright 2015 the original author or authors. 
+ *  Copyright 2015 the original author or authors.
  *  @https://github.com/scouter-project/scouter
  *
- *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
  *  You may obtain a copy of the License at
  *
@@ -12,21 +12,37 @@
  *  distributed under the License is distributed on an "AS IS" BASIS,
  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  *  See the License for the specific language governing permissions and
- *  limitations under the License. 
+ *  limitations under the License.
  */
 
 package scouter.agent.netio.data;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
 
 import scouter.agent.Configure;
 import scouter.agent.netio.data.net.DataUdpAgent;
 import scouter.io.DataOutputX;
 import scouter.lang.pack.Pack;
-import scouter.util.Queue;
+import scouter.lang.pack.PackEnum;
+import scouter.lang.value.MapValue;
+import scouter.net.NetCafe;
+import scouter.util.RingQueue;
 import scouter.util.ThreadUtil;
 
+import static scouter.lang.constants.ScouterConstants.*;
+
+/**
+ * Send pipeline of all the packs to the collector.
+ * Packs are serialized when they are added as the callers reuse some of them(e.g. the ObjectPacks of the heartbeat),
+ * and coalesced on this thread into frames of net_udp_packet_max_bytes.
+ * A pack is serialized on a buffer of the calling thread and copied to a pooled chunk if it fits in one,
+ * the chunk is given back to the pool when it is appended to a frame or dropped.
+ * When the queue is filled over net_udp_profile_backpressure_pct, profiles are dropped first to keep XLogs flowing.
+ * Heartbeats are never dropped, the oldest packs are removed for them when the queue is full.
+ */
 public class UDPDataSendThread extends Thread {
 
 	private static UDPDataSendThread instance = null;
@@ -44,24 +60,143 @@ public class UDPDataSendThread extends Thread {
 	protected UDPDataSendThread() {
 	}
 
-	private Queue<byte[]> queue = new Queue<byte[]>(1024);
+	private static final int CHUNK_SIZE = 2048;
+	private static final int LOCAL_BUFFER_MAX = 64 * 1024;
+
+	private static class Item {
+		final byte type;
+		final byte[] bytes;
+		final int length;
+		final boolean pooled;
+		final long time;
+
+		Item(byte type, byte[] bytes, int length, boolean pooled) {
+			this.type = type;
+			this.bytes = bytes;
+			this.length = length;
+			this.pooled = pooled;
+			this.time = System.currentTimeMillis();
+		}
+	}
+
+	private static class Buffer extends ByteArrayOutputStream {
+		Buffer(int size) {
+			super(size);
+		}
+
+		byte[] array() {
+			return buf;
+		}
+	}
+
+	private Configure conf = Configure.getInstance();
+	private RingQueue<Item> queue = new RingQueue<Item>(conf.net_udp_send_queue_size);
+	private RingQueue<byte[]> pool = new RingQueue<byte[]>(conf.net_udp_send_queue_size);
+
+	private static final ThreadLocal<Buffer> localBuffer = new ThreadLocal<Buffer>();
+
+	private final AtomicLong dropXLog = new AtomicLong();
+	private final AtomicLong dropProfile = new AtomicLong();
+	private final AtomicLong dropOther = new AtomicLong();
+	private long latencySum;
+	private long latencyCount;
+	private long latencyMax;
 
 	public int getQueueSize() {
 		return queue.size();
 	}
 
 	public boolean add(Pack p) {
+		byte type = p.getPackType();
+		boolean profile = type == PackEnum.XLOG_PROFILE || type == PackEnum.XLOG_PROFILE2;
+		if (profile && queue.size() * 100 >= queue.getCapacity() * conf.net_udp_profile_backpressure_pct) {
+			dropProfile.incrementAndGet();
+			return false;
+		}
+		Item item;
 		try {
-			byte[] b = new DataOutputX().writePack(p).toByteArray();
-			Object ok = queue.push(b);
-			return ok != null;
+			item = serialize(type, p);
 		} catch (Exception e) {
+			return false;
 		}
+		if (queue.put(item))
+			return true;
+
+		if (type == PackEnum.OBJECT) {
+			while (queue.put(item) == false) {
+				Item old = queue.getNoWait();
+				if (old != null) {
+					countDrop(old.type);
+					release(old);
+				}
+			}
+			return true;
+		}
+		countDrop(type);
+		release(item);
 		return false;
 	}
 
+	private Item serialize(byte type, Pack p) throws Exception {
+		Buffer buffer = localBuffer.get();
+		if (buffer == null) {
+			buffer = new Buffer(CHUNK_SIZE);
+			localBuffer.set(buffer);
+		}
+		buffer.reset();
+		new DataOutputX(buffer).writePack(p);
+		int len = buffer.size();
+		Item item;
+		if (len <= CHUNK_SIZE) {
+			byte[] chunk = pool.getNoWait();
+			if (chunk == null) {
+				chunk = new byte[CHUNK_SIZE];
+			}
+			System.arraycopy(buffer.array(), 0, chunk, 0, len);
+			item = new Item(type, chunk, len, true);
+		} else {
+			item = new Item(type, buffer.toByteArray(), len, false);
+		}
+		if (buffer.array().length > LOCAL_BUFFER_MAX) {
+			localBuffer.remove();
+		}
+		return item;
+	}
+
+	private void release(Item item) {
+		if (item.pooled) {
+			pool.put(item.bytes);
+		}
+	}
+
+	private void countDrop(byte type) {
+		if (type == PackEnum.XLOG_PROFILE || type == PackEnum.XLOG_PROFILE2) {
+			dropProfile.incrementAndGet();
+		} else if (type == PackEnum.XLOG || type == PackEnum.DROPPED_XLOG) {
+			dropXLog.incrementAndGet();
+		} else {
+			dropOther.incrementAndGet();
+		}
+	}
+
 	public boolean isQueueOk() {
-		return queue.size() < 1000;
+		return queue.size() < queue.getCapacity() * 9 / 10;
+	}
+
+	/**
+	 * drop counts since the start, and the average and max latency from add to send since the last call
+	 */
+	public void putStat(MapValue tags) {
+		tags.put(TAG_UDP_DROP_XLOG, dropXLog.get());
+		tags.put(TAG_UDP_DROP_PROFILE, dropProfile.get());
+		tags.put(TAG_UDP_DROP_OTHER, dropOther.get());
+		synchronized (this) {
+			tags.put(TAG_UDP_LATENCY_AVG, latencyCount == 0 ? 0 : latencySum / latencyCount);
+			tags.put(TAG_UDP_LATENCY_MAX, latencyMax);
+			latencySum = 0;
+			latencyCount = 0;
+			latencyMax = 0;
+		}
 	}
 
 	public void shutdown() {
@@ -70,56 +205,98 @@ public class UDPDataSendThread extends Thread {
 
 	private boolean running = true;
 
+	private static final int HEADER_SIZE = 6; // CAFN + count(2)
+	private final Buffer frame = new Buffer(conf.net_udp_packet_max_bytes + HEADER_SIZE);
+	private int frameCount;
+	private byte[] zipBuffer;
+	private Deflater deflater;
+
 	public void run() {
 		DataUdpAgent udp = DataUdpAgent.getInstance();
+		resetFrame();
 
 		while (running) {
-			int size = queue.size();
-			switch (size) {
-			case 0:
-				ThreadUtil.sleep(conf.net_udp_collection_interval_ms);
-				break;
-			case 1:
-				udp.write(queue.pop());
-				break;
-			default:
-				send(udp, size);
-				break;
+			Item item = queue.get(conf.net_udp_collection_interval_ms);
+			if (item == null)
+				continue;
+			int max = queue.getCapacity();
+			while (item != null && max-- > 0) {
+				try {
+					append(udp, item);
+				} catch (Throwable t) {
+				}
+				release(item);
+				item = queue.getNoWait();
 			}
-
+			flush(udp);
 		}
 	}
 
-	private Configure conf = Configure.getInstance();
-	private void send(DataUdpAgent udp, int size) {
-		List<byte[]> buff = new ArrayList<byte[]>();
-		int bytes = 0;
-		for (int k = 0; k < size; k++) {
-			byte[] b = queue.pop();
-			if (bytes + b.length >= conf.net_udp_packet_max_bytes) {
-				send(udp, buff); //buff.size가 0일수도 있다.
-				bytes = 0;// bytes 값 초기화..
-				buff.clear();
+	private void append(DataUdpAgent udp, Item item) throws Exception {
+		int len = item.length;
+		if (len + HEADER_SIZE > conf.net_udp_packet_max_bytes) {
+			udp.write(item.pooled ? Arrays.copyOf(item.bytes, len) : item.bytes);
+		} else {
+			if (frame.size() + len > conf.net_udp_packet_max_bytes || frameCount >= Short.MAX_VALUE) {
+				flush(udp);
 			}
-			bytes += b.length;
-			buff.add(b);
+			frame.write(item.bytes, 0, len);
+			frameCount++;
 		}
 
-		send(udp, buff);
+		long latency = System.currentTimeMillis() - item.time;
+		synchronized (this) {
+			latencySum += latency;
+			latencyCount++;
+			if (latency > latencyMax) {
+				latencyMax = latency;
+			}
+		}
+	}
 
+	private void resetFrame() {
+		frame.reset();
+		frame.write(NetCafe.CAFE_N, 0, NetCafe.CAFE_N.length);
+		frame.write(0);
+		frame.write(0);
+		frameCount = 0;
 	}
 
-	public void send(DataUdpAgent udp, List<byte[]> buff) {
-		switch (buff.size()) {
-		case 0:
-			break;
-		case 1:
-			udp.write(buff.get(0));
-			break;
-		default:
-			udp.write(buff);
-			break;
+	private void flush(DataUdpAgent udp) {
+		if (frameCount == 0)
+			return;
+		byte[] b = frame.array();
+		b[4] = (byte) (frameCount >>> 8);
+		b[5] = (byte) frameCount;
+		if (conf.net_udp_compress_enabled && frame.size() >= conf.net_udp_compress_min_bytes) {
+			if (sendCompressed(udp, b, frame.size()) == false) {
+				udp.writeFrame(b, frame.size());
+			}
+		} else {
+			udp.writeFrame(b, frame.size());
 		}
+		resetFrame();
 	}
 
-}
\ No newline at end of file
+	/**
+	 * CAFZ + raw length(4) + compressed length(4) + deflated count and packs
+	 */
+	private boolean sendCompressed(DataUdpAgent udp, byte[] b, int size) {
+		if (deflater == null) {
+			deflater = new Deflater(Deflater.BEST_SPEED);
+			zipBuffer = new byte[conf.net_udp_packet_max_bytes + HEADER_SIZE];
+		}
+		int raw = size - NetCafe.CAFE_N.length;
+		deflater.reset();
+		deflater.setInput(b, NetCafe.CAFE_N.length, raw);
+		deflater.finish();
+		int len = deflater.deflate(zipBuffer, 12, Math.min(raw, zipBuffer.length - 12));
+		if (deflater.finished() == false)
+			return false;
+		System.arraycopy(NetCafe.CAFE_Z, 0, zipBuffer, 0, 4);
+		DataOutputX.toBytes(zipBuffer, 4, raw);
+		DataOutputX.toBytes(zipBuffer, 8, len);
+		udp.writeFrame(zipBuffer, 12 + len);
+		return true;
+	}
+}
@@ -149,6 +149,23 @@ public class DataUdpAgent {
 		packet.setPort(server_port);
 		datagram.send(packet);
 	}
+	/**
+	 * send a frame which is already wrapped with a cafe header
+	 */
+	public boolean writeFrame(byte[] buff, int length) {
+		try {
+			if (server_host == null)
+				return false;
+			DatagramPacket packet = new DatagramPacket(buff, 0, length);
+			packet.setAddress(server_host);
+			packet.setPort(server_port);
+			datagram.send(packet);
+			return true;
+		} catch (IOException e) {
+			Logger.println("A184", "UDP", e);
+			return false;
+		}
+	}
 	public void close() {
 		if (datagram != null)
 			datagram.close();
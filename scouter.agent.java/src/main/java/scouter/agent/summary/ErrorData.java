@@ -16,12 +16,13 @@
  */
 package scouter.agent.summary;
 
+import java.util.concurrent.atomic.LongAdder;
 
 public class ErrorData {
 	public int error;
 	public int service;
 	public int message;
-	public int count;
+	public final LongAdder count = new LongAdder();
 	public long txid;
 	public int sql;
 	public int apicall;
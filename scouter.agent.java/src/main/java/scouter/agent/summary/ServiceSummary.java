@@ -18,41 +18,62 @@ package scouter.agent.summary;
 
 import scouter.agent.Configure;
 import scouter.agent.netio.data.DataProxy;
-import scouter.agent.util.SimpleLru;
 import scouter.io.DataInputX;
 import scouter.lang.SummaryEnum;
 import scouter.lang.pack.SummaryPack;
 import scouter.lang.pack.XLogPack;
 import scouter.lang.step.ApiCallStep;
 import scouter.lang.step.SqlStep;
+import scouter.lang.value.BlobValue;
 import scouter.lang.value.ListValue;
 import scouter.util.BitUtil;
 import scouter.util.IPUtil;
 
-import java.util.Map;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
 
+/**
+ * The summaries of the services, sqls, api calls, ips, user agents and errors sent every 5 minutes.
+ * They are added to without a lock on SummaryTables which are swapped for new ones when they are sent.
+ * The summaries of the services, sqls and api calls carry a LatencySketch of the elapsed times
+ * which the server merges over the agents.
+ */
 public class ServiceSummary {
 
 	private static ServiceSummary instance = null;
 
 	private Configure conf = Configure.getInstance();
-	//	private LongKeyLinkedMap<ErrorData> errorMaster = new LongKeyLinkedMap<ErrorData>().setMax(conf._summary_error_max_count);
-	private SimpleLru<Long, ErrorData> errorMaster = new SimpleLru<Long, ErrorData>(conf._summary_error_max_count);
-
-	//	private IntKeyLinkedMap<SummaryData> sqlMaster = new SimpleLru<SummaryData>().setMax(conf._summary_sql_max_count);
-	private SimpleLru<Integer, SummaryData> sqlMaster = new SimpleLru<Integer, SummaryData>(conf._summary_sql_max_count);
 
-	//	private IntKeyLinkedMap<SummaryData> apiMaster = new IntKeyLinkedMap<SummaryData>().setMax(conf._summary_api_max_count);
-	private SimpleLru<Integer, SummaryData> apiMaster = new SimpleLru<Integer, SummaryData>(conf._summary_api_max_count);
+	private SummaryTable<ErrorData> errorMaster = new SummaryTable<ErrorData>(conf._summary_error_max_count) {
+		protected ErrorData create() {
+			return new ErrorData();
+		}
+	};
+	private SummaryTable<SummaryData> sqlMaster = new DataTable(conf._summary_sql_max_count);
+	private SummaryTable<SummaryData> apiMaster = new DataTable(conf._summary_api_max_count);
+	private SummaryTable<SummaryData> serviceMaster = new DataTable(conf._summary_service_max_count);
+	private SummaryTable<LongAdder> ipMaster = new CountTable(conf._summary_ip_max_count);
+	private SummaryTable<LongAdder> uaMaster = new CountTable(conf._summary_useragent_max_count);
+
+	private class DataTable extends SummaryTable<SummaryData> {
+		DataTable(int max) {
+			super(max);
+		}
 
-	//	private IntKeyLinkedMap<SummaryData> serviceMaster = new IntKeyLinkedMap<SummaryData>().setMax(conf._summary_service_max_count);
-	private SimpleLru<Integer, SummaryData> serviceMaster = new SimpleLru<Integer, SummaryData>(conf._summary_service_max_count);
+		protected SummaryData create() {
+			return new SummaryData(conf.summary_sketch_enabled);
+		}
+	}
 
-	//	private IntIntLinkedMap ipMaster = new IntIntLinkedMap().setMax(conf._summary_ip_max_count);
-	private SimpleLru<Integer, Integer> ipMaster = new SimpleLru<Integer, Integer>(conf._summary_ip_max_count);
+	private static class CountTable extends SummaryTable<LongAdder> {
+		CountTable(int max) {
+			super(max);
+		}
 
-	//	private IntIntLinkedMap uaMaster = new IntIntLinkedMap().setMax(conf._summary_useragent_max_count);
-	private SimpleLru<Integer, Integer> uaMaster = new SimpleLru<Integer, Integer>(conf._summary_useragent_max_count);
+		protected LongAdder create() {
+			return new LongAdder();
+		}
+	}
 
 	public final static synchronized ServiceSummary getInstance() {
 		if (instance == null) {
@@ -65,34 +86,43 @@ public class ServiceSummary {
 		if (conf.summary_enabled == false)
 			return;
 		// service summary
-		SummaryData d = getSummaryMap(serviceMaster, p.service);
-		d.count++;
-		d.elapsed += p.elapsed;
-		if (p.error != 0) {
-			d.error_cnt++;
+		SummaryTable<SummaryData>.Epoch e = serviceMaster.enter();
+		try {
+			SummaryData d = e.get(p.service);
+			if (d != null) {
+				d.add(p.elapsed, p.error != 0);
+				d.cpu.add(p.cpu);
+				d.mem.add(p.kbytes);
+			}
+		} finally {
+			e.exit();
 		}
-		d.cpu += p.cpu;
-		d.mem += p.kbytes;
 
 		// ip summary
 		if (IPUtil.isOK(p.ipaddr) && p.ipaddr[0] != 0 && p.ipaddr[0] != 127) {
-			int ip = DataInputX.toInt(p.ipaddr, 0);
-			Integer v = ipMaster.get(ip);
-			if (v == null) {
-				v = 0;
-			}
-			ipMaster.put(ip, v + 1);
+			count(ipMaster, DataInputX.toInt(p.ipaddr, 0));
 		}
 		// user-agent summary
 		if (p.userAgent != 0) {
-			Integer v = uaMaster.get(p.userAgent);
-			if (v == null) {
-				v = 0;
+			count(uaMaster, p.userAgent);
+		}
+	}
+
+	private void count(SummaryTable<LongAdder> table, int key) {
+		SummaryTable<LongAdder>.Epoch e = table.enter();
+		try {
+			LongAdder v = e.get(key);
+			if (v != null) {
+				v.increment();
 			}
-			uaMaster.put(p.userAgent, v + 1);
+		} finally {
+			e.exit();
 		}
 	}
 
+	/**
+	 * @return null if the error could not be summarized
+	 */
 	public ErrorData process(Throwable thr, int message, int service, long txid, int sql, int api) {
 		if (conf.summary_enabled == false)
 			return null;
@@ -102,83 +132,68 @@ public class ServiceSummary {
 		String errName = thr.getClass().getName();
 
 		int errHash = DataProxy.sendError(errName);
-		ErrorData errData = getSummaryError(errorMaster, BitUtil.composite(errHash, service));
-		errData.error = errHash;
-		errData.service = service;
-		errData.message = (message == 0 ? errHash : message);
-		errData.count++;
-		errData.txid = txid;
-
-		if (sql != 0)
-			errData.sql = sql;
-		if (api != 0)
-			errData.apicall = api;
-		return errData;
+		SummaryTable<ErrorData>.Epoch e = errorMaster.enter();
+		try {
+			ErrorData errData = e.get(BitUtil.composite(errHash, service));
+			if (errData == null)
+				return null;
+			errData.error = errHash;
+			errData.service = service;
+			errData.message = (message == 0 ? errHash : message);
+			errData.count.increment();
+			errData.txid = txid;
+
+			if (sql != 0)
+				errData.sql = sql;
+			if (api != 0)
+				errData.apicall = api;
+			return errData;
+		} finally {
+			e.exit();
+		}
 	}
 
 	public void process(SqlStep sqlStep) {
 		if (conf.summary_enabled == false)
 			return;
-		SummaryData d = getSummaryMap(sqlMaster, sqlStep.hash);
-		d.count++;
-		d.elapsed += sqlStep.elapsed;
-		if (sqlStep.error != 0) {
-			d.error_cnt++;
-		}
+		add(sqlMaster, sqlStep.hash, sqlStep.elapsed, sqlStep.error != 0);
 	}
 
 	public void process(ApiCallStep apiStep) {
 		if (conf.summary_enabled == false)
 			return;
-		SummaryData d = getSummaryMap(apiMaster, apiStep.hash);
-		d.count++;
-		d.elapsed += apiStep.elapsed;
-		if (apiStep.error != 0) {
-			d.error_cnt++;
-		}
-	}
-
-	private synchronized SummaryData getSummaryMap(SimpleLru<Integer, SummaryData> table, int hash) {
-		SimpleLru<Integer, SummaryData> tempTable = table;
-		SummaryData d = tempTable.get(hash);
-		if (d == null) {
-			d = new SummaryData();
-			tempTable.put(hash, d);
-		}
-		return d;
+		add(apiMaster, apiStep.hash, apiStep.elapsed, apiStep.error != 0);
 	}
 
-	private synchronized ErrorData getSummaryError(SimpleLru<Long, ErrorData> table, long key) {
-
-		SimpleLru<Long, ErrorData> tempTable = table;
-		ErrorData d = tempTable.get(key);
-		if (d == null) {
-			d = new ErrorData();
-			tempTable.put(key, d);
+	private void add(SummaryTable<SummaryData> table, int hash, int elapsed, boolean error) {
+		SummaryTable<SummaryData>.Epoch e = table.enter();
+		try {
+			SummaryData d = e.get(hash);
+			if (d != null) {
+				d.add(elapsed, error);
+			}
+		} finally {
+			e.exit();
 		}
-		return d;
 	}
 
 	public SummaryPack getAndClear(byte type) {
-		SimpleLru<Integer, SummaryData> temp;
+		SummaryTable<SummaryData>.Epoch temp;
 		switch (type) {
 			case SummaryEnum.APP:
 				if (serviceMaster.size() == 0)
 					return null;
-				temp = serviceMaster;
-				serviceMaster = new SimpleLru<Integer, SummaryData>(conf._summary_service_max_count);
+				temp = serviceMaster.getAndClear(conf._summary_service_max_count);
 				break;
 			case SummaryEnum.SQL:
 				if (sqlMaster.size() == 0)
 					return null;
-				temp = sqlMaster;
-				sqlMaster = new SimpleLru<Integer, SummaryData>(conf._summary_sql_max_count);
+				temp = sqlMaster.getAndClear(conf._summary_sql_max_count);
 				break;
 			case SummaryEnum.APICALL:
 				if (apiMaster.size() == 0)
 					return null;
-				temp = apiMaster;
-				apiMaster = new SimpleLru<Integer, SummaryData>(conf._summary_api_max_count);
+				temp = apiMaster.getAndClear(conf._summary_api_max_count);
 				break;
 			default:
 				return null;
@@ -187,7 +202,7 @@ public class ServiceSummary {
 		SummaryPack p = new SummaryPack();
 		p.stype = type;
 
-		int cnt = temp.size();
+		List<SummaryTable.Entry<SummaryData>> entries = temp.entries();
 		ListValue id = p.table.newList("id");
 		ListValue count = p.table.newList("count");
 		ListValue errorCnt = p.table.newList("error");
@@ -199,35 +214,44 @@ public class ServiceSummary {
 			cpu = p.table.newList("cpu");
 			mem = p.table.newList("mem");
 		}
-		for (Map.Entry<Integer, SummaryData> ent : temp.entrySet()) {
-			int key = ent.getKey();
-			SummaryData data = ent.getValue();
-			id.add(key);
-			count.add(data.count);
-			errorCnt.add(data.error_cnt);
-			elapsedSum.add(data.elapsed);
+		ListValue sketch = null;
+		for (int i = 0; i < entries.size(); i++) {
+			SummaryData data = entries.get(i).value;
+			if (data.sketch != null) {
+				sketch = p.table.newList("sketch");
+				break;
+			}
+		}
+		for (int i = 0; i < entries.size(); i++) {
+			SummaryTable.Entry<SummaryData> ent = entries.get(i);
+			SummaryData data = ent.value;
+			id.add((int) ent.key);
+			count.add(data.count.sum());
+			errorCnt.add(data.error_cnt.sum());
+			elapsedSum.add(data.elapsed.sum());
 			if (SummaryEnum.APP == type) {
-				cpu.add(data.cpu);
-				mem.add(data.mem);
+				cpu.add(data.cpu.sum());
+				mem.add(data.mem.sum());
+			}
+			if (sketch != null) {
+				sketch.add(new BlobValue(data.sketch == null ? null : data.sketch.toBytes()));
 			}
 		}
 		return p;
 	}
 
 	public SummaryPack getAndClearX(byte type) {
-		SimpleLru<Integer, Integer> temp;
+		SummaryTable<LongAdder>.Epoch temp;
 		switch (type) {
 			case SummaryEnum.IP:
 				if (ipMaster.size() == 0)
 					return null;
-				temp = ipMaster;
-				ipMaster = new SimpleLru<Integer, Integer>(conf._summary_ip_max_count);
+				temp = ipMaster.getAndClear(conf._summary_ip_max_count);
 				break;
 			case SummaryEnum.USER_AGENT:
 				if (uaMaster.size() == 0)
 					return null;
-				temp = uaMaster;
-				uaMaster = new SimpleLru<Integer, Integer>(conf._summary_useragent_max_count);
+				temp = uaMaster.getAndClear(conf._summary_useragent_max_count);
 				break;
 			default:
 				return null;
@@ -236,15 +260,14 @@ public class ServiceSummary {
 		SummaryPack p = new SummaryPack();
 		p.stype = type;
 
-		int cnt = temp.size();
+		List<SummaryTable.Entry<LongAdder>> entries = temp.entries();
 		ListValue id = p.table.newList("id");
 		ListValue count = p.table.newList("count");
 
-		for (Map.Entry<Integer, Integer> ent : temp.entrySet()) {
-			int key = ent.getKey();
-			int value = ent.getValue();
-			id.add(key);
-			count.add(value);
+		for (int i = 0; i < entries.size(); i++) {
+			SummaryTable.Entry<LongAdder> ent = entries.get(i);
+			id.add((int) ent.key);
+			count.add(ent.value.sum());
 		}
 		return p;
 	}
@@ -253,13 +276,12 @@ public class ServiceSummary {
 		if (errorMaster.size() == 0)
 			return null;
 
-		SimpleLru<Long, ErrorData> temp = errorMaster;
-		errorMaster = new SimpleLru<Long, ErrorData>(conf._summary_error_max_count);
+		SummaryTable<ErrorData>.Epoch temp = errorMaster.getAndClear(conf._summary_error_max_count);
 
 		SummaryPack p = new SummaryPack();
 		p.stype = type;
 
-		int cnt = temp.size();
+		List<SummaryTable.Entry<ErrorData>> entries = temp.entries();
 		ListValue id = p.table.newList("id");
 		ListValue error = p.table.newList("error");
 		ListValue service = p.table.newList("service");
@@ -271,14 +293,14 @@ public class ServiceSummary {
 		ListValue apicall = p.table.newList("apicall");
 		ListValue fullstack = p.table.newList("fullstack");
 
-		for (Map.Entry<Long, ErrorData> ent : temp.entrySet()) {
-			long key = ent.getKey();
-			ErrorData data = ent.getValue();
-			id.add(key);
+		for (int i = 0; i < entries.size(); i++) {
+			SummaryTable.Entry<ErrorData> ent = entries.get(i);
+			ErrorData data = ent.value;
+			id.add(ent.key);
 			error.add(data.error);
 			service.add(data.service);
 			message.add(data.message);
-			count.add(data.count);
+			count.add(data.count.sum());
 			txid.add(data.txid);
 			sql.add(data.sql);
 			apicall.add(data.apicall);
@@ -16,10 +16,33 @@
  */
 package scouter.agent.summary;
 
+import scouter.util.LatencySketch;
+
+import java.util.concurrent.atomic.LongAdder;
+
 public class SummaryData {
-	public int count;
-	public int error_cnt;
-	public long elapsed;
-	public long cpu;
-	public long mem;
+	public final LongAdder count = new LongAdder();
+	public final LongAdder error_cnt = new LongAdder();
+	public final LongAdder elapsed = new LongAdder();
+	public final LongAdder cpu = new LongAdder();
+	public final LongAdder mem = new LongAdder();
+	/**
+	 * null if the summary has no percentiles
+	 */
+	public final LatencySketch sketch;
+
+	public SummaryData(boolean sketch) {
+		this.sketch = sketch ? new LatencySketch() : null;
+	}
+
+	public void add(long elapsed, boolean error) {
+		this.count.increment();
+		this.elapsed.add(elapsed);
+		if (error) {
+			this.error_cnt.increment();
+		}
+		if (sketch != null) {
+			sketch.add(elapsed);
+		}
+	}
 }
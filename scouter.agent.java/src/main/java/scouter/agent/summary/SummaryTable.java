@@ -0,0 +1,155 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.agent.summary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Summary entries of an interval keyed by a primitive hash, added to by many threads without a lock.
+ * The entries are in an open addressing table claimed by CAS, the keys over the max count of the interval are dropped.
+ * <p>
+ * getAndClear() swaps the epoch of the interval for a new one and waits until the threads which had taken the old one
+ * have left it, so the values of the old epoch are all there when it is read.
+ */
+public abstract class SummaryTable<V> {
+
+	public static final class Entry<V> {
+		public final long key;
+		public final V value;
+
+		Entry(long key, V value) {
+			this.key = key;
+			this.value = value;
+		}
+	}
+
+	public final class Epoch {
+		private final AtomicReferenceArray<Entry<V>> table;
+		private final int mask;
+		private final int max;
+		private final AtomicInteger size = new AtomicInteger();
+		private final LongAdder entered = new LongAdder();
+		private final LongAdder exited = new LongAdder();
+
+		Epoch(int max) {
+			this.max = Math.max(1, max);
+			int cap = Integer.highestOneBit(this.max * 2 - 1) << 1;
+			this.table = new AtomicReferenceArray<Entry<V>>(cap);
+			this.mask = cap - 1;
+		}
+
+		/**
+		 * the probe stops after a round of the table as concurrent inserts can pass the size check.
+		 * @return null if the epoch has been full of other keys
+		 */
+		public V get(long key) {
+			int i = mix(key) & mask;
+			for (int probe = table.length(); probe > 0; probe--) {
+				Entry<V> e = table.get(i);
+				if (e == null) {
+					if (size.get() >= max)
+						return null;
+					Entry<V> n = new Entry<V>(key, create());
+					if (table.compareAndSet(i, null, n)) {
+						size.incrementAndGet();
+						return n.value;
+					}
+					e = table.get(i);
+				}
+				if (e.key == key)
+					return e.value;
+				i = (i + 1) & mask;
+			}
+			return null;
+		}
+
+		public int size() {
+			return size.get();
+		}
+
+		public List<Entry<V>> entries() {
+			List<Entry<V>> out = new ArrayList<Entry<V>>(size.get());
+			for (int i = 0; i < table.length(); i++) {
+				Entry<V> e = table.get(i);
+				if (e != null) {
+					out.add(e);
+				}
+			}
+			return out;
+		}
+
+		public void exit() {
+			exited.increment();
+		}
+
+		private boolean isQuiet() {
+			// the exits are summed first not to count a thread entered between the sums as left
+			long out = exited.sum();
+			return entered.sum() == out;
+		}
+	}
+
+	private static final long QUIET_WAIT_NANOS = 100 * 1000 * 1000L;
+
+	private volatile Epoch current;
+
+	public SummaryTable(int max) {
+		this.current = new Epoch(max);
+	}
+
+	protected abstract V create();
+
+	private static int mix(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	/**
+	 * the epoch to add to, exit() of it should be called when it is done
+	 */
+	public Epoch enter() {
+		while (true) {
+			Epoch e = current;
+			e.entered.increment();
+			if (e == current)
+				return e;
+			e.exited.increment();
+		}
+	}
+
+	public int size() {
+		return current.size();
+	}
+
+	/**
+	 * @param max max count of the keys of the next interval
+	 * @return the epoch of the interval ended
+	 */
+	public Epoch getAndClear(int max) {
+		Epoch old = current;
+		current = new Epoch(max);
+		long until = System.nanoTime() + QUIET_WAIT_NANOS;
+		while (old.isQuiet() == false && System.nanoTime() < until) {
+			Thread.yield();
+		}
+		return old;
+	}
+}
@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.agent.trace;
+
+import scouter.util.SqlLiteralLexer;
+
+/**
+ * The sqls escaped by SqlLiteralLexer in a 2-way set associative table of a fixed size, read and written without a lock.
+ * An entry keeps its sql which is compared on a hit, so a sql never gets the escaped sql of another one of the same hash.
+ * The entries are immutable, so a racing put can only lose an entry to be escaped again.
+ */
+public class EscapedSqlCache {
+
+	public static final class Entry {
+		final String sql;
+		final int hash;
+		/**
+		 * the sql itself if it has no literal
+		 */
+		public final String parsedSql;
+		/**
+		 * null if the sql has no literal
+		 */
+		public final String param;
+
+		Entry(String sql, int hash, String parsedSql, String param) {
+			this.sql = sql;
+			this.hash = hash;
+			this.parsedSql = parsedSql;
+			this.param = param;
+		}
+	}
+
+	private final int maxSize;
+	private final Entry[] table;
+	private final int mask;
+
+	public EscapedSqlCache(int maxSize) {
+		this.maxSize = maxSize;
+		int cap = Integer.highestOneBit(Math.max(2, maxSize) - 1) << 1;
+		this.table = new Entry[cap];
+		this.mask = cap - 2;
+	}
+
+	public int getMaxSize() {
+		return maxSize;
+	}
+
+	private static int slot(int hash) {
+		int h = hash * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	public Entry escape(String sql) {
+		int hash = sql.hashCode();
+		int i = slot(hash) & mask;
+		Entry e = table[i];
+		if (e != null && e.hash == hash && (e.sql == sql || e.sql.equals(sql)))
+			return e;
+		Entry e2 = table[i + 1];
+		if (e2 != null && e2.hash == hash && (e2.sql == sql || e2.sql.equals(sql)))
+			return e2;
+
+		SqlLiteralLexer l = SqlLiteralLexer.escape(sql);
+		Entry n = l == null ? new Entry(sql, hash, sql, null) : new Entry(sql, hash, l.getParsedSql(), l.getParameter());
+		if (e != null) {
+			table[i + 1] = e;
+		}
+		table[i] = n;
+		return n;
+	}
+}
@@ -154,7 +154,9 @@ public class AsyncRunner extends Thread {
                 Logger.println("A157", fullstack);
             }
 
-            mv.put(AlertPack.HASH_FLAG + TextTypes.ERROR + "_full-stack", d.fullstack);
+            if (d != null) {
+                mv.put(AlertPack.HASH_FLAG + TextTypes.ERROR + "_full-stack", d.fullstack);
+            }
 
         } else {
             summary.process(leakInfo.error, 0, leakInfo.serviceHash, leakInfo.txid, 0, 0);
@@ -178,7 +180,9 @@ public class AsyncRunner extends Thread {
                 d.fullstack = DataProxy.sendError(fullstack);
                 Logger.println("A157", fullstack);
             }
-            mv.put(AlertPack.HASH_FLAG + TextTypes.ERROR + "_full-stack", d.fullstack);
+            if (d != null) {
+                mv.put(AlertPack.HASH_FLAG + TextTypes.ERROR + "_full-stack", d.fullstack);
+            }
 
         } else {
             summary.process(leakInfo2.error, 0, leakInfo2.serviceHash, leakInfo2.txid, 0, 0);
@@ -0,0 +1,176 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.test;
+
+import scouter.agent.trace.EscapedSqlCache;
+import scouter.util.EscapeLiteralSQL;
+import scouter.util.IntKeyLinkedMap;
+import scouter.util.IntLinkedSet;
+import scouter.util.SqlLiteralLexer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Per call cost of profile_sql_escape_enabled over a corpus of generated sqls :
+ * prepared statements with bind variables and statements with inlined literals, called with a skewed frequency.
+ * <pre>
+ * java -cp scouter.agent.jar scouter.test.SqlEscapeBench [distinct sqls] [calls] [threads]
+ * </pre>
+ */
+public class SqlEscapeBench {
+	private static final String[] TABLES = { "orders", "order_item", "customer", "product", "stock", "payment", "shipment",
+			"coupon", "review", "category" };
+	private static final String[] COLUMNS = { "id", "name", "status", "created_at", "updated_at", "amount", "qty", "price",
+			"customer_id", "product_id", "code", "memo", "addr1", "zip_cd" };
+
+	public static void main(String[] args) throws Exception {
+		int distinct = args.length > 0 ? Integer.parseInt(args[0]) : 3000;
+		final int calls = args.length > 1 ? Integer.parseInt(args[1]) : 2000000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+
+		Random r = new Random(7);
+		final String[] corpus = new String[distinct];
+		for (int i = 0; i < distinct; i++) {
+			corpus[i] = makeSql(r, i % 10 < 7);
+		}
+		final int[] order = new int[calls];
+		for (int i = 0; i < calls; i++) {
+			// most of the calls go to a few hot sqls
+			double x = r.nextDouble();
+			order[i] = (int) (distinct * x * x * x);
+		}
+
+		run("escape disabled", threads, new Escaper() {
+			public String escape(String sql) {
+				return sql;
+			}
+		}, corpus, order);
+		run("EscapeLiteralSQL every call", threads, new Escaper() {
+			public String escape(String sql) {
+				return new EscapeLiteralSQL(sql).process().getParsedSql();
+			}
+		}, corpus, order);
+		run("SqlLiteralLexer every call", threads, new Escaper() {
+			public String escape(String sql) {
+				SqlLiteralLexer l = SqlLiteralLexer.escape(sql);
+				return l == null ? sql : l.getParsedSql();
+			}
+		}, corpus, order);
+		run("hash keyed cache(1001)", threads, new HashKeyedCache(), corpus, order);
+		final EscapedSqlCache cache = new EscapedSqlCache(4096);
+		run("EscapedSqlCache(4096)", threads, new Escaper() {
+			public String escape(String sql) {
+				return cache.escape(sql).parsedSql;
+			}
+		}, corpus, order);
+	}
+
+	interface Escaper {
+		String escape(String sql);
+	}
+
+	/**
+	 * the cache of sql.hashCode() as TraceSQL had
+	 */
+	static class HashKeyedCache implements Escaper {
+		IntLinkedSet noLiteralSql = new IntLinkedSet().setMax(10000);
+		IntKeyLinkedMap<String> checkedSql = new IntKeyLinkedMap<String>().setMax(1001);
+
+		public String escape(String sql) {
+			int sqlHash = sql.hashCode();
+			if (noLiteralSql.contains(sqlHash))
+				return sql;
+			String psql = checkedSql.get(sqlHash);
+			if (psql != null)
+				return psql;
+			String parsed = new EscapeLiteralSQL(sql).process().getParsedSql();
+			if (parsed.hashCode() == sqlHash) {
+				noLiteralSql.put(sqlHash);
+			} else {
+				checkedSql.put(sqlHash, parsed);
+			}
+			return parsed;
+		}
+	}
+
+	private static void run(String name, int threads, final Escaper escaper, final String[] corpus, final int[] order)
+			throws Exception {
+		for (int warm = 0; warm < 2; warm++) {
+			final long[] sink = new long[threads];
+			Thread[] ts = new Thread[threads];
+			long start = System.nanoTime();
+			for (int t = 0; t < threads; t++) {
+				final int me = t;
+				final int n = threads;
+				ts[t] = new Thread() {
+					public void run() {
+						long h = 0;
+						for (int i = me; i < order.length; i += n) {
+							h += escaper.escape(corpus[order[i]]).length();
+						}
+						sink[me] = h;
+					}
+				};
+				ts[t].start();
+			}
+			for (Thread t : ts) {
+				t.join();
+			}
+			long elapsed = System.nanoTime() - start;
+			if (warm == 1) {
+				System.out.println(name + " : " + (elapsed * threads / order.length) + " ns/call " + sink[0]);
+			}
+		}
+	}
+
+	private static String makeSql(Random r, boolean prepared) {
+		String t = TABLES[r.nextInt(TABLES.length)];
+		StringBuilder sb = new StringBuilder();
+		sb.append("/* ").append(t).append("Mapper.select").append(r.nextInt(1000)).append(" */\n");
+		sb.append("SELECT ");
+		int cols = 3 + r.nextInt(12);
+		for (int i = 0; i < cols; i++) {
+			if (i > 0)
+				sb.append(", ");
+			sb.append("a.").append(COLUMNS[r.nextInt(COLUMNS.length)]);
+		}
+		sb.append("\n  FROM ").append(t).append(" a JOIN ").append(TABLES[r.nextInt(TABLES.length)])
+				.append(" b ON a.id = b.").append(t).append("_id\n WHERE 1 = 1");
+		int conds = 1 + r.nextInt(6);
+		for (int i = 0; i < conds; i++) {
+			sb.append("\n   AND a.").append(COLUMNS[r.nextInt(COLUMNS.length)]);
+			if (prepared) {
+				sb.append(r.nextBoolean() ? " = ?" : " IN (?, ?, ?)");
+			} else {
+				switch (r.nextInt(3)) {
+				case 0:
+					sb.append(" = ").append(r.nextInt(100000));
+					break;
+				case 1:
+					sb.append(" = 'v").append(r.nextInt(100000)).append("'");
+					break;
+				default:
+					sb.append(" BETWEEN ").append(r.nextInt(100)).append(".5 AND ").append(r.nextInt(1000));
+				}
+			}
+		}
+		sb.append("\n -- paging\n ORDER BY a.id DESC");
+		return sb.toString();
+	}
+}
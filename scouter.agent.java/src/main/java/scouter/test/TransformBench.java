@@ -0,0 +1,94 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.test;
+
+import scouter.agent.AgentTransformer;
+import scouter.agent.Configure;
+import scouter.agent.TransformCache;
+import scouter.util.FileUtil;
+
+import java.io.File;
+import java.io.InputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Startup cost of the transformer : every class of the jars is offered to it as a class loading would do.
+ * <pre>
+ * java -cp scouter.agent.jar scouter.test.TransformBench app.jar [lib.jar ...]
+ * </pre>
+ * With _hook_class_cache_enabled, the second run shows the classes served from the cache.
+ */
+public class TransformBench {
+	public static void main(String[] args) throws Exception {
+		if (args.length == 0) {
+			System.out.println("usage: TransformBench <jar> [jar ...]");
+			return;
+		}
+		List<String> names = new ArrayList<String>();
+		List<byte[]> classes = new ArrayList<byte[]>();
+		URL[] urls = new URL[args.length];
+		for (int i = 0; i < args.length; i++) {
+			urls[i] = new File(args[i]).toURI().toURL();
+			JarFile jar = new JarFile(args[i]);
+			try {
+				Enumeration<JarEntry> en = jar.entries();
+				while (en.hasMoreElements()) {
+					JarEntry e = en.nextElement();
+					String name = e.getName();
+					if (name.endsWith(".class") == false || name.endsWith("module-info.class"))
+						continue;
+					InputStream in = jar.getInputStream(e);
+					try {
+						classes.add(FileUtil.readAll(in));
+					} finally {
+						FileUtil.close(in);
+					}
+					names.add(name.substring(0, name.length() - 6));
+				}
+			} finally {
+				jar.close();
+			}
+		}
+		ClassLoader loader = new URLClassLoader(urls, TransformBench.class.getClassLoader());
+		AgentTransformer transformer = new AgentTransformer();
+		Configure conf = Configure.getInstance();
+
+		boolean[] modes = { false, true, false, true };
+		for (int m = 0; m < modes.length; m++) {
+			conf._hook_transform_index_enabled = modes[m];
+			long scanned = AgentTransformer.getScannedCount();
+			long transformed = AgentTransformer.getTransformedCount();
+			long nanos = AgentTransformer.getElapsedNanos();
+			long hits = TransformCache.getInstance().getHitCount();
+			for (int i = 0; i < classes.size(); i++) {
+				transformer.transform(loader, names.get(i), null, null, classes.get(i));
+			}
+			System.out.println((modes[m] ? "indexed  " : "full scan") //
+					+ " scanned=" + (AgentTransformer.getScannedCount() - scanned) //
+					+ " transformed=" + (AgentTransformer.getTransformedCount() - transformed) //
+					+ " cached=" + (TransformCache.getInstance().getHitCount() - hits) //
+					+ " time=" + (AgentTransformer.getElapsedNanos() - nanos) / 1000000 + "ms");
+		}
+	}
+}
@@ -0,0 +1,133 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.agent.counter.meter;
+
+import org.junit.Test;
+
+import java.util.concurrent.CyclicBarrier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyMeterTest {
+
+    private static class ManualMeter extends LatencyMeter {
+        volatile long now = 1000;
+
+        ManualMeter() {
+            super(true);
+        }
+
+        @Override
+        protected long getTime() {
+            return now;
+        }
+    }
+
+    private static void assertNear(long expected, long actual) {
+        assertTrue("expected about " + expected + " but " + actual, Math.abs(expected - actual) <= expected * 3 / 100);
+    }
+
+    @Test
+    public void percentiles_of_small_values_are_exact() {
+        ManualMeter meter = new ManualMeter();
+        for (int v = 20; v >= 1; v--) {
+            meter.add(v, false);
+        }
+        assertArrayEquals(new int[] { 1, 10, 19, 20 }, meter.getPercentiles(1, 0.0, 0.5, 0.95, 1.0));
+    }
+
+    @Test
+    public void percentiles_of_known_values_over_seconds() {
+        ManualMeter meter = new ManualMeter();
+        for (int v = 1; v <= 1000; v++) {
+            meter.now = 1000 + v % 10;
+            meter.add(v, false);
+        }
+        meter.now = 1009;
+        int[] p = meter.getPercentiles(10, 0.5, 0.9, 0.99);
+        assertNear(500, p[0]);
+        assertNear(900, p[1]);
+        assertNear(990, p[2]);
+
+        int[] last = meter.getPercentiles(1, 0.5);
+        assertNear(499, last[0]);
+    }
+
+    @Test
+    public void counts_sums_and_errors_of_the_period() {
+        ManualMeter meter = new ManualMeter();
+        meter.add(100, 1, 2, 3, false);
+        meter.add(300, 1, 2, 3, true);
+        meter.now++;
+        meter.add(200, 0, 0, 0, false);
+        assertEquals(1, meter.getCount(1));
+        assertEquals(3, meter.getCount(2));
+        assertEquals(1, meter.getErrorCount(2));
+        assertEquals(600, meter.getSum(0, 2));
+        assertEquals(4, meter.getSum(2, 2));
+        assertEquals(200, meter.getAvg(0, 2));
+        assertEquals(1.5f, meter.getTps(2), 0.0001f);
+    }
+
+    @Test
+    public void slot_is_cleared_once_while_threads_add_to_its_new_second() throws Exception {
+        final ManualMeter meter = new ManualMeter();
+        final int threads = 8;
+        final int adds = 2000;
+        final CyclicBarrier start = new CyclicBarrier(threads + 1);
+        final CyclicBarrier end = new CyclicBarrier(threads + 1);
+        Thread[] t = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            t[i] = new Thread() {
+                public void run() {
+                    try {
+                        for (int round = 0; round < 20; round++) {
+                            start.await();
+                            for (int k = 0; k < adds; k++) {
+                                meter.add(k % 32, k % 10 == 0);
+                            }
+                            end.await();
+                        }
+                    } catch (Exception e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            };
+            t[i].setDaemon(true);
+            t[i].start();
+        }
+        for (int round = 0; round < 20; round++) {
+            // the same slot every round, holding the values of 301 seconds before
+            meter.now = 1000 + round * 301L;
+            start.await();
+            end.await();
+            assertEquals(threads * adds, meter.getCount(1));
+            assertEquals(threads * adds / 10, meter.getErrorCount(1));
+            int[] p = meter.getPercentiles(1, 0.0, 1.0);
+            assertEquals(0, p[0]);
+            assertEquals(31, p[1]);
+            assertEquals(0, meter.getCount(300) - meter.getCount(1));
+        }
+        for (Thread th : t) {
+            th.join();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.io;
+
+import scouter.lang.pack.XLogPack;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A chunk of xlogs stored column by column for the xlog export.
+ * <pre>
+ * byte    version
+ * decimal rows
+ * decimal texts, then for each : byte type, int hash, text
+ * decimal columns, then for each : text name, blob data
+ * </pre>
+ * The endTime column holds deltas from the previous row and the others are decimals
+ * except txid(long), ipaddr(blob), xType(byte) and profile(blob).
+ * A reader skips the columns it does not know.
+ */
+public class XLogColumnChunk {
+	public static final byte VERSION = 1;
+
+	public static final byte TEXT_SERVICE = 1;
+	public static final byte TEXT_ERROR = 2;
+
+	private static final String[] COLUMNS = { "endTime", "objHash", "service", "txid", "gxid", "caller", "elapsed",
+			"error", "cpu", "sqlCount", "sqlTime", "apicallCount", "apicallTime", "kbytes", "ipaddr",
+			"userid", "userAgent", "referer", "group", "login", "desc", "xType", "profile" };
+
+	private static final int END_TIME = 0, OBJ_HASH = 1, SERVICE = 2, TXID = 3, GXID = 4, CALLER = 5, ELAPSED = 6,
+			ERROR = 7, CPU = 8, SQL_COUNT = 9, SQL_TIME = 10, API_COUNT = 11, API_TIME = 12, KBYTES = 13, IPADDR = 14,
+			USERID = 15, USER_AGENT = 16, REFERER = 17, GROUP = 18, LOGIN = 19, DESC = 20, XTYPE = 21, PROFILE = 22;
+
+	private final boolean withProfile;
+	private DataOutputX[] cols;
+	private DataOutputX texts;
+	private int textCount;
+	private int rows;
+	private long lastTime;
+
+	public XLogColumnChunk(boolean withProfile) {
+		this.withProfile = withProfile;
+		clear();
+	}
+
+	private void clear() {
+		cols = new DataOutputX[withProfile ? COLUMNS.length : COLUMNS.length - 1];
+		for (int i = 0; i < cols.length; i++) {
+			cols[i] = new DataOutputX();
+		}
+		texts = new DataOutputX();
+		textCount = 0;
+		rows = 0;
+		lastTime = 0;
+	}
+
+	public int getRows() {
+		return rows;
+	}
+
+	public int getByteSize() {
+		int size = texts.getWriteSize();
+		for (int i = 0; i < cols.length; i++) {
+			size += cols[i].getWriteSize();
+		}
+		return size;
+	}
+
+	public void addText(byte type, int hash, String text) throws IOException {
+		texts.writeByte(type).writeInt(hash).writeText(text);
+		textCount++;
+	}
+
+	/**
+	 * @param profile the profile blocks of the xlog or null. it is ignored if the chunk is made without profiles.
+	 */
+	public void add(XLogPack x, byte[] profile) throws IOException {
+		cols[END_TIME].writeDecimal(x.endTime - lastTime);
+		lastTime = x.endTime;
+		cols[OBJ_HASH].writeDecimal(x.objHash);
+		cols[SERVICE].writeDecimal(x.service);
+		cols[TXID].writeLong(x.txid);
+		cols[GXID].writeDecimal(x.gxid);
+		cols[CALLER].writeDecimal(x.caller);
+		cols[ELAPSED].writeDecimal(x.elapsed);
+		cols[ERROR].writeDecimal(x.error);
+		cols[CPU].writeDecimal(x.cpu);
+		cols[SQL_COUNT].writeDecimal(x.sqlCount);
+		cols[SQL_TIME].writeDecimal(x.sqlTime);
+		cols[API_COUNT].writeDecimal(x.apicallCount);
+		cols[API_TIME].writeDecimal(x.apicallTime);
+		cols[KBYTES].writeDecimal(x.kbytes);
+		cols[IPADDR].writeBlob(x.ipaddr);
+		cols[USERID].writeDecimal(x.userid);
+		cols[USER_AGENT].writeDecimal(x.userAgent);
+		cols[REFERER].writeDecimal(x.referer);
+		cols[GROUP].writeDecimal(x.group);
+		cols[LOGIN].writeDecimal(x.login);
+		cols[DESC].writeDecimal(x.desc);
+		cols[XTYPE].writeByte(x.xType);
+		if (withProfile) {
+			cols[PROFILE].writeBlob(profile);
+		}
+		rows++;
+	}
+
+	/**
+	 * serialize the chunk and start a new one
+	 */
+	public byte[] toBytes() throws IOException {
+		DataOutputX out = new DataOutputX(getByteSize() + 256);
+		out.writeByte(VERSION);
+		out.writeDecimal(rows);
+		out.writeDecimal(textCount);
+		out.write(texts.toByteArray());
+		out.writeDecimal(cols.length);
+		for (int i = 0; i < cols.length; i++) {
+			out.writeText(COLUMNS[i]);
+			out.writeBlob(cols[i].toByteArray());
+		}
+		clear();
+		return out.toByteArray();
+	}
+
+	public static class Result {
+		public final List<XLogPack> xlogs;
+		/** profiles by txid, empty if the chunk has no profile column */
+		public final Map<Long, byte[]> profiles = new HashMap<Long, byte[]>();
+		public final Map<Integer, String> services = new HashMap<Integer, String>();
+		public final Map<Integer, String> errors = new HashMap<Integer, String>();
+
+		Result(List<XLogPack> xlogs) {
+			this.xlogs = xlogs;
+		}
+	}
+
+	public static Result read(byte[] chunk) throws IOException {
+		DataInputX in = new DataInputX(chunk);
+		byte version = in.readByte();
+		if (version != VERSION) {
+			throw new IOException("unknown xlog chunk version : " + version);
+		}
+		int rows = (int) in.readDecimal();
+		List<XLogPack> xlogs = new ArrayList<XLogPack>(rows);
+		for (int r = 0; r < rows; r++) {
+			xlogs.add(new XLogPack());
+		}
+		Result result = new Result(xlogs);
+
+		int textCount = (int) in.readDecimal();
+		for (int i = 0; i < textCount; i++) {
+			byte type = in.readByte();
+			int hash = in.readInt();
+			String text = in.readText();
+			if (type == TEXT_SERVICE) {
+				result.services.put(hash, text);
+			} else if (type == TEXT_ERROR) {
+				result.errors.put(hash, text);
+			}
+		}
+
+		int colCount = (int) in.readDecimal();
+		for (int c = 0; c < colCount; c++) {
+			String name = in.readText();
+			byte[] data = in.readBlob();
+			int col = indexOf(name);
+			if (col < 0)
+				continue;
+			DataInputX d = new DataInputX(data);
+			long time = 0;
+			for (int r = 0; r < rows; r++) {
+				XLogPack x = xlogs.get(r);
+				switch (col) {
+				case END_TIME:
+					time += d.readDecimal();
+					x.endTime = time;
+					break;
+				case OBJ_HASH: x.objHash = (int) d.readDecimal(); break;
+				case SERVICE: x.service = (int) d.readDecimal(); break;
+				case TXID: x.txid = d.readLong(); break;
+				case GXID: x.gxid = d.readDecimal(); break;
+				case CALLER: x.caller = d.readDecimal(); break;
+				case ELAPSED: x.elapsed = (int) d.readDecimal(); break;
+				case ERROR: x.error = (int) d.readDecimal(); break;
+				case CPU: x.cpu = (int) d.readDecimal(); break;
+				case SQL_COUNT: x.sqlCount = (int) d.readDecimal(); break;
+				case SQL_TIME: x.sqlTime = (int) d.readDecimal(); break;
+				case API_COUNT: x.apicallCount = (int) d.readDecimal(); break;
+				case API_TIME: x.apicallTime = (int) d.readDecimal(); break;
+				case KBYTES: x.kbytes = (int) d.readDecimal(); break;
+				case IPADDR: x.ipaddr = d.readBlob(); break;
+				case USERID: x.userid = d.readDecimal(); break;
+				case USER_AGENT: x.userAgent = (int) d.readDecimal(); break;
+				case REFERER: x.referer = (int) d.readDecimal(); break;
+				case GROUP: x.group = (int) d.readDecimal(); break;
+				case LOGIN: x.login = (int) d.readDecimal(); break;
+				case DESC: x.desc = (int) d.readDecimal(); break;
+				case XTYPE: x.xType = d.readByte(); break;
+				case PROFILE:
+					byte[] p = d.readBlob();
+					if (p != null && p.length > 0) {
+						result.profiles.put(x.txid, p);
+					}
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	private static int indexOf(String name) {
+		for (int i = 0; i < COLUMNS.length; i++) {
+			if (COLUMNS[i].equals(name))
+				return i;
+		}
+		return -1;
+	}
+}
@@ -72,6 +72,10 @@ public class ParamConstant {
     public static final String XLOG_RESULT_LAST_TXID = "lastTxid";
     public static final String XLOG_RESULT_HAS_MORE = "hasMore";
 
+    public static final String XLOG_EXPORT_MIN_ELAPSED = "minElapsed";
+    public static final String XLOG_EXPORT_ERROR_ONLY = "errorOnly";
+    public static final String XLOG_EXPORT_PROFILE = "profile";
+
     public static final String ACTIVE_SERVICE_STEP1 = "act1";
     public static final String ACTIVE_SERVICE_STEP2 = "act2";
     public static final String ACTIVE_SERVICE_STEP3 = "act3";
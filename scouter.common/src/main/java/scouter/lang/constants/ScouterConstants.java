@@ -13,6 +13,12 @@ public class ScouterConstants {
 
     public static final String TAG_OBJ_DETECTED_TYPE = "detected";
 
+    public static final String TAG_UDP_DROP_XLOG = "udpDropXLog";
+    public static final String TAG_UDP_DROP_PROFILE = "udpDropProfile";
+    public static final String TAG_UDP_DROP_OTHER = "udpDropOther";
+    public static final String TAG_UDP_LATENCY_AVG = "udpLatencyAvg";
+    public static final String TAG_UDP_LATENCY_MAX = "udpLatencyMax";
+
     public static final String SHORTENER_KEY_SPACE = "shortner";
 
     public static final String POD_NAME = "podName";
@@ -66,6 +66,9 @@ public class CounterConstants {
 	public final static String WAS_ACTIVE_SPEED = "ActiveSpeed";
 	public final static String WAS_ELAPSED_TIME = "ElapsedTime";
 	public final static String WAS_ELAPSED_90PCT = "Elapsed90%";
+	public final static String WAS_ELAPSED_50PCT = "Elapsed50%";
+	public final static String WAS_ELAPSED_95PCT = "Elapsed95%";
+	public final static String WAS_ELAPSED_99PCT = "Elapsed99%";
 	public final static String WAS_SERVICE_COUNT = "ServiceCount";
 	public final static String WAS_ERROR_RATE = "ErrorRate";
 	public final static String WAS_ACTIVE_SERVICE = "ActiveService";
@@ -164,10 +167,14 @@ public class CounterConstants {
 	public static final String WAS_SQL_TIME = "SqlTime";
 	public static final String WAS_SQL_TPS = "SqlTPS";
 	public static final String WAS_SQL_ERROR_RATE = "SqlErrorRate";
+	public static final String WAS_SQL_TIME_90PCT = "SqlTime90%";
+	public static final String WAS_SQL_TIME_99PCT = "SqlTime99%";
 
 	public static final String WAS_APICALL_TIME = "ApiTime";
 	public static final String WAS_APICALL_TPS = "ApiTPS";
 	public static final String WAS_APICALL_ERROR_RATE = "ApiErrorRate";
+	public static final String WAS_APICALL_TIME_90PCT = "ApiTime90%";
+	public static final String WAS_APICALL_TIME_99PCT = "ApiTime99%";
 	
 	public static final String BATCH_SERVICE = "BatchService";
 	public static final String BATCH_START = "BatchStart";
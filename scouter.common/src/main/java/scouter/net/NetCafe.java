@@ -25,6 +25,7 @@ public class NetCafe {
 	public final static byte[] CAFE = "CAFE".getBytes();
 	public final static byte[] CAFE_N = "CAFN".getBytes();
 	public final static byte[] CAFE_MTU = "CAFM".getBytes();
+	public final static byte[] CAFE_Z = "CAFZ".getBytes();
 	public final static byte[] JAVA = "JAVA".getBytes();
 	public final static byte[] JAVA_N = "JAVN".getBytes();
 	public final static byte[] JAVA_MTU = "JMTU".getBytes();
@@ -32,6 +33,7 @@ public class NetCafe {
 	public final static int UDP_CAFE = 0x43414645;
 	public final static int UDP_CAFE_N = 0x4341464e;
 	public final static int UDP_CAFE_MTU = 0x4341464d;
+	public final static int UDP_CAFE_Z = 0x4341465a;
 	public final static int UDP_JAVA = 0x4a415641;
 	public final static int UDP_JAVA_N = 0x4a41564e;
 	public final static int UDP_JAVA_MTU = 0x4a4d5455;
@@ -51,6 +53,7 @@ public class NetCafe {
 		System.out.println("CAFE = 0x" +Integer.toHexString(DataInputX.toInt(CAFE, 0)));
 		System.out.println("CAFN = 0x" +Integer.toHexString(DataInputX.toInt(CAFE_N, 0)));
 		System.out.println("CAFM = 0x" +Integer.toHexString(DataInputX.toInt(CAFE_MTU, 0)));
+		System.out.println("CAFZ = 0x" +Integer.toHexString(DataInputX.toInt(CAFE_Z, 0)));
 		System.out.println("JAVA = 0x" +Integer.toHexString(DataInputX.toInt(JAVA, 0)));
 		System.out.println("JAVAN = 0x" +Integer.toHexString(DataInputX.toInt(JAVA_N, 0)));
 		System.out.println("JMTU = 0x" +Integer.toHexString(DataInputX.toInt(JAVA_MTU, 0)));
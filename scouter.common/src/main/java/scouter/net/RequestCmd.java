@@ -215,6 +215,7 @@ public class RequestCmd {
 	public static final String EXPORT_OBJECT_TIME_COUNTER = "EXPORT_OBJECT_TIME_COUNTER";
 	public static final String EXPORT_OBJECT_REGULAR_COUNTER = "EXPORT_OBJECT_REGULAR_COUNTER";
 	public static final String EXPORT_APP_SUMMARY = "EXPORT_APP_SUMMARY";
+	public static final String EXPORT_XLOG = "EXPORT_XLOG";
 
 	public static final String GET_STACK_ANALYZER = "GET_STACK_ANALYZER";
 	public static final String GET_STACK_INDEX = "GET_STACK_INDEX";
@@ -24,6 +24,7 @@ import java.io.*;
 import java.net.DatagramSocket;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.DatagramChannel;
 import java.nio.channels.FileChannel;
 import java.util.Properties;
 
@@ -268,6 +269,16 @@ public class FileUtil {
 		return null;
 	}
 
+	public static DatagramChannel close(DatagramChannel dc) {
+		if (dc != null) {
+			try {
+				dc.close();
+			} catch (IOException e) {
+			}
+		}
+		return null;
+	}
+
 	public static String getJarLocation(Class class1) {
 		try {
 			String path = "" + class1.getResource("/" + class1.getName().replace('.', '/') + ".class");
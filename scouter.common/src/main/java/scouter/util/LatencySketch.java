@@ -0,0 +1,193 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.util;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Log-linear buckets of latencies in ms, as a HDR histogram with 2 significant bits more than the magnitude.
+ * The values below 32ms have their own bucket, the others are in 16 buckets per power of 2
+ * so that a bucket is at most 1/16 of its values wide. The values over 4.6 hours are in the last bucket.
+ * <p>
+ * A sketch is added to by many threads without a lock. Its buckets are allocated by a power of 2 at the first value,
+ * so a sketch of a service takes only the few ranges of its times. Sketches are merged by adding their buckets.
+ * <pre>
+ * bytes : decimal count of the buckets, (decimal index, decimal count) of each bucket not empty
+ * </pre>
+ */
+public class LatencySketch {
+	private static final int SUB = 32;
+	private static final int HALF = SUB / 2;
+	private static final int MAX_SHIFT = 19;
+
+	public static final int CELLS = SUB + MAX_SHIFT * HALF;
+
+	private static final int CHUNK_BITS = 4;
+	private static final int CHUNK = 1 << CHUNK_BITS;
+	private static final int CHUNKS = CELLS / CHUNK;
+
+	public static int index(long value) {
+		if (value < SUB)
+			return value < 0 ? 0 : (int) value;
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 4;
+		if (shift > MAX_SHIFT)
+			return CELLS - 1;
+		return SUB + (shift - 1) * HALF + (int) (value >> shift) - HALF;
+	}
+
+	/**
+	 * @return the middle of the values of the bucket
+	 */
+	public static long value(int index) {
+		if (index < SUB)
+			return index;
+		int j = index - SUB;
+		int shift = j / HALF + 1;
+		long low = (long) (j % HALF + HALF) << shift;
+		return low + ((1L << shift) - 1) / 2;
+	}
+
+	/**
+	 * @param counts count of each bucket
+	 * @param total sum of the counts
+	 * @param pct 0.0 ~ 1.0
+	 */
+	public static long percentile(long[] counts, long total, double pct) {
+		if (total <= 0)
+			return 0;
+		long rank = (long) Math.ceil(total * pct);
+		if (rank < 1)
+			rank = 1;
+		long sum = 0;
+		for (int i = 0; i < counts.length; i++) {
+			sum += counts[i];
+			if (sum >= rank)
+				return value(i);
+		}
+		return value(counts.length - 1);
+	}
+
+	private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<AtomicLongArray>(CHUNKS);
+
+	public void add(long value) {
+		add(index(value), 1);
+	}
+
+	private void add(int index, long count) {
+		AtomicLongArray c = chunks.get(index >> CHUNK_BITS);
+		if (c == null) {
+			chunks.compareAndSet(index >> CHUNK_BITS, null, new AtomicLongArray(CHUNK));
+			c = chunks.get(index >> CHUNK_BITS);
+		}
+		c.addAndGet(index & (CHUNK - 1), count);
+	}
+
+	public long[] getCounts() {
+		long[] counts = new long[CELLS];
+		for (int i = 0; i < CHUNKS; i++) {
+			AtomicLongArray c = chunks.get(i);
+			for (int k = 0; c != null && k < CHUNK; k++) {
+				counts[(i << CHUNK_BITS) + k] = c.get(k);
+			}
+		}
+		return counts;
+	}
+
+	public long getCount() {
+		long total = 0;
+		for (int i = 0; i < CHUNKS; i++) {
+			AtomicLongArray c = chunks.get(i);
+			for (int k = 0; c != null && k < CHUNK; k++) {
+				total += c.get(k);
+			}
+		}
+		return total;
+	}
+
+	public long getPercentile(double pct) {
+		long[] counts = getCounts();
+		long total = 0;
+		for (int i = 0; i < counts.length; i++) {
+			total += counts[i];
+		}
+		return percentile(counts, total, pct);
+	}
+
+	public LatencySketch merge(LatencySketch other) {
+		if (other == null)
+			return this;
+		for (int i = 0; i < CHUNKS; i++) {
+			AtomicLongArray c = other.chunks.get(i);
+			for (int k = 0; c != null && k < CHUNK; k++) {
+				long n = c.get(k);
+				if (n != 0) {
+					add((i << CHUNK_BITS) + k, n);
+				}
+			}
+		}
+		return this;
+	}
+
+	public byte[] toBytes() {
+		long[] counts = getCounts();
+		int n = 0;
+		for (int i = 0; i < counts.length; i++) {
+			if (counts[i] != 0)
+				n++;
+		}
+		DataOutputX out = new DataOutputX();
+		try {
+			out.writeDecimal(n);
+			for (int i = 0; i < counts.length; i++) {
+				if (counts[i] != 0) {
+					out.writeDecimal(i);
+					out.writeDecimal(counts[i]);
+				}
+			}
+		} catch (IOException e) {
+		}
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return null if the bytes are not of a sketch
+	 */
+	public static LatencySketch fromBytes(byte[] b) {
+		if (b == null || b.length == 0)
+			return null;
+		LatencySketch s = new LatencySketch();
+		try {
+			DataInputX in = new DataInputX(b);
+			int n = (int) in.readDecimal();
+			for (int i = 0; i < n; i++) {
+				int index = (int) in.readDecimal();
+				long count = in.readDecimal();
+				if (index < 0 || index >= CELLS)
+					return null;
+				s.add(index, count);
+			}
+		} catch (IOException e) {
+			return null;
+		}
+		return s;
+	}
+}
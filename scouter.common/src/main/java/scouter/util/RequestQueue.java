@@ -46,6 +46,15 @@ public class RequestQueue<V> {
         }
     }
 
+    public synchronized int drainTo(java.util.Collection<? super V> out, int max) {
+        int n = 0;
+        while (n < max && queue.size() > 0) {
+            out.add(queue.removeFirst());
+            n++;
+        }
+        return n;
+    }
+
     public synchronized V get(long timeout) {
 
         if (queue.size() > 0) {
@@ -0,0 +1,262 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.util;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded lock-free queue on a ring buffer for many producers and a consumer.
+ * Producers and consumers claim a slot by CAS and hand it over by the slot sequence,
+ * so a put never waits for a lock. Several consumers are safe as well.
+ * It has the same methods as RequestQueue and the capacity is rounded up to a power of 2.
+ */
+public class RingQueue<V> {
+
+	public enum WaitStrategy {
+		/** the consumer waits on a condition and producers signal only when a consumer is waiting */
+		BLOCKING,
+		/** the consumer spins, yields and then parks for a while. producers never signal */
+		SLEEPING,
+		/** the consumer spins and then yields. lowest latency, but burns a core while idle */
+		YIELDING;
+
+		public static WaitStrategy of(String name) {
+			if (name != null) {
+				for (WaitStrategy s : values()) {
+					if (s.name().equalsIgnoreCase(name.trim()))
+						return s;
+				}
+			}
+			return BLOCKING;
+		}
+	}
+
+	private static final int SPIN_TRIES = 100;
+	private static final long SLEEP_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+
+	private final AtomicReferenceArray<V> buffer;
+	private final AtomicLongArray sequence;
+	private final int mask;
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+	private final AtomicLong overflow = new AtomicLong();
+
+	private final WaitStrategy strategy;
+	private final AtomicInteger waiters = new AtomicInteger();
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition notEmpty = lock.newCondition();
+
+	public RingQueue(int capacity) {
+		this(capacity, WaitStrategy.BLOCKING);
+	}
+
+	public RingQueue(int capacity, WaitStrategy strategy) {
+		int size = 2;
+		while (size < capacity && size < (1 << 30)) {
+			size <<= 1;
+		}
+		this.buffer = new AtomicReferenceArray<V>(size);
+		this.sequence = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequence.set(i, i);
+		}
+		this.mask = size - 1;
+		this.strategy = strategy == null ? WaitStrategy.BLOCKING : strategy;
+	}
+
+	private boolean offer(V o) {
+		long pos = tail.get();
+		int idx;
+		while (true) {
+			idx = (int) (pos & mask);
+			long dif = sequence.get(idx) - pos;
+			if (dif == 0) {
+				if (tail.compareAndSet(pos, pos + 1))
+					break;
+				pos = tail.get();
+			} else if (dif < 0) {
+				return false;
+			} else {
+				pos = tail.get();
+			}
+		}
+		buffer.lazySet(idx, o);
+		sequence.set(idx, pos + 1);
+		if (strategy == WaitStrategy.BLOCKING && waiters.get() > 0) {
+			lock.lock();
+			try {
+				notEmpty.signal();
+			} finally {
+				lock.unlock();
+			}
+		}
+		return true;
+	}
+
+	private V poll() {
+		long pos = head.get();
+		int idx;
+		while (true) {
+			idx = (int) (pos & mask);
+			long dif = sequence.get(idx) - (pos + 1);
+			if (dif == 0) {
+				if (head.compareAndSet(pos, pos + 1))
+					break;
+				pos = head.get();
+			} else if (dif < 0) {
+				return null;
+			} else {
+				pos = head.get();
+			}
+		}
+		V v = buffer.get(idx);
+		buffer.lazySet(idx, null);
+		sequence.set(idx, pos + mask + 1);
+		return v;
+	}
+
+	public V get() {
+		V v = poll();
+		return v != null ? v : await(-1);
+	}
+
+	public V getNoWait() {
+		return poll();
+	}
+
+	public V get(long timeout) {
+		V v = poll();
+		if (v != null || timeout <= 0)
+			return v;
+		return await(TimeUnit.MILLISECONDS.toNanos(timeout));
+	}
+
+	/**
+	 * @param timeout nanoseconds, negative to wait forever
+	 */
+	private V await(long timeout) {
+		long deadline = System.nanoTime() + timeout;
+		V v;
+		if (strategy == WaitStrategy.BLOCKING) {
+			lock.lock();
+			waiters.incrementAndGet();
+			try {
+				while ((v = poll()) == null) {
+					if (timeout < 0) {
+						notEmpty.awaitUninterruptibly();
+					} else {
+						long remain = deadline - System.nanoTime();
+						if (remain <= 0)
+							return null;
+						try {
+							notEmpty.awaitNanos(remain);
+						} catch (InterruptedException e) {
+						}
+					}
+				}
+				return v;
+			} finally {
+				waiters.decrementAndGet();
+				lock.unlock();
+			}
+		}
+
+		int tries = 0;
+		while ((v = poll()) == null) {
+			if (timeout >= 0 && deadline - System.nanoTime() <= 0)
+				return null;
+			if (tries < SPIN_TRIES) {
+				tries++;
+			} else if (strategy == WaitStrategy.YIELDING || tries < SPIN_TRIES * 2) {
+				tries++;
+				Thread.yield();
+			} else {
+				LockSupport.parkNanos(SLEEP_NANOS);
+			}
+		}
+		return v;
+	}
+
+	public int drainTo(Collection<? super V> out, int max) {
+		int n = 0;
+		V v;
+		while (n < max && (v = poll()) != null) {
+			out.add(v);
+			n++;
+		}
+		return n;
+	}
+
+	/**
+	 * put even if the queue is full by removing the oldest ones.
+	 * @return false if any one is removed
+	 */
+	public boolean putForce(V o) {
+		if (offer(o))
+			return true;
+		overflow.incrementAndGet();
+		do {
+			poll();
+		} while (offer(o) == false);
+		return false;
+	}
+
+	public boolean put(V o) {
+		if (offer(o))
+			return true;
+		overflow.incrementAndGet();
+		return false;
+	}
+
+	public boolean putNotifySingle(V o) {
+		return put(o);
+	}
+
+	public void clear() {
+		while (poll() != null) {
+		}
+	}
+
+	public int size() {
+		long h = head.get();
+		long size = tail.get() - h;
+		return (int) Math.max(0, Math.min(size, mask + 1));
+	}
+
+	public int getCapacity() {
+		return mask + 1;
+	}
+
+	/**
+	 * @return count of the puts failed or forced on a full queue
+	 */
+	public long getOverflowCount() {
+		return overflow.get();
+	}
+
+	public WaitStrategy getWaitStrategy() {
+		return strategy;
+	}
+}
@@ -0,0 +1,237 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.util;
+
+/**
+ * The literals of a sql replaced by @{n} in one pass over the text, with the same result as EscapeLiteralSQL
+ * except that a '.' in a bind name(e.g. :obj.id) is kept where EscapeLiteralSQL drops it.
+ * A sql without a digit or a quotation is returned at the first scan without any allocation.
+ */
+public class SqlLiteralLexer {
+	private static final int NORMAL = 0;
+	private static final int COMMENT = 1;
+	private static final int ALPABET = 2;
+	private static final int NUMBER = 3;
+	private static final int QUTATION = 4;
+	private static final int COLON = 5;
+
+	private static final String SUBSTITUTE = "@";
+
+	private final String parsedSql;
+	private final String param;
+
+	private SqlLiteralLexer(String parsedSql, String param) {
+		this.parsedSql = parsedSql;
+		this.param = param;
+	}
+
+	public String getParsedSql() {
+		return parsedSql;
+	}
+
+	public String getParameter() {
+		return param;
+	}
+
+	/**
+	 * @return null if the sql has no literal
+	 */
+	public static SqlLiteralLexer escape(String sql) {
+		final int length = sql.length();
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if ((c >= '0' && c <= '9') || c == '\'')
+				break;
+			i++;
+		}
+		if (i == length)
+			return null;
+
+		StringBuilder out = new StringBuilder(length + 16);
+		StringBuilder param = new StringBuilder(32);
+		int status = NORMAL;
+		int count = 0;
+		int comment = 0;
+		for (int pos = 0; pos < length; pos++) {
+			char c = sql.charAt(pos);
+			switch (c) {
+			case '0':
+			case '1':
+			case '2':
+			case '3':
+			case '4':
+			case '5':
+			case '6':
+			case '7':
+			case '8':
+			case '9':
+				switch (status) {
+				case NORMAL:
+					if (param.length() > 0) {
+						param.append(',');
+					}
+					param.append(c);
+					out.append(SUBSTITUTE).append('{').append(++count).append('}');
+					status = NUMBER;
+					break;
+				case NUMBER:
+				case QUTATION:
+					param.append(c);
+					break;
+				default:
+					out.append(c);
+				}
+				break;
+			case ':':
+				if (status == QUTATION) {
+					param.append(c);
+				} else {
+					out.append(c);
+					if (status != COMMENT) {
+						status = COLON;
+					}
+				}
+				break;
+			case '.':
+				switch (status) {
+				case NORMAL:
+				case COMMENT:
+				case COLON:
+					out.append(c);
+					break;
+				case ALPABET:
+					out.append(c);
+					status = NORMAL;
+					break;
+				case NUMBER:
+				case QUTATION:
+					param.append(c);
+					break;
+				}
+				break;
+			case '-':
+				if (status == COMMENT) {
+					out.append(c);
+				} else if (status == QUTATION) {
+					param.append(c);
+				} else {
+					out.append(c);
+					if (next(sql, pos) == '-') {
+						int end = sql.indexOf('\n', pos + 1);
+						end = end < 0 ? length : end + 1;
+						out.append(sql, pos + 1, end);
+						pos = end - 1;
+					}
+					status = NORMAL;
+				}
+				break;
+			case '/':
+				if (status == COMMENT) {
+					out.append(c);
+				} else if (status == QUTATION) {
+					param.append(c);
+				} else if (next(sql, pos) == '*') {
+					pos++;
+					comment++;
+					out.append("/*");
+					status = COMMENT;
+				} else {
+					out.append(c);
+					status = NORMAL;
+				}
+				break;
+			case '*':
+				if (status == COMMENT) {
+					out.append(c);
+					if (next(sql, pos) == '/') {
+						out.append('/');
+						pos++;
+						if (--comment == 0) {
+							status = NORMAL;
+						}
+					}
+				} else if (status == QUTATION) {
+					param.append(c);
+				} else {
+					out.append(c);
+					status = NORMAL;
+				}
+				break;
+			case '\'':
+				switch (status) {
+				case NORMAL:
+					if (param.length() > 0) {
+						param.append(',');
+					}
+					param.append(c);
+					status = QUTATION;
+					break;
+				case COMMENT:
+					out.append(c);
+					break;
+				case ALPABET:
+				case NUMBER:
+					out.append(c);
+					status = QUTATION;
+					break;
+				case QUTATION:
+					param.append('\'');
+					out.append('\'').append(SUBSTITUTE).append('{').append(++count).append('}').append('\'');
+					status = NORMAL;
+					break;
+				}
+				break;
+			default:
+				switch (status) {
+				case COMMENT:
+					out.append(c);
+					break;
+				case ALPABET:
+					out.append(c);
+					if (isProgLetter(c) == false) {
+						status = NORMAL;
+					}
+					break;
+				case NUMBER:
+					out.append(c);
+					status = NORMAL;
+					break;
+				case QUTATION:
+					param.append(c);
+					break;
+				default:
+					status = isProgLetter(c) ? ALPABET : NORMAL;
+					out.append(c);
+				}
+			}
+		}
+		if (count == 0 && param.length() == 0 && out.length() == length)
+			return null;
+		return new SqlLiteralLexer(out.toString(), param.toString());
+	}
+
+	private static char next(String sql, int pos) {
+		return pos + 1 < sql.length() ? sql.charAt(pos + 1) : 0;
+	}
+
+	private static boolean isProgLetter(char c) {
+		if (c < 128)
+			return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_';
+		return Character.isLetter(c);
+	}
+}
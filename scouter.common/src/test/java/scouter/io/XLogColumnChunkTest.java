@@ -0,0 +1,60 @@
+package scouter.io;
+
+import org.junit.Test;
+import scouter.lang.pack.XLogPack;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class XLogColumnChunkTest {
+
+    private static XLogPack xlog(long endTime, long txid, int elapsed) {
+        XLogPack x = new XLogPack();
+        x.endTime = endTime;
+        x.txid = txid;
+        x.objHash = 100;
+        x.service = 200;
+        x.elapsed = elapsed;
+        x.error = elapsed > 1000 ? 300 : 0;
+        x.gxid = -txid;
+        x.ipaddr = new byte[] { 10, 0, 0, 1 };
+        x.xType = 2;
+        return x;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        XLogColumnChunk chunk = new XLogColumnChunk(true);
+        chunk.addText(XLogColumnChunk.TEXT_SERVICE, 200, "/order");
+        chunk.add(xlog(1000000L, 1L, 10), new byte[] { 1, 2, 3 });
+        chunk.add(xlog(999990L, Long.MIN_VALUE, 2000), null);
+        assertEquals(2, chunk.getRows());
+
+        XLogColumnChunk.Result result = XLogColumnChunk.read(chunk.toBytes());
+        assertEquals(0, chunk.getRows());
+        assertEquals(2, result.xlogs.size());
+        assertEquals("/order", result.services.get(200));
+
+        XLogPack x = result.xlogs.get(1);
+        assertEquals(999990L, x.endTime);
+        assertEquals(Long.MIN_VALUE, x.txid);
+        assertEquals(-Long.MIN_VALUE, x.gxid);
+        assertEquals(2000, x.elapsed);
+        assertEquals(300, x.error);
+        assertEquals(2, x.xType);
+        assertArrayEquals(new byte[] { 10, 0, 0, 1 }, x.ipaddr);
+
+        assertArrayEquals(new byte[] { 1, 2, 3 }, result.profiles.get(1L));
+        assertNull(result.profiles.get(Long.MIN_VALUE));
+    }
+
+    @Test
+    public void testWithoutProfile() throws Exception {
+        XLogColumnChunk chunk = new XLogColumnChunk(false);
+        chunk.add(xlog(1000L, 5L, 10), new byte[] { 1 });
+        XLogColumnChunk.Result result = XLogColumnChunk.read(chunk.toBytes());
+        assertEquals(5L, result.xlogs.get(0).txid);
+        assertEquals(0, result.profiles.size());
+    }
+}
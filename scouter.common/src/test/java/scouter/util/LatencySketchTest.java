@@ -0,0 +1,73 @@
+package scouter.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencySketchTest {
+
+    @Test
+    public void testIndexIsMonotonicAndPrecise() throws Exception {
+        int prev = 0;
+        for (long v = 0; v < 16 * 1000 * 1000L; v += (v < 1000 ? 1 : 997)) {
+            int index = LatencySketch.index(v);
+            assertTrue(index >= prev);
+            assertTrue(index < LatencySketch.CELLS);
+            if (v > 0) {
+                assertTrue(Math.abs(LatencySketch.value(index) - v) <= v / 16.0);
+            }
+            prev = index;
+        }
+        assertEquals(LatencySketch.CELLS - 1, LatencySketch.index(Long.MAX_VALUE));
+        assertEquals(0, LatencySketch.index(-1));
+    }
+
+    @Test
+    public void testPercentile() throws Exception {
+        LatencySketch s = new LatencySketch();
+        for (int i = 1; i <= 1000; i++) {
+            s.add(i);
+        }
+        assertEquals(1000, s.getCount());
+        assertTrue(Math.abs(s.getPercentile(0.5) - 500) <= 500 / 16);
+        assertTrue(Math.abs(s.getPercentile(0.99) - 990) <= 990 / 16);
+        assertEquals(0, new LatencySketch().getPercentile(0.9));
+    }
+
+    @Test
+    public void testMergeBytes() throws Exception {
+        LatencySketch a = new LatencySketch();
+        LatencySketch b = new LatencySketch();
+        for (int i = 0; i < 100; i++) {
+            a.add(10);
+            b.add(5000);
+        }
+        LatencySketch m = LatencySketch.fromBytes(a.toBytes()).merge(LatencySketch.fromBytes(b.toBytes()));
+        assertEquals(200, m.getCount());
+        assertEquals(10, m.getPercentile(0.5));
+        assertEquals(LatencySketch.value(LatencySketch.index(5000)), m.getPercentile(0.51));
+        assertNull(LatencySketch.fromBytes(new byte[0]));
+    }
+
+    @Test
+    public void testConcurrentAdd() throws Exception {
+        final LatencySketch s = new LatencySketch();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int i = 0; i < 100000; i++) {
+                        s.add(i % 5000);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(400000, s.getCount());
+    }
+}
@@ -0,0 +1,71 @@
+package scouter.util;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RingQueueTest {
+
+    @Test
+    public void testPutAndOverflow() throws Exception {
+        RingQueue<Integer> queue = new RingQueue<Integer>(3);
+        assertEquals(4, queue.getCapacity());
+        for (int i = 0; i < 4; i++) {
+            assertTrue(queue.put(i));
+        }
+        assertFalse(queue.put(4));
+        assertEquals(1, queue.getOverflowCount());
+        assertEquals(4, queue.size());
+
+        assertFalse(queue.putForce(5));
+        assertEquals(Integer.valueOf(1), queue.getNoWait());
+
+        List<Integer> out = new ArrayList<Integer>();
+        assertEquals(2, queue.drainTo(out, 2));
+        assertEquals(Integer.valueOf(2), out.get(0));
+        assertEquals(Integer.valueOf(3), out.get(1));
+        assertEquals(Integer.valueOf(5), queue.get());
+        assertNull(queue.get(10));
+    }
+
+    @Test
+    public void testManyProducers() throws Exception {
+        for (RingQueue.WaitStrategy strategy : RingQueue.WaitStrategy.values()) {
+            final RingQueue<Long> queue = new RingQueue<Long>(64, strategy);
+            final int producers = 4;
+            final int count = 10000;
+            Thread[] threads = new Thread[producers];
+            for (int p = 0; p < producers; p++) {
+                final long base = p * 1000000L;
+                threads[p] = new Thread() {
+                    public void run() {
+                        for (long k = 0; k < count; k++) {
+                            while (queue.put(base + k) == false) {
+                                Thread.yield();
+                            }
+                        }
+                    }
+                };
+                threads[p].start();
+            }
+            long[] last = new long[producers];
+            java.util.Arrays.fill(last, -1);
+            for (int n = 0; n < producers * count; n++) {
+                long v = queue.get();
+                int p = (int) (v / 1000000L);
+                assertEquals(last[p] + 1, v % 1000000L);
+                last[p] = v % 1000000L;
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertEquals(0, queue.size());
+        }
+    }
+}
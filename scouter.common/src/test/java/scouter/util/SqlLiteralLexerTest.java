@@ -0,0 +1,61 @@
+package scouter.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class SqlLiteralLexerTest {
+
+    @Test
+    public void testEscape() throws Exception {
+        assertNull(SqlLiteralLexer.escape("select a, b from tab where c = ? and d = :d"));
+        assertNull(SqlLiteralLexer.escape("select col1 from tab2"));
+
+        SqlLiteralLexer l = SqlLiteralLexer.escape("select * from t where a = 10 and b = 'x y' and c = 1.5");
+        assertEquals("select * from t where a = @{1} and b = '@{2}' and c = @{3}", l.getParsedSql());
+        assertEquals("10,'x y',1.5", l.getParameter());
+
+        l = SqlLiteralLexer.escape("update t set a = :obj.a1 where b = 2");
+        assertEquals("update t set a = :obj.a1 where b = @{1}", l.getParsedSql());
+        assertEquals("2", l.getParameter());
+
+        l = SqlLiteralLexer.escape("select 1/2 /* 3/4 '5' */ from dual -- 6\nwhere x = 7");
+        assertEquals("select @{1}/@{2} /* 3/4 '5' */ from dual -- 6\nwhere x = @{3}", l.getParsedSql());
+        assertEquals("1,2,7", l.getParameter());
+    }
+
+    @Test
+    public void testSameAsEscapeLiteralSQL() throws Exception {
+        String[] parts = { "select ", "a_1", " from ", "tab", " where ", "x", " = ", "1", "12.5", "'abc'", "''", "'it''s'",
+                ":v1", "?", "/* c 1 */", "/*", "*/", "-- 9\n", ".", ":.", ",", "(", ")", "N'n'", "-", "*", "/", " ", "\n", "한글" };
+        Random r = new Random(1);
+        for (int n = 0; n < 100000; n++) {
+            StringBuilder sb = new StringBuilder();
+            int len = 1 + r.nextInt(20);
+            for (int i = 0; i < len; i++) {
+                sb.append(parts[r.nextInt(parts.length)]);
+            }
+            String sql = sb.toString();
+            EscapeLiteralSQL old = new EscapeLiteralSQL(sql);
+            try {
+                old.process();
+            } catch (ArrayIndexOutOfBoundsException e) {
+                // EscapeLiteralSQL reads past the end on a trailing '-', '/' or '*'
+                continue;
+            }
+            SqlLiteralLexer l = SqlLiteralLexer.escape(sql);
+            String parsed = l == null ? sql : l.getParsedSql();
+            String expected = old.getParsedSql();
+            if (sql.indexOf(':') >= 0) {
+                // EscapeLiteralSQL drops a '.' after a bind name, only the dots may differ
+                parsed = parsed.replace(".", "");
+                expected = expected.replace(".", "");
+            }
+            assertEquals(expected, parsed);
+            assertEquals(old.getParameter(), l == null ? "" : l.getParameter());
+        }
+    }
+}
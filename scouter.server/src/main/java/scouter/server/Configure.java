@@ -207,14 +207,27 @@ public class Configure extends Thread {
 	public int net_tcp_agent_keepalive_interval_ms = 5000;
 	@ConfigDesc("Waiting time(ms) for agent session")
 	public int net_tcp_get_agent_connection_wait_ms = 1000;
+	@ConfigDesc("Max xlog count of a chunk of the xlog export")
+	public int net_xlog_export_chunk_rows = 1000;
+	@ConfigDesc("Max bytes of a chunk of the xlog export")
+	public int net_xlog_export_chunk_bytes = 1024 * 1024;
 	@ConfigDesc("UDP Packet Buffer Size")
 	public int net_udp_packet_buffer_size = 65535;
 	@ConfigDesc("UDP Receiver Buffer Size")
 	public int net_udp_so_rcvbuf_size = 1024 * 1024 * 4;
 	@ConfigDesc("")
 	public int _net_udp_worker_thread_count = 3;
+	@ConfigDesc("UDP receiver socket count.(restart required)\n" +
+			"1 : a socket with a receiver thread and the worker queue\n" +
+			"n > 1 : n channels bound to the port with SO_REUSEPORT. each decodes packs on its own thread")
+	public int net_udp_receiver_count = 1;
 	@ConfigDesc("TCP Thread Pool Size")
 	public int net_tcp_service_pool_size = 100;
+	@ConfigDesc("TCP service io mode.(restart required)\n" +
+			"blocking : a thread per client connection\n" +
+			"nio : idle client connections wait on a selector and requests are processed on the thread pool\n" +
+			"virtual : a virtual thread per client connection (java 21+ runtime)")
+	public String net_tcp_service_io_mode = "blocking";
 	@ConfigDesc("Activating Http Server")
 	public boolean net_http_server_enabled = false;
 	@ConfigDesc("Http Port")
@@ -287,6 +300,11 @@ public class Configure extends Thread {
 	public boolean compress_xlog_enabled = false;
 	@ConfigDesc("Activating profile data in zip file")
 	public boolean compress_profile_enabled = false;
+	@ConfigDesc("Store profiles in deflated blocks with a dictionary of the frequent hashes per block.\n" +
+			"It is applied to the new days and takes precedence over compress_profile_enabled.")
+	public boolean compress_profile_block_enabled = false;
+	@ConfigDesc("Raw bytes of profiles in a block of compress_profile_block_enabled")
+	public int compress_profile_block_size = 16 * 1024;
 	@ConfigDesc("")
 	public int _compress_write_buffer_block_count = 3;
 	@ConfigDesc("")
@@ -336,6 +354,29 @@ public class Configure extends Thread {
 	@ConfigDesc("Retaining date for automatic deletion. summary(stat) data only")
 	public int mgr_purge_sum_data_days = 60;
 
+	@ConfigDesc("Count of the threads deleting the expired data in parallel")
+	public int mgr_purge_thread_count = 2;
+	@ConfigDesc("Max megabytes per second to delete (0 : unlimited)")
+	public int mgr_purge_io_mb_per_sec = 64;
+	@ConfigDesc("Max files per second to delete (0 : unlimited)")
+	public int mgr_purge_io_files_per_sec = 1000;
+
+	@ConfigDesc("Journal the xlogs, profiles and realtime counters handed to the db writers.\n" +
+			"the ones not written at a crash or a stop are replayed at the next start.")
+	public boolean mgr_ingest_journal_enabled = false;
+	@ConfigDesc("Size(MB) of a journal segment file")
+	public int mgr_ingest_journal_segment_mb = 64;
+	@ConfigDesc("Interval(ms) to write the journal records gathered")
+	public int mgr_ingest_journal_sync_ms = 100;
+	@ConfigDesc("fsync the journal at every write")
+	public boolean mgr_ingest_journal_fsync_enabled = true;
+	@ConfigDesc("Seconds to keep a journal segment after all of its records are written,\n" +
+			"it should be longer than the index flush and the counter column block age")
+	public int mgr_ingest_journal_retire_sec = 660;
+	@ConfigDesc("Seconds after which the leading records of a journal segment written by the db writers are checkpointed\n" +
+			"and not replayed any more, it should be longer than the index flush and the counter column block age")
+	public int mgr_ingest_journal_checkpoint_sec = 60;
+
 	@ConfigDesc("Ignored log ID set")
 	@ConfigValueType(ValueType.COMMA_SEPARATED_VALUE)
 	public StringSet mgr_log_ignore_ids = new StringSet();
@@ -372,6 +413,9 @@ public class Configure extends Thread {
 	@ConfigDesc("change memory size of hash index for daily text db.(MB)" +
 			"[warn] modified this will break the database files.\nbackup old database files before change values.(restart required)")
 	public int _mgr_text_db_daily_index_mb = 1;
+	@ConfigDesc("off-heap memory size of the text cache per text type.(MB)(restart required)\n" +
+			"type:mb pairs separated by comma. '*' is for the other types")
+	public String mgr_text_cache_quota_mb = "sql:32,service:8,apicall:8,ua:4,*:1";
 
 	@ConfigDesc("change default memory size of key value store index.(MB)" +
 			"[warn] modified this will break the database files.\nbackup old database files before change values.(restart required)")
@@ -380,6 +424,33 @@ public class Configure extends Thread {
 	@ConfigDesc("change default memory size of xlog txid/gxid index.(MB)" +
 			"[warn] modified this will break the database files.\nbackup old database files before change values.(restart required)")
 	public int _mgr_xlog_id_index_mb = 1;
+	@ConfigDesc("size(MB) of each bloom filter of txid and gxid per day. 8MB keeps false positives under 1% up to 5 million xlogs a day.")
+	public int _mgr_xlog_id_bloom_mb = 8;
+
+	@ConfigDesc("change default memory size of xlog secondary index.(MB)" +
+			"[warn] modified this will break the database files.\nbackup old database files before change values.(restart required)")
+	public int _mgr_xlog_secondary_index_mb = 8;
+
+	@ConfigDesc("off-heap memory size of the realtime xlog cache.(MB)(restart required)")
+	public int _mgr_xlog_realtime_cache_mb = 16;
+
+	@ConfigDesc("store the realtime counters as a compressed column per object and counter.\n" +
+			"the values which are not numbers are still stored in rows. the other days are read as they were stored.")
+	public boolean mgr_counter_columnar_store_enabled = false;
+	@ConfigDesc("a column block of a counter is written after this time even if it is not full.(sec, max 600)\n" +
+			"the values of the blocks not written yet are lost when the server is killed.")
+	public int mgr_counter_columnar_block_sec = 10;
+
+	@ConfigDesc("keep min/max/avg/last/count rollups of the realtime counters for long range charts")
+	public boolean mgr_counter_rollup_enabled = true;
+	@ConfigDesc("rollup resolutions in seconds separated by comma. each one must divide a day.(restart required)")
+	@ConfigValueType(ValueType.COMMA_SEPARATED_VALUE)
+	public String mgr_counter_rollup_resolutions = "10,60,600";
+
+	@ConfigDesc("db types which read hash & key index files through memory mapped buffers.(restart required)\n" +
+			"available types : xlog, profile, text")
+	@ConfigValueType(ValueType.COMMA_SEPARATED_VALUE)
+	public StringSet mgr_index_mmap_db_types = new StringSet();
 
 	//external-link
 	@ConfigDesc("name of 3rd party ui")
@@ -400,6 +471,21 @@ public class Configure extends Thread {
 	//XLog
 	@ConfigDesc("XLog Writer Queue Size")
 	public int xlog_queue_size = 10000;
+	@ConfigDesc("max count of the days written by writers of their own at once, today is always given one.\n" +
+			"the xlogs of the other days arriving late are written by one shared writer.")
+	public int xlog_day_writer_max = 4;
+	@ConfigDesc("XLog Writer group commit mode.\nwrite several xlogs and their indexes at once instead of one by one.")
+	public boolean xlog_group_commit_enabled = false;
+	@ConfigDesc("max xlog count to write at once in group commit mode")
+	public int xlog_group_commit_max_count = 512;
+	@ConfigDesc("max waiting time(ms) to gather xlogs in group commit mode")
+	public int xlog_group_commit_max_wait_ms = 10;
+	@ConfigDesc("Write secondary indexes of objHash, service, ip, login and error for the xlog search.\n" +
+			"days(or the part of the day) written without this option are searched by scanning the time range.")
+	public boolean xlog_secondary_index_enabled = false;
+	@ConfigDesc("Keep bloom filters of txid and gxid per day so the lookups of an xlog not in the day are answered in memory.\n" +
+			"days(or the part of the day) written without this option are looked up in the index files.")
+	public boolean xlog_id_bloom_enabled = true;
 	@ConfigDesc("Ignored time(ms) in retrieving XLog in real time")
 	public int xlog_realtime_lower_bound_ms = 0;
 	@ConfigDesc("Ignored time(ms) in retrieving previous XLog")
@@ -410,6 +496,11 @@ public class Configure extends Thread {
 	//Profile
 	@ConfigDesc("Profile Writer Queue Size")
 	public int profile_queue_size = 1000;
+	@ConfigDesc("Waiting strategy of the ingest pipeline queues.(restart required)\n" +
+			"blocking : wait on a condition. producers signal only a waiting consumer\n" +
+			"sleeping : spin, yield and then park shortly\n" +
+			"yielding : spin and then yield. lowest latency but a core is busy while idle")
+	public String _mgr_ingest_queue_wait_strategy = "blocking";
 
 	@ConfigDesc("gxid keeping count in memory for XLog consequent sampling")
 	public int xlog_sampling_matcher_gxid_keep_memory_count = 500000;
@@ -440,6 +531,10 @@ public class Configure extends Thread {
 	//Service request options from client
 	@ConfigDesc("search xlog service option - max xlog count to search per request")
 	public int req_search_xlog_max_count = 500;
+	@ConfigDesc("search xlog service option - thread count to scan partitions of the time range in parallel.(restart required)")
+	public int xlog_search_parallelism = 4;
+	@ConfigDesc("search xlog service option - time range(minutes) of a partition scanned by a thread")
+	public int xlog_search_partition_minutes = 10;
 
 	@ConfigDesc("Path to telegraf config xml file")
 	public String input_telegraf_config_file = CONF_DIR + "scouter-telegraf.xml";
@@ -668,7 +763,14 @@ public class Configure extends Thread {
 		this.log_test_rate = getInt("log_test_rate", 0);
 
 		this.xlog_queue_size = getInt("xlog_queue_size", 10000);
+		this.xlog_day_writer_max = getInt("xlog_day_writer_max", 4);
+		this.xlog_group_commit_enabled = getBoolean("xlog_group_commit_enabled", false);
+		this.xlog_group_commit_max_count = getInt("xlog_group_commit_max_count", 512);
+		this.xlog_group_commit_max_wait_ms = getInt("xlog_group_commit_max_wait_ms", 10);
+		this.xlog_secondary_index_enabled = getBoolean("xlog_secondary_index_enabled", false);
+		this.xlog_id_bloom_enabled = getBoolean("xlog_id_bloom_enabled", true);
 		this.profile_queue_size = getInt("profile_queue_size", 1000);
+		this._mgr_ingest_queue_wait_strategy = getValue("_mgr_ingest_queue_wait_strategy", "blocking");
 		this.log_tcp_action_enabled = getBoolean("log_tcp_action_enabled", false);
 
 		this.xlog_sampling_matcher_gxid_keep_memory_count = getInt("xlog_sampling_matcher_gxid_keep_memory_count", 500000);
@@ -686,6 +788,8 @@ public class Configure extends Thread {
 		this.net_tcp_agent_so_timeout_ms = getInt("net_tcp_agent_so_timeout_ms", 60000);
 		this.net_tcp_agent_keepalive_interval_ms = getInt("net_tcp_agent_keepalive_interval_ms", 5000);
 		this.net_tcp_get_agent_connection_wait_ms = getInt("net_tcp_get_agent_connection_wait_ms", 1000);
+		this.net_xlog_export_chunk_rows = getInt("net_xlog_export_chunk_rows", 1000);
+		this.net_xlog_export_chunk_bytes = getInt("net_xlog_export_chunk_bytes", 1024 * 1024);
 		this.net_http_server_enabled = getBoolean("net_http_server_enabled", false);
 		this.net_http_port = getInt("net_http_port", NetConstants.SERVER_HTTP_PORT);
 		this.net_http_extweb_dir = getValue("net_http_extweb_dir", "./extweb");
@@ -727,6 +831,8 @@ public class Configure extends Thread {
 
 		this.compress_xlog_enabled = getBoolean("compress_xlog_enabled", false);
 		this.compress_profile_enabled = getBoolean("compress_profile_enabled", false);
+		this.compress_profile_block_enabled = getBoolean("compress_profile_block_enabled", false);
+		this.compress_profile_block_size = getInt("compress_profile_block_size", 16 * 1024);
 		this._compress_write_buffer_block_count = getInt("_compress_write_buffer_block_count", 3);
 		this._compress_dailycount_header_cache_size = getInt("_compress_dailycount_header_cache_size", 3);
 		this._compress_read_cache_block_count = getInt("_compress_read_cache_block_count", 3);
@@ -790,6 +896,15 @@ public class Configure extends Thread {
 				Math.max(mgr_purge_tag_counter_keep_days * 2, mgr_purge_xlog_keep_days * 2));
 
 		this.mgr_purge_sum_data_days = getInt("mgr_purge_sum_data_days", mgr_purge_sum_data_days);
+		this.mgr_ingest_journal_enabled = getBoolean("mgr_ingest_journal_enabled", false);
+		this.mgr_ingest_journal_segment_mb = getInt("mgr_ingest_journal_segment_mb", 64);
+		this.mgr_ingest_journal_sync_ms = getInt("mgr_ingest_journal_sync_ms", 100);
+		this.mgr_ingest_journal_fsync_enabled = getBoolean("mgr_ingest_journal_fsync_enabled", true);
+		this.mgr_ingest_journal_retire_sec = getInt("mgr_ingest_journal_retire_sec", 660);
+		this.mgr_ingest_journal_checkpoint_sec = getInt("mgr_ingest_journal_checkpoint_sec", 60);
+		this.mgr_purge_thread_count = getInt("mgr_purge_thread_count", 2);
+		this.mgr_purge_io_mb_per_sec = getInt("mgr_purge_io_mb_per_sec", 64);
+		this.mgr_purge_io_files_per_sec = getInt("mgr_purge_io_files_per_sec", 1000);
 
 		this.mgr_text_db_daily_service_enabled = getBoolean("mgr_text_db_daily_service_enabled", false);
 		this.mgr_text_db_daily_api_enabled = getBoolean("mgr_text_db_daily_api_enabled", false);
@@ -803,14 +918,23 @@ public class Configure extends Thread {
 		this._mgr_text_db_index_desc_mb = getInt("_mgr_text_db_index_desc_mb", 1);
 		this._mgr_text_db_index_hmsg_mb = getInt("_mgr_text_db_index_hmsg_mb", 1);
 		this._mgr_text_db_daily_index_mb = getInt("_mgr_text_db_daily_index_mb", 1);
+		this.mgr_text_cache_quota_mb = getValue("mgr_text_cache_quota_mb", "sql:32,service:8,apicall:8,ua:4,*:1");
 
 		this._mgr_kv_store_index_default_mb = getInt("_mgr_kv_store_index_default_mb", 8);
 		this._mgr_xlog_id_index_mb = getInt("_mgr_xlog_id_index_mb", 1);
+		this._mgr_xlog_id_bloom_mb = Math.min(256, Math.max(1, getInt("_mgr_xlog_id_bloom_mb", 8)));
+		this._mgr_xlog_secondary_index_mb = getInt("_mgr_xlog_secondary_index_mb", 8);
+		this._mgr_xlog_realtime_cache_mb = getInt("_mgr_xlog_realtime_cache_mb", 16);
+		this.mgr_counter_columnar_store_enabled = getBoolean("mgr_counter_columnar_store_enabled", false);
+		this.mgr_counter_columnar_block_sec = getInt("mgr_counter_columnar_block_sec", 10);
+		this.mgr_counter_rollup_enabled = getBoolean("mgr_counter_rollup_enabled", true);
+		this.mgr_counter_rollup_resolutions = getValue("mgr_counter_rollup_resolutions", "10,60,600");
 
 		this.ext_link_name = getValue("ext_link_name", "scouter-paper");
 		this.ext_link_url_pattern = getValue("ext_link_url_pattern", "http://my-scouter-paper-ip:6188/index.html#/paper?&address=localhost&port=6188&realtime=false&xlogElapsedTime=8000&instances=$[objHashes]&from=$[from]&to=$[to]&layout=my-layout-template-01");
 
 		this._net_udp_worker_thread_count = getInt("_net_udp_worker_thread_count", 3);
+		this.net_udp_receiver_count = getInt("net_udp_receiver_count", 1);
 		this.geoip_data_city_file = getValue("geoip_data_city_file", CONF_DIR + "GeoLiteCity.dat");
 		this.geoip_enabled = getBoolean("geoip_enabled", true);
 
@@ -818,14 +942,18 @@ public class Configure extends Thread {
 		this.sql_table_parsing_enabled = getBoolean("sql_table_parsing_enabled", true);
 
 		this.mgr_log_ignore_ids = getStringSet("mgr_log_ignore_ids", ",");
+		this.mgr_index_mmap_db_types = getStringSet("mgr_index_mmap_db_types", ",");
 
 		this.tagcnt_enabled = getBoolean("tagcnt_enabled", true);
 		
 		this.visitor_hourly_count_enabled = getBoolean("visitor_hourly_count_enabled", true);
 		
 		this.net_tcp_service_pool_size = getInt("net_tcp_service_pool_size", 100);
+		this.net_tcp_service_io_mode = getValue("net_tcp_service_io_mode", "blocking");
 
 		this.req_search_xlog_max_count = getInt("req_search_xlog_max_count", 500);
+		this.xlog_search_parallelism = getInt("xlog_search_parallelism", 4);
+		this.xlog_search_partition_minutes = getInt("xlog_search_partition_minutes", 10);
 
 		this.input_telegraf_enabled = getBoolean("input_telegraf_enabled", true);
 		this.input_telegraf_debug_enabled = getBoolean("input_telegraf_debug_enabled", false);
@@ -20,6 +20,7 @@ import scouter.server.account.AccountManager;
 import scouter.server.core.AutoDeleteScheduler;
 import scouter.server.core.TextCacheReset;
 import scouter.server.db.DBCtr;
+import scouter.server.db.IngestJournalWR;
 import scouter.server.http.HttpServer;
 import scouter.server.netio.data.NetDataProcessor;
 import scouter.server.netio.data.net.DataUdpServer;
@@ -55,6 +56,7 @@ public class Main {
 		HttpServer.load();
 		PlugInManager.load();
         BuiltInPluginManager.loadPlugins();
+		IngestJournalWR.replay();
 		NetDataProcessor.working();
 		AutoDeleteScheduler.getInstance();
 		Runtime.getRuntime().addShutdownHook(new Thread() {
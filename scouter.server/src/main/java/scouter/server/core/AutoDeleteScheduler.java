@@ -12,7 +12,6 @@ import scouter.util.SystemUtil;
 import scouter.util.ThreadUtil;
 
 import java.io.File;
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
@@ -58,6 +57,7 @@ public class AutoDeleteScheduler extends Thread {
 	}
 	
 	File dbDir;
+	PurgeEngine engine = PurgeEngine.getInstance();
 	
 	private AutoDeleteScheduler() {
 		applyConf();
@@ -132,7 +132,8 @@ public class AutoDeleteScheduler extends Thread {
 		int maxPercent = conf.mgr_purge_disk_usage_pct;
 		if (maxPercent > 0) {
 			long totalSpace = dbDir.getTotalSpace();
-			long freeSpace = dbDir.getUsableSpace();
+			// the bytes queued to delete are counted as free not to queue more days than needed
+			long freeSpace = dbDir.getUsableSpace() + engine.getPendingBytes();
 			double freePercent = (freeSpace * 100.0d) / totalSpace;
 			while ((100 - freePercent) > maxPercent - (100-maxPercent)*0.4) {
 				String yyyymmdd = getLongAgoDate(deletedProfileDays);
@@ -140,7 +141,7 @@ public class AutoDeleteScheduler extends Thread {
 					break;
 				}
 				deleteData(yyyymmdd, Mode.PROFILE);
-				freeSpace = dbDir.getUsableSpace();
+				freeSpace = dbDir.getUsableSpace() + engine.getPendingBytes();
 				freePercent = (freeSpace * 100.0d) / totalSpace;
 				deletedProfileDays.add(yyyymmdd);
 				Logger.println("S206-1", "[purge profile by][capacity]" + yyyymmdd);
@@ -153,7 +154,7 @@ public class AutoDeleteScheduler extends Thread {
 					break;
 				}
 				deleteData(yyyymmdd, Mode.XLOG);
-				freeSpace = dbDir.getUsableSpace();
+				freeSpace = dbDir.getUsableSpace() + engine.getPendingBytes();
 				freePercent = (freeSpace * 100.0d) / totalSpace;
 				deletedXLogDays.add(yyyymmdd);
 				Logger.println("S206-2", "[purge xlog by][capacity]" + yyyymmdd);
@@ -166,7 +167,7 @@ public class AutoDeleteScheduler extends Thread {
 					break;
 				}
 				deleteData(yyyymmdd, Mode.ALL);
-				freeSpace = dbDir.getUsableSpace();
+				freeSpace = dbDir.getUsableSpace() + engine.getPendingBytes();
 				freePercent = (freeSpace * 100.0d) / totalSpace;
 				deletedDays.add(yyyymmdd);
 				Logger.println("S206-3", "[purge counters by][capacity]" + yyyymmdd);
@@ -339,63 +340,42 @@ public class AutoDeleteScheduler extends Thread {
 	}
 
 	private void deleteData(String yyyymmdd, Mode mode) {
-		try {
-			File f = null;
-			if (mode == Mode.ALL) {
-				f = new File(dbDir, yyyymmdd);
-				deleteFiles(f);
-			} else if(mode == Mode.XLOG) {
-				f = new File(dbDir, yyyymmdd + XLogWR.dir());
-				deleteFiles(f);
-				f = new File(dbDir, yyyymmdd + ZipkinSpanWR.SPAN_DIR());
-				deleteFiles(f);
-			} else if (mode == Mode.PROFILE) {
-				f = new File(dbDir, yyyymmdd + XLogWR.dir() + "/xlog.profile");
-				deleteFiles(f);
-				f = new File(dbDir, yyyymmdd + XLogWR.dir() + "/xlog_profile.hfile");
-				deleteFiles(f);
-				f = new File(dbDir, yyyymmdd + XLogWR.dir() + "/xlog_profile.kfile");
-				deleteFiles(f);
-			} else if (mode == Mode.VISITOR) {
-				f = new File(dbDir, yyyymmdd + "/visit");
-				deleteFiles(f);
-			} else if (mode == Mode.TAG) {
-				f = new File(dbDir, yyyymmdd + "/tagcnt");
-				deleteFiles(f);
-			} else if (mode == Mode.TEXT) {
-				f = new File(dbDir, yyyymmdd + "/text");
-				deleteFiles(f);
-			} else if (mode == Mode.SUM) {
-				f = new File(dbDir, yyyymmdd + "/sum");
-				deleteFiles(f);
-			} else if (mode == Mode.REAL_COUNTER) {
-				f = new File(dbDir, yyyymmdd + "/counter/real.data");
-				deleteFiles(f);
-				f = new File(dbDir, yyyymmdd + "/counter/real.hfile");
-				deleteFiles(f);
-				f = new File(dbDir, yyyymmdd + "/counter/real.kfile");
-				deleteFiles(f);
-			} else {
-				throw new IllegalArgumentException("Not expected Mode : " + mode);
-			}
-
-			Logger.println("S206", "* Auto deletion... " + yyyymmdd + " mode : " + mode.name());
-
-		} catch (Throwable th) {
-			Logger.println("S207", "Failed auto deletion... " + yyyymmdd + " mode : " + mode.name() + "  " + th.toString());
+		String xlogDir = yyyymmdd + XLogWR.dir();
+		File[] targets;
+		if (mode == Mode.ALL) {
+			targets = files(yyyymmdd);
+		} else if(mode == Mode.XLOG) {
+			targets = files(xlogDir, yyyymmdd + ZipkinSpanWR.SPAN_DIR());
+		} else if (mode == Mode.PROFILE) {
+			targets = files(xlogDir + "/xlog.profile", xlogDir + "/xlog_profile.hfile", xlogDir + "/xlog_profile.kfile",
+					xlogDir + "/xlog.profileb", xlogDir + "/xlog.profileb.dict", xlogDir + "/xlog.profileb.next");
+		} else if (mode == Mode.VISITOR) {
+			targets = files(yyyymmdd + "/visit");
+		} else if (mode == Mode.TAG) {
+			targets = files(yyyymmdd + "/tagcnt");
+		} else if (mode == Mode.TEXT) {
+			targets = files(yyyymmdd + "/text");
+		} else if (mode == Mode.SUM) {
+			targets = files(yyyymmdd + "/sum");
+		} else if (mode == Mode.REAL_COUNTER) {
+			targets = files(yyyymmdd + "/counter/real.data", yyyymmdd + "/counter/real.hfile", yyyymmdd + "/counter/real.kfile",
+					yyyymmdd + "/counter/col.head", yyyymmdd + "/counter/col.data", yyyymmdd + "/counter/col.hfile",
+					yyyymmdd + "/counter/col.kfile");
+		} else {
+			throw new IllegalArgumentException("Not expected Mode : " + mode);
 		}
+		engine.submit(yyyymmdd + " mode : " + mode.name(), targets);
 	}
 
-	void deleteFiles(File file) throws IOException {
-		if (file.exists() == false) {
-			return;
-		}
-		if (file.isDirectory()) {
-			for (File c : file.listFiles()) {
-				deleteFiles(c);
+	private File[] files(String... paths) {
+		ArrayList<File> list = new ArrayList<File>();
+		for (String p : paths) {
+			File f = new File(dbDir, p);
+			if (f.exists()) {
+				list.add(f);
 			}
 		}
-		file.delete();
+		return list.toArray(new File[list.size()]);
 	}
 	
 	private String getLongAgoDate(Set<String> exceptDays) {
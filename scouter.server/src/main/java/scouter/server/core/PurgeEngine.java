@@ -0,0 +1,272 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.core;
+
+import scouter.server.Configure;
+import scouter.server.Logger;
+import scouter.util.ThreadUtil;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Deletes the expired data files on mgr_purge_thread_count threads, a file at a time,
+ * within the budget of mgr_purge_io_mb_per_sec and mgr_purge_io_files_per_sec so that the writers are not starved.
+ * The size of a target is walked once and kept until it is deleted.
+ * The progress is in ServerStat as purge.*
+ */
+public class PurgeEngine {
+
+	public static class Job {
+		public final String name;
+		final File[] targets;
+		final long bytes;
+		volatile long deletedBytes;
+
+		Job(String name, File[] targets, long bytes) {
+			this.name = name;
+			this.targets = targets;
+			this.bytes = bytes;
+		}
+	}
+
+	private static PurgeEngine instance;
+
+	public static synchronized PurgeEngine getInstance() {
+		if (instance == null) {
+			instance = new PurgeEngine();
+		}
+		return instance;
+	}
+
+	private final Configure conf = Configure.getInstance();
+	private final LinkedList<Job> queue = new LinkedList<Job>();
+	private final List<Job> running = new ArrayList<Job>();
+	private final Map<String, Long> sizes = new HashMap<String, Long>();
+	private int threads;
+
+	private long deletedFiles;
+	private long deletedBytes;
+
+	private long budgetTime = System.currentTimeMillis();
+	private double fileBudget;
+	private double byteBudget;
+
+	/**
+	 * queue the targets to delete. a job of the same name queued or running is not queued again.
+	 */
+	public void submit(String name, File... targets) {
+		synchronized (this) {
+			if (contains(queue, name) || contains(running, name))
+				return;
+		}
+		long bytes = 0;
+		for (File f : targets) {
+			bytes += sizeOf(f);
+		}
+		synchronized (this) {
+			queue.add(new Job(name, targets, bytes));
+			while (threads < Math.max(1, conf.mgr_purge_thread_count) && threads < queue.size() + running.size()) {
+				startWorker();
+			}
+			stat();
+		}
+	}
+
+	private static boolean contains(List<Job> jobs, String name) {
+		for (Job j : jobs) {
+			if (j.name.equals(name))
+				return true;
+		}
+		return false;
+	}
+
+	private void startWorker() {
+		threads++;
+		Thread t = new Thread() {
+			public void run() {
+				work();
+			}
+		};
+		t.setDaemon(true);
+		t.setName("scouter.server.core.PurgeEngine-" + threads);
+		t.start();
+	}
+
+	private void work() {
+		while (true) {
+			Job job;
+			synchronized (this) {
+				if (queue.isEmpty()) {
+					threads--;
+					return;
+				}
+				job = queue.removeFirst();
+				running.add(job);
+			}
+			try {
+				for (File f : job.targets) {
+					delete(job, f);
+				}
+				Logger.println("S206", "* Auto deletion... " + job.name);
+			} catch (Throwable th) {
+				Logger.println("S207", "Failed auto deletion... " + job.name + "  " + th.toString());
+			} finally {
+				synchronized (this) {
+					running.remove(job);
+					for (File f : job.targets) {
+						sizes.remove(f.getPath());
+					}
+					stat();
+				}
+			}
+		}
+	}
+
+	/**
+	 * depth first without recursion, the children of a directory are listed only when it is reached
+	 */
+	private void delete(Job job, File root) {
+		LinkedList<File> stack = new LinkedList<File>();
+		Set<File> listed = new HashSet<File>();
+		stack.add(root);
+		while (stack.isEmpty() == false) {
+			File f = stack.getLast();
+			if (f.isDirectory() && listed.add(f)) {
+				File[] children = f.listFiles();
+				if (children != null && children.length > 0) {
+					for (File c : children) {
+						stack.add(c);
+					}
+					continue;
+				}
+			}
+			stack.removeLast();
+			long len = f.isFile() ? f.length() : 0;
+			acquire(len);
+			if (f.delete() || f.exists() == false) {
+				job.deletedBytes += len;
+				synchronized (this) {
+					deletedFiles++;
+					deletedBytes += len;
+				}
+			} else {
+				Logger.println("S207", 10, "Failed auto deletion... " + f);
+			}
+		}
+	}
+
+	/**
+	 * wait for the budget of a file of the length. a big file is let go with a debt paid by the next ones.
+	 */
+	private void acquire(long bytes) {
+		while (true) {
+			long wait;
+			synchronized (this) {
+				long now = System.currentTimeMillis();
+				double sec = (now - budgetTime) / 1000.0;
+				budgetTime = now;
+				int filesPerSec = conf.mgr_purge_io_files_per_sec;
+				long bytesPerSec = conf.mgr_purge_io_mb_per_sec * 1024L * 1024L;
+				fileBudget = filesPerSec <= 0 ? 1 : Math.min(filesPerSec, fileBudget + sec * filesPerSec);
+				byteBudget = bytesPerSec <= 0 ? 0 : Math.min(bytesPerSec, byteBudget + sec * bytesPerSec);
+				if (fileBudget >= 1 && byteBudget >= 0) {
+					fileBudget -= 1;
+					if (bytesPerSec > 0) {
+						byteBudget -= bytes;
+					}
+					return;
+				}
+				double fileWait = fileBudget >= 1 ? 0 : (1 - fileBudget) * 1000 / filesPerSec;
+				double byteWait = byteBudget >= 0 ? 0 : -byteBudget * 1000 / bytesPerSec;
+				wait = (long) Math.max(1, Math.max(fileWait, byteWait));
+			}
+			ThreadUtil.sleep(Math.min(wait, 1000));
+		}
+	}
+
+	/**
+	 * bytes of the file or the directory. it is walked only the first time.
+	 */
+	public long sizeOf(File f) {
+		String key = f.getPath();
+		synchronized (this) {
+			Long size = sizes.get(key);
+			if (size != null)
+				return size;
+		}
+		long size = walk(f);
+		synchronized (this) {
+			sizes.put(key, size);
+		}
+		return size;
+	}
+
+	private static long walk(File root) {
+		long size = 0;
+		LinkedList<File> stack = new LinkedList<File>();
+		stack.add(root);
+		while (stack.isEmpty() == false) {
+			File f = stack.removeLast();
+			if (f.isDirectory()) {
+				File[] children = f.listFiles();
+				if (children != null) {
+					for (File c : children) {
+						stack.add(c);
+					}
+				}
+			} else {
+				size += f.length();
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * bytes queued or being deleted which are not freed yet
+	 */
+	public synchronized long getPendingBytes() {
+		long bytes = 0;
+		for (Job j : queue) {
+			bytes += j.bytes;
+		}
+		for (Job j : running) {
+			bytes += Math.max(0, j.bytes - j.deletedBytes);
+		}
+		return bytes;
+	}
+
+	private void stat() {
+		ServerStat.put("purge.queue", queue.size() + running.size());
+		ServerStat.put("purge.deleted.files", deletedFiles);
+		ServerStat.put("purge.deleted.bytes", deletedBytes);
+	}
+
+	void updateStat() {
+		synchronized (this) {
+			stat();
+		}
+		ServerStat.put("purge.pending.bytes", getPendingBytes());
+	}
+}
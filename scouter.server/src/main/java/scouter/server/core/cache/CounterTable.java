@@ -0,0 +1,283 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.server.core.cache;
+
+import scouter.lang.value.Value;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Latest counter values by objHash and timetype, then by the id of the interned counter name.
+ * Readers never lock : the object table and the slot arrays are replaced as a whole when they grow.
+ * A value expires when it is read after its expire time, so there is no sweeper.
+ * The slots of an array being replaced are set to MOVED one by one as they are copied,
+ * so a put racing with the copy fails its compareAndSet and is retried on the new array instead of being lost.
+ * An object dropped by a rehash keeps its slots MOVED and a put to it goes to the object added in its place.
+ */
+public class CounterTable {
+
+	private static class Slot {
+		final Value value;
+		final long expire;
+
+		Slot(Value value, long expire) {
+			this.value = value;
+			this.expire = expire;
+		}
+	}
+
+	private static final Slot MOVED = new Slot(null, Long.MIN_VALUE);
+
+	private static class ObjectCounters {
+		final long key;
+		volatile AtomicReferenceArray<Slot> slots;
+		volatile boolean dropped;
+
+		ObjectCounters(long key, int size) {
+			this.key = key;
+			this.slots = new AtomicReferenceArray<Slot>(size);
+		}
+
+		/**
+		 * copy the slots to a new array of the size, setting every old slot to MOVED.
+		 * it is called holding the lock of the object.
+		 */
+		AtomicReferenceArray<Slot> freeze(int size) {
+			AtomicReferenceArray<Slot> arr = slots;
+			AtomicReferenceArray<Slot> n = new AtomicReferenceArray<Slot>(size);
+			for (int i = 0; i < arr.length(); i++) {
+				n.set(i, arr.getAndSet(i, MOVED));
+			}
+			return n;
+		}
+
+		/**
+		 * @return false if all the values are expired, then the object is dropped and its slots are left MOVED
+		 */
+		synchronized boolean keep(long now) {
+			AtomicReferenceArray<Slot> n = freeze(slots.length());
+			for (int i = 0; i < n.length(); i++) {
+				Slot s = n.get(i);
+				if (s != null && s.expire >= now) {
+					slots = n;
+					return true;
+				}
+			}
+			dropped = true;
+			return false;
+		}
+
+		/**
+		 * a dropped object is not grown, its slots are left MOVED so that a put goes to the object added in its place.
+		 */
+		synchronized void grow(AtomicReferenceArray<Slot> arr, int id) {
+			if (slots == arr && dropped == false) {
+				slots = freeze(Math.max(id + 1, arr.length() * 2));
+			}
+		}
+	}
+
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] names = new String[64];
+
+	private volatile ObjectCounters[] table = new ObjectCounters[64];
+	private int objectCount;
+
+	private static long objectKey(int objHash, byte timetype) {
+		return ((long) objHash << 8) | (timetype & 0xff);
+	}
+
+	private static int indexOf(long key, int length) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h >>> 32) & (length - 1);
+	}
+
+	/**
+	 * @return the id of the counter name or -1 if it is unknown
+	 */
+	public int getId(String counter) {
+		Integer id = ids.get(counter);
+		return id == null ? -1 : id;
+	}
+
+	private int intern(String counter) {
+		Integer id = ids.get(counter);
+		if (id != null)
+			return id;
+		synchronized (ids) {
+			id = ids.get(counter);
+			if (id != null)
+				return id;
+			int next = ids.size();
+			String[] arr = names;
+			if (next >= arr.length) {
+				String[] n = new String[arr.length * 2];
+				System.arraycopy(arr, 0, n, 0, arr.length);
+				arr = n;
+			}
+			arr[next] = counter;
+			names = arr;
+			ids.put(counter, next);
+			return next;
+		}
+	}
+
+	private ObjectCounters find(long key) {
+		ObjectCounters[] t = table;
+		int i = indexOf(key, t.length);
+		while (true) {
+			ObjectCounters o = t[i];
+			if (o == null || o.key == key)
+				return o;
+			i = (i + 1) & (t.length - 1);
+		}
+	}
+
+	private ObjectCounters findOrAdd(long key, long now) {
+		ObjectCounters o = find(key);
+		if (o != null)
+			return o;
+		synchronized (this) {
+			o = find(key);
+			if (o != null)
+				return o;
+			ObjectCounters[] t = table;
+			if ((objectCount + 1) * 2 > t.length) {
+				t = rehash(t, now);
+			} else {
+				t = t.clone();
+			}
+			o = new ObjectCounters(key, Math.max(16, names.length));
+			insert(t, o);
+			objectCount++;
+			table = t;
+			return o;
+		}
+	}
+
+	/**
+	 * objects of which all the values are expired are left out
+	 */
+	private ObjectCounters[] rehash(ObjectCounters[] old, long now) {
+		int live = 0;
+		ObjectCounters[] kept = new ObjectCounters[old.length];
+		for (ObjectCounters o : old) {
+			if (o != null && o.keep(now)) {
+				kept[live++] = o;
+			}
+		}
+		int size = old.length;
+		while ((live + 1) * 2 > size) {
+			size <<= 1;
+		}
+		while (size > 64 && (live + 1) * 8 < size) {
+			size >>= 1;
+		}
+		ObjectCounters[] t = new ObjectCounters[size];
+		for (int i = 0; i < live; i++) {
+			insert(t, kept[i]);
+		}
+		objectCount = live;
+		return t;
+	}
+
+	private static void insert(ObjectCounters[] t, ObjectCounters o) {
+		int i = indexOf(o.key, t.length);
+		while (t[i] != null) {
+			i = (i + 1) & (t.length - 1);
+		}
+		t[i] = o;
+	}
+
+	public void put(int objHash, String counter, byte timetype, Value value, long keepTime) {
+		int id = intern(counter);
+		long now = System.currentTimeMillis();
+		long key = objectKey(objHash, timetype);
+		ObjectCounters o = findOrAdd(key, now);
+		Slot slot = new Slot(value, now + keepTime);
+		while (true) {
+			AtomicReferenceArray<Slot> arr = o.slots;
+			if (id >= arr.length()) {
+				if (o.dropped) {
+					o = findOrAdd(key, now);
+				} else {
+					o.grow(arr, id);
+				}
+				continue;
+			}
+			Slot s = arr.get(id);
+			if (s == MOVED) {
+				if (o.dropped) {
+					o = findOrAdd(key, now);
+				}
+				Thread.yield();
+				continue;
+			}
+			if (arr.compareAndSet(id, s, slot))
+				return;
+		}
+	}
+
+	/**
+	 * @return the slot of the id from the current array of the object
+	 */
+	private static Slot read(ObjectCounters o, int id) {
+		while (true) {
+			AtomicReferenceArray<Slot> arr = o.slots;
+			if (id >= arr.length())
+				return null;
+			Slot s = arr.get(id);
+			if (s != MOVED || o.dropped)
+				return s;
+			Thread.yield();
+		}
+	}
+
+	public Value get(int objHash, String counter, byte timetype) {
+		int id = getId(counter);
+		if (id < 0)
+			return null;
+		ObjectCounters o = find(objectKey(objHash, timetype));
+		if (o == null)
+			return null;
+		Slot s = read(o, id);
+		if (s == null || s.expire < System.currentTimeMillis())
+			return null;
+		return s.value;
+	}
+
+	public Map<String, Value> getObjectCounters(int objHash, byte timetype) {
+		Map<String, Value> map = new HashMap<String, Value>();
+		ObjectCounters o = find(objectKey(objHash, timetype));
+		if (o == null)
+			return map;
+		long now = System.currentTimeMillis();
+		String[] n = names;
+		int len = Math.min(o.slots.length(), n.length);
+		for (int i = 0; i < len; i++) {
+			Slot s = read(o, i);
+			// a name interned after the names were read is left out
+			if (s != null && s.expire >= now && n[i] != null) {
+				map.put(n[i], s.value);
+			}
+		}
+		return map;
+	}
+}
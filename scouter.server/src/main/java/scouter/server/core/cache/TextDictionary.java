@@ -0,0 +1,265 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.server.core.cache;
+
+import scouter.util.IntKeyLinkedMap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Size bounded text cache of a text type keeping the texts in an off-heap buffer.
+ * The buffer is cut into blocks and a text takes a chain of blocks, so freed space is reused without compaction.
+ * Eviction follows W-TinyLFU : a new text enters a small LRU window, and a text leaving the window
+ * is admitted to the main LRU only if it is accessed more frequently than the main's victim.
+ */
+public class TextDictionary {
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	public static final int BLOCK_SIZE = 64;
+
+	private static class Entry {
+		int block;
+		int length;
+		int blocks;
+	}
+
+	private final ByteBuffer arena;
+	private final int[] nextBlock;
+	private final int[] freeBlocks;
+	private int freeCount;
+
+	private final IntKeyLinkedMap<Entry> window = new IntKeyLinkedMap<Entry>();
+	private final IntKeyLinkedMap<Entry> main = new IntKeyLinkedMap<Entry>();
+	private final int windowMax;
+	private final int mainMax;
+	private int windowBlocks;
+	private int mainBlocks;
+	private final FrequencySketch sketch;
+
+	private long hit;
+	private long miss;
+
+	public TextDictionary(int bytes) {
+		int blocks = Math.max(64, bytes / BLOCK_SIZE);
+		this.arena = ByteBuffer.allocateDirect(blocks * BLOCK_SIZE);
+		this.nextBlock = new int[blocks];
+		this.freeBlocks = new int[blocks];
+		for (int i = 0; i < blocks; i++) {
+			freeBlocks[i] = blocks - 1 - i;
+		}
+		this.freeCount = blocks;
+		this.windowMax = Math.max(16, blocks / 100);
+		this.mainMax = blocks - windowMax;
+		this.sketch = new FrequencySketch(blocks / 2);
+	}
+
+	public synchronized String get(int hash) {
+		sketch.increment(hash);
+		Entry e = window.get(hash);
+		if (e != null) {
+			window.putLast(hash, e);
+		} else {
+			e = main.get(hash);
+			if (e == null) {
+				miss++;
+				return null;
+			}
+			main.putLast(hash, e);
+		}
+		hit++;
+		return new String(read(e), UTF8);
+	}
+
+	public synchronized boolean containsKey(int hash) {
+		return window.containsKey(hash) || main.containsKey(hash);
+	}
+
+	public synchronized void put(int hash, String text) {
+		if (window.containsKey(hash) || main.containsKey(hash))
+			return;
+		byte[] b = text.getBytes(UTF8);
+		int need = Math.max(1, (b.length + BLOCK_SIZE - 1) / BLOCK_SIZE);
+		if (need > windowMax) {
+			putMain(hash, b, need);
+			return;
+		}
+
+		while (windowBlocks + need > windowMax) {
+			int candidate = window.getFirstKey();
+			Entry c = window.remove(candidate);
+			windowBlocks -= c.blocks;
+			admit(candidate, c);
+		}
+
+		Entry e = new Entry();
+		e.length = b.length;
+		e.blocks = need;
+		e.block = write(b, need);
+		window.put(hash, e);
+		windowBlocks += need;
+	}
+
+	/**
+	 * a text larger than the window goes to the main directly, evicting the least recently used ones
+	 */
+	private void putMain(int hash, byte[] b, int need) {
+		if (need > mainMax)
+			return;
+		while (mainBlocks + need > mainMax) {
+			Entry v = main.remove(main.getFirstKey());
+			mainBlocks -= v.blocks;
+			free(v);
+		}
+		Entry e = new Entry();
+		e.length = b.length;
+		e.blocks = need;
+		e.block = write(b, need);
+		main.put(hash, e);
+		mainBlocks += need;
+	}
+
+	/**
+	 * move the candidate from the window to the main if it is more frequent than the victims it replaces
+	 */
+	private void admit(int candidate, Entry c) {
+		while (mainBlocks + c.blocks > mainMax && main.isEmpty() == false) {
+			int victim = main.getFirstKey();
+			if (sketch.frequency(candidate) <= sketch.frequency(victim)) {
+				free(c);
+				return;
+			}
+			Entry v = main.remove(victim);
+			mainBlocks -= v.blocks;
+			free(v);
+		}
+		main.put(candidate, c);
+		mainBlocks += c.blocks;
+	}
+
+	private int write(byte[] b, int need) {
+		int first = -1;
+		int prev = -1;
+		for (int i = 0; i < need; i++) {
+			int block = freeBlocks[--freeCount];
+			int off = i * BLOCK_SIZE;
+			int len = Math.min(BLOCK_SIZE, b.length - off);
+			for (int k = 0; k < len; k++) {
+				arena.put(block * BLOCK_SIZE + k, b[off + k]);
+			}
+			if (prev < 0) {
+				first = block;
+			} else {
+				nextBlock[prev] = block;
+			}
+			prev = block;
+		}
+		nextBlock[prev] = -1;
+		return first;
+	}
+
+	private byte[] read(Entry e) {
+		byte[] b = new byte[e.length];
+		int block = e.block;
+		for (int off = 0; off < e.length; off += BLOCK_SIZE) {
+			int len = Math.min(BLOCK_SIZE, e.length - off);
+			int pos = block * BLOCK_SIZE;
+			for (int k = 0; k < len; k++) {
+				b[off + k] = arena.get(pos + k);
+			}
+			block = nextBlock[block];
+		}
+		return b;
+	}
+
+	private void free(Entry e) {
+		int block = e.block;
+		for (int i = 0; i < e.blocks; i++) {
+			freeBlocks[freeCount++] = block;
+			block = nextBlock[block];
+		}
+	}
+
+	public synchronized int size() {
+		return window.size() + main.size();
+	}
+
+	public synchronized long getUsedBytes() {
+		return (long) (windowBlocks + mainBlocks) * BLOCK_SIZE;
+	}
+
+	public synchronized long getHitCount() {
+		return hit;
+	}
+
+	public synchronized long getMissCount() {
+		return miss;
+	}
+
+	/**
+	 * count-min sketch of 4 bit counters halved periodically so that old popularity fades out
+	 */
+	static class FrequencySketch {
+		private static final int[] SEEDS = { 0x97cb3127, 0xc2b2ae35, 0x85ebca6b, 0x27d4eb2f };
+		private final byte[][] table;
+		private final int mask;
+		private final int resetSize;
+		private int additions;
+
+		FrequencySketch(int expected) {
+			int width = 64;
+			while (width < expected && width < (1 << 22)) {
+				width <<= 1;
+			}
+			this.table = new byte[SEEDS.length][width];
+			this.mask = width - 1;
+			this.resetSize = width * 10;
+		}
+
+		private int indexOf(int key, int row) {
+			int h = key * SEEDS[row];
+			h ^= h >>> 16;
+			return h & mask;
+		}
+
+		void increment(int key) {
+			boolean added = false;
+			for (int row = 0; row < SEEDS.length; row++) {
+				int i = indexOf(key, row);
+				if (table[row][i] < 15) {
+					table[row][i]++;
+					added = true;
+				}
+			}
+			if (added && ++additions >= resetSize) {
+				for (byte[] r : table) {
+					for (int i = 0; i < r.length; i++) {
+						r[i] = (byte) (r[i] >> 1);
+					}
+				}
+				additions /= 2;
+			}
+		}
+
+		int frequency(int key) {
+			int min = 15;
+			for (int row = 0; row < SEEDS.length; row++) {
+				min = Math.min(min, table[row][indexOf(key, row)]);
+			}
+			return min;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.server.db.counter;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.lang.value.DecimalValue;
+import scouter.lang.value.DoubleValue;
+import scouter.lang.value.FloatValue;
+import scouter.lang.value.NumberValue;
+import scouter.lang.value.Value;
+import scouter.lang.value.ValueEnum;
+
+/**
+ * A block of a counter's values of an object.
+ * Times are written as delta-of-delta and values as the xor with the previous value (Gorilla encoding),
+ * so a regular counter takes a couple of bits per time and few bits per value.
+ * The block keeps the widest value type it got, and the values are restored to that type.
+ */
+public class CounterColumnBlock {
+
+	private static final int HEADER_SIZE = 1 + 4 + 8 + 8;
+
+	private byte valueType = ValueEnum.DECIMAL;
+	private int count;
+	private long firstTime;
+	private long minTime = Long.MAX_VALUE;
+	private long maxTime = Long.MIN_VALUE;
+
+	private long prevTime;
+	private long prevDelta;
+	private long prevBits;
+	private int prevLeading = -1;
+	private int prevTrailing;
+
+	private byte[] bits = new byte[64];
+	private int bitPos;
+
+	public static boolean isStorable(Value v) {
+		if (v == null)
+			return false;
+		switch (v.getValueType()) {
+		case ValueEnum.DECIMAL:
+		case ValueEnum.FLOAT:
+		case ValueEnum.DOUBLE:
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @param v DecimalValue, FloatValue or DoubleValue
+	 */
+	public void append(long time, Value v) {
+		byte type = v.getValueType();
+		if (rank(type) > rank(valueType)) {
+			valueType = type;
+		}
+		double value = ((NumberValue) v).doubleValue();
+		long valueBits = Double.doubleToRawLongBits(value);
+
+		if (count == 0) {
+			firstTime = time;
+			writeBits(time, 64);
+			writeBits(valueBits, 64);
+		} else {
+			long delta = time - prevTime;
+			writeTime(delta - prevDelta);
+			writeValue(valueBits ^ prevBits);
+			prevDelta = delta;
+		}
+		prevTime = time;
+		prevBits = valueBits;
+		minTime = Math.min(minTime, time);
+		maxTime = Math.max(maxTime, time);
+		count++;
+	}
+
+	private static int rank(byte type) {
+		switch (type) {
+		case ValueEnum.DOUBLE:
+			return 2;
+		case ValueEnum.FLOAT:
+			return 1;
+		default:
+			return 0;
+		}
+	}
+
+	private void writeTime(long dod) {
+		if (dod == 0) {
+			writeBits(0, 1);
+		} else if (dod >= -64 && dod < 64) {
+			writeBits(0x2, 2);
+			writeBits(dod, 7);
+		} else if (dod >= -256 && dod < 256) {
+			writeBits(0x6, 3);
+			writeBits(dod, 9);
+		} else if (dod >= -2048 && dod < 2048) {
+			writeBits(0xe, 4);
+			writeBits(dod, 12);
+		} else {
+			writeBits(0xf, 4);
+			writeBits(dod, 64);
+		}
+	}
+
+	private void writeValue(long xor) {
+		if (xor == 0) {
+			writeBits(0, 1);
+			return;
+		}
+		int leading = Math.min(31, Long.numberOfLeadingZeros(xor));
+		int trailing = Long.numberOfTrailingZeros(xor);
+		if (prevLeading >= 0 && leading >= prevLeading && trailing >= prevTrailing) {
+			writeBits(0x2, 2);
+			writeBits(xor >>> prevTrailing, 64 - prevLeading - prevTrailing);
+		} else {
+			int meaningful = 64 - leading - trailing;
+			writeBits(0x3, 2);
+			writeBits(leading, 5);
+			writeBits(meaningful - 1, 6);
+			writeBits(xor >>> trailing, meaningful);
+			prevLeading = leading;
+			prevTrailing = trailing;
+		}
+	}
+
+	private void writeBits(long value, int n) {
+		int need = (bitPos + n + 7) >>> 3;
+		if (need > bits.length) {
+			byte[] b = new byte[Math.max(need, bits.length * 2)];
+			System.arraycopy(bits, 0, b, 0, bits.length);
+			bits = b;
+		}
+		for (int i = n - 1; i >= 0; i--) {
+			if (((value >>> i) & 1) != 0) {
+				bits[bitPos >>> 3] |= (byte) (0x80 >>> (bitPos & 7));
+			}
+			bitPos++;
+		}
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	public long getFirstTime() {
+		return firstTime;
+	}
+
+	public long getMinTime() {
+		return minTime;
+	}
+
+	public long getMaxTime() {
+		return maxTime;
+	}
+
+	public int getByteSize() {
+		return HEADER_SIZE + ((bitPos + 7) >>> 3);
+	}
+
+	/**
+	 * valueType(1) count(4) minTime(8) maxTime(8) bits
+	 */
+	public byte[] toBytes() {
+		int len = (bitPos + 7) >>> 3;
+		byte[] out = new byte[HEADER_SIZE + len];
+		out[0] = valueType;
+		DataOutputX.toBytes(out, 1, count);
+		DataOutputX.toBytes(out, 5, minTime);
+		DataOutputX.toBytes(out, 13, maxTime);
+		System.arraycopy(bits, 0, out, HEADER_SIZE, len);
+		return out;
+	}
+
+	public static long getMinTime(byte[] block) {
+		return DataInputX.toLong(block, 5);
+	}
+
+	public static long getMaxTime(byte[] block) {
+		return DataInputX.toLong(block, 13);
+	}
+
+	public static class Points {
+		public final byte valueType;
+		public final long[] time;
+		public final double[] value;
+
+		Points(byte valueType, int count) {
+			this.valueType = valueType;
+			this.time = new long[count];
+			this.value = new double[count];
+		}
+
+		public int size() {
+			return time.length;
+		}
+
+		public Value getValue(int i) {
+			switch (valueType) {
+			case ValueEnum.DOUBLE:
+				return new DoubleValue(value[i]);
+			case ValueEnum.FLOAT:
+				return new FloatValue((float) value[i]);
+			default:
+				return new DecimalValue((long) value[i]);
+			}
+		}
+	}
+
+	public static Points decode(byte[] block) {
+		byte type = block[0];
+		int count = DataInputX.toInt(block, 1);
+		Points p = new Points(type, count);
+		if (count == 0)
+			return p;
+		BitReader in = new BitReader(block, HEADER_SIZE);
+
+		long time = in.read(64);
+		long valueBits = in.read(64);
+		long delta = 0;
+		int leading = 0;
+		int trailing = 0;
+		for (int i = 0; i < count; i++) {
+			if (i > 0) {
+				delta += readTime(in);
+				time += delta;
+				if (in.read(1) != 0) {
+					if (in.read(1) != 0) {
+						leading = (int) in.read(5);
+						int meaningful = (int) in.read(6) + 1;
+						trailing = 64 - leading - meaningful;
+					}
+					valueBits ^= in.read(64 - leading - trailing) << trailing;
+				}
+			}
+			p.time[i] = time;
+			p.value[i] = Double.longBitsToDouble(valueBits);
+		}
+		return p;
+	}
+
+	private static long readTime(BitReader in) {
+		if (in.read(1) == 0)
+			return 0;
+		if (in.read(1) == 0)
+			return signed(in.read(7), 7);
+		if (in.read(1) == 0)
+			return signed(in.read(9), 9);
+		if (in.read(1) == 0)
+			return signed(in.read(12), 12);
+		return in.read(64);
+	}
+
+	private static long signed(long v, int n) {
+		return (v << (64 - n)) >> (64 - n);
+	}
+
+	private static class BitReader {
+		private final byte[] b;
+		private int pos;
+
+		BitReader(byte[] b, int offset) {
+			this.b = b;
+			this.pos = offset << 3;
+		}
+
+		long read(int n) {
+			long v = 0;
+			for (int i = 0; i < n; i++) {
+				v = (v << 1) | ((b[pos >>> 3] >>> (7 - (pos & 7))) & 1);
+				pos++;
+			}
+			return v;
+		}
+	}
+}
@@ -0,0 +1,421 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.db.io;
+
+import scouter.io.DataInputX;
+import scouter.util.FileUtil;
+import scouter.util.IClose;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+/**
+ * An append only journal of the data handed to the db writers, kept in rotated segment files.
+ * The records are gathered in memory and written by one thread with a FileChannel write and one fsync per round(group commit).
+ * <pre>
+ * record : int length, int crc of type and data, byte type, data
+ * </pre>
+ * A segment counts its records not written by the db writers yet.
+ * It is deleted when it is rotated out, all its records are written and the files had time to be flushed.
+ * The leading records of a segment all written by the db writers at least checkpointMillis ago, so flushed to their files,
+ * are counted in a checkpoint file(id.done) of the segment.
+ * The records after the checkpoint of the segments left at a start are replayed, a torn record at the end of a segment is ignored.
+ * At a clean close, after the db writers closed their files, the segments all written are deleted at once.
+ */
+public class IngestJournal implements IClose {
+
+	public interface Replayer {
+		void replay(byte type, byte[] data, Record record);
+	}
+
+	/**
+	 * a record handed to a db writer
+	 */
+	public static class Record {
+		final Segment segment;
+		final int seq;
+
+		Record(Segment segment, int seq) {
+			this.segment = segment;
+			this.seq = seq;
+		}
+
+		/**
+		 * the record has been written by a db writer
+		 */
+		public void done() {
+			segment.done(seq);
+		}
+	}
+
+	static class Segment {
+		final long id;
+		final File file;
+		final File doneFile;
+		final AtomicInteger pending = new AtomicInteger();
+		volatile boolean closed;
+		volatile long doneTime;
+		boolean deleted;
+
+		int count;
+		private final BitSet doneSeqs = new BitSet();
+		private int mark;
+		private final ArrayDeque<long[]> marks = new ArrayDeque<long[]>();
+		volatile int checkpoint;
+
+		Segment(long id, File file) {
+			this.id = id;
+			this.file = file;
+			this.doneFile = new File(file.getParentFile(), id + DONE_SUFFIX);
+		}
+
+		void done(int seq) {
+			synchronized (this) {
+				doneSeqs.set(seq);
+				while (doneSeqs.get(mark)) {
+					mark++;
+				}
+			}
+			if (pending.decrementAndGet() <= 0 && closed) {
+				doneTime = System.currentTimeMillis();
+			}
+		}
+
+		/**
+		 * @return the count of the leading records done before the delay, to be the new checkpoint
+		 */
+		synchronized int durable(long now, long delay) {
+			if (marks.isEmpty() || marks.getLast()[1] < mark) {
+				marks.addLast(new long[] { now, mark });
+			}
+			int n = checkpoint;
+			while (marks.isEmpty() == false && marks.getFirst()[0] <= now - delay) {
+				n = (int) marks.removeFirst()[1];
+			}
+			return n;
+		}
+	}
+
+	private static final String SUFFIX = ".journal";
+	private static final String DONE_SUFFIX = ".done";
+	private static final int HEAD = 9;
+
+	private final File dir;
+	private final long segmentBytes;
+	private final long retireMillis;
+	private final long checkpointMillis;
+	private final boolean fsync;
+
+	private final LinkedList<Segment> segments = new LinkedList<Segment>();
+	private Segment current;
+	private FileChannel channel;
+	private long written;
+
+	private final Object writeLock = new Object();
+	private ByteBuffer buffer;
+	private ByteBuffer flushing;
+	private final CRC32 crc = new CRC32();
+
+	/**
+	 * @param segmentBytes size to rotate a segment at
+	 * @param retireMillis time to keep a segment after all its records are written
+	 * @param checkpointMillis time for a record written by a db writer to be flushed to its files
+	 * @param fsync force every round of writes to the disk
+	 */
+	public IngestJournal(File dir, long segmentBytes, long retireMillis, long checkpointMillis, boolean fsync) {
+		this.dir = dir;
+		this.segmentBytes = segmentBytes;
+		this.retireMillis = retireMillis;
+		this.checkpointMillis = checkpointMillis;
+		this.fsync = fsync;
+		this.buffer = ByteBuffer.allocate(1024 * 1024);
+		this.flushing = ByteBuffer.allocate(1024 * 1024);
+		dir.mkdirs();
+	}
+
+	/**
+	 * replay the records after the checkpoints of the segments left by the last run, the new records go to a new segment after them.
+	 * @return count of the records replayed
+	 */
+	public synchronized int replay(Replayer replayer) throws IOException {
+		File[] files = dir.listFiles();
+		if (files == null)
+			return 0;
+		List<File> list = new ArrayList<File>();
+		for (File f : files) {
+			if (f.getName().endsWith(SUFFIX)) {
+				list.add(f);
+			}
+		}
+		File[] sorted = list.toArray(new File[list.size()]);
+		Arrays.sort(sorted);
+		int count = 0;
+		for (File f : sorted) {
+			Segment seg = new Segment(idOf(f), f);
+			seg.closed = true;
+			seg.checkpoint = readCheckpoint(seg);
+			seg.mark = seg.checkpoint;
+			segments.add(seg);
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(f), 64 * 1024));
+			try {
+				while (true) {
+					int len;
+					try {
+						len = in.readInt();
+					} catch (EOFException e) {
+						break;
+					}
+					if (len <= 0 || len > segmentBytes + HEAD)
+						break;
+					int sum = in.readInt();
+					byte[] rec = new byte[len];
+					try {
+						in.readFully(rec);
+					} catch (EOFException e) {
+						break;
+					}
+					crc.reset();
+					crc.update(rec, 0, rec.length);
+					if ((int) crc.getValue() != sum)
+						break;
+					int seq = seg.count++;
+					if (seq < seg.checkpoint)
+						continue;
+					seg.pending.incrementAndGet();
+					replayer.replay(rec[0], Arrays.copyOfRange(rec, 1, rec.length), new Record(seg, seq));
+					count++;
+				}
+			} finally {
+				FileUtil.close(in);
+			}
+			if (seg.pending.get() == 0) {
+				seg.doneTime = System.currentTimeMillis();
+			}
+		}
+		return count;
+	}
+
+	private static int readCheckpoint(Segment seg) {
+		byte[] b = FileUtil.readAll(seg.doneFile);
+		return b != null && b.length >= 4 ? DataInputX.toInt(b, 0) : 0;
+	}
+
+	private void writeCheckpoint(Segment seg, int n) throws IOException {
+		synchronized (seg.doneFile) {
+			if (seg.deleted)
+				return;
+			RandomAccessFile out = new RandomAccessFile(seg.doneFile, "rw");
+			try {
+				out.seek(0);
+				out.writeInt(n);
+				if (fsync) {
+					out.getFD().sync();
+				}
+			} finally {
+				out.close();
+			}
+			seg.checkpoint = n;
+		}
+	}
+
+	private static void delete(Segment seg) {
+		synchronized (seg.doneFile) {
+			seg.deleted = true;
+			seg.file.delete();
+			seg.doneFile.delete();
+		}
+	}
+
+	private static long idOf(File f) {
+		String name = f.getName();
+		try {
+			return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+		} catch (NumberFormatException e) {
+			return 0;
+		}
+	}
+
+	/**
+	 * add a record to be written at the next round
+	 * @return the record, done() of it should be called when the record is written by a db writer
+	 */
+	public synchronized Record append(byte type, byte[] data) throws IOException {
+		if (current == null) {
+			rotate();
+		}
+		int len = data.length + 1;
+		if (buffer.remaining() < HEAD - 1 + len) {
+			ByteBuffer b = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + len + HEAD));
+			buffer.flip();
+			b.put(buffer);
+			buffer = b;
+		}
+		crc.reset();
+		crc.update(type);
+		crc.update(data, 0, data.length);
+		buffer.putInt(len);
+		buffer.putInt((int) crc.getValue());
+		buffer.put(type);
+		buffer.put(data);
+		written += HEAD - 1 + len;
+		current.pending.incrementAndGet();
+		return new Record(current, current.count++);
+	}
+
+	/**
+	 * the records appended while the previous segment is written go to the new one.
+	 * they are counted in the previous one which is not retired before them.
+	 */
+	private void rotate() throws IOException {
+		if (current != null) {
+			current.closed = true;
+			if (current.pending.get() <= 0) {
+				current.doneTime = System.currentTimeMillis();
+			}
+			FileUtil.close(channel);
+		}
+		long id = Math.max(System.currentTimeMillis(), segments.isEmpty() ? 0 : segments.getLast().id + 1);
+		current = new Segment(id, new File(dir, id + SUFFIX));
+		channel = new RandomAccessFile(current.file, "rw").getChannel();
+		written = 0;
+		segments.add(current);
+	}
+
+	/**
+	 * write the gathered records with one write and one fsync, and rotate the segment if it is full.
+	 * it is called by one thread in a loop.
+	 */
+	public void sync() throws IOException {
+		synchronized (writeLock) {
+			FileChannel ch;
+			ByteBuffer out;
+			synchronized (this) {
+				if (buffer.position() == 0)
+					return;
+				out = buffer;
+				buffer = flushing;
+				flushing = out;
+				ch = channel;
+			}
+			out.flip();
+			while (out.hasRemaining()) {
+				ch.write(out);
+			}
+			out.clear();
+			if (fsync) {
+				ch.force(false);
+			}
+			synchronized (this) {
+				if (written >= segmentBytes) {
+					rotate();
+				}
+			}
+		}
+	}
+
+	/**
+	 * delete the segments all written and kept long enough
+	 * @return count of the segments left
+	 */
+	public synchronized int retire() {
+		long now = System.currentTimeMillis();
+		while (segments.isEmpty() == false) {
+			Segment s = segments.getFirst();
+			if (s == current || s.closed == false || s.pending.get() > 0 || s.doneTime == 0 || now - s.doneTime < retireMillis)
+				break;
+			segments.removeFirst();
+			delete(s);
+		}
+		return segments.size();
+	}
+
+	/**
+	 * write the checkpoints of the segments of which more leading records have been written at least checkpointMillis ago.
+	 * the records are on the journal file before they are counted, as the journal is synced before the writers get them.
+	 */
+	public void checkpoint() throws IOException {
+		long now = System.currentTimeMillis();
+		Segment[] list;
+		synchronized (this) {
+			list = segments.toArray(new Segment[segments.size()]);
+		}
+		for (Segment s : list) {
+			int n = s.durable(now, checkpointMillis);
+			if (n > s.checkpoint) {
+				writeCheckpoint(s, n);
+			}
+		}
+	}
+
+	public synchronized long getPendingRecords() {
+		long n = 0;
+		for (Segment s : segments) {
+			n += Math.max(0, s.pending.get());
+		}
+		return n;
+	}
+
+	public void close() {
+		close(false);
+	}
+
+	/**
+	 * @param flushed the db writers are closed and their files are flushed,
+	 *                so the segments all written are deleted without waiting for their retire time
+	 */
+	public void close(boolean flushed) {
+		synchronized (writeLock) {
+			try {
+				sync();
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+			synchronized (this) {
+				FileUtil.close(channel);
+				channel = null;
+				if (flushed) {
+					Iterator<Segment> it = segments.iterator();
+					while (it.hasNext()) {
+						Segment s = it.next();
+						if (s.pending.get() <= 0) {
+							it.remove();
+							delete(s);
+						}
+					}
+					current = null;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.db.io;
+
+import scouter.io.FlushCtr;
+import scouter.io.IFlushable;
+import scouter.util.FileUtil;
+import scouter.util.IClose;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A bloom filter of long keys on a memory mapped .bloom file.
+ * A miss is answered in memory without walking the key file chain.
+ * <pre>
+ * head : byte 0xB1, byte 0x00, byte complete, byte hash count, int reserved, long bits
+ * </pre>
+ * The filter is complete only when it has been written from the first key of the file it guards.
+ * An incomplete filter answers that every key may be there.
+ */
+public class LongBloomFile implements IFlushable, IClose {
+	private final static int _headSize = 16;
+	private final static int _completePos = 2;
+	private final static int HASH_COUNT = 4;
+
+	private final File file;
+	private MappedByteBuffer buffer;
+	private final long bitMask;
+	private final boolean complete;
+	private boolean dirty;
+
+	/**
+	 * @param sizeMB size of a new filter, it is rounded down to a power of two
+	 * @param complete if a new filter guards all the keys
+	 */
+	public static LongBloomFile create(String path, int sizeMB, boolean complete) throws IOException {
+		return new LongBloomFile(new File(path + ".bloom"), sizeMB, complete);
+	}
+
+	/**
+	 * @return null if there is no filter
+	 */
+	public static LongBloomFile open(String path) throws IOException {
+		File f = new File(path + ".bloom");
+		if (f.exists() == false || f.length() <= _headSize)
+			return null;
+		return new LongBloomFile(f, 0, false);
+	}
+
+	/**
+	 * make the filter incomplete, the keys are added without it from now
+	 */
+	public static void markIncomplete(String path) throws IOException {
+		File f = new File(path + ".bloom");
+		if (f.exists() == false)
+			return;
+		RandomAccessFile raf = new RandomAccessFile(f, "rw");
+		try {
+			raf.seek(_completePos);
+			raf.writeByte(0);
+		} finally {
+			FileUtil.close(raf);
+		}
+	}
+
+	private LongBloomFile(File file, int sizeMB, boolean complete) throws IOException {
+		this.file = file;
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			long bits;
+			if (file.length() <= _headSize) {
+				bits = Long.highestOneBit(Math.max(1, sizeMB) * 1024L * 1024L * 8);
+				raf.setLength(0);
+				raf.setLength(_headSize + bits / 8);
+				raf.write(new byte[] { (byte) 0xB1, (byte) 0x00, (byte) (complete ? 1 : 0), (byte) HASH_COUNT });
+				raf.writeInt(0);
+				raf.writeLong(bits);
+			} else {
+				raf.seek(8);
+				bits = raf.readLong();
+			}
+			this.bitMask = bits - 1;
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _headSize + bits / 8);
+		} finally {
+			FileUtil.close(raf);
+		}
+		this.complete = buffer.get(_completePos) == 1;
+		FlushCtr.getInstance().regist(this);
+	}
+
+	public boolean isComplete() {
+		return complete;
+	}
+
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	public synchronized void add(long key) {
+		long h1 = mix(key);
+		long h2 = mix(h1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = (h1 + i * h2) & bitMask;
+			int pos = _headSize + (int) (bit >>> 3);
+			buffer.put(pos, (byte) (buffer.get(pos) | (1 << (bit & 7))));
+		}
+		dirty = true;
+	}
+
+	/**
+	 * @return false only if the key has never been added
+	 */
+	public boolean mightContain(long key) {
+		if (complete == false)
+			return true;
+		long h1 = mix(key);
+		long h2 = mix(h1) | 1;
+		for (int i = 0; i < HASH_COUNT; i++) {
+			long bit = (h1 + i * h2) & bitMask;
+			if ((buffer.get(_headSize + (int) (bit >>> 3)) & (1 << (bit & 7))) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	public long interval() {
+		return 4000;
+	}
+
+	public synchronized void flush() {
+		this.buffer.force();
+		this.dirty = false;
+	}
+
+	public void close() {
+		FlushCtr.getInstance().unregist(this);
+		flush();
+	}
+}
@@ -0,0 +1,119 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.db.io;
+
+import scouter.io.FlushCtr;
+import scouter.util.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * MemHashBlock on a memory mapped .hfile.
+ * The file format is the same as MemHashBlock so both can open the same file.
+ * Flushing forces only the dirty pages instead of rewriting the whole block.
+ */
+public class MappedMemHashBlock extends MemHashBlock {
+	private final static int _countPos = 4;
+	private final static int _memHeadReserved = 1024;
+	private final static int _keyLength = 5;
+
+	private MappedByteBuffer buffer;
+	private boolean dirty;
+
+	public MappedMemHashBlock(String path, int memSize) throws IOException {
+		this.path = path;
+		this.memBufferSize = memSize;
+		this.file = new File(this.path + ".hfile");
+		boolean isNew = this.file.exists() == false || this.file.length() < _memHeadReserved;
+
+		RandomAccessFile raf = new RandomAccessFile(this.file, "rw");
+		try {
+			if (isNew) {
+				raf.setLength(0);
+				raf.setLength(_memHeadReserved + memBufferSize);
+				raf.write(new byte[] { (byte) 0xCA, (byte) 0xFE });
+			} else {
+				this.memBufferSize = (int) (raf.length() - _memHeadReserved);
+			}
+			this.buffer = raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, _memHeadReserved + memBufferSize);
+		} finally {
+			FileUtil.close(raf);
+		}
+		this.count = this.buffer.getInt(_countPos);
+		this.capacity = memBufferSize / _keyLength;
+
+		FlushCtr.getInstance().regist(this);
+	}
+
+	@Override
+	public synchronized void flush() {
+		this.buffer.force();
+		this.dirty = false;
+	}
+
+	@Override
+	public boolean isDirty() {
+		return dirty;
+	}
+
+	private int _offset(int keyHash) {
+		return _keyLength * bucket(keyHash) + _memHeadReserved;
+	}
+
+	private long getLong5(int pos) {
+		return (((long) buffer.get(pos) << 32)
+				+ ((long) (buffer.get(pos + 1) & 255) << 24)
+				+ ((buffer.get(pos + 2) & 255) << 16)
+				+ ((buffer.get(pos + 3) & 255) << 8)
+				+ ((buffer.get(pos + 4) & 255) << 0));
+	}
+
+	private void putLong5(int pos, long v) {
+		buffer.put(pos, (byte) (v >>> 32));
+		buffer.put(pos + 1, (byte) (v >>> 24));
+		buffer.put(pos + 2, (byte) (v >>> 16));
+		buffer.put(pos + 3, (byte) (v >>> 8));
+		buffer.put(pos + 4, (byte) (v >>> 0));
+	}
+
+	@Override
+	public synchronized long get(int keyHash) throws IOException {
+		return getLong5(_offset(keyHash));
+	}
+
+	@Override
+	public synchronized void put(int keyHash, long value) throws IOException {
+		int pos = _offset(keyHash);
+		if (getLong5(pos) == 0) {
+			count += 1;
+			buffer.putInt(_countPos, count);
+		}
+		putLong5(pos, value);
+		this.dirty = true;
+	}
+
+	@Override
+	public void close() {
+		FlushCtr.getInstance().unregist(this);
+		flush();
+	}
+}
@@ -44,6 +44,9 @@ public class MemHashBlock implements IFlushable {
 		open(path, memSize);
 	}
 
+	protected MemHashBlock() {
+	}
+
 	public synchronized void flush() {
 		FileUtil.save(this.file, this.memBuffer);
 		this.dirty = false;
@@ -82,8 +85,14 @@ public class MemHashBlock implements IFlushable {
 	}
 
 	private int _offset(int keyHash) {
-		int bucketPos = (keyHash & Integer.MAX_VALUE) % capacity;
-		return _keyLength * bucketPos + _memHeadReserved;
+		return _keyLength * bucket(keyHash) + _memHeadReserved;
+	}
+
+	/**
+	 * hash slot of the key. keys of the same slot share one link chain in the key file.
+	 */
+	public int bucket(int keyHash) {
+		return (keyHash & Integer.MAX_VALUE) % capacity;
 	}
 
 	public synchronized long get(int keyHash) throws IOException {
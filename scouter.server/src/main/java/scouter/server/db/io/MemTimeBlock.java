@@ -78,9 +78,15 @@ public class MemTimeBlock implements IFlushable {
     }
 
     private int _offset(long time) {
+        return _keyLength * bucket(time) + _memHeadReserved;
+    }
+
+    /**
+     * 500ms time slot of the time. times of the same slot share one link chain in the key file.
+     */
+    public int bucket(long time) {
         int seconds = DateUtil.getDateMillis(time) / 500;
-        int hash = seconds % capacity;
-        return _keyLength * hash + _memHeadReserved;
+        return seconds % capacity;
     }
 
     public synchronized void flush() {
@@ -0,0 +1,398 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.db.io.zip;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.server.Configure;
+import scouter.util.FileUtil;
+import scouter.util.IClose;
+import scouter.util.LinkedMap;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Profiles packed into small blocks in the order they are written and each block is deflated on its own.
+ * The first profiles of the day(DICT_SIZE bytes) become a preset dictionary shared by all the following blocks,
+ * so the hashes of the hot sqls and methods are matched even in a small block.
+ * <pre>
+ * block  : int length, int raw length, boolean dictionary, deflated raw
+ * raw    : decimal count, decimal length of each record, records
+ * </pre>
+ * A position is (block number << 12 | record index), so a profile is read by inflating only its block.
+ * It is kept below 2^39 as the index stores it in 5 signed bytes, which allows 2^27 blocks.
+ * The offsets of the blocks are found from their lengths when the file is opened, and a torn block at the end is emptied.
+ * The block being filled is kept in memory and is readable at once, the callback of a record is run when its block is written.
+ * The block numbers are reserved ahead in .profileb.next before their positions are given out,
+ * and the numbers reserved but not written before a crash are filled with empty blocks at the next open,
+ * so a position indexed for a lost block is never given to another profile.
+ * Reading a block not cached inflates the whole block, which costs about 20 times a plain read(about 0.1ms),
+ * while a profile is read only when it is opened and the profiles of the same time are read from the cached block.
+ */
+public class ProfileBlockFile implements IClose {
+	private static final Hashtable<String, ProfileBlockFile> table = new Hashtable<String, ProfileBlockFile>();
+
+	public static ProfileBlockFile open(String file) throws IOException {
+		synchronized (table) {
+			ProfileBlockFile f = table.get(file);
+			if (f != null) {
+				f.refrence++;
+			} else {
+				f = new ProfileBlockFile(file);
+				table.put(file, f);
+			}
+			return f;
+		}
+	}
+
+	private static final int INDEX_BITS = 12;
+	private static final int MAX_RECORDS = (1 << INDEX_BITS) - 1;
+	private static final int MAX_BLOCKS = 1 << 27;
+	private static final int DICT_SIZE = 32 * 1024;
+	private static final int READ_CACHE = 128;
+	private static final int RESERVE_BLOCKS = 64;
+
+	private int refrence = 0;
+	private final String file;
+	private RandomAccessFile raf;
+	private long end;
+	private long[] offsets = new long[1024];
+	private int blockCount;
+
+	private final int blockSize;
+	private DataOutputX pending = new DataOutputX();
+	private int[] pendingLength = new int[256];
+	private int pendingCount;
+	private long pendingTime;
+	private final ArrayList<Runnable> pendingWritten = new ArrayList<Runnable>();
+	private int reserved;
+
+	private byte[] dict;
+	private DataOutputX dictSample = new DataOutputX();
+
+	private final LinkedMap<Long, byte[][]> readCache = new LinkedMap<Long, byte[][]>().setMax(READ_CACHE);
+
+	private ProfileBlockFile(String file) throws IOException {
+		this.file = file;
+		this.raf = new RandomAccessFile(file + ".profileb", "rw");
+		this.end = scan();
+		fill(readReserved());
+		this.blockSize = Configure.getInstance().compress_profile_block_size;
+		File dictFile = new File(file + ".profileb.dict");
+		if (dictFile.exists()) {
+			this.dict = FileUtil.readAll(dictFile);
+		}
+	}
+
+	private long scan() throws IOException {
+		long length = raf.length();
+		long pos = 0;
+		while (pos + 4 <= length) {
+			raf.seek(pos);
+			int len = raf.readInt();
+			if (len <= 0 || pos + 4 + len > length)
+				break;
+			addOffset(pos);
+			pos += 4 + len;
+		}
+		if (pos < length) {
+			// the number of the torn block is kept by an empty one, so its positions are not given to new profiles
+			raf.setLength(pos);
+			end = pos;
+			fill(blockCount + 1);
+			pos = end;
+		}
+		return pos;
+	}
+
+	/**
+	 * append empty blocks up to the block number
+	 */
+	private void fill(int blocks) throws IOException {
+		if (blockCount >= blocks)
+			return;
+		byte[] empty = encode(new DataOutputX().writeDecimal(0).toByteArray(), null);
+		raf.seek(end);
+		while (blockCount < blocks) {
+			raf.write(empty);
+			addOffset(end);
+			end += empty.length;
+		}
+	}
+
+	private int readReserved() {
+		File f = new File(file + ".profileb.next");
+		if (f.exists() == false)
+			return 0;
+		byte[] b = FileUtil.readAll(f);
+		return b != null && b.length >= 4 ? DataInputX.toInt(b, 0) : 0;
+	}
+
+	private void reserve(int blocks) throws IOException {
+		FileOutputStream out = new FileOutputStream(file + ".profileb.next");
+		try {
+			out.write(DataOutputX.toBytes(blocks));
+		} finally {
+			out.close();
+		}
+		reserved = blocks;
+	}
+
+	private void addOffset(long offset) {
+		if (blockCount == offsets.length) {
+			long[] n = new long[blockCount * 2];
+			System.arraycopy(offsets, 0, n, 0, blockCount);
+			offsets = n;
+		}
+		offsets[blockCount++] = offset;
+	}
+
+	/**
+	 * @return the position to read the data with
+	 */
+	public long write(byte[] data) throws IOException {
+		return write(data, null);
+	}
+
+	/**
+	 * @param written run when the block of the data is written to the file, or null
+	 * @return the position to read the data with
+	 */
+	public synchronized long write(byte[] data, Runnable written) throws IOException {
+		if (blockCount >= MAX_BLOCKS)
+			throw new IOException("too many profile blocks " + file);
+		if (pendingCount == 0) {
+			if (blockCount >= reserved) {
+				reserve(Math.min(MAX_BLOCKS, blockCount + RESERVE_BLOCKS));
+			}
+			pendingTime = System.currentTimeMillis();
+		}
+		if (pendingCount == pendingLength.length) {
+			int[] n = new int[pendingCount * 2];
+			System.arraycopy(pendingLength, 0, n, 0, pendingCount);
+			pendingLength = n;
+		}
+		pending.write(data);
+		pendingLength[pendingCount] = data.length;
+		long pos = (long) blockCount << INDEX_BITS | pendingCount;
+		pendingCount++;
+		if (written != null) {
+			pendingWritten.add(written);
+		}
+		if (pending.getWriteSize() >= blockSize || pendingCount >= MAX_RECORDS) {
+			flush();
+		}
+		return pos;
+	}
+
+	/**
+	 * write the pending block if it is older than the time
+	 */
+	public synchronized void flush(long maxAge) throws IOException {
+		if (pendingCount > 0 && System.currentTimeMillis() - pendingTime >= maxAge) {
+			flush();
+		}
+	}
+
+	public synchronized void flush() throws IOException {
+		if (pendingCount == 0 || raf == null)
+			return;
+		byte[] records = pending.toByteArray();
+		DataOutputX raw = new DataOutputX(records.length + pendingCount * 3 + 8);
+		raw.writeDecimal(pendingCount);
+		for (int i = 0; i < pendingCount; i++) {
+			raw.writeDecimal(pendingLength[i]);
+		}
+		raw.write(records);
+		byte[] block = encode(raw.toByteArray(), dict);
+		raf.seek(end);
+		raf.write(block);
+		addOffset(end);
+		end += block.length;
+		pending = new DataOutputX();
+		pendingCount = 0;
+		for (int i = 0; i < pendingWritten.size(); i++) {
+			pendingWritten.get(i).run();
+		}
+		pendingWritten.clear();
+		if (dict == null) {
+			sample(records);
+		}
+	}
+
+	private void sample(byte[] records) {
+		try {
+			dictSample.write(records, 0, Math.min(records.length, DICT_SIZE - dictSample.getWriteSize()));
+			if (dictSample.getWriteSize() >= DICT_SIZE) {
+				byte[] d = dictSample.toByteArray();
+				FileUtil.save(new File(file + ".profileb.dict"), d);
+				dict = d;
+				dictSample = null;
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	public byte[] read(long pos) throws IOException {
+		if (pos < 0)
+			return null;
+		long blockNo = pos >>> INDEX_BITS;
+		int index = (int) (pos & MAX_RECORDS);
+		byte[] block;
+		byte[] d;
+		synchronized (this) {
+			if (blockNo == blockCount) {
+				return index < pendingCount ? readPending(index) : null;
+			}
+			byte[][] records = readCache.get(blockNo);
+			if (records != null) {
+				return index < records.length ? records[index] : null;
+			}
+			if (raf == null || blockNo > blockCount)
+				return null;
+			raf.seek(offsets[(int) blockNo]);
+			int len = raf.readInt();
+			block = new byte[len];
+			raf.readFully(block);
+			d = dict;
+		}
+		byte[][] records = decode(block, d);
+		synchronized (this) {
+			readCache.put(blockNo, records);
+		}
+		return index < records.length ? records[index] : null;
+	}
+
+	private byte[] readPending(int index) {
+		byte[] buf = pending.toByteArray();
+		int off = 0;
+		for (int i = 0; i < index; i++) {
+			off += pendingLength[i];
+		}
+		byte[] out = new byte[pendingLength[index]];
+		System.arraycopy(buf, off, out, 0, out.length);
+		return out;
+	}
+
+	/**
+	 * @return the block with its length ahead
+	 */
+	public static byte[] encode(byte[] raw, byte[] dict) throws IOException {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try {
+			if (dict != null) {
+				deflater.setDictionary(dict);
+			}
+			deflater.setInput(raw);
+			deflater.finish();
+			DataOutputX out = new DataOutputX(raw.length / 2 + 64);
+			out.writeInt(0);
+			out.writeInt(raw.length);
+			out.writeBoolean(dict != null);
+			byte[] buf = new byte[8192];
+			while (deflater.finished() == false) {
+				int n = deflater.deflate(buf);
+				out.write(buf, 0, n);
+			}
+			byte[] block = out.toByteArray();
+			DataOutputX.toBytes(block, 0, block.length - 4);
+			return block;
+		} finally {
+			deflater.end();
+		}
+	}
+
+	/**
+	 * @param block the block without its length
+	 */
+	public static byte[][] decode(byte[] block, byte[] dict) throws IOException {
+		int rawLen = DataInputX.toInt(block, 0);
+		boolean useDict = block[4] != 0;
+		if (useDict && dict == null) {
+			throw new IOException("no dictionary for " + rawLen + " bytes block");
+		}
+		Inflater inflater = new Inflater();
+		byte[] raw = new byte[rawLen];
+		try {
+			inflater.setInput(block, 5, block.length - 5);
+			int n = 0;
+			while (n < rawLen) {
+				int r = inflater.inflate(raw, n, rawLen - n);
+				if (r == 0) {
+					if (inflater.needsDictionary() && useDict) {
+						inflater.setDictionary(dict);
+					} else if (inflater.finished() || inflater.needsInput()) {
+						break;
+					}
+				}
+				n += r;
+			}
+		} catch (DataFormatException e) {
+			throw new IOException(e);
+		} finally {
+			inflater.end();
+		}
+		DataInputX in = new DataInputX(raw);
+		int count = (int) in.readDecimal();
+		int[] lens = new int[count];
+		for (int i = 0; i < count; i++) {
+			lens[i] = (int) in.readDecimal();
+		}
+		byte[][] records = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			records[i] = in.read(lens[i]);
+		}
+		return records;
+	}
+
+	public void close() {
+		synchronized (table) {
+			if (this.refrence == 0) {
+				table.remove(this.file);
+				synchronized (this) {
+					try {
+						flush();
+					} catch (IOException e) {
+						e.printStackTrace();
+					}
+					try {
+						if (raf != null)
+							raf.close();
+					} catch (IOException e) {
+					}
+					raf = null;
+				}
+			} else {
+				this.refrence--;
+			}
+		}
+	}
+
+	public static boolean exists(String file) {
+		return new File(file + ".profileb").exists();
+	}
+}
@@ -0,0 +1,217 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+package scouter.server.tagcnt.core;
+
+import scouter.lang.value.DecimalValue;
+import scouter.lang.value.NullValue;
+import scouter.lang.value.TextHashValue;
+import scouter.lang.value.TextValue;
+import scouter.lang.value.Value;
+import scouter.util.DateUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Counts of the tag values summed per minute in an open addressing table of primitive columns.
+ * Adding a count allocates nothing. The Values are made only when the counts are flushed.
+ * Not thread safe. It is used by a counting thread.
+ */
+public class TagCountBuffer {
+
+	public static final byte NULL = 1;
+	public static final byte TEXT_HASH = 2;
+	public static final byte DECIMAL = 3;
+	public static final byte TEXT = 4;
+
+	public interface Sink {
+		void count(long time, String objType, long tagKey, Value value, float count);
+	}
+
+	private final int maxSize;
+	private int capacity;
+	private int size;
+	private int[] minute;
+	private int[] objType;
+	private long[] tagKey;
+	private byte[] kind;
+	private long[] value;
+	private float[] count;
+
+	private final Map<String, Integer> objTypeIds = new HashMap<String, Integer>();
+	private final List<String> objTypes = new ArrayList<String>();
+	private final Map<String, Integer> textIds = new HashMap<String, Integer>();
+	private final List<String> texts = new ArrayList<String>();
+
+	/**
+	 * @param maxSize count of the entries to flush all at
+	 */
+	public TagCountBuffer(int maxSize) {
+		this.maxSize = maxSize;
+		allocate(1024);
+	}
+
+	private void allocate(int cap) {
+		capacity = cap;
+		minute = new int[cap];
+		objType = new int[cap];
+		tagKey = new long[cap];
+		kind = new byte[cap];
+		value = new long[cap];
+		count = new float[cap];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int objTypeId(String name) {
+		Integer id = objTypeIds.get(name);
+		if (id == null) {
+			id = objTypes.size();
+			objTypes.add(name);
+			objTypeIds.put(name, id);
+		}
+		return id;
+	}
+
+	public int textId(String text) {
+		Integer id = textIds.get(text);
+		if (id == null) {
+			id = texts.size();
+			texts.add(text);
+			textIds.put(text, id);
+		}
+		return id;
+	}
+
+	private static int hash(int min, int type, long key, byte k, long v) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		h ^= v * 0xC2B2AE3D27D4EB4FL;
+		h ^= ((long) min << 32 | type) * 0x165667B19E3779F9L;
+		h ^= k;
+		return (int) (h ^ (h >>> 29) ^ (h >>> 47));
+	}
+
+	/**
+	 * @param objTypeId id from objTypeId()
+	 * @param valueKind NULL, TEXT_HASH, DECIMAL or TEXT(the value is an id from textId())
+	 */
+	public void add(long time, int objTypeId, long key, byte valueKind, long v, float cnt) {
+		int min = (int) (time / DateUtil.MILLIS_PER_MINUTE);
+		int mask = capacity - 1;
+		int i = hash(min, objTypeId, key, valueKind, v) & mask;
+		while (kind[i] != 0) {
+			if (minute[i] == min && tagKey[i] == key && value[i] == v && objType[i] == objTypeId && kind[i] == valueKind) {
+				count[i] += cnt;
+				return;
+			}
+			i = (i + 1) & mask;
+		}
+		minute[i] = min;
+		objType[i] = objTypeId;
+		tagKey[i] = key;
+		kind[i] = valueKind;
+		value[i] = v;
+		count[i] = cnt;
+		if (++size * 2 > capacity) {
+			grow();
+		}
+	}
+
+	private void grow() {
+		int[] oMinute = minute;
+		int[] oObjType = objType;
+		long[] oTagKey = tagKey;
+		byte[] oKind = kind;
+		long[] oValue = value;
+		float[] oCount = count;
+		int oCap = capacity;
+		allocate(capacity * 2);
+		int mask = capacity - 1;
+		for (int j = 0; j < oCap; j++) {
+			if (oKind[j] == 0)
+				continue;
+			int i = hash(oMinute[j], oObjType[j], oTagKey[j], oKind[j], oValue[j]) & mask;
+			while (kind[i] != 0) {
+				i = (i + 1) & mask;
+			}
+			minute[i] = oMinute[j];
+			objType[i] = oObjType[j];
+			tagKey[i] = oTagKey[j];
+			kind[i] = oKind[j];
+			value[i] = oValue[j];
+			count[i] = oCount[j];
+		}
+	}
+
+	public boolean isFull() {
+		return size >= maxSize;
+	}
+
+	/**
+	 * hand over the counts of the minutes before the time, or all the counts if the time is Long.MAX_VALUE.
+	 * the left ones are packed into a new table.
+	 */
+	public void flush(long before, Sink sink) {
+		int beforeMin = before == Long.MAX_VALUE ? Integer.MAX_VALUE : (int) (before / DateUtil.MILLIS_PER_MINUTE);
+		if (hasBefore(beforeMin) == false)
+			return;
+		int[] oMinute = minute;
+		int[] oObjType = objType;
+		long[] oTagKey = tagKey;
+		byte[] oKind = kind;
+		long[] oValue = value;
+		float[] oCount = count;
+		int oCap = capacity;
+		allocate(oCap);
+		size = 0;
+		for (int j = 0; j < oCap; j++) {
+			if (oKind[j] == 0)
+				continue;
+			if (oMinute[j] < beforeMin) {
+				sink.count(oMinute[j] * DateUtil.MILLIS_PER_MINUTE, objTypes.get(oObjType[j]), oTagKey[j],
+						toValue(oKind[j], oValue[j]), oCount[j]);
+			} else {
+				add(oMinute[j] * DateUtil.MILLIS_PER_MINUTE, oObjType[j], oTagKey[j], oKind[j], oValue[j], oCount[j]);
+			}
+		}
+	}
+
+	private boolean hasBefore(int beforeMin) {
+		for (int j = 0; j < capacity; j++) {
+			if (kind[j] != 0 && minute[j] < beforeMin)
+				return true;
+		}
+		return false;
+	}
+
+	private Value toValue(byte k, long v) {
+		switch (k) {
+		case TEXT_HASH:
+			return new TextHashValue((int) v);
+		case DECIMAL:
+			return new DecimalValue(v);
+		case TEXT:
+			return new TextValue(texts.get((int) v));
+		default:
+			return NullValue.value;
+		}
+	}
+}
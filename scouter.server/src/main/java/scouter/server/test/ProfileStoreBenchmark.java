@@ -0,0 +1,148 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.test;
+
+import scouter.io.DataOutputX;
+import scouter.lang.step.MethodStep;
+import scouter.lang.step.SqlStep3;
+import scouter.server.db.io.zip.ProfileBlockFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Random;
+
+/**
+ * disk bytes and random read time of the profiles : the plain .profile file vs ProfileBlockFile.
+ * the profiles have method and sql steps of which the hashes are skewed to a few hot ones.
+ * usage : ProfileStoreBenchmark [profile count] [dir]
+ */
+public class ProfileStoreBenchmark {
+
+	public static void main(String[] args) throws IOException {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+		File dir = new File(args.length > 1 ? args[1] : System.getProperty("java.io.tmpdir"), "profile-bench");
+		dir.mkdirs();
+		String file = new File(dir, "xlog").getPath();
+		new File(file + ".profile").delete();
+		new File(file + ".profileb").delete();
+
+		Random r = new Random(1);
+		long[] plainPos = new long[count];
+		long[] blockPos = new long[count];
+		long rawBytes = 0;
+
+		RandomAccessFile plain = new RandomAccessFile(file + ".profile", "rw");
+		ProfileBlockFile block = ProfileBlockFile.open(file);
+		long plainWrite = 0, blockWrite = 0;
+		for (int i = 0; i < count; i++) {
+			byte[] profile = profile(r);
+			rawBytes += profile.length;
+
+			long t0 = System.nanoTime();
+			plainPos[i] = plain.length();
+			plain.seek(plainPos[i]);
+			plain.writeInt(profile.length);
+			plain.write(profile);
+			long t1 = System.nanoTime();
+			blockPos[i] = block.write(profile);
+			long t2 = System.nanoTime();
+			plainWrite += t1 - t0;
+			blockWrite += t2 - t1;
+		}
+		block.flush();
+
+		long plainSize = new File(file + ".profile").length();
+		long blockSize = new File(file + ".profileb").length();
+		System.out.println("profiles : " + count + ", raw " + rawBytes / 1024 + " KB");
+		System.out.println("plain    : " + plainSize / 1024 + " KB, write " + plainWrite / count + " ns/profile");
+		System.out.println("block    : " + blockSize / 1024 + " KB (" + (blockSize * 100 / plainSize) + "%), write "
+				+ blockWrite / count + " ns/profile");
+
+		int reads = Math.min(count, 20000);
+		for (int round = 0; round < 2; round++) {
+			Random rr = new Random(2);
+			long plainRead = 0, blockRead = 0;
+			for (int i = 0; i < reads; i++) {
+				int n = rr.nextInt(count);
+				long t0 = System.nanoTime();
+				plain.seek(plainPos[n]);
+				byte[] b = new byte[plain.readInt()];
+				plain.readFully(b);
+				long t1 = System.nanoTime();
+				byte[] c = block.read(blockPos[n]);
+				long t2 = System.nanoTime();
+				if (c == null || c.length != b.length) {
+					throw new IllegalStateException("mismatch at " + n);
+				}
+				plainRead += t1 - t0;
+				blockRead += t2 - t1;
+			}
+			if (round > 0) {
+				System.out.println("random read : plain " + plainRead / reads + " ns, block " + blockRead / reads + " ns");
+			}
+		}
+		// the profiles of a time range as they are listed and opened one after another
+		long plainRead = 0, blockRead = 0;
+		for (int i = count - reads; i < count; i++) {
+			long t0 = System.nanoTime();
+			plain.seek(plainPos[i]);
+			byte[] b = new byte[plain.readInt()];
+			plain.readFully(b);
+			long t1 = System.nanoTime();
+			block.read(blockPos[i]);
+			long t2 = System.nanoTime();
+			plainRead += t1 - t0;
+			blockRead += t2 - t1;
+		}
+		System.out.println("recent read : plain " + plainRead / reads + " ns, block " + blockRead / reads + " ns");
+		plain.close();
+		block.close();
+	}
+
+	private static int skewed(Random r, int size) {
+		double d = r.nextDouble();
+		return (int) (size * d * d * d);
+	}
+
+	private static byte[] profile(Random r) throws IOException {
+		DataOutputX out = new DataOutputX();
+		int steps = 10 + r.nextInt(100);
+		int time = 0;
+		for (int i = 0; i < steps; i++) {
+			time += r.nextInt(5);
+			if (r.nextInt(3) == 0) {
+				SqlStep3 s = new SqlStep3();
+				s.index = i;
+				s.start_time = time;
+				s.hash = 0x5a000000 ^ skewed(r, 3000) * 0x9E3779B1;
+				s.elapsed = r.nextInt(50);
+				s.param = r.nextInt(4) == 0 ? "" + r.nextInt(100000) : "";
+				out.writeStep(s);
+			} else {
+				MethodStep m = new MethodStep();
+				m.index = i;
+				m.start_time = time;
+				m.hash = 0x3c000000 ^ skewed(r, 8000) * 0x9E3779B1;
+				m.elapsed = r.nextInt(20);
+				out.writeStep(m);
+			}
+		}
+		return out.toByteArray();
+	}
+}
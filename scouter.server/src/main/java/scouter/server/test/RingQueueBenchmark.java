@@ -0,0 +1,101 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.test;
+
+import scouter.util.RequestQueue;
+import scouter.util.RingQueue;
+
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * throughput of RequestQueue and RingQueue with 1, 4 and 16 producers and a consumer.
+ * usage : RingQueueBenchmark [count per producer] [wait strategy(blocking|sleeping|yielding)]
+ */
+public class RingQueueBenchmark {
+
+	interface Queue {
+		boolean put(Object o);
+		Object get();
+	}
+
+	public static void main(String[] args) throws Exception {
+		final int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		final RingQueue.WaitStrategy strategy = RingQueue.WaitStrategy.of(args.length > 1 ? args[1] : "blocking");
+
+		int[] producers = { 1, 4, 16 };
+		for (int round = 0; round < 2; round++) {
+			// the first round is a warm up
+			for (int p : producers) {
+				final RequestQueue<Object> requestQueue = new RequestQueue<Object>(10000);
+				long rq = run(new Queue() {
+					public boolean put(Object o) {
+						return requestQueue.put(o);
+					}
+					public Object get() {
+						return requestQueue.get();
+					}
+				}, p, count);
+
+				final RingQueue<Object> ringQueue = new RingQueue<Object>(10000, strategy);
+				long ring = run(new Queue() {
+					public boolean put(Object o) {
+						return ringQueue.put(o);
+					}
+					public Object get() {
+						return ringQueue.get();
+					}
+				}, p, count);
+
+				if (round > 0) {
+					System.out.println("producers=" + p
+							+ " RequestQueue=" + (p * (long) count * 1000L / rq) + "/s"
+							+ " RingQueue(" + strategy + ")=" + (p * (long) count * 1000L / ring) + "/s");
+				}
+			}
+		}
+	}
+
+	private static long run(final Queue queue, int producers, final int count) throws Exception {
+		final Object item = new Object();
+		final CountDownLatch start = new CountDownLatch(1);
+		for (int i = 0; i < producers; i++) {
+			Thread t = new Thread() {
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+					}
+					for (int k = 0; k < count; k++) {
+						while (queue.put(item) == false) {
+							Thread.yield();
+						}
+					}
+				}
+			};
+			t.setDaemon(true);
+			t.start();
+		}
+		long stime = System.currentTimeMillis();
+		start.countDown();
+		long total = (long) producers * count;
+		for (long n = 0; n < total; n++) {
+			queue.get();
+		}
+		return Math.max(1, System.currentTimeMillis() - stime);
+	}
+}
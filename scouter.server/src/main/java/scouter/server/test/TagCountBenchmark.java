@@ -0,0 +1,95 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.test;
+
+import scouter.lang.value.TextHashValue;
+import scouter.lang.value.Value;
+import scouter.server.tagcnt.core.TagCountBuffer;
+import scouter.server.tagcnt.first.FirstTCData;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * allocated bytes per xlog of the tag counting : a Value and a FirstTCData per tag(before) vs TagCountBuffer.
+ * each xlog counts 12 tags. the buffer is flushed every 60000 xlogs(a minute at 1000 tps).
+ * usage : TagCountBenchmark [xlog count]
+ */
+public class TagCountBenchmark {
+	private static final int TAGS = 12;
+	private static final int SERVICES = 2000;
+
+	public static void main(String[] args) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 3000000;
+		com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long tid = Thread.currentThread().getId();
+
+		for (int round = 0; round < 2; round++) {
+			// the first round is a warm up
+			long b0 = mx.getThreadAllocatedBytes(tid);
+			long t0 = System.nanoTime();
+			perValue(count);
+			long b1 = mx.getThreadAllocatedBytes(tid);
+			long t1 = System.nanoTime();
+			buffered(count);
+			long b2 = mx.getThreadAllocatedBytes(tid);
+			long t2 = System.nanoTime();
+			if (round > 0) {
+				System.out.println("per value : " + (b1 - b0) / count + " bytes/xlog, " + (t1 - t0) / count + " ns/xlog");
+				System.out.println("buffered  : " + (b2 - b1) / count + " bytes/xlog, " + (t2 - t1) / count + " ns/xlog");
+			}
+		}
+	}
+
+	private static void perValue(int count) {
+		Random r = new Random(1);
+		List<FirstTCData> queue = new ArrayList<FirstTCData>(10000);
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			int service = r.nextInt(SERVICES);
+			for (int t = 0; t < TAGS; t++) {
+				queue.add(new FirstTCData("tomcat", time + i, t, new TextHashValue(service + t), 1));
+			}
+			if (queue.size() >= 10000) {
+				queue.clear();
+			}
+		}
+	}
+
+	private static void buffered(int count) {
+		Random r = new Random(1);
+		TagCountBuffer buffer = new TagCountBuffer(100000);
+		TagCountBuffer.Sink sink = new TagCountBuffer.Sink() {
+			public void count(long time, String objType, long tagKey, Value value, float cnt) {
+			}
+		};
+		int objType = buffer.objTypeId("tomcat");
+		long time = System.currentTimeMillis();
+		for (int i = 0; i < count; i++) {
+			int service = r.nextInt(SERVICES);
+			for (int t = 0; t < TAGS; t++) {
+				buffer.add(time + i, objType, t, TagCountBuffer.TEXT_HASH, service + t, 1);
+			}
+			if (i % 60000 == 0 || buffer.isFull()) {
+				buffer.flush(Long.MAX_VALUE, sink);
+			}
+		}
+	}
+}
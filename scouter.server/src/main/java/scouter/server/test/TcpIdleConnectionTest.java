@@ -0,0 +1,88 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.test;
+
+import scouter.io.DataInputX;
+import scouter.io.DataOutputX;
+import scouter.net.NetCafe;
+import scouter.net.RequestCmd;
+import scouter.net.TcpFlag;
+import scouter.util.FileUtil;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * opens many idle client connections to a collector and measures the request latency meanwhile.
+ * compare the collector's thread count and heap usage between net_tcp_service_io_mode=blocking and nio.
+ * idle connections are closed after net_tcp_client_so_timeout_ms, so raise it for a long run.
+ * usage : TcpIdleConnectionTest [host] [port] [idle connection count] [request count]
+ */
+public class TcpIdleConnectionTest {
+
+	public static void main(String[] args) throws Exception {
+		String host = args.length > 0 ? args[0] : "127.0.0.1";
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 6100;
+		int idleCount = args.length > 2 ? Integer.parseInt(args[2]) : 3000;
+		int requestCount = args.length > 3 ? Integer.parseInt(args[3]) : 10000;
+
+		List<Socket> idles = new ArrayList<Socket>();
+		long stime = System.currentTimeMillis();
+		for (int i = 0; i < idleCount; i++) {
+			Socket socket = new Socket(host, port);
+			DataOutputX out = new DataOutputX(new BufferedOutputStream(socket.getOutputStream()));
+			out.writeInt(NetCafe.TCP_CLIENT);
+			out.flush();
+			idles.add(socket);
+		}
+		System.out.println("opened " + idleCount + " idle connections in " + (System.currentTimeMillis() - stime) + "ms");
+
+		Socket socket = new Socket(host, port);
+		DataOutputX out = new DataOutputX(new BufferedOutputStream(socket.getOutputStream()));
+		DataInputX in = new DataInputX(new BufferedInputStream(socket.getInputStream()));
+		out.writeInt(NetCafe.TCP_CLIENT);
+		out.flush();
+
+		long[] elapsed = new long[requestCount];
+		for (int i = 0; i < requestCount; i++) {
+			long t = System.nanoTime();
+			out.writeText(RequestCmd.SERVER_TIME);
+			out.writeLong(0);
+			out.flush();
+			while (in.readByte() == TcpFlag.HasNEXT) {
+				in.readPack();
+			}
+			elapsed[i] = System.nanoTime() - t;
+		}
+		java.util.Arrays.sort(elapsed);
+		System.out.println("requests=" + requestCount
+				+ " p50=" + elapsed[requestCount / 2] / 1000 + "us"
+				+ " p99=" + elapsed[(int) (requestCount * 0.99)] / 1000 + "us"
+				+ " max=" + elapsed[requestCount - 1] / 1000 + "us");
+
+		out.writeText(RequestCmd.CLOSE);
+		out.flush();
+		FileUtil.close(socket);
+		for (Socket s : idles) {
+			FileUtil.close(s);
+		}
+	}
+}
@@ -0,0 +1,65 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ */
+
+package scouter.server.test;
+
+import scouter.server.Configure;
+import scouter.server.db.XLogWR;
+import scouter.util.DateUtil;
+import scouter.util.KeyGen;
+import scouter.util.ThreadUtil;
+
+import java.util.Random;
+
+/**
+ * sustained write rate of XLogWR.
+ * usage : XLogWRLoadTest [db_dir] [count] [group_commit(true|false)] [percent of yesterday's xlogs]
+ */
+public class XLogWRLoadTest {
+
+	public static void main(String[] args) {
+		Configure conf = Configure.getInstance();
+		conf.db_dir = args.length > 0 ? args[0] : "./database-loadtest";
+		int count = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+		conf.xlog_group_commit_enabled = args.length > 2 && "true".equalsIgnoreCase(args[2]);
+		int latePct = args.length > 3 ? Integer.parseInt(args[3]) : 0;
+		conf.xlog_queue_size = count;
+
+		Random rand = new Random();
+		byte[] data = new byte[200];
+		rand.nextBytes(data);
+
+		long stime = System.currentTimeMillis();
+		long now = stime;
+		for (int i = 0; i < count; i++) {
+			if (i % 1000 == 0) {
+				now = System.currentTimeMillis();
+			}
+			long gxid = i % 3 == 0 ? KeyGen.next() : 0;
+			long time = rand.nextInt(100) < latePct ? now - DateUtil.MILLIS_PER_DAY : now;
+			XLogWR.add(time, KeyGen.next(), gxid, rand.nextInt(10000), data);
+		}
+		while (XLogWR.size() > 0) {
+			ThreadUtil.sleep(10);
+		}
+		long elapsed = Math.max(1, System.currentTimeMillis() - stime);
+
+		System.out.println("group_commit=" + conf.xlog_group_commit_enabled + " late=" + latePct + "% count=" + count + " elapsed=" + elapsed
+				+ "ms rate=" + (count * 1000L / elapsed) + "/s");
+		System.exit(0);
+	}
+}
@@ -1,11 +1,32 @@
 package scouter.server.core
 
-import scouter.server.ShutdownManager
-import scouter.util.IShutdown
+import java.util.concurrent.ConcurrentHashMap
+
+import scouter.server.util.{EnumerScala, ThreadScala}
+import scouter.server.{Configure, ShutdownManager}
+import scouter.util.{IShutdown, RingQueue}
 
 object CoreRun {
     val MAX_QUE_SIZE = 10000;
 
+    private val queues = new ConcurrentHashMap[String, RingQueue[_]]()
+
+    /**
+      * lock-free queue of an ingest pipeline stage.
+      * overflow count of the queue is published as ServerStat "[name].overflow"
+      */
+    def newQueue[V](name: String, capacity: Int): RingQueue[V] = {
+        val queue = new RingQueue[V](capacity, RingQueue.WaitStrategy.of(Configure.getInstance()._mgr_ingest_queue_wait_strategy))
+        queues.put(name, queue)
+        queue
+    }
+
+    ThreadScala.startDaemon("scouter.server.core.CoreRun", { running }, 5000) {
+        EnumerScala.foreach(queues.keys(), (name: String) => {
+            ServerStat.put(name + ".overflow", queues.get(name).getOverflowCount())
+        })
+    }
+
     var running = true;
     def shutdown() {
         running = false;
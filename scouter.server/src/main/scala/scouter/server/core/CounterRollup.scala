@@ -0,0 +1,137 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.core
+
+import java.util
+
+import scouter.lang.{CounterKey, TimeTypeEnum}
+import scouter.lang.counters.CounterConstants
+import scouter.lang.value.{MapValue, NumberValue, Value, ValueEnum}
+import scouter.server.Configure
+import scouter.server.db.RollupCounterWR
+import scouter.server.db.counter.RollupCounterDB
+import scouter.server.util.{EnumerScala, ThreadScala}
+import scouter.util.{CastUtil, DateUtil, StringUtil}
+
+/**
+  * min/max/avg/last/count of the realtime counters for each resolution. (mgr_counter_rollup_resolutions)
+  * a bucket is written when a value of the next bucket comes in or when it is past for a while.
+  * the written buckets are merged to the slots so a late value only adds to it.
+  */
+object CounterRollup {
+    val conf = Configure.getInstance()
+
+    val resolutions: Array[Int] = {
+        val list = new util.TreeSet[Integer]()
+        for (s <- StringUtil.split(conf.mgr_counter_rollup_resolutions, ",")) {
+            val r = CastUtil.cint(s.trim())
+            if (r > 0 && DateUtil.SECONDS_PER_DAY % r == 0) {
+                list.add(r)
+            }
+        }
+        val arr = new Array[Int](list.size())
+        var i = 0
+        val itr = list.iterator()
+        while (itr.hasNext()) {
+            arr(i) = itr.next()
+            i += 1
+        }
+        arr
+    }
+
+    private val buckets = resolutions.map(r => new util.HashMap[CounterKey, RollupCounterDB.Record]())
+
+    ThreadScala.startFixedRate(10 * DateUtil.MILLIS_PER_SECOND) {
+        close(System.currentTimeMillis())
+    }
+
+    def add(objHash: Int, time: Long, data: MapValue) {
+        if (conf.mgr_counter_rollup_enabled == false || resolutions.length == 0)
+            return
+        val dayMillis = DateUtil.getDateMillis(time)
+        this.synchronized {
+            EnumerScala.foreach(data.keys(), (name: String) => {
+                if (name != CounterConstants.COMMON_OBJHASH && name != CounterConstants.COMMON_TIME) {
+                    val v = data.get(name)
+                    if (isNumber(v)) {
+                        val key = new CounterKey(objHash, name, TimeTypeEnum.REALTIME)
+                        val d = v.asInstanceOf[NumberValue].doubleValue()
+                        for (i <- 0 until resolutions.length) {
+                            val millis = resolutions(i) * 1000L
+                            val bucketTime = time - dayMillis % millis
+                            var r = buckets(i).get(key)
+                            if (r != null && r.time != bucketTime) {
+                                RollupCounterWR.add(new RollupCounterWR.Item(resolutions(i), objHash, name, r))
+                                r = null
+                            }
+                            if (r == null) {
+                                r = new RollupCounterDB.Record(bucketTime)
+                                buckets(i).put(key, r)
+                            }
+                            r.add(d)
+                        }
+                    }
+                }
+            })
+        }
+    }
+
+    private def isNumber(v: Value): Boolean = {
+        if (v == null)
+            return false
+        v.getValueType() match {
+            case ValueEnum.DECIMAL | ValueEnum.FLOAT | ValueEnum.DOUBLE => true
+            case _ => false
+        }
+    }
+
+    /**
+      * write the buckets which ended more than 5 seconds ago
+      */
+    private def close(now: Long) {
+        this.synchronized {
+            for (i <- 0 until resolutions.length) {
+                val end = now - resolutions(i) * 1000L - 5000
+                val itr = buckets(i).entrySet().iterator()
+                while (itr.hasNext()) {
+                    val e = itr.next()
+                    if (e.getValue().time < end) {
+                        RollupCounterWR.add(new RollupCounterWR.Item(resolutions(i), e.getKey().objHash, e.getKey().counter, e.getValue()))
+                        itr.remove()
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+      * @return the coarsest resolution which gives the points in the range or 0 for the realtime counters
+      */
+    def getResolution(stime: Long, etime: Long, points: Int): Int = {
+        if (points <= 0 || conf.mgr_counter_rollup_enabled == false)
+            return 0
+        var i = resolutions.length - 1
+        while (i >= 0) {
+            if ((etime - stime) / (resolutions(i) * 1000L) >= points)
+                return resolutions(i)
+            i -= 1
+        }
+        return 0
+    }
+}
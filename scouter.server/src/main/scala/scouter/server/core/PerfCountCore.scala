@@ -30,13 +30,13 @@ import scouter.server.db.{DailyCounterWR, RealtimeCounterWR}
 import scouter.server.plugin.PlugInManager
 import scouter.server.plugin.alert.AlertEngine
 import scouter.server.util.{EnumerScala, ThreadScala}
-import scouter.util.{CastUtil, DateUtil, HashUtil, RequestQueue}
+import scouter.util.{CastUtil, DateUtil, HashUtil}
 
 /**
   * request queue of performance counter data and also dispatcher of the queue
   */
 object PerfCountCore {
-    var queue = new RequestQueue[PerfCounterPack](CoreRun.MAX_QUE_SIZE);
+    var queue = CoreRun.newQueue[PerfCounterPack]("counter.core.queue", CoreRun.MAX_QUE_SIZE);
     ThreadScala.startDaemon("scouter.server.core.PerfCountCore", {CoreRun.running}) {
         val counterPack = queue.get();
         val objHash = HashUtil.hash(counterPack.objName);
@@ -48,6 +48,7 @@ object PerfCountCore {
             //counterPack.data.put(CounterConstants.COMMON_TIME, new DecimalValue(counterPack.time)) //add objHash into datafile
 
             RealtimeCounterWR.add(counterPack);
+            CounterRollup.add(objHash, counterPack.time, counterPack.data);
             EnumerScala.foreach(counterPack.data.keySet().iterator(), (k: String) => {
                 val value = counterPack.data.get(k);
                 val counterKey = new CounterKey(objHash, k, counterPack.timetype);
@@ -30,12 +30,11 @@ import scouter.server.geoip.GeoIpUtil
 import scouter.server.plugin.PlugInManager
 import scouter.server.tagcnt.XLogTagCount
 import scouter.server.util.ThreadScala
-import scouter.util.RequestQueue
 
 object XLogCore {
 
     val conf = Configure.getInstance();
-    val queue = new RequestQueue[XLogPack](conf.xlog_queue_size);
+    val queue = CoreRun.newQueue[XLogPack]("xlog.core.queue", conf.xlog_queue_size);
 
     def calc(m: XLogPack) = {
         XLogGroupUtil.process(m);
@@ -66,11 +65,11 @@ object XLogCore {
             PlugInManager.xlogdb(m);
 
             val b = new DataOutputX().writePack(m).toByteArray();
-            XLogCache.put(m.objHash, m.elapsed, m.error != 0, b);
+            XLogCache.put(m.objHash, m.elapsed, m.error != 0, m.endTime, m.service, b);
             if (conf.tagcnt_enabled) {
                 XLogTagCount.add(m)
             }
-            XLogWR.add(m.endTime, m.txid, m.gxid, m.elapsed, b);
+            XLogWR.add(m, b);
         }
     }
 
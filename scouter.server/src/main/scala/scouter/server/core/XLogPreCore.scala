@@ -24,12 +24,11 @@ import scouter.lang.pack.{XLogDiscardTypes, XLogPack, XLogProfilePack, XLogTypes
 import scouter.server.core.cache.{ProfileDelayingCache, XLogDelayingCache}
 import scouter.server.util.ThreadScala
 import scouter.server.{Configure, Logger}
-import scouter.util.RequestQueue
 
 object XLogPreCore {
 
     val conf = Configure.getInstance();
-    val queue = new RequestQueue[XLogPack](conf.xlog_queue_size);
+    val queue = CoreRun.newQueue[XLogPack]("xlog.core0.queue", conf.xlog_queue_size);
 
     ThreadScala.startDaemon("scouter.server.core.XLogPreCore", {
         CoreRun.running
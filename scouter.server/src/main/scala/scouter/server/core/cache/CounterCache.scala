@@ -18,55 +18,42 @@
 
 package scouter.server.core.cache;
 
-import java.util.{HashMap, Map}
+import java.util.Map
 
 import scouter.lang.{CounterKey, TimeTypeEnum}
 import scouter.lang.value.Value
 import scouter.server.util.ThreadScala
-import scouter.util.{CacheTable, DateUtil, ThreadUtil}
+import scouter.util.{DateUtil, ThreadUtil}
 
 /**
   * Singleton object of the memory cache for counter data.
+  * values are kept by objHash and counter name id, and expire when they are read after the keep time.
   */
 object CounterCache {
     //val counterEngine = CounterManager.getInstance().getCounterEngine();
-    val cache = new CacheTable[CounterKey, Value]();
+    val cache = new CounterTable();
 
     ThreadScala.startDaemon("scouter.server.core.cache.CounterCache") {
         while (true) {
             ThreadUtil.sleep(5000);
-            cache.clearExpiredItems();
             StatusCache.clearDirty();
         }
     }
 
     def put(key: CounterKey, value: Value) {
-        var keepTime = getKeepTime(key.timetype);
-        cache.put(key, value, keepTime);
+        cache.put(key.objHash, key.counter, key.timetype, value, getKeepTime(key.timetype));
     }
 
     def get(key: CounterKey): Value = {
-        return cache.get(key);
+        return cache.get(key.objHash, key.counter, key.timetype);
     }
 
-    def getObjectCounters(objHash: Int, timeType: Byte): Map[String, Value] = {
-        val map = new HashMap[String, Value]();
-        try {
+    def get(objHash: Int, counter: String, timeType: Byte): Value = {
+        return cache.get(objHash, counter, timeType);
+    }
 
-            val en = cache.keys();
-            while (en.hasMoreElements()) {
-                val key = en.nextElement();
-                if (key.timetype == timeType && key.objHash == objHash) {
-                    val value = cache.get(key);
-                    if (value != null) {
-                        map.put(key.counter, value);
-                    }
-                }
-            }
-        } catch {
-            case e: Throwable => println(e)
-        }
-        return map;
+    def getObjectCounters(objHash: Int, timeType: Byte): Map[String, Value] = {
+        return cache.getObjectCounters(objHash, timeType);
     }
 
     def getKeepTime(timeType: Byte): Long = {
@@ -18,39 +18,60 @@
 
 package scouter.server.core.cache;
 
-import scouter.lang.TextTypes
-import scouter.util.HashUtil
-import scouter.util.IntKeyLinkedMap
-import scouter.util.IntKeyMap;
-import scouter.util.StringKeyLinkedMap
+import scouter.server.Configure
+import scouter.server.core.ServerStat
+import scouter.server.util.{EnumerScala, ThreadScala}
+import scouter.util.{CastUtil, StringKeyLinkedMap, StringUtil}
 
+/**
+  * texts by type and hash shared by the realtime and the daily text lookups.
+  * texts are kept off-heap within the quota of each type. (mgr_text_cache_quota_mb)
+  */
 object TextCache {
 
-    val cache = new StringKeyLinkedMap[IntKeyLinkedMap[String]]();
+    val cache = new StringKeyLinkedMap[TextDictionary]();
+
+    private val quota = new StringKeyLinkedMap[Integer]();
+    private var defaultQuota = 1;
+    for (token <- StringUtil.tokenizer(Configure.getInstance().mgr_text_cache_quota_mb, ",")) {
+        val pair = StringUtil.tokenizer(token, ":");
+        if (pair.length == 2) {
+            val mb = CastUtil.cint(pair(1).trim())
+            if (pair(0).trim() == "*") defaultQuota = mb else quota.put(pair(0).trim(), mb)
+        }
+    }
+
+    ThreadScala.startDaemon("scouter.server.core.cache.TextCache", { true }, 5000) {
+        EnumerScala.foreach(cache.keys(), (div: String) => {
+            val dic = cache.get(div);
+            ServerStat.put("text.cache." + div + ".hit", dic.getHitCount());
+            ServerStat.put("text.cache." + div + ".miss", dic.getMissCount());
+            ServerStat.put("text.cache." + div + ".bytes", dic.getUsedBytes());
+            ServerStat.put("text.cache." + div + ".count", dic.size());
+        })
+    }
 
     def put(div: String, hash: Int, text: String) {
-        val map = getMap(div);
-        if (map.containsKey(hash))
+        if (text == null)
             return ;
-        map.put(hash, text);
+        getMap(div).put(hash, text);
     }
 
-    
     def get(div: String, hash: Int): String = {
-        val map = getMap(div);
-        return map.get(hash);
+        return getMap(div).get(hash);
     }
 
-    private def getMap(div: String): IntKeyLinkedMap[String] = {
+    private def getMap(div: String): TextDictionary = {
         var map = cache.get(div);
         if (map == null) {
-            if (TextTypes.SERVICE.equals(div) || TextTypes.APICALL.equals(div)
-                    || TextTypes.SQL.equals(div) || TextTypes.USER_AGENT.equals(div)) {
-                map = new IntKeyLinkedMap().setMax(20000);
-            } else {
-                map = new IntKeyLinkedMap().setMax(2000);
+            cache.synchronized {
+                map = cache.get(div);
+                if (map == null) {
+                    val mb = if (quota.containsKey(div)) quota.get(div).intValue() else defaultQuota;
+                    map = new TextDictionary(mb * 1024 * 1024);
+                    cache.put(div, map);
+                }
             }
-            cache.put(div, map);
         }
         return map;
     }
@@ -18,14 +18,15 @@
 
 package scouter.server.core.cache;
 
+import scouter.server.Configure
 import scouter.util.IntSet;
 
 object XLogCache {
 
-    val cache = new XLogLoopCache[Array[Byte]](20480);
+    val cache = new XLogLoopCache(20480, Configure.getInstance()._mgr_xlog_realtime_cache_mb * 1024 * 1024);
 
-    def put(objHash: Int, time: Int, error: Boolean, record: Array[Byte]) {
-        cache.put(objHash, time, error, record);
+    def put(objHash: Int, time: Int, error: Boolean, endTime: Long, service: Int, record: Array[Byte]) {
+        cache.put(objHash, time, error, endTime, service, record);
     }
 
     def get(last_loop: Long, last_index: Int, time: Int): CacheOut[Array[Byte]] = {
@@ -36,6 +37,10 @@ object XLogCache {
         return cache.get(objHashSet, last_loop, last_index, time);
     }
 
+    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int, errorOnly: Boolean): CacheOut[Array[Byte]] = {
+        return cache.get(objHashSet, last_loop, last_index, time, errorOnly);
+    }
+
     def getWithinCount(last_loop: Long, last_index: Int, count: Int): CacheOut[Array[Byte]] = {
         return cache.getWithinCount(last_loop, last_index, count);
     }
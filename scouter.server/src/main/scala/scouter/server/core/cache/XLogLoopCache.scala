@@ -1,8 +1,8 @@
 /*
-*  Copyright 2015 the original author or authors. 
+*  Copyright 2015 the original author or authors.
  *  @https://github.com/scouter-project/scouter
  *
- *  Licensed under the Apache License, Version 2.0 (the "License"); 
+ *  Licensed under the Apache License, Version 2.0 (the "License");
  *  you may not use this file except in compliance with the License.
  *  You may obtain a copy of the License at
  *
@@ -12,211 +12,192 @@
  *  distributed under the License is distributed on an "AS IS" BASIS,
  *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
  *  See the License for the specific language governing permissions and
- *  limitations under the License. 
+ *  limitations under the License.
  *
  */
 
 package scouter.server.core.cache;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer
+import java.util.ArrayList
+import java.util.concurrent.atomic.AtomicLongArray
 
 import scouter.util.IntSet;
 
-class XLogLoopCache[V](capacity: Int) {
+object XLogLoopCache {
+    /**
+      * the fences of the sequence checks, the volatile accesses alone let the plain reads and writes of a slot cross them.
+      */
+    private val unsafe: sun.misc.Unsafe = {
+        val f = classOf[sun.misc.Unsafe].getDeclaredField("theUnsafe");
+        f.setAccessible(true);
+        f.get(null).asInstanceOf[sun.misc.Unsafe];
+    }
+}
+
+/**
+  * ring of the recent xlogs.
+  * columns(objHash, elapsed, error, endTime, service) are kept in primitive arrays and the serialized xlogs in an off-heap arena,
+  * so the filters run on the columns and only the matched xlogs are copied out.
+  * a writer appends under the lock and readers don't lock at all.
+  * a reader validates a slot by its sequence before and after reading it
+  * and a xlog in the arena by the arena position after copying it.
+  * a store fence keeps the writes of a slot after its invalidation and a load fence keeps the reads before the validation.
+  */
+class XLogLoopCache(capacity: Int, arenaSize: Int) {
+    import XLogLoopCache.unsafe
 
-    val queue = new Array[Any](capacity);
     val objHashTable = new Array[Int](capacity);
     val elapsed = new Array[Int](capacity);
     val error = new Array[Boolean](capacity);
-
-    var index = 0;
-    var loop = 0L;
-
-    def put(objHash: Int, time: Int, err: Boolean, record: V) {
-        queue.synchronized {
-            queue(index) = record;
-            objHashTable(index) = objHash;
-            elapsed(index) = time;
-            error(index) = err;
-            index += 1;
-            if (index >= queue.length) {
-                loop += 1;
-                index = 0;
-            }
-        }
+    val endTime = new Array[Long](capacity);
+    val service = new Array[Int](capacity);
+    private val blobPos = new Array[Long](capacity);
+    private val blobLen = new Array[Int](capacity);
+    private val slotSeq = new AtomicLongArray(capacity);
+
+    private val arena = ByteBuffer.allocateDirect(arenaSize);
+    private val writeBuffer = arena.duplicate();
+    @volatile private var arenaPos = 0L;
+    @volatile private var written = 0L;
+
+    for (i <- 0 until capacity) {
+        slotSeq.set(i, -1);
     }
 
-    def getList(start_loop: Long, start_index: Int, time: Int): List[V] = {
-        val end_index = this.index;
-        val end_loop = this.loop;
-
-        val buff = new ArrayList[V](queue.length);
-        (end_loop - start_loop) match {
-            case 0 =>
-                if (start_index < end_index) {
-                    copy(buff, start_index, end_index, time);
-                }
-            case 1 =>
-                if (start_index <= end_index) {
-                    copy(buff, end_index, queue.length, time);
-                    copy(buff, 0, end_index, time);
-                } else {
-                    copy(buff, start_index, queue.length, time);
-                    copy(buff, 0, end_index, time);
+    def loop: Long = written / capacity;
+    def index: Int = (written % capacity).toInt;
+
+    def put(objHash: Int, time: Int, err: Boolean, end: Long, serviceHash: Int, record: Array[Byte]) {
+        this.synchronized {
+            val seq = written;
+            val i = (seq % capacity).toInt;
+            slotSeq.set(i, -1);
+            unsafe.storeFence();
+            objHashTable(i) = objHash;
+            elapsed(i) = time;
+            error(i) = err;
+            endTime(i) = end;
+            service(i) = serviceHash;
+            if (record.length > arenaSize) {
+                blobLen(i) = -1;
+            } else {
+                val pos = arenaPos;
+                // move the arena position before overwriting so that readers can detect it
+                arenaPos = pos + record.length;
+                unsafe.storeFence();
+                val off = (pos % arenaSize).toInt;
+                val first = Math.min(record.length, arenaSize - off);
+                writeBuffer.position(off);
+                writeBuffer.put(record, 0, first);
+                if (first < record.length) {
+                    writeBuffer.position(0);
+                    writeBuffer.put(record, first, record.length - first);
                 }
-            case _ =>
-                copy(buff, end_index, queue.length, time);
-                copy(buff, 0, end_index, time);
+                blobPos(i) = pos;
+                blobLen(i) = record.length;
+            }
+            slotSeq.set(i, seq);
+            written = seq + 1;
         }
-        return buff;
     }
 
-    def getList(objHashSet: IntSet, start_loop: Long, start_index: Int, time: Int): List[V] = {
-        val end_index = this.index;
-        val end_loop = this.loop;
-
-        val buff = new ArrayList[V](queue.length);
-        (end_loop - start_loop) match {
-            case 0 =>
-                if (start_index < end_index) {
-                    copy(objHashSet, buff, start_index, end_index, time);
-                }
-            case 1 =>
-                if (start_index <= end_index) {
-                    copy(objHashSet, buff, end_index, queue.length, time);
-                    copy(objHashSet, buff, 0, end_index, time);
-                } else {
-                    copy(objHashSet, buff, start_index, queue.length, time);
-                    copy(objHashSet, buff, 0, end_index, time);
-                }
-            case _ =>
-                copy(objHashSet, buff, end_index, queue.length, time);
-                copy(objHashSet, buff, 0, end_index, time);
-        }
-        return buff;
+    private def matches(i: Int, objHashSet: IntSet, time: Int, errorOnly: Boolean): Boolean = {
+        if (objHashSet != null && objHashSet.contains(objHashTable(i)) == false)
+            return false;
+        if (errorOnly)
+            error(i)
+        else
+            elapsed(i) >= time || error(i)
     }
 
-    def getListWithinCount(start_loop: Long, start_index: Int, _count: Int): List[V] = {
-        var  count = _count
-        (this.loop - start_loop) match {
-            case 0 =>
-                val gap = this.index - start_index
-                if(gap > 0) {
-                    count = Math.min(count, gap)
-                }
-            case 1 =>
-                count = Math.min(count, queue.length - start_index + this.index)
-            case _ =>
-        }
-
-        val buff = new ArrayList[V](count)
-        if(count > this.index) {
-            copy(buff, queue.length-(count-this.index), queue.length)
-            copy(buff, 0, this.index)
-        } else {
-            copy(buff, this.index - count, this.index)
+    /**
+      * @return the xlog of the sequence or null if it doesn't match or was overwritten
+      */
+    private def read(buffer: ByteBuffer, seq: Long, objHashSet: IntSet, time: Int, errorOnly: Boolean): Array[Byte] = {
+        val i = (seq % capacity).toInt;
+        if (slotSeq.get(i) != seq || matches(i, objHashSet, time, errorOnly) == false)
+            return null;
+        val len = blobLen(i);
+        val pos = blobPos(i);
+        if (len < 0 || arenaPos - pos > arenaSize)
+            return null;
+
+        val out = new Array[Byte](len);
+        val off = (pos % arenaSize).toInt;
+        val first = Math.min(len, arenaSize - off);
+        buffer.position(off);
+        buffer.get(out, 0, first);
+        if (first < len) {
+            buffer.position(0);
+            buffer.get(out, first, len - first);
         }
-
-        return buff
+        unsafe.loadFence();
+        if (arenaPos - pos > arenaSize || slotSeq.get(i) != seq)
+            return null;
+        return out;
     }
 
-    def getListWithinCount(objHashSet: IntSet, start_loop: Long, start_index: Int, _count: Int): List[V] = {
-        var  count = _count
-        (this.loop - start_loop) match {
-            case 0 =>
-                val gap = this.index - start_index
-                if(gap > 0) {
-                    count = Math.min(count, gap)
-                }
-            case 1 =>
-                count = Math.min(count, queue.length - start_index + this.index)
-            case _ =>
-        }
-
-        val buff = new ArrayList[V](count)
-        if(count > this.index) {
-            copy(objHashSet, buff, queue.length-(count-this.index), queue.length)
-            copy(objHashSet, buff, 0, this.index)
-        } else {
-            copy(objHashSet, buff, this.index - count, this.index)
-        }
-
-        return buff
-    }
-
-    private def copy(objHashSet: IntSet, buff: List[V], _from: Int, _to: Int, time: Int) {
-        var i = _from
-        while (i < _to) {
-            if (objHashSet == null || objHashSet.contains(objHashTable(i))) {
-                if (queue(i) != null && (elapsed(i) >= time || error(i) == true)) {
-                    buff.add(queue(i).asInstanceOf[V]);
-                }
-            }
-            i += 1
-        }
-    }
-
-    def copy(buff: List[V], _from: Int, _to: Int, time: Int) {
-        var i = _from
-        while (i < _to) {
-            if (queue(i) != null && (elapsed(i) >= time || error(i) == true)) {
-                buff.add(queue(i).asInstanceOf[V]);
+    private def collect(from: Long, to: Long, objHashSet: IntSet, time: Int, errorOnly: Boolean): java.util.List[Array[Byte]] = {
+        val buffer = arena.duplicate();
+        val buff = new ArrayList[Array[Byte]]();
+        var seq = from;
+        while (seq < to) {
+            val b = read(buffer, seq, objHashSet, time, errorOnly);
+            if (b != null) {
+                buff.add(b);
             }
-            i += 1
+            seq += 1;
         }
+        return buff;
     }
 
-    def copy(buff: List[V], _from: Int, _to: Int) {
-        var i = _from
-        while (i < _to) {
-            if (queue(i) != null) {
-                buff.add(queue(i).asInstanceOf[V]);
-            }
-            i += 1
+    /**
+      * @param objHashSet null for all objects
+      * @param time min elapsed time. errors are always included
+      * @param errorOnly only errors
+      */
+    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int, errorOnly: Boolean): CacheOut[Array[Byte]] = {
+        val end = written;
+        var start = last_loop * capacity + last_index;
+        if (start > end || end - start > capacity) {
+            start = Math.max(0, end - capacity);
         }
+        val d = new CacheOut[Array[Byte]]();
+        d.data = collect(start, end, objHashSet, time, errorOnly);
+        d.loop = end / capacity;
+        d.index = (end % capacity).toInt;
+        return d;
     }
 
-    private def copy(objHashSet: IntSet, buff: List[V], _from: Int, _to: Int) {
-        (_from until _to) foreach { i =>
-            if (objHashSet == null || objHashSet.contains(objHashTable(i))) {
-                if (queue(i) != null) {
-                    buff.add(queue(i).asInstanceOf[V]);
-                }
-            }
-        }
+    def get(last_loop: Long, last_index: Int, time: Int): CacheOut[Array[Byte]] = {
+        get(null, last_loop, last_index, time, false);
     }
 
-    def get(last_loop: Long, last_index: Int, time: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getList(last_loop, last_index, time);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
+    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): CacheOut[Array[Byte]] = {
+        get(objHashSet, last_loop, last_index, time, false);
     }
 
-    def get(objHashSet: IntSet, last_loop: Long, last_index: Int, time: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getList(objHashSet, last_loop, last_index, time);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
-    }
+    /**
+      * the latest xlogs within the count after the last position
+      */
+    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, _count: Int): CacheOut[Array[Byte]] = {
+        val end = written;
+        val gap = end - (last_loop * capacity + last_index);
+        var count = _count.toLong;
+        if (gap > 0) {
+            count = Math.min(count, gap);
+        }
+        count = Math.min(count, Math.min(end, capacity.toLong));
 
-    def getWithinCount(last_loop: Long, last_index: Int, count: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getListWithinCount(last_loop, last_index, count);
-        d.loop = this.loop;
-        d.index = this.index;
+        val d = new CacheOut[Array[Byte]]();
+        d.data = collect(end - count, end, objHashSet, Integer.MIN_VALUE, false);
+        d.loop = end / capacity;
+        d.index = (end % capacity).toInt;
         return d;
     }
 
-    def getWithinCount(objHashSet: IntSet, last_loop: Long, last_index: Int, count: Int): CacheOut[V] = {
-        val d = new CacheOut[V]();
-        d.data = getListWithinCount(objHashSet, last_loop, last_index, count);
-        d.loop = this.loop;
-        d.index = this.index;
-        return d;
+    def getWithinCount(last_loop: Long, last_index: Int, count: Int): CacheOut[Array[Byte]] = {
+        getWithinCount(null, last_loop, last_index, count);
     }
-
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db
+
+import java.io.File
+
+import scouter.server.core.ServerStat
+import scouter.server.db.io.IngestJournal
+import scouter.server.util.ThreadScala
+import scouter.server.{Configure, Logger, ShutdownManager}
+import scouter.util.IShutdown
+
+/**
+  * the journal of the xlogs, profiles and realtime counters handed to their db writers.
+  * the writers call done() of a record when it is written,
+  * and the records of the last run not written are replayed into the writers at the start.
+  */
+object IngestJournalWR {
+    val XLOG: Byte = 1
+    val PROFILE: Byte = 2
+    val COUNTER: Byte = 3
+
+    val conf = Configure.getInstance()
+
+    val journal: IngestJournal = if (conf.mgr_ingest_journal_enabled) {
+        new IngestJournal(new File(DBCtr.getRootPath(), "journal"),
+            conf.mgr_ingest_journal_segment_mb * 1024L * 1024L,
+            conf.mgr_ingest_journal_retire_sec * 1000L,
+            conf.mgr_ingest_journal_checkpoint_sec * 1000L,
+            conf.mgr_ingest_journal_fsync_enabled)
+    } else null
+
+    if (journal != null) {
+        var lastCheckpoint = 0L
+        ThreadScala.startDaemon("scouter.server.db.IngestJournalWR", { DBCtr.running }, conf.mgr_ingest_journal_sync_ms) {
+            journal.sync()
+            val now = System.currentTimeMillis()
+            if (now - lastCheckpoint >= 1000) {
+                lastCheckpoint = now
+                journal.checkpoint()
+            }
+            ServerStat.put("journal.segments", journal.retire())
+            ServerStat.put("journal.pending", journal.getPendingRecords())
+        }
+        ShutdownManager.add(new IShutdown() {
+            override def shutdown() {
+                journal.close(awaitWriters(10000))
+            }
+        })
+    }
+
+    def enabled = journal != null
+
+    /**
+      * wait for the db writers to close their files after DBCtr stopped
+      * @return true if all of them are closed, then the records done are on the disk
+      */
+    private def awaitWriters(timeout: Long): Boolean = {
+        val until = System.currentTimeMillis() + timeout
+        List(XLogWR.thread, XLogProfileWR.thread, RealtimeCounterWR.thread).forall(t => {
+            t.join(Math.max(1, until - System.currentTimeMillis()))
+            t.isAlive == false
+        })
+    }
+
+    /**
+      * @return the record to call done() when the record is written, or null without the journal
+      */
+    def append(recordType: Byte, data: => Array[Byte]): IngestJournal.Record = {
+        if (journal == null)
+            return null
+        try {
+            journal.append(recordType, data)
+        } catch {
+            case t: Throwable =>
+                Logger.println("S236", 10, "journal append failed : " + t)
+                null
+        }
+    }
+
+    /**
+      * replay the records left by the last run before the new data come in.
+      */
+    def replay() {
+        if (journal == null)
+            return
+        val count = journal.replay(new IngestJournal.Replayer {
+            override def replay(recordType: Byte, data: Array[Byte], record: IngestJournal.Record) {
+                try {
+                    recordType match {
+                        case XLOG => XLogWR.replay(data, record)
+                        case PROFILE => XLogProfileWR.replay(data, record)
+                        case COUNTER => RealtimeCounterWR.replay(data, record)
+                        case _ => record.done()
+                    }
+                } catch {
+                    case t: Throwable =>
+                        record.done()
+                        Logger.println("S237", 10, "journal replay failed : " + t)
+                }
+            }
+        })
+        Logger.println("S238", "journal replayed " + count + " records")
+    }
+}
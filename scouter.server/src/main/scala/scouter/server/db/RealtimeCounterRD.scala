@@ -1,12 +1,18 @@
 package scouter.server.db;
 
+import java.util.TreeMap
+
 import scouter.io.DataInputX
-import scouter.lang.value.MapValue
-import scouter.server.db.counter.RealtimeCounterDBHelper
+import scouter.lang.counters.CounterConstants
+import scouter.lang.value.{ListValue, MapValue, Value}
+import scouter.server.db.counter.{RealtimeCounterColumn, RealtimeCounterDBHelper}
 import scouter.util.DateUtil
 import scouter.util.FileUtil
 import scouter.util.HashUtil
+import scouter.util.IntKeyMap
 import scouter.util.StringEnumer
+import scouter.util.StringSet
+import scouter.server.util.EnumerScala
 
 import scala.collection.mutable.ArrayBuffer
 
@@ -20,6 +26,14 @@ object RealtimeCounterRD {
     def read(objName: String, date: String, stime: Long, etime: Long, handler: (Long, MapValue) => Any) {
         if (objName == null)
             return ;
+        if (RealtimeCounterColumn.exists(date)) {
+            readMerged(objName, date, stime, etime, handler, false)
+            return ;
+        }
+        readRow(objName, date, stime, etime, handler)
+    }
+
+    private def readRow(objName: String, date: String, stime: Long, etime: Long, handler: (Long, MapValue) => Any) {
         var perfdb: RealtimeCounterDBHelper = null;
         try {
             perfdb = new RealtimeCounterDBHelper().open(date, true);
@@ -33,6 +47,89 @@ object RealtimeCounterRD {
         }
     }
 
+    /**
+      * the rows of an object are rebuilt from the rows and the columns of the day.
+      */
+    private def readMerged(objName: String, date: String, stime: Long, etime: Long, handler: (Long, MapValue) => Any, fromEnd: Boolean) {
+        val rows = new TreeMap[java.lang.Long, MapValue]()
+        readRow(objName, date, stime, etime, (time: Long, data: MapValue) => {
+            rows.put(time, data)
+        })
+        var column: RealtimeCounterColumn = null
+        try {
+            column = RealtimeCounterColumn.open(date)
+            column.readAll(HashUtil.hash(objName), stime, etime, (name: String, time: Long, value: Value) => {
+                var data = rows.get(time)
+                if (data == null) {
+                    data = new MapValue()
+                    rows.put(time, data)
+                }
+                data.put(name, value)
+            })
+        } catch {
+            case e: Exception => e.printStackTrace();
+        } finally {
+            FileUtil.close(column);
+        }
+        val itr = if (fromEnd) rows.descendingMap().entrySet().iterator() else rows.entrySet().iterator()
+        while (itr.hasNext()) {
+            val e = itr.next()
+            handler(e.getKey(), e.getValue())
+        }
+    }
+
+    /**
+      * read a counter of the objects.
+      * on the columnar days the rows and the columns of the whole range are merged by the time of each object,
+      * a row counter may be written before, after or between the columns of an object (a switch back and forth, a non numeric value).
+      */
+    def readCounter(date: String, objHashLv: ListValue, counter: String, stime: Long, etime: Long, handler: (Int, Long, Value) => Any) {
+        if (RealtimeCounterColumn.exists(date) == false) {
+            readBulk(date, stime, etime, (data: MapValue) => {
+                val value = data.get(counter)
+                if (value != null) {
+                    handler(data.getInt(CounterConstants.COMMON_OBJHASH), data.getLong(CounterConstants.COMMON_TIME), value)
+                }
+            })
+            return
+        }
+        val merged = new IntKeyMap[TreeMap[java.lang.Long, Value]]()
+        for (i <- 0 until objHashLv.size()) {
+            merged.put(objHashLv.getInt(i), new TreeMap[java.lang.Long, Value]())
+        }
+        readBulk(date, stime, etime, (data: MapValue) => {
+            val value = data.get(counter)
+            if (value != null) {
+                val points = merged.get(data.getInt(CounterConstants.COMMON_OBJHASH))
+                if (points != null) {
+                    points.put(data.getLong(CounterConstants.COMMON_TIME), value)
+                }
+            }
+        })
+        var column: RealtimeCounterColumn = null
+        try {
+            column = RealtimeCounterColumn.open(date)
+            for (i <- 0 until objHashLv.size()) {
+                val points = merged.get(objHashLv.getInt(i))
+                column.read(objHashLv.getInt(i), counter, stime, etime, (time: Long, value: Value) => {
+                    points.put(time, value)
+                })
+            }
+        } catch {
+            case e: Exception => e.printStackTrace();
+        } finally {
+            FileUtil.close(column);
+        }
+        for (i <- 0 until objHashLv.size()) {
+            val objHash = objHashLv.getInt(i)
+            val itr = merged.get(objHash).entrySet().iterator()
+            while (itr.hasNext()) {
+                val e = itr.next()
+                handler(objHash, e.getKey(), e.getValue())
+            }
+        }
+    }
+
     def readBulk(date: String, _stime: Long, etime: Long, handler: (MapValue) => Any) {
         var perfdb: RealtimeCounterDBHelper = null;
         try {
@@ -69,7 +166,7 @@ object RealtimeCounterRD {
             logdb = new RealtimeCounterDBHelper().open(date, true);
             if (logdb == null)
                 return null;
-            return logdb.counterDbHeader.getTagStrInt().keys();
+            return withColumnNames(date, logdb.counterDbHeader.getTagStrInt().keys());
         } catch {
             case e: Exception => e.printStackTrace();
         } finally {
@@ -85,6 +182,10 @@ object RealtimeCounterRD {
     }
 
     def readFromEnd(objName: String, date: String, stime: Long, etime: Long, handler: (Long, MapValue) => Any) {
+        if (RealtimeCounterColumn.exists(date)) {
+            readMerged(objName, date, stime, etime, handler, true)
+            return ;
+        }
         var logdb: RealtimeCounterDBHelper = null;
         try {
             logdb = new RealtimeCounterDBHelper().open(date, true);
@@ -106,7 +207,7 @@ object RealtimeCounterRD {
             logdb = new RealtimeCounterDBHelper().open(date, true);
             if (logdb == null)
                 return null;
-            return logdb.counterDbHeader.getTagStrInt().keys();
+            return withColumnNames(date, logdb.counterDbHeader.getTagStrInt().keys());
         } catch {
             case e: Exception => e.printStackTrace();
         } finally {
@@ -114,4 +215,19 @@ object RealtimeCounterRD {
         }
         return null;
     }
+
+    private def withColumnNames(date: String, names: StringEnumer): StringEnumer = {
+        if (RealtimeCounterColumn.exists(date) == false)
+            return names
+        val set = new StringSet()
+        EnumerScala.foreach(names, (name: String) => set.put(name))
+        var column: RealtimeCounterColumn = null
+        try {
+            column = RealtimeCounterColumn.open(date)
+            EnumerScala.foreach(column.header.getTagStrInt().keys(), (name: String) => set.put(name))
+        } finally {
+            FileUtil.close(column)
+        }
+        return set.keys()
+    }
 }
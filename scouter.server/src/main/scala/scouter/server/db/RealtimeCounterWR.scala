@@ -17,45 +17,83 @@
  */
 package scouter.server.db;
 
+import scouter.io.DataInputX
+import scouter.io.DataOutputX
 import scouter.lang.counters.CounterConstants
 import scouter.lang.pack.PerfCounterPack
 import scouter.lang.value.DecimalValue
+import scouter.server.Configure
 import scouter.server.Logger
+import scouter.server.core.CoreRun
+import scouter.server.db.counter.RealtimeCounterColumn
+import scouter.server.db.io.IngestJournal
 import scouter.server.db.counter.RealtimeCounterDBHelper
 import scouter.server.plugin.PlugInManager
 import scouter.util.DateUtil
 import scouter.util.FileUtil
-import scouter.util.RequestQueue
 import scouter.util.HashUtil
 import scouter.util.IClose
 import scouter.util.ThreadUtil;
 import scouter.server.util.ThreadScala
 object RealtimeCounterWR {
-    val queue = new RequestQueue[PerfCounterPack](DBCtr.MAX_QUE_SIZE);
-    ThreadScala.start("scouter.server.db.RealtimeCounterWR") {
+    val conf = Configure.getInstance()
+    case class CounterData(pack: PerfCounterPack, journal: IngestJournal.Record = null) {
+        def done() {
+            if (journal != null) journal.done()
+        }
+    }
+    val queue = CoreRun.newQueue[CounterData]("counter.db.queue", DBCtr.MAX_QUE_SIZE);
+    val thread = ThreadScala.start("scouter.server.db.RealtimeCounterWR") {
         val last_logtime = System.currentTimeMillis();
         var dBHelper: RealtimeCounterDBHelper = null
+        var column: RealtimeCounterColumn = null
+        var columnDateUnit = 0L
+        var lastFlush = System.currentTimeMillis()
         while (DBCtr.running) {
-            val pack = queue.get()
+            val m = queue.get(1000)
+            val pack = if (m == null) null else m.pack
             try {
-                if (dBHelper == null) {
-                    dBHelper = writeOpen(pack)
-                } else if (dBHelper.currentDateUnit != DateUtil.getDateUnit(pack.time)) {
-                    dBHelper.close()
-                    dBHelper = writeOpen(pack)
+                if (column != null && System.currentTimeMillis() - lastFlush >= 1000) {
+                    lastFlush = System.currentTimeMillis()
+                    column.flush(lastFlush - RealtimeCounterColumn.blockMillis)
                 }
-                val objHash = HashUtil.hash(pack.objName)
-                dBHelper.activeTime = System.currentTimeMillis()
-                dBHelper.counterDbHeader.intern(pack.data.keySet())
-
-                val counterBytes = RealtimeCounterDBHelper.getTagBytes(dBHelper.counterDbHeader.getTagStrInt(), pack.data)
-                val dataOffset = dBHelper.counterData.write(counterBytes)
-                dBHelper.counterIndex.write(objHash, pack.time, dataOffset)
+                if (pack != null) {
+                    val objHash = HashUtil.hash(pack.objName)
+                    var data = pack.data
+                    if (conf.mgr_counter_columnar_store_enabled) {
+                        if (column == null || columnDateUnit != DateUtil.getDateUnit(pack.time)) {
+                            FileUtil.close(column)
+                            column = RealtimeCounterColumn.open(DateUtil.yyyymmdd(pack.time))
+                            columnDateUnit = DateUtil.getDateUnit(pack.time)
+                        }
+                        data = column.append(objHash, pack.time, pack.data)
+                        if (data != null) {
+                            data.put(CounterConstants.COMMON_OBJHASH, new DecimalValue(objHash))
+                            data.put(CounterConstants.COMMON_TIME, new DecimalValue(pack.time))
+                        }
+                    }
+                    if (data != null) {
+                        if (dBHelper == null) {
+                            dBHelper = writeOpen(pack)
+                        } else if (dBHelper.currentDateUnit != DateUtil.getDateUnit(pack.time)) {
+                            dBHelper.close()
+                            dBHelper = writeOpen(pack)
+                        }
+                        dBHelper.activeTime = System.currentTimeMillis()
+                        dBHelper.counterDbHeader.intern(data.keySet())
 
+                        val counterBytes = RealtimeCounterDBHelper.getTagBytes(dBHelper.counterDbHeader.getTagStrInt(), data)
+                        val dataOffset = dBHelper.counterData.write(counterBytes)
+                        dBHelper.counterIndex.write(objHash, pack.time, dataOffset)
+                    }
+                }
             } catch {
                 case t: Throwable => Logger.println("S133", 10, t.toString())
+            } finally {
+                if (m != null) m.done()
             }
         }
+        FileUtil.close(column);
         FileUtil.close(dBHelper);
     }
     def addWait(p: PerfCounterPack, max: Int) {
@@ -65,11 +103,25 @@ object RealtimeCounterWR {
         add(p);
     }
     def add(p: PerfCounterPack) {
-        val ok = queue.put(p);
+        val m = CounterData(p, IngestJournalWR.append(IngestJournalWR.COUNTER, new DataOutputX().writePack(p).toByteArray()))
+        val ok = queue.put(m);
         if (ok == false) {
+            m.done()
             Logger.println("S134", 10, "queue exceeded!!");
         }
     }
+    /**
+      * put a journal record of the last run, waiting for the room of the queue.
+      */
+    def replay(b: Array[Byte], record: IngestJournal.Record) {
+        val m = CounterData(new DataInputX(b).readPack().asInstanceOf[PerfCounterPack], record)
+        while (queue.size() >= DBCtr.MAX_QUE_SIZE - 1) {
+            ThreadUtil.sleep(10)
+        }
+        if (queue.put(m) == false) {
+            m.done()
+        }
+    }
 
     def writeOpen(pack: PerfCounterPack): RealtimeCounterDBHelper = {
         val db = new RealtimeCounterDBHelper().open(DateUtil.yyyymmdd(pack.time), false);
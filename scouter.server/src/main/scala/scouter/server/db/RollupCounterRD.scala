@@ -0,0 +1,59 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package scouter.server.db
+
+import scouter.server.db.counter.RollupCounterDB
+import scouter.util.{DateUtil, FileUtil}
+
+object RollupCounterRD {
+
+    /**
+      * @return true if every day of the range has the rollup file of the resolution
+      */
+    def exists(resolution: Int, stime: Long, etime: Long): Boolean = {
+        var day = stime - DateUtil.getDateMillis(stime)
+        while (day <= etime) {
+            if (RollupCounterDB.exists(DateUtil.yyyymmdd(day), resolution) == false)
+                return false
+            day += DateUtil.MILLIS_PER_DAY
+        }
+        return true
+    }
+
+    /**
+      * read the rollups of a counter of an object over the days of the range
+      */
+    def read(resolution: Int, objHash: Int, counter: String, stime: Long, etime: Long, handler: RollupCounterDB.Record => Any) {
+        var day = stime - DateUtil.getDateMillis(stime)
+        while (day <= etime) {
+            val date = DateUtil.yyyymmdd(day)
+            if (RollupCounterDB.exists(date, resolution)) {
+                var db: RollupCounterDB = null
+                try {
+                    db = RollupCounterDB.open(date, resolution)
+                    db.read(objHash, counter, stime, etime, handler)
+                } catch {
+                    case e: Exception => e.printStackTrace();
+                } finally {
+                    FileUtil.close(db)
+                }
+            }
+            day += DateUtil.MILLIS_PER_DAY
+        }
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+package scouter.server.db
+
+import scouter.server.Logger
+import scouter.server.core.CoreRun
+import scouter.server.db.counter.RollupCounterDB
+import scouter.server.util.ThreadScala
+import scouter.util.{DateUtil, FileUtil, IntKeyMap}
+
+/**
+  * 'rollup counter writer' queue and dispatcher
+  */
+object RollupCounterWR {
+    class Item(val resolution: Int, val objHash: Int, val counter: String, val record: RollupCounterDB.Record)
+
+    val queue = CoreRun.newQueue[Item]("counter.rollup.queue", DBCtr.MAX_QUE_SIZE);
+
+    ThreadScala.start("scouter.server.db.RollupCounterWR") {
+        val dbs = new IntKeyMap[RollupCounterDB]()
+        while (DBCtr.running) {
+            val item = queue.get()
+            try {
+                var db = dbs.get(item.resolution)
+                val time = item.record.time
+                if (db == null || time < db.dayStart || time >= db.dayStart + DateUtil.MILLIS_PER_DAY) {
+                    FileUtil.close(db)
+                    db = RollupCounterDB.open(DateUtil.yyyymmdd(time), item.resolution)
+                    dbs.put(item.resolution, db)
+                }
+                db.write(item.objHash, item.counter, item.record)
+            } catch {
+                case t: Throwable => Logger.println("S234", 10, t.toString())
+            }
+        }
+        val itr = dbs.values()
+        while (itr.hasMoreElements()) {
+            FileUtil.close(itr.nextElement())
+        }
+    }
+
+    def add(item: Item) {
+        val ok = queue.put(item);
+        if (ok == false) {
+            Logger.println("S235", 10, "queue exceeded!!");
+        }
+    }
+}
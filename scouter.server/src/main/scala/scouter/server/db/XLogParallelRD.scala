@@ -0,0 +1,120 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db
+
+import java.util
+import java.util.concurrent.atomic.AtomicBoolean
+import java.util.concurrent.{Callable, ForkJoinPool, Future}
+
+import scouter.server.Configure
+import scouter.util.DateUtil
+
+import scala.util.control.ControlThrowable
+
+/**
+  * scan a time range of xlogs by per-day and per-time-slice partitions in parallel.
+  * matched xlogs are emitted in time order on the caller thread.
+  */
+object XLogParallelRD {
+    case class Partition(date: String, stime: Long, etime: Long)
+
+    private class StopScan extends ControlThrowable
+
+    val conf = Configure.getInstance()
+    lazy val pool = new ForkJoinPool(Math.max(1, conf.xlog_search_parallelism))
+
+    def partitions(stime: Long, etime: Long, sliceMillis: Long): Array[Partition] = {
+        val parts = new util.ArrayList[Partition]()
+        var time = stime
+        while (time <= etime) {
+            val date = DateUtil.yyyymmdd(time)
+            val nextDay = DateUtil.yyyymmdd(date) + DateUtil.MILLIS_PER_DAY
+            val end = Math.min(etime, Math.min(time + sliceMillis - 1, nextDay - 1))
+            parts.add(Partition(date, time, end))
+            time = end + 1
+        }
+        parts.toArray(new Array[Partition](parts.size()))
+    }
+
+    /**
+      * @param maxCount max count to emit
+      * @param read reads a partition and invokes the handler with (time, xlog bytes) in time order
+      * @param matches filter of the xlog
+      * @param emit writes a matched xlog. an exception from it cancels the scan.
+      * @param flush called when a partition is emitted
+      */
+    def search(stime: Long, etime: Long, maxCount: Int,
+               read: (Partition, (Long, Array[Byte]) => Any) => Any,
+               matches: (Long, Array[Byte]) => Boolean,
+               emit: Array[Byte] => Any,
+               flush: () => Any) {
+
+        val parts = partitions(stime, etime, Math.max(1, conf.xlog_search_partition_minutes) * DateUtil.MILLIS_PER_MINUTE)
+        val cancelled = new AtomicBoolean(false)
+        val futures = new Array[Future[util.List[Array[Byte]]]](parts.length)
+        val window = Math.max(1, conf.xlog_search_parallelism) * 2
+
+        def scan(part: Partition): Callable[util.List[Array[Byte]]] = new Callable[util.List[Array[Byte]]] {
+            override def call(): util.List[Array[Byte]] = {
+                val found = new util.ArrayList[Array[Byte]]()
+                try {
+                    read(part, (time: Long, data: Array[Byte]) => {
+                        if (cancelled.get()) {
+                            throw new StopScan
+                        }
+                        if (data != null && matches(time, data)) {
+                            found.add(data)
+                            if (found.size() >= maxCount) {
+                                throw new StopScan
+                            }
+                        }
+                    })
+                } catch {
+                    case _: StopScan =>
+                }
+                found
+            }
+        }
+
+        var submitted = 0
+        var emitted = 0
+        try {
+            var i = 0
+            while (i < parts.length && emitted < maxCount) {
+                while (submitted < parts.length && submitted < i + window) {
+                    futures(submitted) = pool.submit(scan(parts(submitted)))
+                    submitted += 1
+                }
+                val found = futures(i).get()
+                futures(i) = null
+                var k = 0
+                while (k < found.size() && emitted < maxCount) {
+                    emit(found.get(k))
+                    emitted += 1
+                    k += 1
+                }
+                flush()
+                i += 1
+            }
+        } finally {
+            cancelled.set(true)
+            futures.foreach(f => if (f != null) f.cancel(true))
+        }
+    }
+}
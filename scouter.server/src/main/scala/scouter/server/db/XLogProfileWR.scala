@@ -17,8 +17,11 @@
  */
 package scouter.server.db;
 import java.util.List
+import scouter.io.DataInputX
+import scouter.io.DataOutputX
 import scouter.server.Logger
 import scouter.server.ShutdownManager
+import scouter.server.db.io.IngestJournal
 import scouter.server.db.xlog.XLogProfileDataReader
 import scouter.server.db.xlog.XLogProfileDataWriter
 import scouter.server.db.xlog.XLogProfileIndex
@@ -50,34 +53,47 @@ object XLogProfileWR extends IClose {
             }
     }
     val prefix = "xlog";
-    class Data(_time: Long, _txid: Long, _data: Array[Byte]) {
+    class Data(_time: Long, _txid: Long, _data: Array[Byte], _journal: IngestJournal.Record = null) {
         val time = _time
         val txid = _txid
         val data = _data
+        def done() {
+            if (_journal != null) _journal.done()
+        }
     }
     var currentDateUnit: Long = 0
     var index: XLogProfileIndex = null
     var writer: XLogProfileDataWriter = null
-    ThreadScala.start("scouter.server.db.XLogProfileWR") {
+    val thread = ThreadScala.start("scouter.server.db.XLogProfileWR") {
         while (DBCtr.running) {
-            val m = queue.get();
+            val m = queue.get(1000);
               ServerStat.put("profile.db.queue",queue.size());
               try {
-                if (currentDateUnit != DateUtil.getDateUnit(m.time)) {
-                    currentDateUnit = DateUtil.getDateUnit(m.time);
-                    close();
-                    open(DateUtil.yyyymmdd(m.time));
-                }
-                if (index == null) {
-                    OftenAction.act("XLogWR", 10) {
-                        queue.clear();
-                        currentDateUnit = 0;
+                if (m != null) {
+                    if (currentDateUnit != DateUtil.getDateUnit(m.time)) {
+                        currentDateUnit = DateUtil.getDateUnit(m.time);
+                        close();
+                        open(DateUtil.yyyymmdd(m.time));
+                    }
+                    if (index == null) {
+                        OftenAction.act("XLogWR", 10) {
+                            queue.clear();
+                            currentDateUnit = 0;
+                        }
+                        Logger.println("S141", 10, "can't open ");
+                        m.done()
+                    } else {
+                        // the journal record is done when the block of the profile is on the file
+                        val offset = writer.write(m.data, new Runnable {
+                            override def run() {
+                                m.done()
+                            }
+                        })
+                        index.addByTxid(m.txid, offset);
                     }
-                    Logger.println("S141", 10, "can't open ");
-                } else {
-                    val offset = writer.write(m.data)
-                    index.addByTxid(m.txid, offset);
                 }
+                // the pending block is written by its age even while the profiles keep coming
+                if (writer != null) writer.flush(5000)
             } catch {
                 case e: Throwable => e.printStackTrace()
             }
@@ -85,11 +101,28 @@ object XLogProfileWR extends IClose {
         close();
     }
     def add(time: Long, txid: Long, data: Array[Byte]) {
-        val ok = queue.put(new Data(time, txid, data));
+        val journal = IngestJournalWR.append(IngestJournalWR.PROFILE,
+            new DataOutputX().writeLong(time).writeLong(txid).writeBlob(data).toByteArray())
+        val m = new Data(time, txid, data, journal)
+        val ok = queue.put(m);
         if (ok == false) {
+            m.done()
             Logger.println("S142", 10, "queue exceeded!!");
         }
     }
+    /**
+      * put a journal record of the last run, waiting for the room of the queue.
+      */
+    def replay(b: Array[Byte], record: IngestJournal.Record) {
+        val in = new DataInputX(b)
+        val m = new Data(in.readLong(), in.readLong(), in.readBlob(), record)
+        while (queue.size() >= Configure.getInstance().profile_queue_size - 1) {
+            ThreadUtil.sleep(10)
+        }
+        if (queue.put(m) == false) {
+            m.done()
+        }
+    }
     def close() {
         FileUtil.close(index);
         FileUtil.close(writer);
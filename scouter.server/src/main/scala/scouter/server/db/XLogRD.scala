@@ -24,6 +24,8 @@ import java.util.Vector
 import scouter.io.DataOutputX
 import scouter.server.db.xlog.XLogDataReader
 import scouter.server.db.xlog.XLogIndex
+import scouter.server.db.xlog.XLogSecondaryIndex
+import scouter.util.DateUtil
 import scouter.util.FileUtil
 import scouter.server.db.io.IndexTimeFile
 
@@ -72,6 +74,38 @@ object XLogRD {
         }
     }
 
+    /**
+      * read xlogs matching all the fields through the secondary index.
+      * @return false if the secondary index doesn't cover the time range, then the caller should scan the time range.
+      */
+    def readBySecondaryIndex(date: String, fromTime: Long, toTime: Long, fields: Array[(Byte, Int)], handler: (Long, Array[Byte]) => Any): Boolean = {
+        val path = XLogWR.getDBPath(date);
+        if (new File(path).canRead() == false) {
+            return true;
+        }
+        val file = path + "/" + XLogWR.prefix;
+        if (XLogSecondaryIndex.getStartTime(file) > fromTime) {
+            return false;
+        }
+        var reader: XLogDataReader = null;
+        var idx: XLogSecondaryIndex = null;
+        try {
+            reader = XLogDataReader.open(date, file);
+            idx = XLogSecondaryIndex.open(file);
+            val dataReader = reader
+            idx.search(fromTime, toTime, fields, (time: Long, pos: Long) => {
+                handler(time, dataReader.read(pos))
+            })
+        } catch {
+            case e: Exception => e.printStackTrace()
+            case _ :Throwable=>
+        } finally {
+            FileUtil.close(idx);
+            FileUtil.close(reader);
+        }
+        return true;
+    }
+
     def readFromEndTime(date: String, fromTime: Long, toTime: Long, handler: (Long, Array[Byte]) => Any) {
 
         val path = XLogWR.getDBPath(date);
@@ -121,6 +155,24 @@ object XLogRD {
         }
     }
 
+    /**
+      * find the xlog of the txid from the date back to the days before.
+      * the days without the txid are skipped by their bloom filters in memory.
+      *
+      * @return (date, xlog) or null
+      */
+    def findByTxid(date: String, days: Int, txid: Long): (String, Array[Byte]) = {
+        val noon = DateUtil.yyyymmdd(date) + DateUtil.MILLIS_PER_DAY / 2
+        for (i <- 0 until Math.max(1, days)) {
+            val d = DateUtil.yyyymmdd(noon - i * DateUtil.MILLIS_PER_DAY)
+            val xlog = getByTxid(d, txid)
+            if (xlog != null) {
+                return (d, xlog)
+            }
+        }
+        null
+    }
+
     def readByGxid(date: String, gxid: Long, handler: (Array[Byte], Array[Byte]) => Any) {
 
         val path = XLogWR.getDBPath(date);
@@ -19,94 +19,369 @@
 package scouter.server.db;
 
 import java.io.File
+import java.util
 
-import scouter.server.core.ServerStat
-import scouter.server.db.xlog.{XLogDataWriter, XLogIndex}
+import scouter.server.core.{CoreRun, ServerStat}
+import scouter.lang.pack.XLogPack
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.server.db.io.IngestJournal
+import scouter.server.db.xlog.{XLogDataWriter, XLogIndex, XLogSecondaryIndex}
 import scouter.server.util.{OftenAction, ThreadScala}
 import scouter.server.{Configure, Logger}
-import scouter.util.{DateUtil, FileUtil, RequestQueue, ThreadUtil}
+import scouter.util.{DateUtil, FileUtil, HashUtil, RingQueue, ThreadUtil}
 
-import scala.collection.mutable
+import scala.collection.JavaConverters._
 
 object XLogWR {
-    case class XLogData(time: Long, txid: Long, gxid: Long, elapsed: Int, data: Array[Byte])
-    case class StorageContainer(idleLimit: Long, var lastAccess: Long, index: XLogIndex, writer: XLogDataWriter)
+    case class XLogData(time: Long, txid: Long, gxid: Long, elapsed: Int, data: Array[Byte],
+                        objHash: Int = 0, service: Int = 0, ipHash: Int = 0, login: Int = 0, error: Int = 0,
+                        journal: IngestJournal.Record = null) {
+        def done(): Unit = {
+            if (journal != null) journal.done()
+        }
+    }
+    case class StorageContainer(idleLimit: Long, var lastAccess: Long, index: XLogIndex, writer: XLogDataWriter, sindex: XLogSecondaryIndex,
+                                dateUnit: Long)
 
     val MAX_IDLE = 30 * 60 * 1000L
     val dir = "/xlog"
     val prefix = "xlog"
 
-    val queue = new RequestQueue[XLogData](Configure.getInstance().xlog_queue_size)
-    val dailyContainer = mutable.Map[Long, StorageContainer]()
+    val queue = CoreRun.newQueue[XLogData]("xlog.db.queue", Configure.getInstance().xlog_queue_size)
+
+    /**
+      * a writer of a day with its own queue and thread, so the xlogs arriving late for an old day
+      * are written aside and do not hold today's ones.
+      * the xlogs of a day before today are always written in batches sorted by time
+      * not to jump between the index blocks on every xlog.
+      * the shared writer takes the days beyond xlog_day_writer_max, it opens the files of the day of each batch
+      * and closes them when its queue is idle.
+      *
+      * @param previous the thread of the last writer of the day, the files are opened after it has closed them
+      */
+    class DayWriter(val dateUnit: Long, val date: String, previous: Thread = null, val shared: Boolean = false) {
+        val queue = new RingQueue[XLogData](Configure.getInstance().xlog_queue_size,
+            RingQueue.WaitStrategy.of(Configure.getInstance()._mgr_ingest_queue_wait_strategy))
+        @volatile var running = true
+        @volatile var lastAccess = System.currentTimeMillis()
+        @volatile var container: StorageContainer = null
+
+        val thread = ThreadScala.start("scouter.server.db.XLogWR-" + date) {
+            val conf = Configure.getInstance()
+            val batch = new util.ArrayList[XLogData]()
+            if (previous != null) {
+                previous.join()
+            }
+            while (running && DBCtr.running) {
+                val m = queue.get(1000)
+                if (m == null) {
+                    if (shared) {
+                        closeContainer()
+                    }
+                } else {
+                    if (shared || dateUnit < DateUtil.getDateUnit(System.currentTimeMillis())) {
+                        batch.add(m)
+                        gather(queue, batch, conf.xlog_group_commit_max_count, conf.xlog_group_commit_max_wait_ms)
+                        batch.sort(TIME_ORDER)
+                        writeBatch(this, batch)
+                        batch.clear()
+                    } else if (conf.xlog_group_commit_enabled) {
+                        batch.add(m)
+                        gather(queue, batch, conf.xlog_group_commit_max_count, conf.xlog_group_commit_max_wait_ms)
+                        writeBatch(this, batch)
+                        batch.clear()
+                    } else {
+                        write(this, m)
+                    }
+                }
+            }
+            // the xlogs queued before the stop are written, then the files are closed by this thread only
+            while (queue.drainTo(batch, Math.max(1, conf.xlog_group_commit_max_count)) > 0) {
+                writeBatch(this, batch)
+                batch.clear()
+            }
+            closeContainer()
+        }
+
+        def closeContainer(): Unit = {
+            if (container != null) {
+                FileUtil.close(container.index)
+                FileUtil.close(container.writer)
+                FileUtil.close(container.sindex)
+                container = null
+            }
+        }
+
+        /**
+          * stop the thread and wait for it to write the queued xlogs and close the files
+          */
+        def close(): Unit = {
+            running = false
+            if (Thread.currentThread() != thread) {
+                thread.join(10000)
+            }
+        }
+    }
+
+    private val TIME_ORDER = new util.Comparator[XLogData] {
+        override def compare(a: XLogData, b: XLogData): Int = java.lang.Long.compare(a.time, b.time)
+    }
+
+    /** the writer of each day, the days beyond xlog_day_writer_max are mapped to the shared writer */
+    val dailyContainer = new util.HashMap[Long, DayWriter]()
+    /** the threads of the writers closed but not exited yet */
+    private val closing = new util.HashMap[Long, Thread]()
+    private var shared: DayWriter = null
 
     ThreadScala.start("scouter.server.db.XLogDataFileWatcher") {
         while (DBCtr.running) {
             ThreadUtil.sleep(5 * 60 * 1000)
             val now = System.currentTimeMillis()
-            dailyContainer
-                    .filter(kv => now - kv._2.lastAccess > kv._2.idleLimit)
-                    .keys.foreach(k => close(k))
+            val idle = dailyContainer.synchronized {
+                dailyContainer.values().asScala
+                        .filter(w => w.queue.size() == 0 && now - w.lastAccess > MAX_IDLE)
+                        .map(_.dateUnit).toList
+            }
+            idle.foreach(k => close(k))
         }
     }
 
-    ThreadScala.start("scouter.server.db.XLogWR") {
+    val thread = ThreadScala.start("scouter.server.db.XLogWR") {
         while (DBCtr.running) {
-            val m = queue.get()
-
-            ServerStat.put("xlog.db.queue",queue.size())
-            try {
-                val currentDateUnit = DateUtil.getDateUnit(m.time)
-                val container = dailyContainer.getOrElseUpdate(currentDateUnit, {
-                    val (index, writer) = open(m.time)
-                    StorageContainer(MAX_IDLE, System.currentTimeMillis(), index, writer)
-                })
-
-                if (container.index == null) {
-                    OftenAction.act("XLoWR", 10) {
-                        dailyContainer.remove(currentDateUnit)
-                        queue.clear()
-                    }
-                    Logger.println("SZ143", 10, "can't open XLoWR")
+            val m = queue.get(1000)
+            ServerStat.put("xlog.db.queue", queue.size())
+            if (m != null) {
+                dispatch(m)
+            }
+        }
+        closeAll()
+    }
 
+    /**
+      * today and a day of which the last writer is still closing get their own writer at any count.
+      */
+    private def dispatch(m: XLogData): Unit = {
+        val dateUnit = DateUtil.getDateUnit(m.time)
+        dailyContainer.synchronized {
+            var w = dailyContainer.get(dateUnit)
+            if (w == null) {
+                var previous = closing.get(dateUnit)
+                if (previous != null && !previous.isAlive()) {
+                    closing.remove(dateUnit)
+                    previous = null
+                }
+                if (previous != null || dateUnit >= DateUtil.getDateUnit(System.currentTimeMillis())
+                        || dayWriterCount() < Configure.getInstance().xlog_day_writer_max) {
+                    w = new DayWriter(dateUnit, DateUtil.yyyymmdd(m.time), previous)
                 } else {
-                    container.lastAccess = System.currentTimeMillis()
-                    val location = container.writer.write(m.data)
-                    container.index.setByTime(m.time, location)
-                    container.index.setByTxid(m.txid, location)
-                    container.index.setByGxid(m.gxid, location)
+                    if (shared == null) {
+                        shared = new DayWriter(0L, "shared", null, true)
+                    }
+                    w = shared
                 }
+                dailyContainer.put(dateUnit, w)
+            }
+            w.lastAccess = System.currentTimeMillis()
+            if (!w.queue.put(m)) {
+                m.done()
+                Logger.println("S144", 10, "queue exceeded!! " + w.date)
+            }
+        }
+    }
+
+    private def dayWriterCount(): Int = {
+        dailyContainer.values().asScala.count(w => !w.shared)
+    }
+
+    /**
+      * count of the xlogs not written yet
+      */
+    def size(): Int = {
+        var n = queue.size()
+        dailyContainer.synchronized {
+            dailyContainer.values().asScala.toSet[DayWriter].foreach(w => n += w.queue.size())
+        }
+        n
+    }
 
-            } catch {
-                case t: Throwable => t.printStackTrace()
+    private def write(w: DayWriter, m: XLogData): Unit = {
+        try {
+            val container = getContainer(w, m.time)
+            if (container != null) {
+                val location = container.writer.write(m.data)
+                container.index.setByTime(m.time, location)
+                container.index.setByTxid(m.txid, location)
+                container.index.setByGxid(m.gxid, location)
+                if (container.sindex != null) {
+                    container.sindex.add(m.time, location, m.objHash, m.service, m.ipHash, m.login, m.error)
+                }
             }
+        } catch {
+            case t: Throwable => t.printStackTrace()
+        } finally {
+            m.done()
+        }
+    }
+
+    /**
+      * gather xlogs until max count or max wait time reached.
+      */
+    private def gather(queue: RingQueue[XLogData], batch: util.List[XLogData], maxCount: Int, maxWaitMs: Int): Unit = {
+        val until = System.currentTimeMillis() + maxWaitMs
+        while (batch.size() < maxCount) {
+            queue.drainTo(batch, maxCount - batch.size())
+            val remain = until - System.currentTimeMillis()
+            if (batch.size() >= maxCount || remain <= 0) {
+                return
+            }
+            val m = queue.get(remain)
+            if (m == null) {
+                return
+            }
+            batch.add(m)
         }
-        closeAll()
+    }
+
+    /**
+      * the batch of the shared writer is sorted by time, so it is written day by day.
+      */
+    private def writeBatch(w: DayWriter, batch: util.List[XLogData]): Unit = {
+        var from = 0
+        while (from < batch.size()) {
+            val dateUnit = DateUtil.getDateUnit(batch.get(from).time)
+            var to = from + 1
+            while (to < batch.size() && DateUtil.getDateUnit(batch.get(to).time) == dateUnit) {
+                to += 1
+            }
+            writeDay(w, batch.subList(from, to))
+            from = to
+        }
+        ServerStat.put("xlog.db.batch", batch.size())
+    }
+
+    /**
+      * write data of the batch in one sequential append and then apply the index entries as a batch.
+      * all the xlogs of the batch are of one day.
+      */
+    private def writeDay(w: DayWriter, batch: util.List[XLogData]): Unit = {
+        try {
+            val container = getContainer(w, batch.get(0).time)
+            if (container != null) {
+                val day = batch.asScala.toArray
+                val locations = container.writer.writeBatch(day.map(_.data))
+                container.index.setBatch(day.map(_.time), day.map(_.txid), day.map(_.gxid), locations)
+                if (container.sindex != null) {
+                    container.sindex.addBatch(day.map(_.time), locations, day.map(_.objHash), day.map(_.service),
+                        day.map(_.ipHash), day.map(_.login), day.map(_.error))
+                }
+            }
+        } catch {
+            case t: Throwable => t.printStackTrace()
+        } finally {
+            batch.asScala.foreach(_.done())
+        }
+    }
+
+    private def getContainer(w: DayWriter, time: Long): StorageContainer = {
+        val dateUnit = DateUtil.getDateUnit(time)
+        if (w.container != null && w.container.dateUnit != dateUnit) {
+            w.closeContainer()
+        }
+        if (w.container == null) {
+            val (index, writer, sindex) = open(time)
+            w.container = StorageContainer(MAX_IDLE, System.currentTimeMillis(), index, writer, sindex, dateUnit)
+        }
+        val container = w.container
+        if (container.index == null) {
+            OftenAction.act("XLoWR", 10) {
+                w.container = null
+                w.queue.clear()
+            }
+            Logger.println("SZ143", 10, "can't open XLoWR")
+            return null
+        }
+        container.lastAccess = System.currentTimeMillis()
+        container
     }
 
     def add(time: Long, tid: Long, gid: Long, elapsed: Int, data: Array[Byte]): Unit = {
-        val ok = queue.put(XLogData(time, tid, gid, elapsed, data))
+        put(XLogData(time, tid, gid, elapsed, data))
+    }
+
+    def add(m: XLogPack, data: Array[Byte]): Unit = {
+        val ipHash = if (m.ipaddr == null || m.ipaddr.length == 0) 0 else HashUtil.hash(m.ipaddr)
+        put(XLogData(m.endTime, m.txid, m.gxid, m.elapsed, data, m.objHash, m.service, ipHash, m.login, m.error))
+    }
+
+    private def put(d: XLogData): Unit = {
+        val m = if (IngestJournalWR.enabled) d.copy(journal = IngestJournalWR.append(IngestJournalWR.XLOG, toJournal(d))) else d
+        val ok = queue.put(m)
         if (!ok) {
+            m.done()
             Logger.println("S144", 10, "queue exceeded!!")
         }
     }
 
+    private def toJournal(d: XLogData): Array[Byte] = {
+        val out = new DataOutputX()
+        out.writeLong(d.time).writeLong(d.txid).writeLong(d.gxid).writeInt(d.elapsed)
+        out.writeInt(d.objHash).writeInt(d.service).writeInt(d.ipHash).writeInt(d.login).writeInt(d.error)
+        out.writeBlob(d.data)
+        out.toByteArray
+    }
+
+    /**
+      * put a journal record of the last run, waiting for the room of the queue.
+      */
+    def replay(b: Array[Byte], record: IngestJournal.Record): Unit = {
+        val in = new DataInputX(b)
+        val m = XLogData(in.readLong(), in.readLong(), in.readLong(), in.readInt(), null,
+            in.readInt(), in.readInt(), in.readInt(), in.readInt(), in.readInt(), record).copy(data = in.readBlob())
+        while (queue.size() >= queue.getCapacity() - 1) {
+            ThreadUtil.sleep(10)
+        }
+        if (!queue.put(m)) {
+            m.done()
+        }
+    }
+
+    /**
+      * the writers are removed under the lock and joined out of it not to hold the dispatch
+      */
     def closeAll(): Unit = {
-        dailyContainer.values.foreach (container => {
-            FileUtil.close(container.index)
-            FileUtil.close(container.writer)
-        })
-        dailyContainer.clear()
+        val writers = dailyContainer.synchronized {
+            val list = dailyContainer.values().asScala.toSet[DayWriter].toList
+            dailyContainer.clear()
+            shared = null
+            list
+        }
+        writers.foreach(w => w.close())
     }
 
-    def close(time: Long): Unit = {
-        dailyContainer.get(time).foreach(container => {
-            FileUtil.close(container.index)
-            FileUtil.close(container.writer)
-        })
-        dailyContainer.remove(time)
+    /**
+      * a day of the shared writer is only unmapped, the writer closes the files of the day when it is idle.
+      * a writer of its own not exited in the join is kept in closing, so the day is not opened again till it exits.
+      * @param dateUnit DateUtil.getDateUnit() of the day
+      */
+    def close(dateUnit: Long): Unit = {
+        val w = dailyContainer.synchronized {
+            val w = dailyContainer.remove(dateUnit)
+            if (w != null && !w.shared) {
+                closing.put(dateUnit, w.thread)
+            }
+            w
+        }
+        if (w != null && !w.shared) {
+            w.close()
+            dailyContainer.synchronized {
+                if (!w.thread.isAlive() && (closing.get(dateUnit) eq w.thread)) {
+                    closing.remove(dateUnit)
+                }
+            }
+        }
     }
 
-    def open(time: Long): (XLogIndex, XLogDataWriter) = {
+    def open(time: Long): (XLogIndex, XLogDataWriter, XLogSecondaryIndex) = {
         val date = DateUtil.yyyymmdd(time)
 
         try {
@@ -115,9 +390,20 @@ object XLogWR {
             if (!f.exists()) f.mkdirs()
             val file = path + "/" + prefix
             val index = XLogIndex.open(file)
+            index.prepareBloom(Configure.getInstance().xlog_id_bloom_enabled)
             val writer = XLogDataWriter.open(date, file)
+            var sindex: XLogSecondaryIndex = null
+            if (Configure.getInstance().xlog_secondary_index_enabled) {
+                // a day with no xlog yet is covered from its start, or else from the first xlog indexed
+                if (index.isEmpty()) {
+                    XLogSecondaryIndex.markStart(file, 0L)
+                }
+                sindex = XLogSecondaryIndex.open(file)
+            } else {
+                XLogSecondaryIndex.markStop(file)
+            }
 
-            return (index, writer)
+            return (index, writer, sindex)
 
         } catch {
             case e: Throwable => {
@@ -126,7 +412,7 @@ object XLogWR {
             }
         }
 
-        (null, null)
+        (null, null, null)
     }
 
     def getDBPath(date: String): String = {
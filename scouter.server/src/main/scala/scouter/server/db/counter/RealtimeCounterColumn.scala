@@ -0,0 +1,225 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.counter;
+
+import java.io.File
+import java.util.{ArrayList, Collections, Comparator, Hashtable}
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.lang.counters.CounterConstants
+import scouter.lang.value.{MapValue, Value}
+import scouter.server.Configure
+import scouter.server.db.DBCtr
+import scouter.server.db.io.IndexKeyFile
+import scouter.server.util.EnumerScala
+import scouter.util.{FileUtil, IClose, LongKeyMap}
+
+/**
+  * columnar store of the realtime counters of a day. (mgr_counter_columnar_store_enabled)
+  * the values of a counter of an object are appended to a CounterColumnBlock,
+  * and a block is written to col.data when it is full or older than mgr_counter_columnar_block_sec.
+  * the index key is objHash + counter index and the values are the blocks' time ranges and positions,
+  * so reading a counter touches only its blocks.
+  * the blocks not written yet are read from the memory.
+  */
+object RealtimeCounterColumn {
+    val FILE_NAME = "col"
+    val BLOCK_MAX_COUNT = 300
+    val BLOCK_MAX_MILLIS = 10 * 60 * 1000L
+
+    /**
+      * the age of a block to be written at, short not to lose much at a crash
+      */
+    def blockMillis: Long = {
+        Math.min(BLOCK_MAX_MILLIS, Math.max(1, Configure.getInstance().mgr_counter_columnar_block_sec) * 1000L)
+    }
+
+    val table = new Hashtable[String, RealtimeCounterColumn]();
+
+    def getDBPath(date: String): String = {
+        DBCtr.getRootPath() + "/" + date + "/counter"
+    }
+
+    def exists(date: String): Boolean = {
+        new File(getDBPath(date) + "/" + FILE_NAME + ".data").exists()
+    }
+
+    def open(date: String): RealtimeCounterColumn = {
+        table.synchronized {
+            var db = table.get(date);
+            if (db != null) {
+                db.refrence += 1;
+            } else {
+                val dir = new File(getDBPath(date));
+                if (dir.exists() == false)
+                    dir.mkdirs();
+                db = new RealtimeCounterColumn(date, getDBPath(date) + "/" + FILE_NAME);
+                table.put(date, db);
+            }
+            return db;
+        }
+    }
+
+    private def key(objHash: Int, counter: Int): Array[Byte] = {
+        val k = new Array[Byte](8)
+        DataOutputX.toBytes(k, 0, objHash)
+        DataOutputX.toBytes(k, 4, counter)
+        k
+    }
+
+    private def liveKey(objHash: Int, counter: Int): Long = {
+        (objHash.toLong << 32) | (counter & 0xffffffffL)
+    }
+}
+
+class RealtimeCounterColumn(date: String, file: String) extends IClose {
+    import RealtimeCounterColumn._
+
+    var refrence = 0;
+    val header = RealtimeCounterDBHeader.open(file);
+    private val index = new IndexKeyFile(file);
+    private val data = RealtimeCounterData.open(file);
+    private val live = new LongKeyMap[CounterColumnBlock]();
+
+    override def close() {
+        table.synchronized {
+            if (this.refrence == 0) {
+                table.remove(this.date);
+                flush(Long.MaxValue);
+                FileUtil.close(index);
+                FileUtil.close(data);
+                FileUtil.close(header);
+            } else {
+                this.refrence -= 1;
+            }
+        }
+    }
+
+    /**
+      * @return values which can't be stored in the columns or null
+      */
+    def append(objHash: Int, time: Long, values: MapValue): MapValue = {
+        var rest: MapValue = null
+        this.synchronized {
+            EnumerScala.foreach(values.keys(), (name: String) => {
+                val v = values.get(name)
+                if (CounterColumnBlock.isStorable(v)) {
+                    if (name != CounterConstants.COMMON_OBJHASH && name != CounterConstants.COMMON_TIME) {
+                        val k = liveKey(objHash, header.intern(name, true))
+                        var block = live.get(k)
+                        if (block != null && (block.getCount() >= BLOCK_MAX_COUNT || time - block.getFirstTime() >= blockMillis)) {
+                            write(k, block)
+                            block = null
+                        }
+                        if (block == null) {
+                            block = new CounterColumnBlock()
+                            live.put(k, block)
+                        }
+                        block.append(time, v)
+                    }
+                } else {
+                    if (rest == null) {
+                        rest = new MapValue()
+                    }
+                    rest.put(name, v)
+                }
+            })
+        }
+        return rest
+    }
+
+    /**
+      * write the blocks started before the time
+      */
+    def flush(before: Long) {
+        this.synchronized {
+            val keys = live.keyArray()
+            for (k <- keys) {
+                val block = live.get(k)
+                if (block != null && block.getFirstTime() < before) {
+                    write(k, block)
+                }
+            }
+        }
+    }
+
+    private def write(k: Long, block: CounterColumnBlock) {
+        live.remove(k)
+        val pos = data.write(block.toBytes())
+        val value = new DataOutputX()
+            .writeLong(block.getMinTime())
+            .writeLong(block.getMaxTime())
+            .writeLong5(pos)
+            .toByteArray()
+        index.put(key((k >>> 32).toInt, k.toInt), value)
+    }
+
+    /**
+      * read a counter of an object in time order
+      */
+    def read(objHash: Int, counter: String, stime: Long, etime: Long, handler: (Long, Value) => Any) {
+        val idx = header.getTagStrInt().get(counter)
+        if (idx < 0)
+            return
+        val blocks = new ArrayList[Array[Byte]]()
+        val positions = new ArrayList[java.lang.Long]()
+        // a block being written moves from the live map to the index under this lock
+        this.synchronized {
+            val ranges = index.getAll(key(objHash, idx))
+            for (i <- 0 until ranges.size()) {
+                val in = new DataInputX(ranges.get(i))
+                val min = in.readLong()
+                val max = in.readLong()
+                if (max >= stime && min <= etime) {
+                    positions.add(in.readLong5())
+                }
+            }
+            val block = live.get(liveKey(objHash, idx))
+            if (block != null && block.getMaxTime() >= stime && block.getMinTime() <= etime) {
+                blocks.add(block.toBytes())
+            }
+        }
+        for (i <- 0 until positions.size()) {
+            blocks.add(data.read(positions.get(i)))
+        }
+        Collections.sort(blocks, new Comparator[Array[Byte]]() {
+            override def compare(a: Array[Byte], b: Array[Byte]): Int = {
+                java.lang.Long.compare(CounterColumnBlock.getMinTime(a), CounterColumnBlock.getMinTime(b))
+            }
+        })
+        for (i <- 0 until blocks.size()) {
+            val p = CounterColumnBlock.decode(blocks.get(i))
+            for (j <- 0 until p.size()) {
+                val time = p.time(j)
+                if (time >= stime && time <= etime) {
+                    handler(time, p.getValue(j))
+                }
+            }
+        }
+    }
+
+    /**
+      * read all the counters of an object. the values of a time are not in the same call
+      */
+    def readAll(objHash: Int, stime: Long, etime: Long, handler: (String, Long, Value) => Any) {
+        EnumerScala.foreach(header.getTagStrInt().keys(), (name: String) => {
+            read(objHash, name, stime, etime, (time: Long, value: Value) => handler(name, time, value))
+        })
+    }
+}
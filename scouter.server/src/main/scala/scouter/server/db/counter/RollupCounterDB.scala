@@ -0,0 +1,215 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.counter;
+
+import java.io.{File, RandomAccessFile}
+import java.util.Hashtable
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.server.db.DBCtr
+import scouter.server.db.io.IndexKeyFile
+import scouter.util.{DateUtil, FileUtil, IClose, LongKeyMap}
+
+/**
+  * rollups of the realtime counters of a day at a resolution. (<date>/counter/rollup<seconds>)
+  * the slots of a counter of an object are kept in fixed size regions,
+  * so a slot is updated in place and a range of slots is read at once.
+  * a region is allocated when its first slot is written.
+  */
+object RollupCounterDB {
+    val RECORD_SIZE = 24 // count(4) min(4) max(4) sum(8) last(4)
+    val REGION_SLOTS = 360
+
+    val table = new Hashtable[String, RollupCounterDB]();
+
+    class Record(val time: Long) {
+        var count = 0
+        var min = Float.MaxValue
+        var max = -Float.MaxValue
+        var sum = 0.0d
+        var last = 0f
+
+        def add(v: Double) {
+            val f = v.toFloat
+            count += 1
+            if (f < min) min = f
+            if (f > max) max = f
+            sum += v
+            last = f
+        }
+
+        def avg: Double = if (count == 0) 0 else sum / count
+    }
+
+    def getFile(date: String, resolution: Int): String = {
+        DBCtr.getRootPath() + "/" + date + "/counter/rollup" + resolution
+    }
+
+    def exists(date: String, resolution: Int): Boolean = {
+        new File(getFile(date, resolution) + ".data").exists()
+    }
+
+    def open(date: String, resolution: Int): RollupCounterDB = {
+        val file = getFile(date, resolution)
+        table.synchronized {
+            var db = table.get(file);
+            if (db != null) {
+                db.refrence += 1;
+            } else {
+                val dir = new File(file).getParentFile()
+                if (dir.exists() == false)
+                    dir.mkdirs();
+                db = new RollupCounterDB(date, resolution, file);
+                table.put(file, db);
+            }
+            return db;
+        }
+    }
+}
+
+class RollupCounterDB(date: String, resolution: Int, file: String) extends IClose {
+    import RollupCounterDB._
+
+    var refrence = 0;
+    val header = RealtimeCounterDBHeader.open(file);
+    private val index = new IndexKeyFile(file);
+    private val dataFile = new RandomAccessFile(file + ".data", "rw");
+    private val regions = new LongKeyMap[java.lang.Long]();
+
+    val dayStart = DateUtil.yyyymmdd(date)
+    private val millis = resolution * 1000L
+    private val regionSlots = Math.min(REGION_SLOTS, (DateUtil.MILLIS_PER_DAY / millis).toInt)
+
+    override def close() {
+        table.synchronized {
+            if (this.refrence == 0) {
+                table.remove(this.file);
+                FileUtil.close(index);
+                FileUtil.close(dataFile);
+                FileUtil.close(header);
+            } else {
+                this.refrence -= 1;
+            }
+        }
+    }
+
+    private def regionKey(objHash: Int, counter: Int, region: Int): Long = {
+        (objHash.toLong << 32) | ((counter & 0xfffffL) << 12) | (region & 0xfff)
+    }
+
+    private def regionPos(objHash: Int, counter: Int, region: Int, create: Boolean): Long = {
+        val k = regionKey(objHash, counter, region)
+        val cached = regions.get(k)
+        if (cached != null)
+            return cached
+        val key = DataOutputX.toBytes(k)
+        val value = index.get(key)
+        if (value != null) {
+            val pos = DataInputX.toLong5(value, 0)
+            regions.put(k, pos)
+            return pos
+        }
+        if (create == false)
+            return -1
+        val pos = dataFile.length()
+        dataFile.seek(pos)
+        dataFile.write(new Array[Byte](regionSlots * RECORD_SIZE))
+        index.put(key, DataOutputX.toBytes5(pos))
+        regions.put(k, pos)
+        return pos
+    }
+
+    /**
+      * merge the record to its slot
+      */
+    def write(objHash: Int, counter: String, r: Record) {
+        val slot = ((r.time - dayStart) / millis).toInt
+        if (slot < 0 || r.count == 0)
+            return
+        this.synchronized {
+            val idx = header.intern(counter, true)
+            val pos = regionPos(objHash, idx, slot / regionSlots, true) + (slot % regionSlots) * RECORD_SIZE
+            val b = new Array[Byte](RECORD_SIZE)
+            dataFile.seek(pos)
+            dataFile.readFully(b)
+            var count = r.count
+            var min = r.min
+            var max = r.max
+            var sum = r.sum
+            val old = DataInputX.toInt(b, 0)
+            if (old > 0) {
+                count += old
+                min = Math.min(min, DataInputX.toFloat(b, 4))
+                max = Math.max(max, DataInputX.toFloat(b, 8))
+                sum += DataInputX.toDouble(b, 12)
+            }
+            DataOutputX.toBytes(b, 0, count)
+            DataOutputX.toBytes(b, 4, min)
+            DataOutputX.toBytes(b, 8, max)
+            DataOutputX.toBytes(b, 12, sum)
+            DataOutputX.toBytes(b, 20, r.last)
+            dataFile.seek(pos)
+            dataFile.write(b)
+        }
+    }
+
+    /**
+      * read the records of a counter of an object in time order
+      */
+    def read(objHash: Int, counter: String, stime: Long, etime: Long, handler: Record => Any) {
+        val idx = header.getTagStrInt().get(counter)
+        if (idx < 0)
+            return
+        val slots = (DateUtil.MILLIS_PER_DAY / millis).toInt
+        val from = Math.max(0L, (stime - dayStart) / millis).toInt
+        val to = Math.min(slots - 1L, (etime - dayStart) / millis).toInt
+        if (from > to)
+            return
+        var region = from / regionSlots
+        while (region <= to / regionSlots) {
+            val buff = new Array[Byte](regionSlots * RECORD_SIZE)
+            val found = this.synchronized {
+                val pos = regionPos(objHash, idx, region, false)
+                if (pos >= 0) {
+                    dataFile.seek(pos)
+                    dataFile.readFully(buff)
+                }
+                pos >= 0
+            }
+            if (found) {
+                val first = Math.max(from, region * regionSlots)
+                val last = Math.min(to, region * regionSlots + regionSlots - 1)
+                for (slot <- first to last) {
+                    val off = (slot % regionSlots) * RECORD_SIZE
+                    val count = DataInputX.toInt(buff, off)
+                    if (count > 0) {
+                        val r = new Record(dayStart + slot * millis)
+                        r.count = count
+                        r.min = DataInputX.toFloat(buff, off + 4)
+                        r.max = DataInputX.toFloat(buff, off + 8)
+                        r.sum = DataInputX.toDouble(buff, off + 12)
+                        r.last = DataInputX.toFloat(buff, off + 20)
+                        handler(r)
+                    }
+                }
+            }
+            region += 1
+        }
+    }
+}
@@ -25,18 +25,32 @@ import java.util.List
 import java.util.Map
 
 import scouter.server.{Configure, Logger}
-import scouter.io.DataInputX
+import scouter.io.{DataInputX, DataOutputX}
 import scouter.util.CompareUtil
 import scouter.util.HashUtil
-import scouter.util.IClose;
+import scouter.util.IClose
+import scouter.util.IntLongLinkedMap;
 
-class IndexKeyFile(_path: String, hashSize: Int = 1) extends IClose {
+object IndexKeyFile {
+    val DB_XLOG = "xlog"
+    val DB_PROFILE = "profile"
+    val DB_TEXT = "text"
+
+    /**
+      * if the db type reads its index through memory mapped buffers. (mgr_index_mmap_db_types)
+      */
+    def isMmap(dbType: String): Boolean = {
+        Configure.getInstance().mgr_index_mmap_db_types.hasKey(dbType)
+    }
+}
+
+class IndexKeyFile(_path: String, hashSize: Int = 1, mmap: Boolean = false) extends IClose {
     val conf = Configure.getInstance();
     val MB = 1024 * 1024;
 
     val path = _path
-    val hashBlock = new MemHashBlock(path, hashSize * MB)
-    val keyFile = new RealKeyFile(path)
+    val hashBlock = if (mmap) new MappedMemHashBlock(path, hashSize * MB) else new MemHashBlock(path, hashSize * MB)
+    val keyFile = if (mmap) new MappedRealKeyFile(path) else new RealKeyFile(path)
 
     def putAll(table: IndexKeyFile): Int = {
         var count = 0
@@ -63,6 +77,44 @@ class IndexKeyFile(_path: String, hashSize: Int = 1) extends IClose {
         return true;
     }
 
+    /**
+      * put several keys with one key file write.
+      * the hash block is updated after the records are written so readers never follow a link beyond the file.
+      */
+    def putBatch(indexKeys: Array[Array[Byte]], dataOffsets: Array[Array[Byte]]): Boolean = {
+        val count = indexKeys.length
+        val keyHashes = new Array[Int](count)
+        val newKeyPos = new Array[Long](count)
+
+        this.keyFile.synchronized {
+            val base = this.keyFile.getLength()
+            val lastPosInBatch = new IntLongLinkedMap()
+            val out = new DataOutputX()
+            var i = 0
+            while (i < count) {
+                if (indexKeys(i) == null || dataOffsets(i) == null) {
+                    throw new IOException("invalid key/value");
+                }
+                keyHashes(i) = HashUtil.hash(indexKeys(i))
+                val bucket = hashBlock.bucket(keyHashes(i))
+                val chainedPos = lastPosInBatch.get(bucket)
+                val prevKeyPos = if (chainedPos > 0) chainedPos else hashBlock.get(keyHashes(i))
+                newKeyPos(i) = base + out.getWriteSize()
+                RealKeyFile.writeRecord(out, prevKeyPos, indexKeys(i), dataOffsets(i))
+                lastPosInBatch.put(bucket, newKeyPos(i))
+                i += 1
+            }
+            this.keyFile.appendRecords(out.toByteArray())
+        }
+
+        var i = 0
+        while (i < count) {
+            this.hashBlock.put(keyHashes(i), newKeyPos(i))
+            i += 1
+        }
+        return true;
+    }
+
     def update(key: Array[Byte], value: Array[Byte]): Boolean = {
         if (key == null || value == null) {
             throw new IOException("invalid key/value");
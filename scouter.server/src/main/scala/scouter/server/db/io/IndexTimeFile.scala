@@ -32,6 +32,7 @@ import scouter.util.BytesUtil
 import scouter.util.CompareUtil
 import scouter.util.DateUtil
 import scouter.util.IClose
+import scouter.util.IntLongLinkedMap
 
 import scala.collection.mutable.ListBuffer
 
@@ -56,6 +57,42 @@ class IndexTimeFile(_path: String) extends IClose {
         return newKeyPos;
     }
 
+    /**
+      * put several times with one key file write.
+      * the time block is updated after the records are written so readers never follow a link beyond the file.
+      */
+    def putBatch(times: Array[Long], dataPos: Array[Array[Byte]]) {
+        val count = times.length
+        val newKeyPos = new Array[Long](count)
+
+        this.keyFile.synchronized {
+            val base = this.keyFile.getLength()
+            val lastPosInBatch = new IntLongLinkedMap()
+            val out = new DataOutputX()
+            var i = 0
+            while (i < count) {
+                if (times(i) <= 0 || dataPos(i) == null) {
+                    throw new IOException("invalid key/value");
+                }
+                val bucket = timeBlockHash.bucket(times(i))
+                val chainedPos = lastPosInBatch.get(bucket)
+                val prevKeyPos = if (chainedPos > 0) chainedPos else timeBlockHash.get(times(i))
+                newKeyPos(i) = base + out.getWriteSize()
+                RealKeyFile.writeRecord(out, prevKeyPos, DataOutputX.toBytes(times(i)), dataPos(i))
+                lastPosInBatch.put(bucket, newKeyPos(i))
+                i += 1
+            }
+            this.keyFile.appendRecords(out.toByteArray())
+        }
+
+        var i = 0
+        while (i < count) {
+            this.timeBlockHash.put(times(i), newKeyPos(i))
+            i += 1
+        }
+        this.timeBlockHash.addCount(count)
+    }
+
     private def getSecAll(time: Long): ArrayList[TimeToData] = {
         if (time <= 0) {
             throw new IOException("invalid key");
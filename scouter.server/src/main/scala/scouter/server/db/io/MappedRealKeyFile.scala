@@ -0,0 +1,174 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.io
+
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import java.util.concurrent.atomic.AtomicReferenceArray
+
+import scouter.io.DataInputX
+
+object MappedRealKeyFile {
+    val SEGMENT_SIZE = 64L * 1024 * 1024
+    /** mapped beyond a segment so that a record crossing the segment boundary can be read from one buffer */
+    val SEGMENT_OVERLAP = 128L * 1024
+    /** the growing tail is remapped only once the file has grown this much past the mapping, it is read through the file till then */
+    val REMAP_STEP = 4L * 1024 * 1024
+    /** 5 bytes position covers 512GB */
+    val MAX_SEGMENTS = 8192
+}
+
+/**
+  * RealKeyFile reading records through memory mapped segments.
+  * Writes still go to the RandomAccessFile so the file format is unchanged,
+  * and chain walks (isDeleted/getPrevPos/getTimeKey/getDataPos) become buffer reads without seek or lock.
+  * A record not covered by the mapped segments falls back to RealKeyFile,
+  * so the records appended lately are read through the file till the tail is remapped in a REMAP_STEP.
+  */
+class MappedRealKeyFile(_path: String) extends RealKeyFile(_path) {
+    import MappedRealKeyFile._
+
+    private val segments = new AtomicReferenceArray[MappedByteBuffer](MAX_SEGMENTS)
+
+    /**
+      * @param old the buffer found not to cover a read
+      * @return the buffer of the segment, it is not remapped while the file has not grown a REMAP_STEP past it
+      */
+    private def remap(seg: Int, old: MappedByteBuffer): MappedByteBuffer = {
+        this.synchronized {
+            if (raf == null)
+                return null
+            val cur = segments.get(seg)
+            if (cur ne old)
+                return cur
+            val segStart = seg * SEGMENT_SIZE
+            val size = Math.min(raf.length() - segStart, SEGMENT_SIZE + SEGMENT_OVERLAP)
+            if (size <= 0)
+                return null
+            if (cur != null && (size <= cur.capacity() || size < cur.capacity() + REMAP_STEP && size < SEGMENT_SIZE + SEGMENT_OVERLAP))
+                return cur
+            val buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, segStart, size)
+            segments.set(seg, buffer)
+            return buffer
+        }
+    }
+
+    /**
+      * @return bytes of [pos, pos + len) or null if it is not mapped
+      */
+    private def read(pos: Long, len: Int): Array[Byte] = {
+        val seg = (pos / SEGMENT_SIZE).toInt
+        if (seg >= MAX_SEGMENTS)
+            return null
+        val segStart = seg * SEGMENT_SIZE
+        var buffer = segments.get(seg)
+        if (buffer == null || pos + len > segStart + buffer.capacity()) {
+            buffer = remap(seg, buffer)
+            if (buffer == null || pos + len > segStart + buffer.capacity())
+                return null
+        }
+        val off = (pos - segStart).toInt
+        val out = new Array[Byte](len)
+        var i = 0
+        while (i < len) {
+            out(i) = buffer.get(off + i)
+            i += 1
+        }
+        return out
+    }
+
+    private def readBlob(pos: Long): Array[Byte] = {
+        val head = read(pos, 1)
+        if (head == null)
+            return null
+        (head(0) & 0xff) match {
+            case 255 =>
+                val len = read(pos + 1, 2)
+                if (len == null) null else read(pos + 3, DataInputX.toShort(len, 0) & 0xffff)
+            case 254 =>
+                val len = read(pos + 1, 4)
+                if (len == null) null else read(pos + 5, DataInputX.toInt(len, 0))
+            case 0 => new Array[Byte](0)
+            case len => read(pos + 1, len)
+        }
+    }
+
+    private def blobLength(data: Array[Byte]): Int = {
+        if (data.length <= 253) 1 + data.length
+        else if (data.length <= 65535) 3 + data.length
+        else 5 + data.length
+    }
+
+    private def keyLength(pos: Long): Int = {
+        val len = read(pos + 1 + 5, 2)
+        if (len == null) -1 else DataInputX.toShort(len, 0) & 0xffff
+    }
+
+    override def getRecord(pos: Long): ITEM = {
+        val head = read(pos, 1 + 5 + 2)
+        if (head == null)
+            return super.getRecord(pos)
+        val keyLen = DataInputX.toShort(head, 6) & 0xffff
+        val timeKey = read(pos + 8, keyLen)
+        val dataPos = if (timeKey == null) null else readBlob(pos + 8 + keyLen)
+        if (dataPos == null)
+            return super.getRecord(pos)
+
+        val r = new ITEM()
+        r.deleted = head(0) != 0
+        r.prevPos = DataInputX.toLong5(head, 1)
+        r.timeKey = timeKey
+        r.dataPos = dataPos
+        r.offset = pos + 8 + keyLen + blobLength(dataPos)
+        return r
+    }
+
+    override def isDeleted(pos: Long): Boolean = {
+        val b = read(pos, 1)
+        if (b == null) super.isDeleted(pos) else b(0) != 0
+    }
+
+    override def getPrevPos(pos: Long): Long = {
+        val b = read(pos + 1, 5)
+        if (b == null) super.getPrevPos(pos) else DataInputX.toLong5(b, 0)
+    }
+
+    override def getTimeKey(pos: Long): Array[Byte] = {
+        val keyLen = keyLength(pos)
+        val key = if (keyLen < 0) null else read(pos + 8, keyLen)
+        if (key == null) super.getTimeKey(pos) else key
+    }
+
+    override def getDataPos(pos: Long): Array[Byte] = {
+        val keyLen = keyLength(pos)
+        val data = if (keyLen < 0) null else readBlob(pos + 8 + keyLen)
+        if (data == null) super.getDataPos(pos) else data
+    }
+
+    override def close() {
+        this.synchronized {
+            var i = 0
+            while (i < MAX_SEGMENTS) {
+                segments.set(i, null)
+                i += 1
+            }
+            super.close()
+        }
+    }
+}
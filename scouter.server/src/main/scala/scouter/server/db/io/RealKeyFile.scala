@@ -31,6 +31,15 @@ class ITEM {
     var offset = 0L
 }
 
+object RealKeyFile {
+    def writeRecord(out: DataOutputX, prevPos: Long, indexKey: Array[Byte], dataPos: Array[Byte]) {
+        out.writeBoolean(false);
+        out.writeLong5(prevPos);
+        out.writeShortBytes(indexKey);
+        out.writeBlob(dataPos);
+    }
+}
+
 class RealKeyFile(_path: String) extends IClose {
     val path = _path;
     val file = new File(path + ".kfile");
@@ -103,11 +112,7 @@ class RealKeyFile(_path: String) extends IClose {
             this.raf.seek(pos);
 
             val out = new DataOutputX();
-            out.writeBoolean(false);
-            out.writeLong5(prevPos);
-            out.writeShortBytes(indexKey);
-            out.writeBlob(dataPos);
-         
+            RealKeyFile.writeRecord(out, prevPos, indexKey, dataPos);
             this.raf.write(out.toByteArray())
         }
     }
@@ -136,6 +141,20 @@ class RealKeyFile(_path: String) extends IClose {
         }
     }
 
+    /**
+      * append records already encoded by RealKeyFile.writeRecord at once.
+      * @param records encoded records
+      * @return position of the first record
+      */
+    def appendRecords(records: Array[Byte]): Long = {
+        this.synchronized {
+            val pos = this.raf.length();
+            this.raf.seek(pos);
+            this.raf.write(records);
+            return pos;
+        }
+    }
+
     def close() {
         if (this.raf == null)
             return ;
@@ -100,14 +100,15 @@ class TextPermIndex(div: String, file: String) extends IClose {
   }
 
   def newIndexKeyFileByType(): IndexKeyFile = {
+    val mmap = IndexKeyFile.isMmap(IndexKeyFile.DB_TEXT)
     div match {
-      case TextTypes.SERVICE => new IndexKeyFile(file, TextPermIndex.SERVICE_MB)
-      case TextTypes.APICALL => new IndexKeyFile(file, TextPermIndex.APICALL_MB)
-      case TextTypes.USER_AGENT => new IndexKeyFile(file, TextPermIndex.USERAGENT_MB)
-      case TextTypes.LOGIN => new IndexKeyFile(file, TextPermIndex.LOGIN_MB)
-      case TextTypes.DESC => new IndexKeyFile(file, TextPermIndex.DESC_MB)
-      case TextTypes.HASH_MSG => new IndexKeyFile(file, TextPermIndex.HMSG_MB)
-      case _ => new IndexKeyFile(file, TextPermIndex.DEFAULT_MB)
+      case TextTypes.SERVICE => new IndexKeyFile(file, TextPermIndex.SERVICE_MB, mmap)
+      case TextTypes.APICALL => new IndexKeyFile(file, TextPermIndex.APICALL_MB, mmap)
+      case TextTypes.USER_AGENT => new IndexKeyFile(file, TextPermIndex.USERAGENT_MB, mmap)
+      case TextTypes.LOGIN => new IndexKeyFile(file, TextPermIndex.LOGIN_MB, mmap)
+      case TextTypes.DESC => new IndexKeyFile(file, TextPermIndex.DESC_MB, mmap)
+      case TextTypes.HASH_MSG => new IndexKeyFile(file, TextPermIndex.HMSG_MB, mmap)
+      case _ => new IndexKeyFile(file, TextPermIndex.DEFAULT_MB, mmap)
     }
   }
 
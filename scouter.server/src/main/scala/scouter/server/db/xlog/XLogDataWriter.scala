@@ -82,6 +82,28 @@ class XLogDataWriter(date: String, file: String) extends IClose {
         }
     }
 
+    /**
+      * write several xlogs with one flush.
+      * @return data positions in the same order
+      */
+    def writeBatch(datas: Array[Array[Byte]]): Array[Long] = {
+        if (gzip) {
+            return datas.map(bytes => GZipStore.getInstance().write(date, bytes));
+        }
+        this.synchronized {
+            val points = new Array[Long](datas.length);
+            var i = 0;
+            while (i < datas.length) {
+                points(i) = out.getOffset();
+                out.writeShort(datas(i).length.toShort);
+                out.write(datas(i));
+                i += 1;
+            }
+            out.flush();
+            return points;
+        }
+    }
+
     override def close() {
         XLogDataWriter.table.synchronized {
             if (this.reference == 0) {
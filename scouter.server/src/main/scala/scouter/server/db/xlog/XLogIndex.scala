@@ -18,6 +18,7 @@
 
 package scouter.server.db.xlog;
 
+import java.io.File
 import java.io.IOException
 import java.util.ArrayList
 import java.util.HashMap
@@ -29,6 +30,7 @@ import java.util.Set
 
 import scouter.server.db.io.IndexKeyFile
 import scouter.server.db.io.IndexTimeFile
+import scouter.server.db.io.LongBloomFile
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
 import scouter.server.Configure
@@ -60,6 +62,7 @@ object XLogIndex {
 
 class XLogIndex(_file: String) extends IClose {
     val ID_INDEX_MB = Configure.getInstance()._mgr_xlog_id_index_mb
+    val MMAP = IndexKeyFile.isMmap(IndexKeyFile.DB_XLOG)
 
     val file = _file
     var refrence = 0
@@ -67,20 +70,102 @@ class XLogIndex(_file: String) extends IClose {
     var gxidIndex: IndexKeyFile = null
     var timeIndex: IndexTimeFile = null
 
+    var txidBloom: LongBloomFile = null
+    var gxidBloom: LongBloomFile = null
+    var bloomOpened = false
+
+    /**
+      * start(or stop) the bloom filters of txid and gxid to write with this index.
+      * a new filter is complete only if no xlog of the day has been indexed yet,
+      * and a filter is made incomplete when the day is written without it.
+      */
+    def prepareBloom(enabled: Boolean) {
+        this.synchronized {
+            if (enabled) {
+                if (new File(file + XLogIndex.POSTFIX_TID + ".bloom").exists() == false) {
+                    if (this.txidIndex == null) {
+                        this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, ID_INDEX_MB, MMAP);
+                    }
+                    val complete = this.txidIndex.hashBlock.getCount() == 0
+                    val mb = Configure.getInstance()._mgr_xlog_id_bloom_mb
+                    FileUtil.close(this.txidBloom)
+                    FileUtil.close(this.gxidBloom)
+                    this.txidBloom = LongBloomFile.create(file + XLogIndex.POSTFIX_TID, mb, complete)
+                    this.gxidBloom = LongBloomFile.create(file + XLogIndex.POSTFIX_GID, mb, complete)
+                    this.bloomOpened = true
+                } else {
+                    openBloom()
+                }
+            } else {
+                FileUtil.close(this.txidBloom)
+                FileUtil.close(this.gxidBloom)
+                this.txidBloom = null
+                this.gxidBloom = null
+                this.bloomOpened = true
+                LongBloomFile.markIncomplete(file + XLogIndex.POSTFIX_TID)
+                LongBloomFile.markIncomplete(file + XLogIndex.POSTFIX_GID)
+            }
+        }
+    }
+
+    private def openBloom() {
+        this.synchronized {
+            if (!bloomOpened) {
+                this.txidBloom = LongBloomFile.open(file + XLogIndex.POSTFIX_TID)
+                this.gxidBloom = LongBloomFile.open(file + XLogIndex.POSTFIX_GID)
+                this.bloomOpened = true
+            }
+        }
+    }
+
+    /**
+      * @return false if the txid is surely not in this day
+      */
+    def mightHaveTxid(txid: Long): Boolean = {
+        openBloom()
+        txidBloom == null || txidBloom.mightContain(txid)
+    }
+
+    /**
+      * @return false if the gxid is surely not in this day
+      */
+    def mightHaveGxid(gxid: Long): Boolean = {
+        openBloom()
+        gxidBloom == null || gxidBloom.mightContain(gxid)
+    }
+
     def setByTxid(txid: Long, pos: Long) {
         if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, ID_INDEX_MB);
+            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, ID_INDEX_MB, MMAP);
         }
         this.txidIndex.put(DataOutputX.toBytes(txid), DataOutputX.toBytes5(pos));
+        if (this.txidBloom != null) {
+            this.txidBloom.add(txid)
+        }
     }
 
     def setByGxid(gxid: Long, pos: Long) {
         if (gxid == 0)
             return ;
         if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, ID_INDEX_MB);
+            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, ID_INDEX_MB, MMAP);
         }
         this.gxidIndex.put(DataOutputX.toBytes(gxid), DataOutputX.toBytes5(pos));
+        if (this.gxidBloom != null) {
+            this.gxidBloom.add(gxid)
+        }
+    }
+
+    /**
+      * @return true if no xlog of the day has been indexed
+      */
+    def isEmpty(): Boolean = {
+        this.synchronized {
+            if (this.txidIndex == null) {
+                this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, ID_INDEX_MB, MMAP);
+            }
+            this.txidIndex.hashBlock.getCount() == 0
+        }
     }
 
     def setByTime(time: Long, pos: Long) {
@@ -90,9 +175,40 @@ class XLogIndex(_file: String) extends IClose {
         this.timeIndex.put(time, DataOutputX.toBytes5(pos));
     }
 
+    /**
+      * apply time/txid/gxid index entries of several xlogs at once.
+      */
+    def setBatch(times: Array[Long], txids: Array[Long], gxids: Array[Long], positions: Array[Long]) {
+        if (this.timeIndex == null) {
+            this.timeIndex = new IndexTimeFile(file + XLogIndex.POSTFIX_TIME);
+        }
+        if (this.txidIndex == null) {
+            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, ID_INDEX_MB, MMAP);
+        }
+        val dataPos = positions.map(pos => DataOutputX.toBytes5(pos))
+        this.timeIndex.putBatch(times, dataPos);
+        this.txidIndex.putBatch(txids.map(txid => DataOutputX.toBytes(txid)), dataPos);
+        if (this.txidBloom != null) {
+            txids.foreach(txid => this.txidBloom.add(txid))
+        }
+
+        val gxidIdx = gxids.indices.filter(i => gxids(i) != 0)
+        if (gxidIdx.nonEmpty) {
+            if (this.gxidIndex == null) {
+                this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, ID_INDEX_MB, MMAP);
+            }
+            this.gxidIndex.putBatch(gxidIdx.map(i => DataOutputX.toBytes(gxids(i))).toArray, gxidIdx.map(i => dataPos(i)).toArray);
+            if (this.gxidBloom != null) {
+                gxidIdx.foreach(i => this.gxidBloom.add(gxids(i)))
+            }
+        }
+    }
+
     def getByTxid(txid: Long): Long = {
+        if (!mightHaveTxid(txid))
+            return -1
         if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
+            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, mmap = MMAP);
         }
         val b = this.txidIndex.get(DataOutputX.toBytes(txid));
         if (b == null) -1 else DataInputX.toLong5(b, 0);
@@ -100,21 +216,25 @@ class XLogIndex(_file: String) extends IClose {
 
     def getByTxid(txSet: Set[Long]): Map[Long, Long] = {
         if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
+            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, mmap = MMAP);
         }
         val map = new HashMap[Long, Long]();
         EnumerScala.foreach(txSet.iterator(), (key: Long) => {
-            val value = this.txidIndex.get(DataOutputX.toBytes(key));
-            if (value != null) {
-                map.put(key, DataInputX.toLong5(value, 0));
+            if (mightHaveTxid(key)) {
+                val value = this.txidIndex.get(DataOutputX.toBytes(key));
+                if (value != null) {
+                    map.put(key, DataInputX.toLong5(value, 0));
+                }
             }
         })
         return map;
     }
 
     def getByGxid(gxid: Long): List[Long] = {
+        if (!mightHaveGxid(gxid))
+            return new ArrayList[Long]()
         if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID);
+            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, mmap = MMAP);
         }
         val blist = this.gxidIndex.getAll(DataOutputX.toBytes(gxid));
         val olist = new ArrayList[Long]();
@@ -127,14 +247,14 @@ class XLogIndex(_file: String) extends IClose {
 
     def readByTxid(handler: (Array[Byte], Array[Byte]) => Any, dr: (Long)=>Array[Byte]) {
         if (this.txidIndex == null) {
-            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID);
+            this.txidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_TID, mmap = MMAP);
         }
         this.txidIndex.read(handler, dr);
     }
 
     def readByGxid(handler: (Array[Byte], Array[Byte]) => Any, dr: (Long)=>Array[Byte]) {
         if (this.gxidIndex == null) {
-            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID);
+            this.gxidIndex = new IndexKeyFile(file + XLogIndex.POSTFIX_GID, mmap = MMAP);
         }
         this.gxidIndex.read(handler, dr);
     }
@@ -146,6 +266,8 @@ class XLogIndex(_file: String) extends IClose {
                 FileUtil.close(this.txidIndex);
                 FileUtil.close(this.gxidIndex);
                 FileUtil.close(this.timeIndex);
+                FileUtil.close(this.txidBloom);
+                FileUtil.close(this.gxidBloom);
             } else {
                 this.refrence -= 1;
             }
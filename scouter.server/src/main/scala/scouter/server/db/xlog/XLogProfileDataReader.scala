@@ -26,6 +26,7 @@ import java.util.Properties;
 
 import scouter.server.Configure;
 import scouter.server.db.io.zip.GZipStore;
+import scouter.server.db.io.zip.ProfileBlockFile;
 import scouter.util.FileUtil;
 import scouter.util.IClose;
 
@@ -53,19 +54,31 @@ class XLogProfileDataReader(date: String, file: String) extends  IClose {
 
     private var profileFile: RandomAccessFile = null
     private var gzip = conf.compress_profile_enabled
+    private var block = false
+    private var blockFile: ProfileBlockFile = null
 
     val confFile = new File(file + ".profile.conf");
     if (confFile.exists()) {
         val properties = FileUtil.readProperties(confFile);
         this.gzip = "true".equalsIgnoreCase(properties.getProperty("compress_profile_enabled", ""+conf.compress_profile_enabled).trim());
+        this.block = "true".equalsIgnoreCase(properties.getProperty("compress_profile_block_enabled", "false").trim());
     }
 
-    val profile = new File(file + ".profile");
-    if (profile.canRead() == true) {
-        this.profileFile = new RandomAccessFile(profile, "r");
+    if (block) {
+        if (ProfileBlockFile.exists(file)) {
+            this.blockFile = ProfileBlockFile.open(file);
+        }
+    } else {
+        val profile = new File(file + ".profile");
+        if (profile.canRead() == true) {
+            this.profileFile = new RandomAccessFile(profile, "r");
+        }
     }
 
     def read(pos: Long): Array[Byte] = {
+        if (this.block) {
+            return if (blockFile == null) null else blockFile.read(pos);
+        }
         if (this.gzip) {
             return GZipStore.getInstance().read(date, pos);
         }
@@ -94,6 +107,8 @@ class XLogProfileDataReader(date: String, file: String) extends  IClose {
                     if (profileFile != null)
                         profileFile.close();
                     profileFile = null;
+                    FileUtil.close(blockFile);
+                    blockFile = null;
                 } catch {
                     case e: Throwable =>
                         e.printStackTrace();
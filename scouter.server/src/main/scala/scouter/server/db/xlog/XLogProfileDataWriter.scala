@@ -26,6 +26,7 @@ import java.util.Properties;
 import scouter.server.Configure;
 import scouter.server.db.io.RealDataFile;
 import scouter.server.db.io.zip.GZipStore;
+import scouter.server.db.io.zip.ProfileBlockFile;
 import scouter.util.FileUtil;
 import scouter.util.IClose;
 
@@ -52,19 +53,26 @@ class XLogProfileDataWriter(date: String, file: String) extends IClose {
     val conf = Configure.getInstance();
 
     var gzip = conf.compress_profile_enabled
+    var block = conf.compress_profile_block_enabled
 
     val f = new File(file + ".profile.conf");
     if (f.exists()) {
         val properties = FileUtil.readProperties(f);
         gzip = "true".equalsIgnoreCase(properties.getProperty("compress_profile_enabled", "" + conf.compress_profile_enabled).trim());
+        block = "true".equalsIgnoreCase(properties.getProperty("compress_profile_block_enabled", "false").trim());
     } else {
         gzip = conf.compress_profile_enabled;
+        block = conf.compress_profile_block_enabled;
         val properties = new Properties();
         properties.put("compress_profile_enabled", "" + conf.compress_profile_enabled);
+        properties.put("compress_profile_block_enabled", "" + conf.compress_profile_block_enabled);
         FileUtil.writeProperties(f, properties);
     }
     var out: RealDataFile = null;
-    if (gzip==false) {
+    var blockFile: ProfileBlockFile = null;
+    if (block) {
+        blockFile = ProfileBlockFile.open(file);
+    } else if (gzip==false) {
         out = new RealDataFile(file + ".profile");
     }
 
@@ -72,15 +80,39 @@ class XLogProfileDataWriter(date: String, file: String) extends IClose {
         return write(bytes.asInstanceOf[Array[Byte]]);
     }
     def write(bytes: Array[Byte]): Long = {
-        if (gzip) {
-            return GZipStore.getInstance().write(date, bytes);
+        write(bytes, null)
+    }
+
+    /**
+      * @param written run when the data is written to the file, later in the block mode when its block is written
+      */
+    def write(bytes: Array[Byte], written: Runnable): Long = {
+        if (block) {
+            return blockFile.write(bytes, written);
+        }
+        val point = if (gzip) {
+            GZipStore.getInstance().write(date, bytes);
+        } else {
+            this.synchronized {
+                val p = out.getOffset();
+                out.writeInt(bytes.length);
+                out.write(bytes);
+                out.flush();
+                p
+            }
         }
-        this.synchronized {
-            val point = out.getOffset();
-            out.writeInt(bytes.length);
-            out.write(bytes);
-            out.flush();
-            return point;
+        if (written != null) {
+            written.run()
+        }
+        return point;
+    }
+
+    /**
+      * write the pending block of the block mode if it is older than the time
+      */
+    def flush(maxAge: Long) {
+        if (blockFile != null) {
+            blockFile.flush(maxAge);
         }
     }
 
@@ -89,6 +121,7 @@ class XLogProfileDataWriter(date: String, file: String) extends IClose {
             if (this.refrence == 0) {
                 XLogProfileDataWriter.table.remove(this.file);
                 FileUtil.close(out)
+                FileUtil.close(blockFile)
             } else {
                 this.refrence -= 1;
             }
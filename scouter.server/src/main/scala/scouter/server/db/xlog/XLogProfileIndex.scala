@@ -77,7 +77,7 @@ class XLogProfileIndex(_file: String) extends IClose {
 
     private def checkOpen() {
         if (this.profileX == null) {
-            this.profileX = new IndexKeyFile(file + POSTFIX_PROFILE);
+            this.profileX = new IndexKeyFile(file + POSTFIX_PROFILE, mmap = IndexKeyFile.isMmap(IndexKeyFile.DB_PROFILE));
         }
     }
 
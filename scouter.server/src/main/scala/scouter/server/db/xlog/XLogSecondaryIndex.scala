@@ -0,0 +1,233 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.xlog
+
+import java.io.File
+import java.util.{Hashtable, Properties}
+
+import scouter.io.{DataInputX, DataOutputX}
+import scouter.server.Configure
+import scouter.server.db.io.IndexKeyFile
+import scouter.server.util.EnumerScala
+import scouter.util.{DateUtil, FileUtil, IClose, LongLongLinkedMap, LongSet}
+
+/**
+  * per day secondary index of xlog fields for searching xlogs without scanning the time range.
+  * key : field(1) + value(4) + minute(4), value : endTime(8) + data position(5)
+  */
+object XLogSecondaryIndex {
+    val POSTFIX = "_sidx"
+
+    val FIELD_OBJ: Byte = 1
+    val FIELD_SERVICE: Byte = 2
+    val FIELD_IP: Byte = 3
+    val FIELD_LOGIN: Byte = 4
+    val FIELD_ERROR: Byte = 5
+
+    val table = new Hashtable[String, XLogSecondaryIndex]();
+
+    def open(file: String): XLogSecondaryIndex = {
+        table.synchronized {
+            var index = table.get(file);
+            if (index != null) {
+                index.refrence += 1;
+            } else {
+                index = new XLogSecondaryIndex(file);
+                table.put(file, index);
+            }
+            return index;
+        }
+    }
+
+    def exists(file: String): Boolean = {
+        new File(file + POSTFIX + ".conf").exists()
+    }
+
+    /**
+      * the secondary index covers the xlogs from the start time, kept if the index was already started on the day.
+      * the time is the endTime of an xlog, the time the xlogs are indexed and searched by, not the clock of the server.
+      */
+    def markStart(file: String, time: Long) {
+        val f = new File(file + POSTFIX + ".conf")
+        if (getStartTime(file) == Long.MaxValue) {
+            val properties = new Properties()
+            properties.put("start_time", "" + time)
+            FileUtil.writeProperties(f, properties)
+        }
+    }
+
+    /**
+      * invalidate the secondary index of the day, because the xlogs after now are not going to be indexed.
+      */
+    def markStop(file: String) {
+        val f = new File(file + POSTFIX + ".conf")
+        if (f.exists() && getStartTime(file) != Long.MaxValue) {
+            val properties = new Properties()
+            properties.put("start_time", "" + Long.MaxValue)
+            FileUtil.writeProperties(f, properties)
+        }
+    }
+
+    def getStartTime(file: String): Long = {
+        val f = new File(file + POSTFIX + ".conf")
+        if (f.exists() == false)
+            return Long.MaxValue
+        try {
+            FileUtil.readProperties(f).getProperty("start_time", "" + Long.MaxValue).trim().toLong
+        } catch {
+            case e: Exception => Long.MaxValue
+        }
+    }
+
+    def minuteOf(time: Long): Int = {
+        (time / DateUtil.MILLIS_PER_MINUTE).toInt
+    }
+
+    def toKey(field: Byte, value: Int, minute: Int): Array[Byte] = {
+        val key = new Array[Byte](9)
+        key(0) = field
+        DataOutputX.set(key, 1, DataOutputX.toBytes(value))
+        DataOutputX.set(key, 5, DataOutputX.toBytes(minute))
+        key
+    }
+}
+
+class XLogSecondaryIndex(_file: String) extends IClose {
+    import XLogSecondaryIndex._
+
+    val INDEX_MB = Configure.getInstance()._mgr_xlog_secondary_index_mb
+
+    val file = _file
+    var refrence = 0
+    var index: IndexKeyFile = null
+    @volatile private var started = getStartTime(file) != Long.MaxValue
+
+    private def checkOpen() {
+        if (this.index == null) {
+            this.index = new IndexKeyFile(file + POSTFIX, INDEX_MB, IndexKeyFile.isMmap(IndexKeyFile.DB_XLOG));
+        }
+    }
+
+    private def collect(keys: java.util.List[Array[Byte]], values: java.util.List[Array[Byte]], time: Long, pos: Long,
+                        objHash: Int, service: Int, ipHash: Int, login: Int, error: Int) {
+        val minute = minuteOf(time)
+        val value = new Array[Byte](13)
+        DataOutputX.set(value, 0, DataOutputX.toBytes(time))
+        DataOutputX.toBytes5(value, 8, pos)
+
+        if (objHash != 0) {
+            keys.add(toKey(FIELD_OBJ, objHash, minute)); values.add(value)
+        }
+        if (service != 0) {
+            keys.add(toKey(FIELD_SERVICE, service, minute)); values.add(value)
+        }
+        if (ipHash != 0) {
+            keys.add(toKey(FIELD_IP, ipHash, minute)); values.add(value)
+        }
+        if (login != 0) {
+            keys.add(toKey(FIELD_LOGIN, login, minute)); values.add(value)
+        }
+        if (error != 0) {
+            keys.add(toKey(FIELD_ERROR, 1, minute)); values.add(value)
+        }
+    }
+
+    def add(time: Long, pos: Long, objHash: Int, service: Int, ipHash: Int, login: Int, error: Int) {
+        addBatch(Array(time), Array(pos), Array(objHash), Array(service), Array(ipHash), Array(login), Array(error))
+    }
+
+    def addBatch(times: Array[Long], positions: Array[Long], objHashes: Array[Int], services: Array[Int],
+                 ipHashes: Array[Int], logins: Array[Int], errors: Array[Int]) {
+        checkOpen()
+        if (started == false && times.length > 0) {
+            markStart(file, times.min)
+            started = true
+        }
+        val keys = new java.util.ArrayList[Array[Byte]]()
+        val values = new java.util.ArrayList[Array[Byte]]()
+        var i = 0
+        while (i < times.length) {
+            collect(keys, values, times(i), positions(i), objHashes(i), services(i), ipHashes(i), logins(i), errors(i))
+            i += 1
+        }
+        if (keys.size() > 0) {
+            this.index.putBatch(keys.toArray(new Array[Array[Byte]](keys.size())), values.toArray(new Array[Array[Byte]](values.size())))
+        }
+    }
+
+    /**
+      * intersect posting lists of the fields minute by minute.
+      * @param fields (field, value) pairs, all of them must match
+      * @param handler (endTime, data position) in time order
+      */
+    def search(stime: Long, etime: Long, fields: Array[(Byte, Int)], handler: (Long, Long) => Any) {
+        if (fields.length == 0)
+            return
+        checkOpen()
+        var minute = minuteOf(stime)
+        val lastMinute = minuteOf(etime)
+        while (minute <= lastMinute) {
+            var candidates: LongLongLinkedMap = null
+            var f = 0
+            while (f < fields.length && (candidates == null || candidates.size() > 0)) {
+                val posting = this.index.getAll(toKey(fields(f)._1, fields(f)._2, minute))
+                if (candidates == null) {
+                    candidates = new LongLongLinkedMap()
+                    EnumerScala.foreach(posting.iterator(), (v: Array[Byte]) => {
+                        val time = DataInputX.toLong(v, 0)
+                        if (time >= stime && time <= etime) {
+                            candidates.put(DataInputX.toLong5(v, 8), time)
+                        }
+                    })
+                } else {
+                    val matched = new LongSet()
+                    EnumerScala.foreach(posting.iterator(), (v: Array[Byte]) => {
+                        matched.add(DataInputX.toLong5(v, 8))
+                    })
+                    val next = new LongLongLinkedMap()
+                    EnumerScala.foreach(candidates.keys(), (pos: Long) => {
+                        if (matched.contains(pos)) {
+                            next.put(pos, candidates.get(pos))
+                        }
+                    })
+                    candidates = next
+                }
+                f += 1
+            }
+
+            if (candidates != null && candidates.size() > 0) {
+                val sorted = candidates.keyArray().sortBy(pos => (candidates.get(pos), pos))
+                sorted.foreach(pos => handler(candidates.get(pos), pos))
+            }
+            minute += 1
+        }
+    }
+
+    override def close() {
+        XLogSecondaryIndex.table.synchronized {
+            if (this.refrence == 0) {
+                XLogSecondaryIndex.table.remove(this.file);
+                FileUtil.close(this.index);
+                this.index = null;
+            } else {
+                this.refrence -= 1;
+            }
+        }
+    }
+}
@@ -18,6 +18,7 @@
 package scouter.server.netio.data
 import java.io.IOException
 import java.net.InetAddress
+import java.util.zip.Inflater
 
 import scouter.io.{DataInputX, DataOutputX}
 import scouter.lang.{TextTypes, TimeTypeEnum}
@@ -29,7 +30,7 @@ import scouter.server.Logger
 import scouter.server.core._
 import scouter.server.core.cache.TextCache
 import scouter.server.util.ThreadScala
-import scouter.util.{BytesUtil, HashUtil, RequestQueue, StringUtil}
+import scouter.util.{BytesUtil, HashUtil, StringUtil}
 import scouter.lang.value.DecimalValue
 object NetDataProcessor {
     class NetData(_data: Array[Byte], _addr: InetAddress) {
@@ -50,7 +51,7 @@ object NetDataProcessor {
             }
         }
     }
-    val queue = new RequestQueue[NetData](2048)
+    val queue = CoreRun.newQueue[NetData]("udp.recv.queue", 2048)
     val conf = Configure.getInstance()
 
     def add(data: Array[Byte], addr: InetAddress) {
@@ -69,23 +70,34 @@ object NetDataProcessor {
     }
 
     def process(p: NetData) {
+        process(new DataInputX(p.data), BytesUtil.getLength(p.data), p.addr)
+    }
+
+    /**
+      * decode a datagram from the input and dispatch the packs.
+      * @return false if the datagram is unknown or invalid
+      */
+    def process(in: DataInputX, length: Int, addr: InetAddress): Boolean = {
         try {
-            val in = new DataInputX(p.data)
             val cafe = in.readInt()
             cafe match {
-                case NetCafe.UDP_CAFE => processCafe(in, p.addr)
-                case NetCafe.UDP_CAFE_N => processCafeN(in, p.addr)
-                case NetCafe.UDP_CAFE_MTU => processCafeMTU(in, p.addr)
-                case NetCafe.UDP_JAVA => processCafe(in, p.addr)
-                case NetCafe.UDP_JAVA_N => processCafeN(in, p.addr)
-                case NetCafe.UDP_JAVA_MTU => processCafeMTU(in, p.addr)
+                case NetCafe.UDP_CAFE => processCafe(in, addr)
+                case NetCafe.UDP_CAFE_N => processCafeN(in, addr)
+                case NetCafe.UDP_CAFE_MTU => processCafeMTU(in, addr)
+                case NetCafe.UDP_CAFE_Z => processCafeZ(in, addr)
+                case NetCafe.UDP_JAVA => processCafe(in, addr)
+                case NetCafe.UDP_JAVA_N => processCafeN(in, addr)
+                case NetCafe.UDP_JAVA_MTU => processCafeMTU(in, addr)
                 case _ =>
-                    System.out.println("Receive unknown data, length=" + BytesUtil.getLength(p.data) + " from " + p.addr)
+                    System.out.println("Receive unknown data, length=" + length + " from " + addr)
+                    return false
             }
+            true
         } catch {
             case e: Throwable =>
                 Logger.println("S159", 10, "invalid data ", e)
                 e.printStackTrace()
+                false
         }
     }
     private def processCafeMTU(in: DataInputX, addr: InetAddress) {
@@ -109,6 +121,33 @@ object NetDataProcessor {
             }
         }
     }
+    /**
+      * deflated CAFE_N frame : raw length(4) + compressed length(4) + compressed bytes
+      */
+    private def processCafeZ(in: DataInputX, addr: InetAddress) {
+        // the lengths come from the network, a frame is never larger than a datagram
+        val max = conf.net_udp_packet_buffer_size
+        val rawLength = in.readInt()
+        val zipLength = in.readInt()
+        if (rawLength < 0 || rawLength > max || zipLength < 0 || zipLength > max)
+            throw new IOException("bad frame length " + rawLength + "/" + zipLength)
+        val zipped = in.read(zipLength)
+        val raw = new Array[Byte](rawLength)
+        val inflater = new Inflater()
+        try {
+            inflater.setInput(zipped)
+            var n = 0
+            while (n < rawLength && inflater.finished() == false) {
+                val k = inflater.inflate(raw, n, rawLength - n)
+                if (k == 0 && (inflater.needsInput() || inflater.needsDictionary()))
+                    throw new IOException("truncated frame")
+                n += k
+            }
+        } finally {
+            inflater.end()
+        }
+        processCafeN(new DataInputX(raw), addr)
+    }
     private def processCafe(in: DataInputX, addr: InetAddress) {
         val p = in.readPack()
         process(p, addr)
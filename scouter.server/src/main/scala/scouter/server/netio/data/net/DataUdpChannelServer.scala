@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.netio.data.net
+
+import java.io.{DataInputStream, InputStream}
+import java.net.{InetAddress, InetSocketAddress, SocketOption, StandardSocketOptions}
+import java.nio.ByteBuffer
+import java.nio.channels.DatagramChannel
+
+import scouter.io.DataInputX
+import scouter.server.core.ServerStat
+import scouter.server.netio.data.NetDataProcessor
+import scouter.server.util.ThreadScala
+import scouter.server.{Configure, Logger}
+import scouter.util.{FileUtil, ThreadUtil}
+
+/**
+  * receives udp data on n channels bound to the same port with SO_REUSEPORT. (net_udp_receiver_count > 1)
+  * each receiver reads into its own direct buffer and decodes the packs from it on its own thread,
+  * so no datagram is copied or queued in between.
+  * without SO_REUSEPORT (java 8 runtime or unsupported os), the receivers share one channel.
+  * a datagram failing to be processed is dropped by its receiver,
+  * and a receiver failing on a shared channel leaves it open for the others.
+  */
+object DataUdpChannelServer {
+    val conf = Configure.getInstance()
+
+    private class ByteBufferInputStream(buffer: ByteBuffer) extends InputStream {
+        override def read(): Int = {
+            if (buffer.hasRemaining) buffer.get() & 0xff else -1
+        }
+        override def read(b: Array[Byte], off: Int, len: Int): Int = {
+            if (len == 0)
+                return 0
+            if (buffer.hasRemaining == false)
+                return -1
+            val n = Math.min(len, buffer.remaining())
+            buffer.get(b, off, n)
+            n
+        }
+        override def skip(n: Long): Long = {
+            val k = Math.min(n, buffer.remaining().toLong).toInt
+            buffer.position(buffer.position() + k)
+            k
+        }
+        override def available(): Int = buffer.remaining()
+    }
+
+    private class Receiver(val id: Int) {
+        val buffer = ByteBuffer.allocateDirect(conf.net_udp_packet_buffer_size)
+        val in = new DataInputX(new DataInputStream(new ByteBufferInputStream(buffer)))
+        var packets = 0L
+        var drops = 0L
+
+        /**
+          * receive until the channel fails
+          */
+        def recv(channel: DatagramChannel) {
+            try {
+                while (true) {
+                    buffer.clear()
+                    val addr = channel.receive(buffer).asInstanceOf[InetSocketAddress]
+                    val length = buffer.position()
+                    buffer.flip()
+                    packets += 1
+                    // a datagram filling up the buffer may have been truncated
+                    val ok = try {
+                        length < buffer.capacity() && NetDataProcessor.process(in, length, addr.getAddress())
+                    } catch {
+                        case t: Throwable =>
+                            Logger.println("S239", 10, "udp receiver " + id + " : " + t)
+                            false
+                    }
+                    if (ok == false) {
+                        drops += 1
+                        ServerStat.put("udp.recv." + id + ".drop", drops)
+                    }
+                    if ((packets & 0x3ff) == 0) {
+                        ServerStat.put("udp.recv." + id + ".packets", packets)
+                    }
+                }
+            } catch {
+                case t: Throwable =>
+                    Logger.println("S231", 10, t)
+            }
+        }
+    }
+
+    private def reusePort(): SocketOption[java.lang.Boolean] = {
+        try {
+            classOf[StandardSocketOptions].getField("SO_REUSEPORT").get(null).asInstanceOf[SocketOption[java.lang.Boolean]]
+        } catch {
+            case e: Throwable => null
+        }
+    }
+
+    private def open(host: String, port: Int, reuse: SocketOption[java.lang.Boolean]): DatagramChannel = {
+        while (true) {
+            var channel: DatagramChannel = null
+            try {
+                channel = DatagramChannel.open()
+                if (reuse != null) {
+                    channel.setOption(reuse, java.lang.Boolean.TRUE)
+                }
+                val buf = conf.net_udp_so_rcvbuf_size
+                if (buf > 0) {
+                    channel.setOption(StandardSocketOptions.SO_RCVBUF, Integer.valueOf(buf))
+                }
+                channel.bind(new InetSocketAddress(InetAddress.getByName(host), port))
+                return channel
+            } catch {
+                case e: Exception =>
+                    FileUtil.close(channel)
+                    Logger.println("S232", 1, "udp data server port=" + port, e)
+            }
+            ThreadUtil.sleep(3000)
+        }
+        null
+    }
+
+    def start(count: Int) {
+        val host = conf.net_udp_listen_ip
+        val port = conf.net_udp_listen_port
+        var reuse = reusePort()
+        if (reuse != null) {
+            val probe = DatagramChannel.open()
+            if (probe.supportedOptions().contains(reuse) == false) {
+                reuse = null
+            }
+            FileUtil.close(probe)
+        }
+        if (reuse == null) {
+            Logger.println("S233", "SO_REUSEPORT is not available. " + count + " udp receivers share a channel.")
+        }
+
+        Logger.println("udp listen " + host + ":" + port);
+        Logger.println("\tudp_host=" + host);
+        Logger.println("\tudp_port=" + port);
+        Logger.println("\tudp_buffer=" + conf.net_udp_packet_buffer_size);
+        Logger.println("\tudp_so_rcvbuf=" + conf.net_udp_so_rcvbuf_size);
+        Logger.println("\tudp_receiver_count=" + count + (if (reuse != null) " (SO_REUSEPORT)" else ""));
+
+        var shared: DatagramChannel = null
+        for (i <- 0 until count) {
+            val receiver = new Receiver(i)
+            ThreadScala.startDaemon("scouter.server.netio.data.net.DataUdpChannelServer-" + i) {
+                if (reuse != null) {
+                    val channel = open(host, port, reuse)
+                    receiver.recv(channel)
+                    FileUtil.close(channel)
+                } else {
+                    val channel = this.synchronized {
+                        if (shared == null || shared.isOpen == false) {
+                            shared = open(host, port, null)
+                        }
+                        shared
+                    }
+                    // the other receivers go on with the channel, it is opened again only if it was closed
+                    receiver.recv(channel)
+                    ThreadUtil.sleep(100)
+                }
+            }
+        }
+    }
+}
@@ -22,12 +22,13 @@ import scouter.io.{DataInputX, DataOutputX}
 import scouter.lang.{CounterKey, TimeTypeEnum}
 import scouter.lang.counters.CounterConstants
 import scouter.lang.pack.MapPack
-import scouter.lang.value.{DoubleValue, MapValue, Value}
+import scouter.lang.value.{DecimalValue, DoubleValue, FloatValue, ListValue, MapValue, Value}
 import scouter.net.{RequestCmd, TcpFlag}
-import scouter.server.core.AgentManager
+import scouter.server.core.{AgentManager, CounterRollup}
 import scouter.server.core.AgentManager.objMap
 import scouter.server.core.cache.CounterCache
-import scouter.server.db.{ObjectRD, RealtimeCounterRD}
+import scouter.server.db.counter.RollupCounterDB
+import scouter.server.db.{ObjectRD, RealtimeCounterRD, RollupCounterRD}
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.server.util.TimedSeries
 import scouter.util.{CastUtil, DateUtil, IntKeyMap, StringUtil}
@@ -244,12 +245,46 @@ class CounterService {
             }
         }
 
-        RealtimeCounterRD.read(objName, date, stime, etime, handler)
+        val objHashLv = new ListValue()
+        objHashLv.add(objHash)
+        val rollup = readRollup(param, objHashLv, counter, stime, etime, (hash: Int, time: Long, value: Value) => {
+            timeLv.add(time);
+            valueLv.add(value);
+        })
+        if (rollup == false) {
+            RealtimeCounterRD.read(objName, date, stime, etime, handler)
+        }
 
         dout.writeByte(TcpFlag.HasNEXT);
         dout.writePack(mpack);
     }
 
+    /**
+      * read the rollups instead of the realtime counters if the request has 'points'(min count of the points)
+      * and a rollup resolution gives them. 'rollup' selects the value of avg(default), min, max, last or count.
+      * @return false if no rollup fits or a day of the range has no rollup file of the resolution
+      */
+    private def readRollup(param: MapPack, objHashLv: ListValue, counter: String, stime: Long, etime: Long, handler: (Int, Long, Value) => Any): Boolean = {
+        val resolution = CounterRollup.getResolution(stime, etime, param.getInt("points"))
+        if (resolution == 0 || RollupCounterRD.exists(resolution, stime, etime) == false)
+            return false
+        val mode = param.getText("rollup")
+        for (i <- 0 until objHashLv.size()) {
+            val objHash = objHashLv.getInt(i)
+            RollupCounterRD.read(resolution, objHash, counter, stime, etime, (r: RollupCounterDB.Record) => {
+                val value = mode match {
+                    case "min" => new FloatValue(r.min)
+                    case "max" => new FloatValue(r.max)
+                    case "last" => new FloatValue(r.last)
+                    case "count" => new DecimalValue(r.count)
+                    case _ => new DoubleValue(r.avg)
+                }
+                handler(objHash, r.time, value)
+            })
+        }
+        return true
+    }
+
     /**
       * get a counter's values for specific object type or hashes
       *
@@ -286,23 +321,18 @@ class CounterService {
             mapPackMap.put(objHash, mapPack);
         }
 
-        val handler = (mapValue: MapValue) => {
-            if (mapValue != null) {
-                val objHash = mapValue.getInt(CounterConstants.COMMON_OBJHASH)
-                val time = mapValue.getLong(CounterConstants.COMMON_TIME)
-                val value = mapValue.get(counter)
-                if(value != null) {
-                    val curMapPack = mapPackMap.get(objHash)
-                    if(curMapPack != null) {
-                        curMapPack.getList("time").add(time)
-                        curMapPack.getList("value").add(value)
-                    }
-                }
+        val handler = (objHash: Int, time: Long, value: Value) => {
+            val curMapPack = mapPackMap.get(objHash)
+            if(curMapPack != null) {
+                curMapPack.getList("time").add(time)
+                curMapPack.getList("value").add(value)
             }
         }
 
 //        val start = System.currentTimeMillis()
-        RealtimeCounterRD.readBulk(date, stime, etime, handler)
+        if (readRollup(param, objHashLv, counter, stime, etime, handler) == false) {
+            RealtimeCounterRD.readCounter(date, objHashLv, counter, stime, etime, handler)
+        }
 //        val end = System.currentTimeMillis()
 //        println("[elapsed]" + (end-start))
 
@@ -437,22 +467,17 @@ class CounterService {
             mapPackMap.put(objHash, mapPack);
         }
 
-        val handler = (mapValue: MapValue) => {
-            if (mapValue != null) {
-                val objHash = mapValue.getInt(CounterConstants.COMMON_OBJHASH)
-                val time = mapValue.getLong(CounterConstants.COMMON_TIME)
-                val value = mapValue.get(counter)
-                if(value != null) {
-                    val curMapPack = mapPackMap.get(objHash)
-                    if(curMapPack != null) {
-                        curMapPack.getList("time").add(time)
-                        curMapPack.getList("value").add(value)
-                    }
-                }
+        val handler = (objHash: Int, time: Long, value: Value) => {
+            val curMapPack = mapPackMap.get(objHash)
+            if(curMapPack != null) {
+                curMapPack.getList("time").add(time)
+                curMapPack.getList("value").add(value)
             }
         }
 
-        RealtimeCounterRD.readBulk(date, stime, etime, handler)
+        if (readRollup(param, objHashLv, counter, stime, etime, handler) == false) {
+            RealtimeCounterRD.readCounter(date, objHashLv, counter, stime, etime, handler)
+        }
 
         for (i <- 0 to objHashLv.size() - 1) {
             dout.writeByte(TcpFlag.HasNEXT);
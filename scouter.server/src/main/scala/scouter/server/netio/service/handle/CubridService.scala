@@ -28,6 +28,7 @@ import scouter.lang.pack.StatusPack
 import scouter.lang.value.DoubleValue
 import scouter.lang.value.FloatValue
 import scouter.lang.value.MapValue
+import scouter.lang.value.Value
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
 import scouter.net.TcpFlag
@@ -209,22 +210,15 @@ class CubridService {
             mapPackMap.put(objHash, mapPack);
         }
 
-        val handler = (mapValue: MapValue) => {
-            if (mapValue != null) {
-                val objHash = mapValue.getInt(CounterConstants.COMMON_OBJHASH)
-                val time = mapValue.getLong(CounterConstants.COMMON_TIME)
-                val value = mapValue.get(counter)
-                if(value != null) {
-                    val curMapPack = mapPackMap.get(objHash)
-                    if(curMapPack != null) {
-                        curMapPack.getList("time").add(time)
-                        curMapPack.getList("value").add(value)
-                    }
-                }
+        val handler = (objHash: Int, time: Long, value: Value) => {
+            val curMapPack = mapPackMap.get(objHash)
+            if(curMapPack != null) {
+                curMapPack.getList("time").add(time)
+                curMapPack.getList("value").add(value)
             }
         }
 
-        RealtimeCounterRD.readBulk(date, stime, etime, handler)
+        RealtimeCounterRD.readCounter(date, objHashLv, counter, stime, etime, handler)
 
         for (i <- 0 to objHashLv.size() - 1) {
             dout.writeByte(TcpFlag.HasNEXT);
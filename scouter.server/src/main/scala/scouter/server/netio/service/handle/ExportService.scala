@@ -19,26 +19,39 @@
 package scouter.server.netio.service.handle;
 
 import scouter.lang.CounterKey
+import scouter.lang.TextTypes
 import scouter.lang.SummaryEnum
 import scouter.lang.TimeTypeEnum
 import scouter.lang.pack.MapPack
 import scouter.lang.pack.ObjectPack
+import scouter.lang.pack.XLogPack
+import scouter.lang.constants.ParamConstant
+import scouter.lang.value.BlobValue
+import scouter.lang.value.BooleanValue
+import scouter.lang.value.DecimalValue
 import scouter.lang.value.ListValue
 import scouter.lang.value.MapValue
 import scouter.lang.value.NullValue
 import scouter.lang.value.Value
 import scouter.io.DataInputX
 import scouter.io.DataOutputX
+import scouter.io.XLogColumnChunk
 import scouter.net.RequestCmd
 import scouter.net.TcpFlag
+import scouter.server.Configure
 import scouter.server.CounterManager
 import scouter.server.Logger
 import scouter.server.db.DailyCounterRD
 import scouter.server.db.RealtimeCounterRD
 import scouter.server.db.ObjectRD
+import scouter.server.db.TextRD
+import scouter.server.db.XLogProfileRD
+import scouter.server.db.XLogRD
 import scouter.server.netio.service.anotation.ServiceHandler
+import scouter.server.util.EnumerScala
 import scouter.util.CastUtil
 import scouter.util.DateUtil
+import scouter.util.IntSet
 import scouter.util.SortUtil
 import scouter.lang.value.TextValue
 
@@ -148,4 +161,112 @@ class ExportService {
         }
     }
 
+    /**
+      * stream the xlogs of a time range as column chunks(XLogColumnChunk) so any range is exported in a bounded memory.
+      * each chunk is a BlobValue and the cursor(hasMore, lastXLogTime, lastTxid) follows at last as a MapValue.
+      * the same request with lastBucketTime and txid of the cursor resumes after the last exported xlog.
+      *
+      * @param din MapPack{date, stime, etime, objHash[], service, minElapsed, errorOnly, profile, pageCount, lastBucketTime, txid}
+      */
+    @ServiceHandler(RequestCmd.EXPORT_XLOG)
+    def exportXLog(din: DataInputX, dout: DataOutputX, login: Boolean) {
+        val param = din.readMapPack()
+        val date = param.getText(ParamConstant.DATE)
+        val stime = param.getLong(ParamConstant.XLOG_START_TIME)
+        val etime = param.getLong(ParamConstant.XLOG_END_TIME)
+        val lastBucketTime = param.getLong(ParamConstant.XLOG_LAST_BUCKET_TIME)
+        val txid = param.getLong(ParamConstant.XLOG_TXID)
+        val pageCount = param.getInt(ParamConstant.XLOG_PAGE_COUNT)
+        val limitCount = if (pageCount > 0) pageCount else Integer.MAX_VALUE - 1
+        val service = param.getInt(ParamConstant.XLOG_SERVICE)
+        val minElapsed = param.getInt(ParamConstant.XLOG_EXPORT_MIN_ELAPSED)
+        val errorOnly = param.getBoolean(ParamConstant.XLOG_EXPORT_ERROR_ONLY)
+        val withProfile = param.getBoolean(ParamConstant.XLOG_EXPORT_PROFILE)
+        val objHashLv = param.getList(ParamConstant.OBJ_HASH)
+
+        if ((txid == 0 && lastBucketTime != 0) || (txid != 0 && lastBucketTime == 0)) {
+            writeExportCursor(dout, false, 0, 0)
+            return
+        }
+
+        var objHashSet: IntSet = null
+        if (objHashLv != null && objHashLv.size() > 0) {
+            objHashSet = new IntSet()
+            EnumerScala.foreach(objHashLv, (obj: DecimalValue) => {
+                objHashSet.add(obj.intValue())
+            })
+        }
+
+        val conf = Configure.getInstance()
+        val chunk = new XLogColumnChunk(withProfile)
+        val services = new IntSet()
+        val errors = new IntSet()
+
+        def flush() {
+            if (chunk.getRows() > 0) {
+                dout.writeByte(TcpFlag.HasNEXT)
+                dout.writeValue(new BlobValue(chunk.toBytes()))
+                dout.flush()
+            }
+        }
+
+        def accept(x: XLogPack): Boolean = {
+            (objHashSet == null || objHashSet.contains(x.objHash)) &&
+                (service == 0 || x.service == service) &&
+                x.elapsed >= minElapsed &&
+                (errorOnly == false || x.error != 0)
+        }
+
+        var start = txid == 0L
+        var count = 0
+        var hasMore = false
+        var lastTime = 0L
+        var lastTxid = 0L
+
+        val handler = (time: Long, data: Array[Byte]) => {
+            val x = new DataInputX(data).readPack().asInstanceOf[XLogPack]
+            if (start == false) {
+                if (x.txid == txid) {
+                    start = true
+                }
+            } else if (accept(x)) {
+                if (count < limitCount) {
+                    if (services.add(x.service)) {
+                        val text = TextRD.getString(date, TextTypes.SERVICE, x.service)
+                        if (text != null) chunk.addText(XLogColumnChunk.TEXT_SERVICE, x.service, text)
+                    }
+                    if (x.error != 0 && errors.add(x.error)) {
+                        val text = TextRD.getString(date, TextTypes.ERROR, x.error)
+                        if (text != null) chunk.addText(XLogColumnChunk.TEXT_ERROR, x.error, text)
+                    }
+                    val profile = if (withProfile) XLogProfileRD.getProfile(date, x.txid, 0) else null
+                    chunk.add(x, profile)
+                    lastTime = time
+                    lastTxid = x.txid
+                    if (chunk.getRows() >= conf.net_xlog_export_chunk_rows || chunk.getByteSize() >= conf.net_xlog_export_chunk_bytes) {
+                        flush()
+                    }
+                } else {
+                    hasMore = true
+                }
+                count += 1
+            }
+            count
+        }
+
+        XLogRD.readByTimeLimitCount(date, stime, etime, lastBucketTime, limitCount, handler)
+        flush()
+
+        writeExportCursor(dout, hasMore, lastTime, lastTxid)
+    }
+
+    private def writeExportCursor(dout: DataOutputX, hasMore: Boolean, lastTime: Long, lastTxid: Long) {
+        val cursor = new MapValue()
+        cursor.put(ParamConstant.XLOG_RESULT_HAS_MORE, new BooleanValue(hasMore))
+        cursor.put(ParamConstant.XLOG_RESULT_LAST_TIME, new DecimalValue(lastTime))
+        cursor.put(ParamConstant.XLOG_RESULT_LAST_TXID, new DecimalValue(lastTxid))
+        dout.writeByte(TcpFlag.HasNEXT)
+        dout.writeValue(cursor)
+    }
+
 }
@@ -21,11 +21,11 @@ import scouter.io.DataOutputX
 import scouter.lang.SummaryEnum
 import scouter.lang.pack.MapPack
 import scouter.lang.pack.SummaryPack
-import scouter.lang.value.ListValue
+import scouter.lang.value.{BlobValue, ListValue}
 import scouter.net.TcpFlag
 import scouter.server.db.SummaryRD
 import scouter.server.netio.service.anotation.ServiceHandler
-import scouter.util.{HashUtil, IntKeyLinkedMap, LongKeyLinkedMap, StringKeyLinkedMap}
+import scouter.util.{HashUtil, IntKeyLinkedMap, LatencySketch, LongKeyLinkedMap, StringKeyLinkedMap}
 import scouter.net.RequestCmd
 
 class SummaryService {
@@ -37,6 +37,7 @@ class SummaryService {
         var elapsedSum: Long = 0;
         var cpuSum: Long = 0;
         var memSum: Long = 0;
+        var sketch: LatencySketch = null;
     }
 
     class TempError() {
@@ -58,6 +59,10 @@ class SummaryService {
         var level: Byte = 0;
     }
 
+    /**
+      * the service, sql and apicall summaries have the percentiles of the elapsed times,
+      * and the merged sketches too if the request has 'sketch' true.
+      */
     def load(stype: Byte, din: DataInputX, dout: DataOutputX, login: Boolean): Unit = {
         val param = din.readMapPack();
         val date = param.getText("date");
@@ -65,6 +70,8 @@ class SummaryService {
         val etime = param.getLong("etime");
         val objType = param.getText("objType");
         val objHash = param.getInt("objHash");
+        val latency = stype == SummaryEnum.APP || stype == SummaryEnum.SQL || stype == SummaryEnum.APICALL
+        val withSketch = latency && param.getBoolean("sketch")
 
         val tempMap = new IntKeyLinkedMap[TempObject]().setMax(50000)
 
@@ -79,6 +86,7 @@ class SummaryService {
                 val elapsed = p.table.getList("elapsed")
                 val cpu = p.table.getList("cpu")
                 val mem = p.table.getList("mem");
+                val sketch = if (latency) p.table.getList("sketch") else null
 
                 for (i <- 0 to id.size() - 1) {
                     var tempObj = tempMap.get(id.getInt(i));
@@ -94,6 +102,16 @@ class SummaryService {
                         tempObj.cpuSum += cpu.getLong(i);
                         tempObj.memSum += mem.getLong(i);
                     }
+                    if (sketch != null && i < sketch.size()) {
+                        sketch.get(i) match {
+                            case b: BlobValue =>
+                                val s = LatencySketch.fromBytes(b.value)
+                                if (s != null) {
+                                    tempObj.sketch = if (tempObj.sketch == null) s else tempObj.sketch.merge(s)
+                                }
+                            case _ =>
+                        }
+                    }
                 }
             }
         }
@@ -112,6 +130,11 @@ class SummaryService {
             newCpuSumList = map.newList("cpu"); // cpu time sum
             newMemSumList = map.newList("mem"); // mem sum
         }
+        // the percentiles of the sketches of all the agents and times merged
+        val newSketchList = if (withSketch) map.newList("sketch") else null;
+        val new50PctList = if (latency) map.newList("elapsed50") else null;
+        val new90PctList = if (latency) map.newList("elapsed90") else null;
+        val new99PctList = if (latency) map.newList("elapsed99") else null;
         val itr = tempMap.keys();
         while (itr.hasMoreElements()) {
             val hash = itr.nextInt();
@@ -124,6 +147,20 @@ class SummaryService {
                 newCpuSumList.add(obj.cpuSum)
                 newMemSumList.add(obj.memSum)
             }
+            if (latency) {
+                if (obj.sketch == null) {
+                    new50PctList.add(0L)
+                    new90PctList.add(0L)
+                    new99PctList.add(0L)
+                } else {
+                    new50PctList.add(obj.sketch.getPercentile(0.5))
+                    new90PctList.add(obj.sketch.getPercentile(0.9))
+                    new99PctList.add(obj.sketch.getPercentile(0.99))
+                }
+            }
+            if (withSketch) {
+                newSketchList.add(if (obj.sketch == null) new BlobValue() else new BlobValue(obj.sketch.toBytes()))
+            }
         }
 
         dout.writeByte(TcpFlag.HasNEXT);
@@ -28,13 +28,14 @@ import scouter.net.{RequestCmd, TcpFlag}
 import scouter.server.Configure
 import scouter.server.core.app.SpanStepBuilder
 import scouter.server.core.cache.XLogCache
-import scouter.server.db.{TextRD, XLogProfileRD, XLogRD, ZipkinSpanRD}
+import scouter.server.db.{TextRD, XLogParallelRD, XLogProfileRD, XLogRD, ZipkinSpanRD}
+import scouter.server.db.xlog.XLogSecondaryIndex
 import scouter.server.netio.service.anotation.ServiceHandler
 import scouter.server.util.EnumerScala
 import scouter.util._
 
 import scala.collection.mutable
-import scala.collection.mutable.ListBuffer
+import scala.collection.mutable.{ArrayBuffer, ListBuffer}
 
 class XLogService {
 
@@ -164,7 +165,7 @@ class XLogService {
 
     /**
       * get latest XLog data
-      * @param din MapPack{index, loop, objHash[]}
+      * @param din MapPack{index, loop, limit, objHash[], error}
       * @param dout {MapPack{loop, index}, XLogPack[]}
       * @param login
       */
@@ -185,9 +186,9 @@ class XLogService {
             intSet.add(obj.intValue());
         })
 
-        val d = if(intSet != null)
-                XLogCache.get(intSet, loop, index, limit)
-                else XLogCache.get(loop, index, limit)
+        val errorOnly = param.getBoolean("error")
+
+        val d = XLogCache.get(intSet, loop, index, limit, errorOnly)
 
         if (d == null) return ;
 
@@ -410,16 +411,28 @@ class XLogService {
         }
     }
 
+    /**
+      * @param din MapPack{date, txid, gxid, days}. with days the xlog is looked for from the date back to the days before.
+      */
     @ServiceHandler(RequestCmd.XLOG_READ_BY_TXID)
     def readByTxId(din: DataInputX, dout: DataOutputX, login: Boolean) {
         val param = din.readMapPack()
-        val date = param.getText("date")
+        var date = param.getText("date")
         val txid = param.getLong("txid")
         val gxid = param.getLong("gxid")
+        val days = param.getInt("days")
         try {
             var xbytes = XLogRD.getByTxid(date, txid)
             var xbytesChecked = false
 
+            if (xbytes == null && days > 1) {
+                val found = XLogRD.findByTxid(date, days, txid)
+                if (found != null) {
+                    date = found._1
+                    xbytes = found._2
+                }
+            }
+
             if (xbytes == null && gxid != 0) {
                 val spanMap = getSpansMap(date, gxid)
                 if (spanMap.nonEmpty) {
@@ -578,6 +591,7 @@ class XLogService {
         val text3 = param.getText("text3");
         val text4 = param.getText("text4");
         val text5 = param.getText("text5");
+        val errorOnly = param.getBoolean("error");
 
         val serviceMatch = if (service == null) null else new StrMatch(service);
         val ipMatch = if (ip == null) null else new StrMatch(ip);
@@ -589,20 +603,7 @@ class XLogService {
         val text4Match = if (text4 == null) null else new StrMatch(text4);
         val text5Match = if (text5 == null) null else new StrMatch(text5);
 
-        val date = DateUtil.yyyymmdd(stime);
-        val date2 = DateUtil.yyyymmdd(etime);
-        var mtime = 0L;
-        var twoDays = false;
-        var loadCount = 0;
-        if (date.equals(date2) == false) {
-            mtime = DateUtil.yyyymmdd(date2);
-            twoDays = true;
-        }
-
-        val handler = (time: Long, data: Array[Byte]) => {
-            if (loadCount >= Configure.getInstance().req_search_xlog_max_count) {
-                return ;
-            }
+        val matches = (time: Long, data: Array[Byte]) => {
             val x = new DataInputX(data).readPack().asInstanceOf[XLogPack];
             var ok = true
             if (ipMatch != null) {
@@ -616,6 +617,9 @@ class XLogService {
             if (objHash != 0 && x.objHash != objHash) {
                 ok = false;
             }
+            if (errorOnly && x.error == 0) {
+                ok = false;
+            }
             if (serviceMatch != null) {
                 var serviceName = TextRD.getString(DateUtil.yyyymmdd(time), TextTypes.SERVICE, x.service);
                 if (serviceMatch.include(serviceName) == false) {
@@ -670,21 +674,49 @@ class XLogService {
                 }
             }
 
-            if (ok) {
-                //TODO adjust caller in the case of Sapn
+            ok
+        }
+
+        val fields = searchIndexFields(objHash, service, ip, login, errorOnly)
+        val read = (part: XLogParallelRD.Partition, handler: (Long, Array[Byte]) => Any) => {
+            if (fields.length == 0 || XLogRD.readBySecondaryIndex(part.date, part.stime, part.etime, fields, handler) == false) {
+                XLogRD.readByTime(part.date, part.stime, part.etime, handler);
+            }
+        }
+        //TODO adjust caller in the case of Sapn
+        XLogParallelRD.search(stime, etime, Configure.getInstance().req_search_xlog_max_count, read, matches,
+            (data: Array[Byte]) => {
                 dout.writeByte(TcpFlag.HasNEXT);
                 dout.write(data);
-                dout.flush();
-                loadCount += 1;
+            },
+            () => dout.flush())
+    }
+
+    /**
+      * exact match conditions usable on the xlog secondary index. patterns with wildcard are checked after reading.
+      */
+    private def searchIndexFields(objHash: Int, service: String, ip: String, login: String, error: Boolean): Array[(Byte, Int)] = {
+        val exact = (v: String) => v != null && v.length > 0 && v.indexOf('*') < 0
+        val fields = new ArrayBuffer[(Byte, Int)]()
+        if (objHash != 0) {
+            fields += ((XLogSecondaryIndex.FIELD_OBJ, objHash))
+        }
+        if (exact(service)) {
+            fields += ((XLogSecondaryIndex.FIELD_SERVICE, HashUtil.hash(service)))
+        }
+        if (exact(ip)) {
+            val ipaddr = IPUtil.toBytes(ip)
+            if (ipaddr != null && ipaddr.length > 0) {
+                fields += ((XLogSecondaryIndex.FIELD_IP, HashUtil.hash(ipaddr)))
             }
         }
-
-        if (twoDays) {
-            XLogRD.readByTime(date, stime, mtime - 1, handler);
-            XLogRD.readByTime(date2, mtime, etime, handler);
-        } else {
-            XLogRD.readByTime(date, stime, etime, handler);
+        if (exact(login)) {
+            fields += ((XLogSecondaryIndex.FIELD_LOGIN, HashUtil.hash(login)))
+        }
+        if (error) {
+            fields += ((XLogSecondaryIndex.FIELD_ERROR, 1))
         }
+        fields.toArray
     }
 
 }
@@ -16,7 +16,9 @@
  *
  */
 package scouter.server.netio.service.net;
-import java.net.{InetAddress, ServerSocket, Socket}
+import java.net.{InetAddress, InetSocketAddress, ServerSocket, Socket}
+import java.nio.channels.ServerSocketChannel
+import java.util.concurrent.{ExecutorService, Executors}
 import scouter.server.ConfObserver
 import scouter.server.Configure
 import scouter.server.Logger
@@ -31,19 +33,43 @@ object TcpServer {
         threadPool.setCorePoolSize(conf.net_tcp_service_pool_size);
       }
     }
+
+    val isNio = "nio".equalsIgnoreCase(conf.net_tcp_service_io_mode)
+    val executor: ExecutorService = if ("virtual".equalsIgnoreCase(conf.net_tcp_service_io_mode)) newVirtualThreadExecutor() else threadPool
+
+    /**
+      * virtual thread per connection on java 21+ runtimes. falls back to the service thread pool.
+      */
+    private def newVirtualThreadExecutor(): ExecutorService = {
+        try {
+            classOf[Executors].getMethod("newVirtualThreadPerTaskExecutor").invoke(null).asInstanceOf[ExecutorService]
+        } catch {
+            case e: Throwable =>
+                Logger.println("S230", "virtual thread is not available on this runtime. use thread pool instead.")
+                threadPool
+        }
+    }
+
     ThreadScala.startDaemon("scouter.server.netio.service.net.TcpServer") {
         Logger.println("\ttcp_port=" + conf.net_tcp_listen_port);
         Logger.println("\tcp_agent_so_timeout=" + conf.net_tcp_agent_so_timeout_ms);
         Logger.println("\tcp_client_so_timeout=" + conf.net_tcp_client_so_timeout_ms);
+        Logger.println("\ttcp_service_io_mode=" + conf.net_tcp_service_io_mode);
         var server: ServerSocket = null;
         try {
-            server = new ServerSocket(conf.net_tcp_listen_port, 50, InetAddress.getByName(conf.net_tcp_listen_ip));
+            if (isNio) {
+                val channel = ServerSocketChannel.open()
+                channel.socket().bind(new InetSocketAddress(InetAddress.getByName(conf.net_tcp_listen_ip), conf.net_tcp_listen_port), 50)
+                server = channel.socket()
+            } else {
+                server = new ServerSocket(conf.net_tcp_listen_port, 50, InetAddress.getByName(conf.net_tcp_listen_ip));
+            }
             while (true) {
-                val client = server.accept();
+                val client = if (isNio) server.getChannel().accept().socket() else server.accept();
                 client.setSoTimeout(conf.net_tcp_client_so_timeout_ms);
                 client.setReuseAddress(true);
                 try {
-                    threadPool.execute(new ServiceWorker(client));
+                    executor.execute(new ServiceWorker(client));
                 } catch {
                     case e: Throwable => e.printStackTrace();
                 }
@@ -0,0 +1,103 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.netio.service.net
+
+import java.nio.channels.{SelectionKey, Selector}
+import java.util.concurrent.ConcurrentLinkedQueue
+
+import scouter.server.core.ServerStat
+import scouter.server.util.ThreadScala
+import scouter.server.{Configure, Logger}
+
+import scala.collection.mutable.ArrayBuffer
+
+/**
+  * keeps idle client connections on a selector instead of a blocked thread per connection. (net_tcp_service_io_mode=nio)
+  * when a request arrives, the connection is handed to the service thread pool in blocking mode
+  * and comes back here after the response is written, so the wire protocol stays as it is.
+  */
+object TcpServiceSelector {
+    val conf = Configure.getInstance()
+
+    private val selector = Selector.open()
+    private val pending = new ConcurrentLinkedQueue[ServiceWorker]()
+
+    def park(worker: ServiceWorker) {
+        worker.socket.getChannel().configureBlocking(false)
+        pending.add(worker)
+        selector.wakeup()
+    }
+
+    ThreadScala.startDaemon("scouter.server.netio.service.net.TcpServiceSelector", { true }) {
+        if (selector.selectedKeys().isEmpty) selector.select(1000) else selector.selectNow()
+
+        var worker = pending.poll()
+        while (worker != null) {
+            try {
+                worker.socket.getChannel().register(selector, SelectionKey.OP_READ, worker)
+            } catch {
+                case e: Throwable => worker.close()
+            }
+            worker = pending.poll()
+        }
+
+        val ready = new ArrayBuffer[ServiceWorker]()
+        val selected = selector.selectedKeys().iterator()
+        while (selected.hasNext) {
+            val key = selected.next()
+            selected.remove()
+            key.cancel()
+            ready += key.attachment().asInstanceOf[ServiceWorker]
+        }
+
+        val now = System.currentTimeMillis()
+        val keys = selector.keys().iterator()
+        var idle = 0
+        while (keys.hasNext) {
+            val key = keys.next()
+            val w = key.attachment().asInstanceOf[ServiceWorker]
+            if (key.isValid && now - w.lastActive > conf.net_tcp_client_so_timeout_ms) {
+                key.cancel()
+                w.close()
+                if (conf.log_tcp_action_enabled) {
+                    Logger.println("Client : " + w.remoteAddr + " closed (idle)");
+                }
+            } else {
+                idle += 1
+            }
+        }
+        ServerStat.put("tcp.service.idle", idle)
+
+        if (ready.nonEmpty) {
+            // deregister the cancelled keys before switching the channels to blocking mode
+            selector.selectNow()
+            ready.foreach(w => {
+                try {
+                    TcpServer.executor.execute(new Runnable() {
+                        override def run() {
+                            w.resume()
+                        }
+                    })
+                } catch {
+                    case e: Throwable => w.close()
+                }
+            })
+        }
+    }
+}
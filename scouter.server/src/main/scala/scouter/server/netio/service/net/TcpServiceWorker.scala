@@ -59,15 +59,20 @@ object ServiceWorker {
 class ServiceWorker(_socket: Socket) extends Runnable {
     var socket = _socket;
 
-    val in = new DataInputX(new BufferedInputStream(socket.getInputStream()));
+    val bin = new BufferedInputStream(socket.getInputStream())
+    val in = new DataInputX(bin);
     val out = new DataOutputX(new BufferedOutputStream(socket.getOutputStream()));
     val conf = Configure.getInstance()
 
+    var remoteAddr = ""
+    val remoteIp = socket.getInetAddress.toString.split("/").last
+    var sessionOk = false
+    @volatile var lastActive = System.currentTimeMillis()
+
     override def run() {
-        var remoteAddr = ""
         try {
             remoteAddr = "" + socket.getRemoteSocketAddress()
-            ServiceWorker.remoteIpByWorker.set(socket.getInetAddress.toString.split("/").last)
+            ServiceWorker.remoteIpByWorker.set(remoteIp)
 
             val cafe = in.readInt();
             cafe match {
@@ -104,31 +109,87 @@ class ServiceWorker(_socket: Socket) extends Runnable {
                 FileUtil.close(socket);
                 return
         }
-        try {
 
-            ServiceWorker.inc();
-            var sessionOk = false;
+        ServiceWorker.inc();
+        if (TcpServer.isNio) {
+            try {
+                if (bin.available() > 0) resume() else park()
+            } catch {
+                case t: Throwable =>
+                    logClosed(t)
+                    close()
+            }
+            return
+        }
+        try {
             while (true) {
-                val cmd = in.readText();
-                if (RequestCmd.CLOSE.equals(cmd)) {
+                if (serve() == false) {
                     return
                 }
-                val session = in.readLong();
-                if (sessionOk == false && RequestCmd.isFreeCmd(cmd) == false) {
-                	sessionOk = LoginManager.okSession(session);
-                  if (sessionOk == false) {
-                    out.writeByte(TcpFlag.INVALID_SESSION);
-                    out.flush();
-                    throw new RuntimeException("Invalid session key : " + cmd);
-                  }
+            }
+        } catch {
+            case t: Throwable => logClosed(t)
+        } finally {
+            close()
+        }
+    }
+
+    /**
+      * process the requests already arrived and park the connection on TcpServiceSelector until the next request.
+      */
+    def resume() {
+        try {
+            socket.getChannel().configureBlocking(true)
+            do {
+                if (serve() == false) {
+                    close()
+                    return
                 }
-                RequestLogger.getInstance().add(cmd, session);
-                ServiceHandlingProxy.process(cmd, in, out, sessionOk);
+            } while (bin.available() > 0)
+            park()
+        } catch {
+            case t: Throwable =>
+                logClosed(t)
+                close()
+        }
+    }
+
+    private def park() {
+        ServiceWorker.remoteIpByWorker.remove()
+        lastActive = System.currentTimeMillis()
+        TcpServiceSelector.park(this)
+    }
 
-                out.writeByte(TcpFlag.NoNEXT);
+    /**
+      * process a request.
+      * @return false if the client closed the session
+      */
+    private def serve(): Boolean = {
+        // in nio mode the thread serving this connection may have served another one just before
+        ServiceWorker.remoteIpByWorker.set(remoteIp)
+        val cmd = in.readText();
+        if (RequestCmd.CLOSE.equals(cmd)) {
+            return false
+        }
+        val session = in.readLong();
+        if (sessionOk == false && RequestCmd.isFreeCmd(cmd) == false) {
+            sessionOk = LoginManager.okSession(session);
+            if (sessionOk == false) {
+                out.writeByte(TcpFlag.INVALID_SESSION);
                 out.flush();
+                throw new RuntimeException("Invalid session key : " + cmd);
             }
-        } catch {
+        }
+        RequestLogger.getInstance().add(cmd, session);
+        ServiceHandlingProxy.process(cmd, in, out, sessionOk);
+
+        out.writeByte(TcpFlag.NoNEXT);
+        out.flush();
+        return true
+    }
+
+    private def logClosed(t: Throwable) {
+        t match {
             case ne: NullPointerException =>
                 if (conf.log_tcp_action_enabled) {
                     Logger.println("Client : " + remoteAddr + " closed");
@@ -149,12 +210,15 @@ class ServiceWorker(_socket: Socket) extends Runnable {
                 }
             case t: Throwable =>
                 Logger.println("SC-400", 30, "ServiceWorker closed", t)
-        } finally {
-            FileUtil.close(in);
-            FileUtil.close(out);
-            FileUtil.close(socket);
-            ServiceWorker.desc();
         }
     }
 
-}
\ No newline at end of file
+    def close() {
+        FileUtil.close(in);
+        FileUtil.close(out);
+        FileUtil.close(socket);
+        ServiceWorker.remoteIpByWorker.remove()
+        ServiceWorker.desc();
+    }
+
+}
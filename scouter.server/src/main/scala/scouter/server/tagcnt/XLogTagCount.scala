@@ -19,38 +19,56 @@
 package scouter.server.tagcnt;
 
 import scouter.lang.pack.XLogPack
-import scouter.lang.value.DecimalValue
-import scouter.lang.value.IP4Value
-import scouter.lang.value.TextHashValue
-import scouter.lang.value.TextValue
-import scouter.lang.value.NullValue;
+import scouter.lang.value.Value
 import scouter.server.Configure
 import scouter.server.Logger
 import scouter.server.core.AgentManager
 import scouter.server.core.CoreRun
+import scouter.server.tagcnt.core.TagCountBuffer
 import scouter.server.util.ThreadScala
-import scouter.util.IPUtil
-import scouter.util.RequestQueue
+import scouter.util.DateUtil
 import scouter.util.StringUtil
 
+/**
+  * counts the tags of xlogs into a TagCountBuffer and hands over the counts of a minute to FirstTagCountDB
+  * 10 seconds after the minute is over, so no Value is made per xlog.
+  */
 object XLogTagCount {
 
-    val queue = new RequestQueue[XLogPack](CoreRun.MAX_QUE_SIZE);
+    val queue = CoreRun.newQueue[XLogPack]("tagcnt.xlog.queue", CoreRun.MAX_QUE_SIZE);
+
+    private val buffer = new TagCountBuffer(100000)
+    private val sink = new TagCountBuffer.Sink() {
+        override def count(time: Long, objType: String, tagKey: Long, value: Value, cnt: Float) {
+            TagCountProxy.add(time, objType, tagKey, value, cnt)
+        }
+    }
 
     ThreadScala.startDaemon("scouter.server.tagcnt.XLogTagCount") {
         val conf = Configure.getInstance();
+        var lastFlush = System.currentTimeMillis()
         while (CoreRun.running) {
-            val m = queue.get();
+            val m = queue.get(1000);
             try {
-                val objInfo = AgentManager.getAgent(m.objHash)
-                if (objInfo != null) {
-                    process(objInfo.objType, m)
+                if (m != null) {
+                    val objInfo = AgentManager.getAgent(m.objHash)
+                    if (objInfo != null) {
+                        process(objInfo.objType, m)
+                    }
+                }
+                val now = System.currentTimeMillis()
+                if (buffer.isFull()) {
+                    buffer.flush(Long.MaxValue, sink)
+                } else if (now - lastFlush >= 5000) {
+                    lastFlush = now
+                    buffer.flush(now - 10 * DateUtil.MILLIS_PER_SECOND, sink)
                 }
             } catch {
                 case e: Exception =>
                     Logger.println("S187", 10, "XLogTagCount", e)
             }
         }
+        buffer.flush(Long.MaxValue, sink)
     }
 
     def add(p: XLogPack) {
@@ -59,90 +77,62 @@ object XLogTagCount {
             Logger.println("S188", 10, "XLogTagCount queue exceeded!!");
         }
     }
-    def process(objType: String, x: XLogPack) {
-        TagCountProxy.add(x.endTime, objType, TagCountConfig.service.total, NullValue.value, 1)
 
-        TagCountProxy.add(x.endTime, objType, TagCountConfig.service.objectName, new TextHashValue(x.objHash), 1)
-        TagCountProxy.add(x.endTime, objType, TagCountConfig.service.service, new TextHashValue(x.service), 1)
+    private def count(time: Long, objType: Int, tag: TagCountConfig.Tag, kind: Byte, value: Long, cnt: Float) {
+        buffer.add(time, objType, tag.key, kind, value, cnt)
+    }
+
+    def process(objTypeName: String, x: XLogPack) {
+        val objType = buffer.objTypeId(objTypeName)
+        val service = TagCountConfig.service
+        val time = x.endTime
+        count(time, objType, service.total, TagCountBuffer.NULL, 0, 1)
+
+        count(time, objType, service.objectName, TagCountBuffer.TEXT_HASH, x.objHash, 1)
+        count(time, objType, service.service, TagCountBuffer.TEXT_HASH, x.service, 1)
 
         if (x.elapsed > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.service_time_sum, new TextHashValue(x.service), x.elapsed)
+            count(time, objType, service.service_time_sum, TagCountBuffer.TEXT_HASH, x.service, x.elapsed)
         }
         if (x.kbytes > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.service_kbyte_sum, new TextHashValue(x.service), x.kbytes)
+            count(time, objType, service.service_kbyte_sum, TagCountBuffer.TEXT_HASH, x.service, x.kbytes)
         }
         if (x.error != 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.service_error_sum, new TextHashValue(x.service), 1)
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.error, new TextHashValue(x.error), 1)
+            count(time, objType, service.service_error_sum, TagCountBuffer.TEXT_HASH, x.service, 1)
+            count(time, objType, service.error, TagCountBuffer.TEXT_HASH, x.error, 1)
         }
-        if (x.group != 0){
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.group, new TextHashValue(x.group), 1)
+        if (x.group != 0) {
+            count(time, objType, service.group, TagCountBuffer.TEXT_HASH, x.group, 1)
         }
-        
-        if (x.userAgent != 0){
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.userAgent, new TextHashValue(x.userAgent), 1)
+        if (x.userAgent != 0) {
+            count(time, objType, service.userAgent, TagCountBuffer.TEXT_HASH, x.userAgent, 1)
         }
-        
-        if (x.referer != 0){
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.referer, new TextHashValue(x.referer), 1)
+        if (x.referer != 0) {
+            count(time, objType, service.referer, TagCountBuffer.TEXT_HASH, x.referer, 1)
         }
-//        if (IPUtil.isNotLocal(x.ipaddr))
-//            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.ip, new IP4Value(x.ipaddr), 1)
-
-        if (x.city != 0){
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.city, new TextHashValue(x.city), 1)
+        if (x.city != 0) {
+            count(time, objType, service.city, TagCountBuffer.TEXT_HASH, x.city, 1)
         }
-        if (StringUtil.isNotEmpty(x.countryCode)){
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.nation, new TextValue(x.countryCode), 1)
+        if (StringUtil.isNotEmpty(x.countryCode)) {
+            count(time, objType, service.nation, TagCountBuffer.TEXT, buffer.textId(x.countryCode), 1)
         }
-
-//        if (x.userid != 0) {
-//            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.userid, new DecimalValue(x.userid), 1)
-//        }
-
-//        val elapsed = x.elapsed / 1000
-//        if (elapsed > 0) {
-//            elapsed match {
-//                case 1 | 2 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.elapsed, new DecimalValue(1), 1)
-//                case 3 | 4 | 5 | 6 | 7 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.elapsed, new DecimalValue(3), 1)
-//                case _ => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.elapsed, new DecimalValue(8), 1)
-//            }
-//        }
         if (x.sqlTime > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.sqltime_sum, new TextHashValue(x.service), x.sqlTime)
+            count(time, objType, service.sqltime_sum, TagCountBuffer.TEXT_HASH, x.service, x.sqlTime)
         }
         if (x.sqlCount > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.sqlcount_sum, new TextHashValue(x.service), x.sqlCount)
-        }
-//        val sqlTime = x.sqlTime / 1000
-//        if (sqlTime > 0) {
-//            sqlTime match {
-//                case 1 | 2 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.sqltime, new DecimalValue(1), 1)
-//                case 3 | 4 | 5 | 6 | 7 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.sqltime, new DecimalValue(3), 1)
-//                case _ => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.sqltime, new DecimalValue(8), 1)
-//            }
-//        }
-
+            count(time, objType, service.sqlcount_sum, TagCountBuffer.TEXT_HASH, x.service, x.sqlCount)
+        }
         if (x.apicallTime > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.apitime_sum, new TextHashValue(x.service), x.apicallTime)
+            count(time, objType, service.apitime_sum, TagCountBuffer.TEXT_HASH, x.service, x.apicallTime)
         }
         if (x.apicallCount > 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.apicount_sum, new TextHashValue(x.service), x.apicallCount)
-        }
-//        val apicallTime = x.apicallTime / 1000
-//        if (apicallTime > 0) {
-//            apicallTime match {
-//                case 1 | 2 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.apitime, new DecimalValue(1), 1)
-//                case 3 | 4 | 5 | 6 | 7 => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.apitime, new DecimalValue(3), 1)
-//                case _ => TagCountProxy.add(x.endTime, objType, TagCountConfig.service.apitime, new DecimalValue(8), 1)
-//            }
-//        }
-
+            count(time, objType, service.apicount_sum, TagCountBuffer.TEXT_HASH, x.service, x.apicallCount)
+        }
         if (x.login != 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.login, new DecimalValue(x.login), 1)
+            count(time, objType, service.login, TagCountBuffer.DECIMAL, x.login, 1)
         }
         if (x.desc != 0) {
-            TagCountProxy.add(x.endTime, objType, TagCountConfig.service.desc, new DecimalValue(x.desc), 1)
+            count(time, objType, service.desc, TagCountBuffer.DECIMAL, x.desc, 1)
         }
     }
 }
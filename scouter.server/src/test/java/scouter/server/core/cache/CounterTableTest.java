@@ -0,0 +1,127 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+import scouter.lang.TimeTypeEnum;
+import scouter.lang.value.DecimalValue;
+import scouter.lang.value.Value;
+
+import java.util.Map;
+
+public class CounterTableTest {
+
+    @Test
+    public void put_and_get() {
+        CounterTable table = new CounterTable();
+        table.put(1, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(10), 10000);
+        table.put(1, "ElapsedTime", TimeTypeEnum.REALTIME, new DecimalValue(20), 10000);
+        table.put(2, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(30), 10000);
+
+        Assert.assertEquals(new DecimalValue(10), table.get(1, "TPS", TimeTypeEnum.REALTIME));
+        Assert.assertEquals(new DecimalValue(30), table.get(2, "TPS", TimeTypeEnum.REALTIME));
+        Assert.assertNull(table.get(2, "ElapsedTime", TimeTypeEnum.REALTIME));
+        Assert.assertNull(table.get(1, "TPS", TimeTypeEnum.FIVE_MIN));
+
+        Map<String, Value> counters = table.getObjectCounters(1, TimeTypeEnum.REALTIME);
+        Assert.assertEquals(2, counters.size());
+        Assert.assertEquals(new DecimalValue(20), counters.get("ElapsedTime"));
+    }
+
+    @Test
+    public void expired_value_is_not_returned() {
+        CounterTable table = new CounterTable();
+        table.put(1, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(10), -1);
+        Assert.assertNull(table.get(1, "TPS", TimeTypeEnum.REALTIME));
+        Assert.assertTrue(table.getObjectCounters(1, TimeTypeEnum.REALTIME).isEmpty());
+    }
+
+    @Test
+    public void grow_with_many_objects_and_counters() {
+        CounterTable table = new CounterTable();
+        for (int obj = 0; obj < 500; obj++) {
+            for (int c = 0; c < 100; c++) {
+                table.put(obj, "counter" + c, TimeTypeEnum.REALTIME, new DecimalValue(obj * 1000 + c), 10000);
+            }
+        }
+        for (int obj = 0; obj < 500; obj++) {
+            Assert.assertEquals(100, table.getObjectCounters(obj, TimeTypeEnum.REALTIME).size());
+            Assert.assertEquals(new DecimalValue(obj * 1000 + 99), table.get(obj, "counter99", TimeTypeEnum.REALTIME));
+        }
+    }
+
+    @Test
+    public void no_put_is_lost_while_the_arrays_grow() throws Exception {
+        final CounterTable table = new CounterTable();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int base = t;
+            threads[t] = new Thread() {
+                public void run() {
+                    for (int obj = 0; obj < 200; obj++) {
+                        for (int c = base; c < 200; c += 4) {
+                            table.put(obj, "counter" + c, TimeTypeEnum.REALTIME, new DecimalValue(c), 10000);
+                        }
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        for (int obj = 0; obj < 200; obj++) {
+            Assert.assertEquals(200, table.getObjectCounters(obj, TimeTypeEnum.REALTIME).size());
+        }
+    }
+
+    @Test
+    public void put_after_the_object_is_dropped() {
+        CounterTable table = new CounterTable();
+        table.put(1, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(10), -1);
+        for (int obj = 2; obj < 100; obj++) {
+            table.put(obj, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(obj), 10000);
+        }
+        table.put(1, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(11), 10000);
+        Assert.assertEquals(new DecimalValue(11), table.get(1, "TPS", TimeTypeEnum.REALTIME));
+    }
+
+    @Test
+    public void put_growing_an_object_dropped_meanwhile() throws Exception {
+        for (int round = 0; round < 200; round++) {
+            final CounterTable table = new CounterTable();
+            table.put(1, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(10), -1);
+            for (int c = 0; c < 100; c++) {
+                table.put(0, "counter" + c, TimeTypeEnum.REALTIME, new DecimalValue(c), 10000);
+            }
+            Thread adder = new Thread() {
+                public void run() {
+                    for (int obj = 2; obj < 300; obj++) {
+                        table.put(obj, "TPS", TimeTypeEnum.REALTIME, new DecimalValue(obj), 10000);
+                    }
+                }
+            };
+            adder.start();
+            table.put(1, "counter99", TimeTypeEnum.REALTIME, new DecimalValue(11), 10000);
+            adder.join();
+            Assert.assertEquals(new DecimalValue(11), table.get(1, "counter99", TimeTypeEnum.REALTIME));
+        }
+    }
+}
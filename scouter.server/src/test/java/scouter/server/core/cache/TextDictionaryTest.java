@@ -0,0 +1,68 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.core.cache;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class TextDictionaryTest {
+
+    private static String text(int length, char c) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void put_and_get() {
+        TextDictionary dict = new TextDictionary(64 * 1024);
+        dict.put(1, "select 1");
+        dict.put(2, "");
+        Assert.assertEquals("select 1", dict.get(1));
+        Assert.assertEquals("", dict.get(2));
+        Assert.assertNull(dict.get(3));
+    }
+
+    @Test
+    public void text_larger_than_the_window_is_kept() {
+        TextDictionary dict = new TextDictionary(64 * 1024);
+        // the window is 16 blocks(1KB) of the 1024 blocks
+        String big = text(10 * 1024, 'a');
+        dict.put(1, big);
+        Assert.assertEquals(big, dict.get(1));
+
+        dict.put(2, text(20 * 1024, 'b'));
+        dict.put(3, text(30 * 1024, 'c'));
+        Assert.assertEquals(3, dict.size());
+        dict.put(4, text(30 * 1024, 'd'));
+        Assert.assertNull(dict.get(1));
+        Assert.assertEquals(text(30 * 1024, 'd'), dict.get(4));
+        Assert.assertTrue(dict.getUsedBytes() <= 64 * 1024);
+    }
+
+    @Test
+    public void text_larger_than_the_dictionary_is_not_kept() {
+        TextDictionary dict = new TextDictionary(64 * 1024);
+        dict.put(1, text(64 * 1024, 'a'));
+        Assert.assertNull(dict.get(1));
+        Assert.assertEquals(0, dict.size());
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.counter;
+
+import org.junit.Test;
+import scouter.lang.value.DecimalValue;
+import scouter.lang.value.DoubleValue;
+import scouter.lang.value.FloatValue;
+import scouter.lang.value.Value;
+import scouter.lang.value.ValueEnum;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class CounterColumnBlockTest {
+
+    private static CounterColumnBlock.Points roundTrip(long[] time, Value[] value) {
+        CounterColumnBlock block = new CounterColumnBlock();
+        for (int i = 0; i < time.length; i++) {
+            block.append(time[i], value[i]);
+        }
+        byte[] bytes = block.toBytes();
+        assertEquals(bytes.length, block.getByteSize());
+        CounterColumnBlock.Points p = CounterColumnBlock.decode(bytes);
+        assertEquals(time.length, p.size());
+        for (int i = 0; i < time.length; i++) {
+            assertEquals(time[i], p.time[i]);
+        }
+        return p;
+    }
+
+    @Test
+    public void regular_counter_is_restored() {
+        long[] time = new long[300];
+        Value[] value = new Value[300];
+        for (int i = 0; i < time.length; i++) {
+            time[i] = 1500000000000L + i * 2000L + (i % 7 == 0 ? 13 : 0);
+            value[i] = new DecimalValue(1000 + i % 5);
+        }
+        CounterColumnBlock.Points p = roundTrip(time, value);
+        assertEquals(ValueEnum.DECIMAL, p.valueType);
+        for (int i = 0; i < time.length; i++) {
+            assertEquals(value[i], p.getValue(i));
+        }
+    }
+
+    @Test
+    public void nan_negative_and_special_values_are_restored() {
+        double[] v = { 0.0, -0.0, Double.NaN, -1.5, Double.NEGATIVE_INFINITY, Double.MAX_VALUE, -Double.MIN_VALUE,
+                Double.POSITIVE_INFINITY, Double.NaN, -123456789.125, 42.0, 42.0, -42.0 };
+        long[] time = new long[v.length];
+        Value[] value = new Value[v.length];
+        for (int i = 0; i < v.length; i++) {
+            time[i] = 1000L * i;
+            value[i] = new DoubleValue(v[i]);
+        }
+        CounterColumnBlock.Points p = roundTrip(time, value);
+        assertEquals(ValueEnum.DOUBLE, p.valueType);
+        for (int i = 0; i < v.length; i++) {
+            assertEquals(Double.doubleToRawLongBits(v[i]), Double.doubleToRawLongBits(p.value[i]));
+        }
+    }
+
+    @Test
+    public void repeated_and_out_of_order_times_are_restored() {
+        long[] time = { 5000, 5000, 5000, 7000, 6000, 6000, 100000, 99, 99, Long.MAX_VALUE / 2, 0 };
+        Value[] value = new Value[time.length];
+        for (int i = 0; i < time.length; i++) {
+            value[i] = new DecimalValue(-i * 1000L);
+        }
+        CounterColumnBlock.Points p = roundTrip(time, value);
+        for (int i = 0; i < time.length; i++) {
+            assertEquals(value[i], p.getValue(i));
+        }
+    }
+
+    @Test
+    public void widest_value_type_is_kept() {
+        long[] time = { 1000, 2000, 3000 };
+        Value[] value = { new DecimalValue(-3), new FloatValue(1.25f), new DecimalValue(7) };
+        CounterColumnBlock.Points p = roundTrip(time, value);
+        assertEquals(ValueEnum.FLOAT, p.valueType);
+        assertEquals(new FloatValue(-3f), p.getValue(0));
+        assertEquals(new FloatValue(1.25f), p.getValue(1));
+        assertEquals(new FloatValue(7f), p.getValue(2));
+    }
+
+    @Test
+    public void random_values_are_restored() {
+        Random r = new Random(1);
+        long[] time = new long[1000];
+        Value[] value = new Value[1000];
+        long t = 1500000000000L;
+        for (int i = 0; i < time.length; i++) {
+            t += r.nextInt(5) == 0 ? r.nextInt(100000) - 50000 : 2000;
+            time[i] = t;
+            value[i] = new DoubleValue(r.nextInt(3) == 0 ? r.nextDouble() * 1e6 - 5e5 : r.nextGaussian());
+        }
+        CounterColumnBlock.Points p = roundTrip(time, value);
+        for (int i = 0; i < time.length; i++) {
+            assertEquals(value[i], p.getValue(i));
+        }
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.io;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IngestJournalTest {
+
+    private static File newDir() {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "journal-test-" + System.nanoTime());
+        dir.mkdirs();
+        return dir;
+    }
+
+    private static byte[] record(int i) {
+        byte[] b = new byte[10 + i % 300];
+        for (int j = 0; j < b.length; j++) {
+            b[j] = (byte) (i + j);
+        }
+        return b;
+    }
+
+    private static List<byte[]> replay(IngestJournal journal, final boolean done) throws Exception {
+        final List<byte[]> out = new ArrayList<byte[]>();
+        journal.replay(new IngestJournal.Replayer() {
+            public void replay(byte type, byte[] data, IngestJournal.Record record) {
+                assertEquals(7, type);
+                out.add(data);
+                if (done) {
+                    record.done();
+                }
+            }
+        });
+        return out;
+    }
+
+    @Test
+    public void records_not_written_are_replayed_over_segments() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 4096, 0, 0, false);
+        for (int i = 0; i < 1000; i++) {
+            journal.append((byte) 7, record(i));
+            if (i % 50 == 0) {
+                journal.sync();
+            }
+        }
+        journal.close();
+        assertEquals(true, dir.listFiles().length > 1);
+
+        IngestJournal next = new IngestJournal(dir, 4096, 0, 0, false);
+        List<byte[]> replayed = replay(next, true);
+        assertEquals(1000, replayed.size());
+        for (int i = 0; i < 1000; i++) {
+            assertArrayEquals(record(i), replayed.get(i));
+        }
+        assertEquals(0, next.retire());
+        assertEquals(0, dir.listFiles().length);
+    }
+
+    @Test
+    public void torn_record_at_the_end_is_ignored() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 1024 * 1024, 0, 0, false);
+        for (int i = 0; i < 10; i++) {
+            journal.append((byte) 7, record(i));
+        }
+        journal.close();
+        File seg = dir.listFiles()[0];
+        RandomAccessFile raf = new RandomAccessFile(seg, "rw");
+        raf.setLength(raf.length() - 3);
+        raf.close();
+
+        IngestJournal next = new IngestJournal(dir, 1024 * 1024, 0, 0, false);
+        assertEquals(9, replay(next, false).size());
+        assertEquals(1, next.retire());
+    }
+
+    @Test
+    public void segment_is_retired_after_its_records_are_done() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 100, 0, 0, false);
+        IngestJournal.Record first = journal.append((byte) 7, record(200));
+        journal.sync();
+        IngestJournal.Record second = journal.append((byte) 7, record(1));
+        journal.sync();
+        assertEquals(2, journal.retire());
+        first.done();
+        assertEquals(1, journal.retire());
+        second.done();
+        journal.close();
+    }
+
+    @Test
+    public void records_written_at_a_restart_are_not_replayed_again() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 4096, 60000, 0, false);
+        for (int i = 0; i < 100; i++) {
+            journal.append((byte) 7, record(i));
+        }
+        journal.close(true);
+
+        IngestJournal first = new IngestJournal(dir, 4096, 60000, 0, false);
+        assertEquals(100, replay(first, true).size());
+        first.append((byte) 7, record(100)).done();
+        first.close(true);
+        assertEquals(0, dir.listFiles().length);
+
+        IngestJournal second = new IngestJournal(dir, 4096, 60000, 0, false);
+        assertEquals(0, replay(second, true).size());
+        second.close(true);
+    }
+
+    @Test
+    public void records_not_written_at_a_clean_close_are_kept() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 4096, 60000, 0, false);
+        for (int i = 0; i < 10; i++) {
+            IngestJournal.Record s = journal.append((byte) 7, record(i));
+            if (i < 5) {
+                s.done();
+            }
+        }
+        journal.close(true);
+
+        IngestJournal next = new IngestJournal(dir, 4096, 60000, 0, false);
+        assertEquals(10, replay(next, false).size());
+        next.close(true);
+        assertEquals(1, dir.listFiles().length);
+    }
+
+    @Test
+    public void records_before_the_checkpoint_are_not_replayed_after_a_crash() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 4096, 60000, 0, false);
+        List<IngestJournal.Record> records = new ArrayList<IngestJournal.Record>();
+        for (int i = 0; i < 10; i++) {
+            records.add(journal.append((byte) 7, record(i)));
+        }
+        journal.sync();
+        for (int i = 0; i < 5; i++) {
+            records.get(i).done();
+        }
+        records.get(7).done();
+        journal.checkpoint();
+
+        IngestJournal next = new IngestJournal(dir, 4096, 60000, 0, false);
+        List<byte[]> replayed = replay(next, false);
+        assertEquals(5, replayed.size());
+        for (int i = 0; i < 5; i++) {
+            assertArrayEquals(record(i + 5), replayed.get(i));
+        }
+        journal.close();
+        next.close();
+    }
+
+    @Test
+    public void checkpoint_waits_for_the_writers_to_flush() throws Exception {
+        File dir = newDir();
+        IngestJournal journal = new IngestJournal(dir, 4096, 60000, 60000, false);
+        for (int i = 0; i < 10; i++) {
+            journal.append((byte) 7, record(i)).done();
+        }
+        journal.sync();
+        journal.checkpoint();
+
+        IngestJournal next = new IngestJournal(dir, 4096, 60000, 60000, false);
+        assertEquals(10, replay(next, false).size());
+        journal.close();
+        next.close();
+    }
+}
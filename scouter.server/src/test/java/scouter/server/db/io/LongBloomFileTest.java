@@ -0,0 +1,79 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.io;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class LongBloomFileTest {
+
+    private static String newPath() {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "bloom-test-" + System.nanoTime());
+        dir.mkdirs();
+        return new File(dir, "xlog_tid").getPath();
+    }
+
+    @Test
+    public void added_keys_are_found_after_reopen_and_misses_are_rare() throws Exception {
+        String path = newPath();
+        Random r = new Random(1);
+        long[] keys = new long[100000];
+        LongBloomFile f = LongBloomFile.create(path, 1, true);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = r.nextLong();
+            f.add(keys[i]);
+        }
+        f.close();
+
+        f = LongBloomFile.open(path);
+        assertTrue(f.isComplete());
+        for (long k : keys) {
+            assertTrue(f.mightContain(k));
+        }
+        int falsePositive = 0;
+        for (int i = 0; i < 100000; i++) {
+            if (f.mightContain(r.nextLong()))
+                falsePositive++;
+        }
+        assertTrue("false positives " + falsePositive, falsePositive < 100);
+        f.close();
+    }
+
+    @Test
+    public void incomplete_filter_answers_maybe() throws Exception {
+        String path = newPath();
+        LongBloomFile f = LongBloomFile.create(path, 1, true);
+        f.add(1L);
+        assertFalse(f.mightContain(2L));
+        f.close();
+
+        LongBloomFile.markIncomplete(path);
+        f = LongBloomFile.open(path);
+        assertFalse(f.isComplete());
+        assertTrue(f.mightContain(2L));
+        f.close();
+
+        assertTrue(LongBloomFile.open(newPath()) == null);
+    }
+}
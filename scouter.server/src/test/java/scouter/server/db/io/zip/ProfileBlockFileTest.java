@@ -0,0 +1,181 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouter.server.db.io.zip;
+
+import org.junit.Test;
+import scouter.server.db.xlog.XLogProfileIndex;
+import scouter.util.FileUtil;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProfileBlockFileTest {
+
+    private static byte[] profile(int n) {
+        Random r = new Random(n);
+        byte[] b = new byte[50 + r.nextInt(500)];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = (byte) (i % 7 == 0 ? r.nextInt() : n % 31);
+        }
+        return b;
+    }
+
+    @Test
+    public void write_and_read_pending_flushed_and_reopened() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "profile-block-test-" + System.nanoTime());
+        dir.mkdirs();
+        String file = new File(dir, "xlog").getPath();
+
+        int count = 2000;
+        long[] pos = new long[count];
+        ProfileBlockFile f = ProfileBlockFile.open(file);
+        for (int i = 0; i < count; i++) {
+            pos[i] = f.write(profile(i));
+        }
+        // the last ones are still in the pending block
+        for (int i = 0; i < count; i += 7) {
+            assertArrayEquals(profile(i), f.read(pos[i]));
+        }
+        assertArrayEquals(profile(count - 1), f.read(pos[count - 1]));
+        f.close();
+
+        f = ProfileBlockFile.open(file);
+        for (int i = count - 1; i >= 0; i -= 5) {
+            assertArrayEquals(profile(i), f.read(pos[i]));
+        }
+        f.close();
+
+        for (File c : dir.listFiles()) {
+            c.delete();
+        }
+        dir.delete();
+    }
+
+    private static byte[] random(int n) {
+        Random r = new Random(n);
+        byte[] b = new byte[2000 + r.nextInt(2000)];
+        r.nextBytes(b);
+        return b;
+    }
+
+    @Test
+    public void read_back_through_the_index_over_8mb() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "profile-block-test-" + System.nanoTime());
+        dir.mkdirs();
+        String file = new File(dir, "xlog").getPath();
+
+        // random bytes do not compress, so the file passes 8MB which is over 40 bits as (offset << 16)
+        int count = 5000;
+        ProfileBlockFile f = ProfileBlockFile.open(file);
+        XLogProfileIndex index = XLogProfileIndex.open(file);
+        for (int i = 0; i < count; i++) {
+            index.addByTxid(i, f.write(random(i)));
+        }
+        f.close();
+        assertTrue(new File(file + ".profileb").length() > 8 * 1024 * 1024);
+
+        f = ProfileBlockFile.open(file);
+        for (int i = 0; i < count; i += 13) {
+            List<Object> pos = (List) index.getByTxid(i);
+            assertEquals(1, pos.size());
+            assertArrayEquals(random(i), f.read((Long) pos.get(0)));
+        }
+        f.close();
+        index.close();
+
+        for (File c : dir.listFiles()) {
+            c.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void written_is_run_when_the_block_is_written() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "profile-block-test-" + System.nanoTime());
+        dir.mkdirs();
+        String file = new File(dir, "xlog").getPath();
+
+        final AtomicInteger written = new AtomicInteger();
+        Runnable done = new Runnable() {
+            public void run() {
+                written.incrementAndGet();
+            }
+        };
+        ProfileBlockFile f = ProfileBlockFile.open(file);
+        f.write(profile(1), done);
+        f.write(profile(2), done);
+        assertEquals(0, written.get());
+        f.flush();
+        assertEquals(2, written.get());
+        f.write(profile(3), done);
+        f.close();
+        assertEquals(3, written.get());
+
+        for (File c : dir.listFiles()) {
+            c.delete();
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void block_numbers_of_a_crash_are_not_given_again() throws Exception {
+        File dir = new File(System.getProperty("java.io.tmpdir"), "profile-block-test-" + System.nanoTime());
+        dir.mkdirs();
+        String file = new File(dir, "xlog").getPath();
+        String crashed = new File(dir, "crashed").getPath();
+
+        ProfileBlockFile f = ProfileBlockFile.open(file);
+        long flushed = f.write(profile(1));
+        f.flush();
+        long lost = f.write(profile(2));
+        // the files as they are on the disk when the server is killed with a pending block
+        copy(new File(file + ".profileb"), new File(crashed + ".profileb"));
+        copy(new File(file + ".profileb.next"), new File(crashed + ".profileb.next"));
+        f.close();
+
+        ProfileBlockFile c = ProfileBlockFile.open(crashed);
+        assertArrayEquals(profile(1), c.read(flushed));
+        assertNull(c.read(lost));
+        long next = c.write(profile(3));
+        assertTrue(next >>> 12 > lost >>> 12);
+        c.flush();
+        assertArrayEquals(profile(3), c.read(next));
+        assertNull(c.read(lost));
+        c.close();
+
+        for (File x : dir.listFiles()) {
+            x.delete();
+        }
+        dir.delete();
+    }
+
+    private static void copy(File from, File to) throws Exception {
+        FileOutputStream out = new FileOutputStream(to);
+        out.write(FileUtil.readAll(from));
+        out.close();
+    }
+}
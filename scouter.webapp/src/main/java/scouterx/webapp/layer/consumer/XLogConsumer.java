@@ -29,6 +29,7 @@ import scouterx.webapp.framework.client.net.INetReader;
 import scouterx.webapp.framework.client.net.TcpProxy;
 import scouterx.webapp.model.XLogData;
 import scouterx.webapp.model.scouter.SXLog;
+import scouterx.webapp.request.ExportXLogRequest;
 import scouterx.webapp.request.GxidXLogRequest;
 import scouterx.webapp.request.MultiXLogRequest;
 import scouterx.webapp.request.PageableXLogRequest;
@@ -109,6 +110,34 @@ public class XLogConsumer {
         }
     }
 
+    /**
+     * stream XLogs in column chunks for export
+     *
+     * @param exportXLogRequest
+     */
+    public void handleExportXLog(final ExportXLogRequest exportXLogRequest, final INetReader reader) {
+        MapPack paramPack = new MapPack();
+        paramPack.put(ParamConstant.DATE, exportXLogRequest.getYyyymmdd());
+        paramPack.put(ParamConstant.XLOG_START_TIME, exportXLogRequest.getStartTimeMillis());
+        paramPack.put(ParamConstant.XLOG_END_TIME, exportXLogRequest.getEndTimeMillis());
+        paramPack.put(XLOG_TXID, exportXLogRequest.getLastTxid());
+        paramPack.put(ParamConstant.XLOG_LAST_BUCKET_TIME, exportXLogRequest.getLastXLogTime());
+        paramPack.put(ParamConstant.XLOG_PAGE_COUNT, exportXLogRequest.getMaxCount());
+        paramPack.put(ParamConstant.XLOG_SERVICE, exportXLogRequest.getService());
+        paramPack.put(ParamConstant.XLOG_EXPORT_MIN_ELAPSED, exportXLogRequest.getMinElapsed());
+        paramPack.put(ParamConstant.XLOG_EXPORT_ERROR_ONLY, exportXLogRequest.isErrorOnly());
+        paramPack.put(ParamConstant.XLOG_EXPORT_PROFILE, exportXLogRequest.isProfile());
+
+        ListValue objHashLv = paramPack.newList(ParamConstant.OBJ_HASH);
+        for (Integer hash : exportXLogRequest.getObjHashes()) {
+            objHashLv.add(hash);
+        }
+
+        try (TcpProxy tcpProxy = TcpProxy.getTcpProxy(exportXLogRequest.getServerId())) {
+            tcpProxy.process(RequestCmd.EXPORT_XLOG, paramPack, reader);
+        }
+    }
+
     /**
      * retrieve XLog List for searching with various condition
      *
@@ -22,11 +22,16 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import io.swagger.annotations.Api;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
+import scouter.io.DataOutputX;
+import scouter.io.XLogColumnChunk;
 import scouter.lang.constants.ParamConstant;
 import scouter.lang.pack.MapPack;
 import scouter.lang.pack.Pack;
 import scouter.lang.pack.PackEnum;
 import scouter.lang.pack.XLogPack;
+import scouter.lang.value.BlobValue;
+import scouter.lang.value.MapValue;
+import scouter.lang.value.Value;
 import scouter.util.IntSet;
 import scouterx.webapp.framework.cache.XLogLoopCache;
 import scouterx.webapp.framework.client.model.TextModel;
@@ -36,6 +41,7 @@ import scouterx.webapp.framework.client.server.ServerManager;
 import scouterx.webapp.layer.service.XLogService;
 import scouterx.webapp.model.XLogData;
 import scouterx.webapp.model.XLogPackWrapper;
+import scouterx.webapp.request.ExportXLogRequest;
 import scouterx.webapp.request.GxidXLogRequest;
 import scouterx.webapp.request.MultiXLogRequest;
 import scouterx.webapp.request.PageableXLogRequest;
@@ -55,6 +61,8 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.List;
@@ -176,6 +184,33 @@ public class XLogDataController {
         return Response.ok().entity(streamingOutput).type(MediaType.APPLICATION_JSON).build();
     }
 
+    /**
+     * export xlogs within given time range as a binary stream of column chunks (see {@link XLogColumnChunk}).
+     * the memory use doesn't depend on the range because the chunks are relayed as they arrive from the collector.
+     * uri : /xlog-data/export/{yyyymmdd}?startTimeMillis=... @see {@link ExportXLogRequest}
+     * <pre>
+     * int length, chunk bytes (repeated)
+     * int 0, boolean hasMore, long lastXLogTime, long lastTxid (cursor to resume with)
+     * </pre>
+     *
+     * @param xLogRequest
+     */
+    @GET
+    @Path("/export/{yyyymmdd}")
+    @Produces(MediaType.APPLICATION_OCTET_STREAM)
+    public Response streamExportXLog(@Valid @BeanParam ExportXLogRequest xLogRequest) {
+        xLogRequest.validate();
+        StreamingOutput streamingOutput = outputStream -> {
+            DataOutputX out = new DataOutputX(new DataOutputStream(new BufferedOutputStream(outputStream)));
+            xLogService.handleExportXLog(xLogRequest, getExportXLogReader(out));
+            out.flush();
+        };
+
+        return Response.ok().entity(streamingOutput).type(MediaType.APPLICATION_OCTET_STREAM)
+                .header("Content-Disposition", "attachment; filename=xlog-" + xLogRequest.getYyyymmdd() + ".bin")
+                .build();
+    }
+
     /**
      * request xlog by txid
      * uri : /{yyyymmdd}/{txid} @see {@link SingleXLogRequest}
@@ -265,6 +300,29 @@ public class XLogDataController {
         };
     }
 
+    /**
+     * get INetReader to relay the xlog chunks and the cursor of the export.
+     *
+     * @param out - output of the response
+     * @return INetReader
+     */
+    private INetReader getExportXLogReader(DataOutputX out) {
+        return in -> {
+            Value v = in.readValue();
+            if (v instanceof BlobValue) {
+                byte[] chunk = ((BlobValue) v).value;
+                out.writeInt(chunk.length);
+                out.write(chunk);
+            } else if (v instanceof MapValue) {
+                MapValue cursor = (MapValue) v;
+                out.writeInt(0);
+                out.writeBoolean(cursor.getBoolean(ParamConstant.XLOG_RESULT_HAS_MORE));
+                out.writeLong(cursor.getLong(ParamConstant.XLOG_RESULT_LAST_TIME));
+                out.writeLong(cursor.getLong(ParamConstant.XLOG_RESULT_LAST_TXID));
+            }
+        };
+    }
+
     /**
      * get INetReader to make streaming output from xlogs.
      *
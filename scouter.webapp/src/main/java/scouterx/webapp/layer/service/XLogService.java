@@ -22,6 +22,7 @@ import scouterx.webapp.framework.client.net.INetReader;
 import scouterx.webapp.layer.consumer.XLogConsumer;
 import scouterx.webapp.model.XLogData;
 import scouterx.webapp.model.scouter.SXLog;
+import scouterx.webapp.request.ExportXLogRequest;
 import scouterx.webapp.request.MultiXLogRequest;
 import scouterx.webapp.request.SearchXLogRequest;
 import scouterx.webapp.request.PageableXLogRequest;
@@ -56,6 +57,13 @@ public class XLogService {
         xLogConsumer.handlePageableXLog(xLogRequest, reader);
     }
 
+    /**
+     * stream XLogs in column chunks for export
+     */
+    public void handleExportXLog(final ExportXLogRequest xLogRequest, final INetReader reader) {
+        xLogConsumer.handleExportXLog(xLogRequest, reader);
+    }
+
     /**
      * retrieve various condition search
      */
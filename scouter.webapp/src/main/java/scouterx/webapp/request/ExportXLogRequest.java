@@ -0,0 +1,109 @@
+/*
+ *  Copyright 2015 the original author or authors.
+ *  @https://github.com/scouter-project/scouter
+ *
+ *  Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *  http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *  Unless required by applicable law or agreed to in writing, software
+ *  distributed under the License is distributed on an "AS IS" BASIS,
+ *  WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *  See the License for the specific language governing permissions and
+ *  limitations under the License.
+ *
+ */
+
+package scouterx.webapp.request;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+import org.apache.commons.lang3.StringUtils;
+import scouterx.webapp.framework.client.server.ServerManager;
+import scouterx.webapp.framework.exception.ErrorState;
+import scouterx.webapp.framework.util.ZZ;
+
+import javax.validation.constraints.NotNull;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.QueryParam;
+import java.util.Collections;
+import java.util.Set;
+
+/**
+ * DTO for XLog export request.
+ * - date : (required) date to retrieve as String format YYYYMMDD
+ * - serverId : serverId if available (mandatory if it's multi-server connected scouter webapp)
+ * - startTimeMillis : (required) start time as milliseconds(long)
+ * - endTimeMillis : (required) end time as milliseconds(long)
+ * - objHashes : object hashes by comma separator. all objects if it's empty.
+ * - service : service hash to export only
+ * - minElapsed : minimum elapsed time(ms)
+ * - errorOnly : export only error xlogs
+ * - profile : export profiles together
+ * - maxCount : xlog count to export in one time. (unlimited if it's 0)
+ * - lastTxid, lastXLogTime : the cursor from the end of the previous response to resume.
+ */
+@Getter
+@Setter
+@ToString
+public class ExportXLogRequest {
+
+    @NotNull
+    @PathParam("yyyymmdd")
+    String yyyymmdd;
+
+    int serverId;
+
+    @QueryParam("startTimeMillis")
+    long startTimeMillis;
+
+    @QueryParam("endTimeMillis")
+    long endTimeMillis;
+
+    Set<Integer> objHashes = Collections.emptySet();
+
+    @QueryParam("objHashes")
+    public void setObjHashes(String objHashes) {
+        if (StringUtils.isNotBlank(objHashes)) {
+            this.objHashes = ZZ.splitParamAsIntegerSet(objHashes);
+        }
+    }
+
+    @QueryParam("service")
+    int service;
+
+    @QueryParam("minElapsed")
+    int minElapsed;
+
+    @QueryParam("errorOnly")
+    boolean errorOnly;
+
+    @QueryParam("profile")
+    boolean profile;
+
+    @QueryParam("maxCount")
+    int maxCount;
+
+    @QueryParam("lastTxid")
+    long lastTxid;
+
+    @QueryParam("lastXLogTime")
+    long lastXLogTime;
+
+    @QueryParam("serverId")
+    public void setServerId(int serverId) {
+        this.serverId = ServerManager.getInstance().getServerIfNullDefault(serverId).getId();
+    }
+
+    public void validate() {
+        if ((lastTxid != 0 && lastXLogTime == 0) || (lastTxid == 0 && lastXLogTime != 0)) {
+            throw ErrorState.VALIDATE_ERROR.newBizException("lastTxid and lastXlogTime must coexist!");
+        }
+        if (startTimeMillis <= 0 || endTimeMillis <= 0) {
+            throw ErrorState.VALIDATE_ERROR.newBizException("startTimeMillis and endTimeMillis must have value!");
+        }
+    }
+}